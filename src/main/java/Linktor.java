@@ -1,6 +1,8 @@
 import codeanalysis.symbol.variable.VariableSymbol;
 import codeanalysis.syntax.SyntaxTree;
 import compilation.Compilation;
+import compilation.EmitResult;
+import io.DiagnosticsWriter;
 import repl.LinktorRepl;
 import repl.Repl;
 import util.ConsoleColors;
@@ -29,12 +31,17 @@ public class Linktor {
         final Map<VariableSymbol, Object> variables = new HashMap<>();
         final List<SyntaxTree> trees = new ArrayList<>();
         var debug = false;
+        var run = false;
         var paths = getFilePath(args);
         for (var path : paths) {
             if (path.equals("_debug")) {
                 debug = true;
                 continue;
             }
+            if (path.equals("--run")) {
+                run = true;
+                continue;
+            }
             SyntaxTree tree = SyntaxTree.load(path);
             if (tree != null) {
                 trees.add(tree);
@@ -46,9 +53,14 @@ public class Linktor {
         Compilation compilation = Compilation.create(trees.toArray(new SyntaxTree[]{}));
         if (debug) {
             compilation.emitTree(new PrintWriter(System.out, true));
+            compilation.writeOptimizationReport(new PrintWriter(System.out, true));
             compilation.writeFlowGraph();
         }
-        compilation.emmit();
+        if (run) {
+            EmitResult result = compilation.run(new String[0]);
+            DiagnosticsWriter.write(result.diagnostics());
+        } else
+            compilation.emmit();
         /*EvaluationResult evaluationResult = compilation.evaluate(variables);
         List<Diagnostic> diagnostics = evaluationResult.diagnostics();
         DiagnosticsWriter.write(diagnostics);*/
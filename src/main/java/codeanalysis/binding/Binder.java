@@ -7,6 +7,7 @@ import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
 import codeanalysis.binding.expression.assignment.BoundCompoundAssignmentExpression;
 import codeanalysis.binding.expression.binary.BoundBinaryExpression;
 import codeanalysis.binding.expression.binary.BoundBinaryOperator;
+import codeanalysis.binding.expression.binary.BoundBinaryOperatorKind;
 import codeanalysis.binding.expression.call.BoundCallExpression;
 import codeanalysis.binding.expression.error.BoundErrorExpression;
 import codeanalysis.binding.expression.literal.BoundLiteralExpression;
@@ -33,12 +34,18 @@ import codeanalysis.binding.statement.loop.BoundForStatement;
 import codeanalysis.binding.statement.loop.BoundWhileStatement;
 import codeanalysis.controlflow.ControlFlowGraph;
 import codeanalysis.diagnostics.DiagnosticBag;
+import codeanalysis.lowering.ConstantFolder;
+import codeanalysis.lowering.Inliner;
 import codeanalysis.lowering.Lowerer;
+import codeanalysis.lowering.Optimizer;
+import codeanalysis.lowering.PassStatistics;
 import codeanalysis.source.TextLocation;
 import codeanalysis.symbol.BuildInFunctions;
 import codeanalysis.symbol.FunctionSymbol;
 import codeanalysis.symbol.ParameterSymbol;
 import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.GlobalVariableSymbol;
+import codeanalysis.symbol.variable.LocalVariableSymbol;
 import codeanalysis.symbol.variable.VariableSymbol;
 import codeanalysis.syntax.SyntaxFacts;
 import codeanalysis.syntax.SyntaxKind;
@@ -64,20 +71,27 @@ public class Binder {
     private int labelCount = 0;
     private final DiagnosticBag diagnostics = new DiagnosticBag();
     private final FunctionSymbol function;
+    private final Map<VariableSymbol, BoundLiteralExpression> constants = new HashMap<>();
 
     private BoundScope scope;
+    private final BoundScope rootScope;
+    private int globalCount;
+    private int localCount;
 
 
-    private Binder(BoundScope parent) {
+    private Binder(BoundScope parent, int globalCount) {
         this(parent, null);
+        this.globalCount = globalCount;
     }
 
     private Binder(BoundScope parent, FunctionSymbol function) {
         this.function = function;
         scope = new BoundScope(parent);
+        rootScope = scope;
         if (function != null) {
             for (ParameterSymbol p : function.getParameters())
                 scope.declareVariable(p);
+            localCount = function.getParameters().size();
         }
     }
 
@@ -87,7 +101,7 @@ public class Binder {
 
     public static BoundGlobalScope bindGlobalScope(List<SyntaxTree> trees, BoundGlobalScope previous) throws Exception {
         BoundScope parent = createParentScope(previous);
-        Binder binder = new Binder(parent);
+        Binder binder = new Binder(parent, countGlobalVariables(previous));
         List<FunctionSymbol> functionSymbols = getBoundFunctions(trees, binder);
         List<BoundStatement> statements = getBoundStatements(trees, binder);
         List<BoundStatement> statement = List.copyOf(statements);
@@ -100,6 +114,13 @@ public class Binder {
     }
 
     public static BoundProgram bindProgram(BoundProgram previous, BoundGlobalScope global) throws Exception {
+        return bindProgram(previous, global, Inliner.DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param inliningBudget the largest function, in bound nodes, copied into its callers; 0 turns inlining off
+     */
+    public static BoundProgram bindProgram(BoundProgram previous, BoundGlobalScope global, int inliningBudget) throws Exception {
         BoundScope parent = createParentScope(global);
         Map<FunctionSymbol, BoundBlockStatement> functionsBodies = new HashMap<>();
         DiagnosticBag diagnostics = new DiagnosticBag();
@@ -116,11 +137,41 @@ public class Binder {
         }
 
         var mainFunction = global.getMainFunction();
+        FunctionSymbol script = null;
         if (mainFunction != null && !global.getStatements().isEmpty()) {
-            BoundBlockStatement statement = Lowerer.lower(mainFunction, new BoundBlockStatement(global.getStatements()));
-            functionsBodies.put(mainFunction, statement);
+            functionsBodies.put(mainFunction, Lowerer.lower(mainFunction, new BoundBlockStatement(global.getStatements())));
+            script = mainFunction;
+        }
+
+        List<Inliner.Decision> inlining = List.of();
+        PassStatistics statistics = new PassStatistics();
+        if (diagnostics.isEmpty() && inliningBudget > 0) {
+            inlining = new Inliner(inliningBudget).inline(functionsBodies, previous, script);
+            for (Inliner.Decision decision : inlining)
+                statistics.add(Inliner.PASS, decision.inlined() ? decision.calls() : 0);
+        }
+        for (var entry : functionsBodies.entrySet())
+            entry.setValue(Optimizer.optimize(entry.getKey(), entry.getValue(), entry.getKey() == script, statistics));
+        return new BoundProgram(previous, diagnostics, functionsBodies, mainFunction, getGlobalVariables(global),
+                inlining, statistics);
+    }
+
+    private static int countGlobalVariables(BoundGlobalScope scope) {
+        int count = 0;
+        while (scope != null) {
+            count += scope.getVariables().size();
+            scope = scope.getPrevious();
+        }
+        return count;
+    }
+
+    private static List<VariableSymbol> getGlobalVariables(BoundGlobalScope global) {
+        VariableSymbol[] globals = new VariableSymbol[countGlobalVariables(global)];
+        for (BoundGlobalScope scope = global; scope != null; scope = scope.getPrevious()) {
+            for (VariableSymbol variable : scope.getVariables())
+                globals[variable.getIndex()] = variable;
         }
-        return new BoundProgram(previous, diagnostics, functionsBodies, mainFunction);
+        return List.of(globals);
     }
 
     private static List<BoundStatement> getBoundStatements(List<SyntaxTree> trees, Binder binder) throws Exception {
@@ -178,7 +229,7 @@ public class Binder {
             if (!seeParamNames.add(name)) {
                 diagnostics.reportDuplicatedParam(param.getLocation(), name);
             } else {
-                ParameterSymbol parameter = new ParameterSymbol(name, type);
+                ParameterSymbol parameter = new ParameterSymbol(name, type, params.size());
                 paramsTypes.add(type);
                 params.add(parameter);
             }
@@ -331,6 +382,11 @@ public class Binder {
     private BoundStatement bindVariableDeclarationStatement(VariableDeclarationStatementSyntax syntax) throws Exception {
         BoundExpression initializer = bindInitializer(syntax);
         VariableSymbol variableSymbol = bindVariable(syntax, initializer);
+        if (variableSymbol.isReadOnly()) {
+            BoundLiteralExpression constant = ConstantFolder.fold(initializer, constants);
+            if (constant != null)
+                constants.put(variableSymbol, constant);
+        }
 
         return new BoundVariableDeclarationStatement(variableSymbol, initializer);
     }
@@ -339,12 +395,23 @@ public class Binder {
         boolean isReadOnly = syntax.getKeyword().getKind() == SyntaxKind.LET_KEYWORD;
         boolean declare = !syntax.getIdentifier().isMissing();
         String name = syntax.getIdentifier().getText() == null ? "?" : syntax.getIdentifier().getText();
-        VariableSymbol variableSymbol = new VariableSymbol(name, initializer.getType(), isReadOnly);
+        VariableSymbol variableSymbol;
+        if (isGlobalScope()) {
+            variableSymbol = new GlobalVariableSymbol(name, initializer.getType(), isReadOnly, globalCount);
+        } else {
+            variableSymbol = new LocalVariableSymbol(name, initializer.getType(), isReadOnly, localCount++);
+        }
         if (declare && !scope.declareVariable(variableSymbol))
             diagnostics.reportVariableAlreadyDeclared(name, syntax.getIdentifier().getLocation());
+        else if (declare && variableSymbol instanceof GlobalVariableSymbol)
+            globalCount++;
         return variableSymbol;
     }
 
+    private boolean isGlobalScope() {
+        return function == null && scope == rootScope;
+    }
+
     private BoundExpression bindInitializer(VariableDeclarationStatementSyntax syntax) throws Exception {
         TypeSymbol type = bindTypeClause(syntax.getType());
         BoundExpression initializer;
@@ -601,6 +668,11 @@ public class Binder {
 
             return new BoundErrorExpression();
         }
+        if (operator.getKind() == BoundBinaryOperatorKind.DIVISION || operator.getKind() == BoundBinaryOperatorKind.MOD) {
+            BoundLiteralExpression divisor = ConstantFolder.fold(right, constants);
+            if (divisor != null && (int) divisor.getValue() == 0)
+                diagnostics.reportDivisionByZero(syntax.getRight().getLocation());
+        }
         return new BoundBinaryExpression(left, operator, right);
     }
 
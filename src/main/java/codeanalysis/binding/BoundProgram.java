@@ -2,21 +2,38 @@ package codeanalysis.binding;
 
 import codeanalysis.binding.statement.block.BoundBlockStatement;
 import codeanalysis.diagnostics.DiagnosticBag;
+import codeanalysis.lowering.Inliner;
+import codeanalysis.lowering.PassStatistics;
+import codeanalysis.lowering.PreparedFunction;
 import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BoundProgram {
     private final BoundProgram previous;
     private final DiagnosticBag diagnostics;
     private final Map<FunctionSymbol, BoundBlockStatement> functionsBodies;
     private final FunctionSymbol mainFunction;
+    private final List<VariableSymbol> globalVariables;
+    private final List<Inliner.Decision> inlining;
+    private final PassStatistics statistics;
+    private final Map<FunctionSymbol, PreparedFunction> preparedFunctions = new ConcurrentHashMap<>();
 
-    public BoundProgram(BoundProgram previous, DiagnosticBag diagnostics, Map<FunctionSymbol, BoundBlockStatement> functionsBodies, FunctionSymbol mainFunction) {
+    public BoundProgram(BoundProgram previous, DiagnosticBag diagnostics, Map<FunctionSymbol, BoundBlockStatement> functionsBodies, FunctionSymbol mainFunction, List<VariableSymbol> globalVariables) {
+        this(previous, diagnostics, functionsBodies, mainFunction, globalVariables, List.of(), new PassStatistics());
+    }
+
+    public BoundProgram(BoundProgram previous, DiagnosticBag diagnostics, Map<FunctionSymbol, BoundBlockStatement> functionsBodies, FunctionSymbol mainFunction, List<VariableSymbol> globalVariables, List<Inliner.Decision> inlining, PassStatistics statistics) {
         this.previous = previous;
         this.diagnostics = diagnostics;
         this.functionsBodies = Map.copyOf(functionsBodies);
         this.mainFunction = mainFunction;
+        this.globalVariables = List.copyOf(globalVariables);
+        this.inlining = List.copyOf(inlining);
+        this.statistics = statistics;
     }
 
     public DiagnosticBag getDiagnostics() {
@@ -34,4 +51,37 @@ public class BoundProgram {
     public Map<FunctionSymbol, BoundBlockStatement> getFunctionsBodies() {
         return functionsBodies;
     }
+
+    public List<VariableSymbol> getGlobalVariables() {
+        return globalVariables;
+    }
+
+    /**
+     * What the inliner did with each call between functions of this submission, and why.
+     */
+    public List<Inliner.Decision> getInlining() {
+        return inlining;
+    }
+
+    /**
+     * How much each optimization pass changed the functions of this submission.
+     */
+    public PassStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Looks the function up in this program and the previous ones, preparing its body on first use.
+     * The prepared function is cached by the program that owns the body, so later submissions share it.
+     *
+     * @return the prepared function or null when no program in the chain has a body for it
+     */
+    public PreparedFunction getPreparedFunction(FunctionSymbol function) {
+        for (BoundProgram current = this; current != null; current = current.previous) {
+            BoundBlockStatement body = current.functionsBodies.get(function);
+            if (body != null)
+                return current.preparedFunctions.computeIfAbsent(function, f -> PreparedFunction.prepare(f, body));
+        }
+        return null;
+    }
 }
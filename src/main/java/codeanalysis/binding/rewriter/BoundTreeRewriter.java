@@ -190,14 +190,14 @@ public abstract class BoundTreeRewriter {
         return expression;
     }
 
-    private BoundExpression rewriteConversionExpression(BoundConversionExpression expression) throws Exception {
+    protected BoundExpression rewriteConversionExpression(BoundConversionExpression expression) throws Exception {
         BoundExpression newExpression = rewriteExpression(expression.getExpression());
         if (newExpression.equals(expression.getExpression()))
             return expression;
         return new BoundConversionExpression(expression.getType(), newExpression);
     }
 
-    private BoundExpression rewriteCallExpression(BoundCallExpression expression) throws Exception {
+    protected BoundExpression rewriteCallExpression(BoundCallExpression expression) throws Exception {
         List<BoundExpression> expressions = null;
         for (int i = 0; i < expression.getArgs().size(); i++) {
             BoundExpression oldExpression = expression.getArgs().get(i);
@@ -4,8 +4,12 @@ import codeanalysis.binding.BoundNodeKind;
 import codeanalysis.binding.statement.block.BoundBlockStatement;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ControlFlowGraph {
 
@@ -54,6 +58,45 @@ public class ControlFlowGraph {
         return edges;
     }
 
+    /**
+     * The blocks the start reaches, each one before its successors unless the edge between them closes a loop.
+     */
+    public List<BasicBlock> getReversePostorder() {
+        List<BasicBlock> order = new ArrayList<>(blocks.size());
+        Set<BasicBlock> visited = new HashSet<>();
+        List<BasicBlock> stack = new ArrayList<>();
+        List<Integer> nextEdge = new ArrayList<>();
+        stack.add(start);
+        nextEdge.add(0);
+        visited.add(start);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            BasicBlock block = stack.get(top);
+            int edge = nextEdge.get(top);
+            if (edge < block.getOutgoing().size()) {
+                nextEdge.set(top, edge + 1);
+                BasicBlock next = block.getOutgoing().get(edge).getTo();
+                if (visited.add(next)) {
+                    stack.add(next);
+                    nextEdge.add(0);
+                }
+            } else {
+                order.add(block);
+                stack.remove(top);
+                nextEdge.remove(top);
+            }
+        }
+        Collections.reverse(order);
+        return order;
+    }
+
+    /**
+     * The natural loops of the graph, a loop always before the loops nested in it.
+     */
+    public List<NaturalLoop> getLoops() {
+        return NaturalLoop.find(this, DominatorTree.build(this));
+    }
+
 
     public void writeTo(PrintWriter out) {
         out.println("digraph G {");
@@ -0,0 +1,162 @@
+package codeanalysis.controlflow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    A block dominates another when every path from the start to the other one goes through it.
+    Immediate dominators are found with the iterative algorithm of Cooper, Harvey and Kennedy over the reverse postorder,
+    which settles in two or three passes on the graphs the lowerer produces.
+    The dominance frontier of a block is where its dominance stops: the joins it reaches without dominating them.
+    Blocks the start cannot reach are not part of the tree.
+ */
+public final class DominatorTree {
+    private final List<BasicBlock> order;
+    private final Map<BasicBlock, Integer> numbers = new HashMap<>();
+    private final BasicBlock[] immediateDominators;
+    private final List<List<BasicBlock>> children = new ArrayList<>();
+    private final List<Set<BasicBlock>> frontiers = new ArrayList<>();
+    private final int[] enter;
+    private final int[] exit;
+
+    private DominatorTree(ControlFlowGraph graph) {
+        order = graph.getReversePostorder();
+        int count = order.size();
+        immediateDominators = new BasicBlock[count];
+        enter = new int[count];
+        exit = new int[count];
+        for (int i = 0; i < count; i++) {
+            numbers.put(order.get(i), i);
+            children.add(new ArrayList<>());
+            frontiers.add(new LinkedHashSet<>());
+        }
+        computeImmediateDominators();
+        for (int i = 1; i < count; i++)
+            children.get(numbers.get(immediateDominators[i])).add(order.get(i));
+        computeFrontiers();
+        number();
+    }
+
+    public static DominatorTree build(ControlFlowGraph graph) {
+        return new DominatorTree(graph);
+    }
+
+    private void computeImmediateDominators() {
+        immediateDominators[0] = order.get(0);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.size(); i++) {
+                BasicBlock dominator = null;
+                for (BasicBlockEdge edge : order.get(i).getIncoming()) {
+                    Integer from = numbers.get(edge.getFrom());
+                    if (from == null || immediateDominators[from] == null)
+                        continue;
+                    dominator = dominator == null ? edge.getFrom() : intersect(dominator, edge.getFrom());
+                }
+                if (dominator != immediateDominators[i]) {
+                    immediateDominators[i] = dominator;
+                    changed = true;
+                }
+            }
+        }
+        immediateDominators[0] = null;
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        int left = numbers.get(a);
+        int right = numbers.get(b);
+        while (left != right) {
+            while (left > right)
+                left = numbers.get(immediateDominators[left]);
+            while (right > left)
+                right = numbers.get(immediateDominators[right]);
+        }
+        return order.get(left);
+    }
+
+    private void computeFrontiers() {
+        for (int i = 1; i < order.size(); i++) {
+            BasicBlock join = order.get(i);
+            if (join.getIncoming().size() < 2)
+                continue;
+            for (BasicBlockEdge edge : join.getIncoming()) {
+                BasicBlock runner = edge.getFrom();
+                if (!numbers.containsKey(runner))
+                    continue;
+                while (runner != immediateDominators[i]) {
+                    int number = numbers.get(runner);
+                    frontiers.get(number).add(join);
+                    runner = immediateDominators[number];
+                }
+            }
+        }
+    }
+
+    // preorder and postorder numbers of the tree, so dominance is two comparisons
+    private void number() {
+        List<BasicBlock> stack = new ArrayList<>();
+        List<Integer> nextChild = new ArrayList<>();
+        stack.add(order.get(0));
+        nextChild.add(0);
+        int counter = 0;
+        enter[0] = counter++;
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            int number = numbers.get(stack.get(top));
+            int child = nextChild.get(top);
+            if (child < children.get(number).size()) {
+                nextChild.set(top, child + 1);
+                BasicBlock next = children.get(number).get(child);
+                enter[numbers.get(next)] = counter++;
+                stack.add(next);
+                nextChild.add(0);
+            } else {
+                exit[number] = counter++;
+                stack.remove(top);
+                nextChild.remove(top);
+            }
+        }
+    }
+
+    /**
+     * The reachable blocks in reverse postorder, every block after its immediate dominator.
+     */
+    public List<BasicBlock> getBlocks() {
+        return order;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return numbers.containsKey(block);
+    }
+
+    /**
+     * @return the closest block dominating this one, null for the start
+     */
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        return immediateDominators[numbers.get(block)];
+    }
+
+    /**
+     * Every block dominates itself.
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        Integer a = numbers.get(dominator);
+        Integer b = numbers.get(block);
+        if (a == null || b == null)
+            return false;
+        return enter[a] <= enter[b] && exit[b] <= exit[a];
+    }
+
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return children.get(numbers.get(block));
+    }
+
+    public Set<BasicBlock> getFrontier(BasicBlock block) {
+        return frontiers.get(numbers.get(block));
+    }
+}
@@ -12,9 +12,13 @@ import codeanalysis.binding.statement.jumpto.BoundLabel;
 import codeanalysis.symbol.TypeSymbol;
 import codeanalysis.syntax.SyntaxKind;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class GraphBuilder {
     private final HashMap<BoundStatement, BasicBlock> blockFromStatement = new HashMap<>();
@@ -69,35 +73,38 @@ public class GraphBuilder {
             }
         }
 
-        var scanAgain = false;
-        do {
-            scanAgain = false;
-            for (var block : blocks) {
-                if (block.getIncoming().isEmpty()) {
-                    removeBlock(block);
-                    scanAgain = true;
-                    break;
-                }
-            }
-
-        } while (scanAgain);
+        removeUnreachableBlocks(start);
 
         blocks.add(0, start);
         blocks.add(end);
         return new ControlFlowGraph(start, end, blocks, edges);
     }
 
-    private void removeBlock(BasicBlock block) {
-        for (var edge : block.getIncoming()) {
-            edge.getFrom().getOutgoing().remove(edge);
-            edges.remove(edge);
+    /*
+        One walk from the start marks what is reachable, everything else is dropped in a single pass,
+        unreachable loops included.
+     */
+    private void removeUnreachableBlocks(BasicBlock start) {
+        Set<BasicBlock> reachable = new HashSet<>();
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        stack.push(start);
+        reachable.add(start);
+        while (!stack.isEmpty()) {
+            for (var edge : stack.pop().getOutgoing()) {
+                if (reachable.add(edge.getTo()))
+                    stack.push(edge.getTo());
+            }
         }
-        for (var edge : block.getOutgoing()) {
-            edge.getTo().getIncoming().remove(edge);
-            edges.remove(edge);
+        if (reachable.containsAll(blocks))
+            return;
+        for (var block : blocks) {
+            if (reachable.contains(block))
+                continue;
+            for (var edge : block.getOutgoing())
+                edge.getTo().getIncoming().remove(edge);
         }
-
-        blocks.remove(block);
+        blocks.removeIf(block -> !reachable.contains(block));
+        edges.removeIf(edge -> !reachable.contains(edge.getFrom()));
     }
 
     private BoundExpression negate(BoundExpression condition) {
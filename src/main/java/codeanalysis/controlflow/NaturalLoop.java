@@ -0,0 +1,86 @@
+package codeanalysis.controlflow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    A back edge goes from a block to one of its dominators, the header of the loop.
+    The loop is the header and every block that reaches the source of a back edge without going through the header.
+    Back edges to the same header make a single loop, so a while with continue statements is one loop and not several.
+ */
+public final class NaturalLoop {
+    private final BasicBlock header;
+    private final Set<BasicBlock> blocks = new LinkedHashSet<>();
+    private final List<BasicBlockEdge> backEdges = new ArrayList<>();
+
+    private NaturalLoop(BasicBlock header) {
+        this.header = header;
+        blocks.add(header);
+    }
+
+    /**
+     * @return the loops of the graph, a loop always before the loops nested in it
+     */
+    public static List<NaturalLoop> find(ControlFlowGraph graph, DominatorTree dominators) {
+        Map<BasicBlock, NaturalLoop> loops = new LinkedHashMap<>();
+        for (BasicBlock block : dominators.getBlocks()) {
+            for (BasicBlockEdge edge : block.getOutgoing()) {
+                if (dominators.contains(edge.getTo()) && dominators.dominates(edge.getTo(), block))
+                    loops.computeIfAbsent(edge.getTo(), NaturalLoop::new).addBackEdge(edge, dominators);
+            }
+        }
+        List<NaturalLoop> result = new ArrayList<>(loops.values());
+        // a loop holds every loop nested in it, so it is always the bigger one
+        result.sort(Comparator.comparingInt((NaturalLoop loop) -> loop.blocks.size()).reversed());
+        return result;
+    }
+
+    private void addBackEdge(BasicBlockEdge edge, DominatorTree dominators) {
+        backEdges.add(edge);
+        Deque<BasicBlock> work = new ArrayDeque<>();
+        if (blocks.add(edge.getFrom()))
+            work.push(edge.getFrom());
+        while (!work.isEmpty()) {
+            for (BasicBlockEdge incoming : work.pop().getIncoming()) {
+                BasicBlock from = incoming.getFrom();
+                if (dominators.contains(from) && blocks.add(from))
+                    work.push(from);
+            }
+        }
+    }
+
+    public BasicBlock getHeader() {
+        return header;
+    }
+
+    public Set<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public List<BasicBlockEdge> getBackEdges() {
+        return backEdges;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    /**
+     * The edges entering the loop from outside, all of them go to the header.
+     */
+    public List<BasicBlockEdge> getEntries() {
+        List<BasicBlockEdge> entries = new ArrayList<>();
+        for (BasicBlockEdge edge : header.getIncoming()) {
+            if (!blocks.contains(edge.getFrom()))
+                entries.add(edge);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,142 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.BasicBlockEdge;
+import codeanalysis.controlflow.ControlFlowGraph;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Iterative bit-vector dataflow over the basic blocks of a ControlFlowGraph.
+    Each block is summarized once by the facts it generates and the facts it kills,
+    so visiting a block afterwards is a handful of word operations on BitSets.
+    Blocks are numbered in reverse postorder (postorder when the analysis runs backward) and the worklist
+    always resumes at the next pending number, so every pass follows the flow and only the blocks whose
+    inputs changed are visited again. A fact needs one more pass for each back edge it crosses,
+    so the number of passes is bounded by the loop nesting depth, not by the size of the function.
+ */
+public abstract class DataflowAnalysis {
+    private final boolean forward;
+    private final boolean intersection;
+    private final Map<BasicBlock, Integer> numbers = new HashMap<>();
+    private BitSet[] before;
+    private BitSet[] after;
+    private int visits;
+
+    /**
+     * @param forward      facts flow from the start to the end of the graph, backward otherwise
+     * @param intersection a fact holds at a join when it holds on every path into it, on any path otherwise
+     */
+    protected DataflowAnalysis(boolean forward, boolean intersection) {
+        this.forward = forward;
+        this.intersection = intersection;
+    }
+
+    protected abstract int getFactCount();
+
+    /**
+     * The facts holding where the analysis begins: the entry of the start block, or the exit of the end block.
+     */
+    protected abstract BitSet getBoundary();
+
+    /**
+     * Fills the facts the block makes hold and the ones it stops from holding, in the direction of the analysis.
+     */
+    protected abstract void summarize(BasicBlock block, BitSet gen, BitSet kill);
+
+    protected final void solve(ControlFlowGraph graph) {
+        // blocks the start cannot reach, at most the end block of a function that never returns, come last
+        List<BasicBlock> order = graph.getReversePostorder();
+        Set<BasicBlock> reached = new HashSet<>(order);
+        for (BasicBlock block : graph.getBlocks()) {
+            if (!reached.contains(block))
+                order.add(block);
+        }
+        if (!forward)
+            Collections.reverse(order);
+        int count = order.size();
+        BasicBlock boundary = forward ? graph.getStart() : graph.getEnd();
+        BitSet[] gen = new BitSet[count];
+        BitSet[] kill = new BitSet[count];
+        before = new BitSet[count];
+        after = new BitSet[count];
+        BitSet top = new BitSet();
+        if (intersection)
+            top.set(0, getFactCount());
+        for (int i = 0; i < count; i++) {
+            numbers.put(order.get(i), i);
+            gen[i] = new BitSet();
+            kill[i] = new BitSet();
+            summarize(order.get(i), gen[i], kill[i]);
+            after[i] = (BitSet) top.clone();
+        }
+
+        BitSet pending = new BitSet();
+        pending.set(0, count);
+        int current = 0;
+        while (!pending.isEmpty()) {
+            current = pending.nextSetBit(current);
+            if (current < 0)
+                current = pending.nextSetBit(0);
+            pending.clear(current);
+            visits++;
+            BasicBlock block = order.get(current);
+            BitSet input = block == boundary ? (BitSet) getBoundary().clone() : meet(block, top);
+            before[current] = input;
+            BitSet output = (BitSet) input.clone();
+            output.andNot(kill[current]);
+            output.or(gen[current]);
+            if (output.equals(after[current]))
+                continue;
+            after[current] = output;
+            for (BasicBlockEdge edge : forward ? block.getOutgoing() : block.getIncoming())
+                pending.set(numbers.get(forward ? edge.getTo() : edge.getFrom()));
+        }
+    }
+
+    private BitSet meet(BasicBlock block, BitSet top) {
+        List<BasicBlockEdge> edges = forward ? block.getIncoming() : block.getOutgoing();
+        if (edges.isEmpty())
+            return (BitSet) top.clone();
+        BitSet result = null;
+        for (BasicBlockEdge edge : edges) {
+            BitSet facts = after[numbers.get(forward ? edge.getFrom() : edge.getTo())];
+            if (result == null)
+                result = (BitSet) facts.clone();
+            else if (intersection)
+                result.and(facts);
+            else
+                result.or(facts);
+        }
+        return result;
+    }
+
+    /**
+     * The facts holding when control enters the block.
+     */
+    protected final BitSet getEntry(BasicBlock block) {
+        int number = numbers.get(block);
+        return forward ? before[number] : after[number];
+    }
+
+    /**
+     * The facts holding when control leaves the block.
+     */
+    protected final BitSet getExit(BasicBlock block) {
+        int number = numbers.get(block);
+        return forward ? after[number] : before[number];
+    }
+
+    /**
+     * How many times a block was evaluated before reaching the fixpoint, at least once per block.
+     */
+    public int getVisits() {
+        return visits;
+    }
+}
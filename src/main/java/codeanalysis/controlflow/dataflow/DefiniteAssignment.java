@@ -0,0 +1,72 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.BitSet;
+import java.util.List;
+
+/*
+    A variable is definitely assigned at a point when every path from the start writes it first.
+    Parameters are assigned on entry. Bits are the indexes of getVariables().
+ */
+public final class DefiniteAssignment extends DataflowAnalysis {
+    private final VariableAccesses accesses;
+
+    private DefiniteAssignment(ControlFlowGraph graph) {
+        super(true, true);
+        accesses = new VariableAccesses(graph);
+    }
+
+    public static DefiniteAssignment analyze(ControlFlowGraph graph) {
+        DefiniteAssignment assignment = new DefiniteAssignment(graph);
+        assignment.solve(graph);
+        return assignment;
+    }
+
+    @Override
+    protected int getFactCount() {
+        return accesses.getVariables().size();
+    }
+
+    @Override
+    protected BitSet getBoundary() {
+        BitSet parameters = new BitSet();
+        List<VariableSymbol> variables = accesses.getVariables();
+        for (int i = 0; i < variables.size(); i++) {
+            if (variables.get(i).getKind() == SymbolKind.PARAMETER)
+                parameters.set(i);
+        }
+        return parameters;
+    }
+
+    @Override
+    protected void summarize(BasicBlock block, BitSet gen, BitSet kill) {
+        VariableAccesses.visit(block, new VariableAccesses.Visitor() {
+            @Override
+            public void read(VariableSymbol variable) {
+            }
+
+            @Override
+            public void write(VariableSymbol variable, BoundNode definition) {
+                gen.set(accesses.indexOf(variable));
+            }
+        });
+    }
+
+    public List<VariableSymbol> getVariables() {
+        return accesses.getVariables();
+    }
+
+    public BitSet getAssignedIn(BasicBlock block) {
+        return (BitSet) getEntry(block).clone();
+    }
+
+    public boolean isAssignedIn(BasicBlock block, VariableSymbol variable) {
+        int index = accesses.indexOf(variable);
+        return index >= 0 && getEntry(block).get(index);
+    }
+}
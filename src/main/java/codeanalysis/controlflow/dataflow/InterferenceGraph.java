@@ -0,0 +1,106 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+    Two variables interfere when one of them is written while the other is live,
+    so they can only share a storage slot when they do not.
+    Each block is walked backward from its live-out set one access at a time,
+    which also keeps apart variables written and read inside the same statement.
+ */
+public final class InterferenceGraph {
+    private final Liveness liveness;
+    private final BitSet[] neighbours;
+
+    private InterferenceGraph(Liveness liveness) {
+        this.liveness = liveness;
+        neighbours = new BitSet[liveness.getVariables().size()];
+        for (int i = 0; i < neighbours.length; i++)
+            neighbours[i] = new BitSet();
+    }
+
+    public static InterferenceGraph build(ControlFlowGraph graph) {
+        InterferenceGraph interference = new InterferenceGraph(Liveness.analyze(graph));
+        for (BasicBlock block : graph.getBlocks())
+            interference.addBlock(block);
+        // parameters are all written on entry
+        BitSet entry = interference.liveness.getLiveOut(graph.getStart());
+        List<VariableSymbol> variables = interference.liveness.getVariables();
+        for (int i = 0; i < variables.size(); i++) {
+            if (variables.get(i).getKind() == SymbolKind.PARAMETER)
+                interference.addEdges(i, entry);
+        }
+        return interference;
+    }
+
+    private void addBlock(BasicBlock block) {
+        List<Integer> accesses = new ArrayList<>();
+        // reads are stored as the index, writes as its complement
+        VariableAccesses.visit(block, new VariableAccesses.Visitor() {
+            @Override
+            public void read(VariableSymbol variable) {
+                accesses.add(liveness.indexOf(variable));
+            }
+
+            @Override
+            public void write(VariableSymbol variable, BoundNode definition) {
+                accesses.add(~liveness.indexOf(variable));
+            }
+        });
+        BitSet live = liveness.getLiveOut(block);
+        for (int i = accesses.size() - 1; i >= 0; i--) {
+            int access = accesses.get(i);
+            if (access >= 0) {
+                live.set(access);
+            } else {
+                addEdges(~access, live);
+                live.clear(~access);
+            }
+        }
+    }
+
+    private void addEdges(int variable, BitSet live) {
+        for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+            if (other == variable)
+                continue;
+            neighbours[variable].set(other);
+            neighbours[other].set(variable);
+        }
+    }
+
+    public Liveness getLiveness() {
+        return liveness;
+    }
+
+    public List<VariableSymbol> getVariables() {
+        return liveness.getVariables();
+    }
+
+    public boolean interferes(VariableSymbol first, VariableSymbol second) {
+        int index = liveness.indexOf(first);
+        int other = liveness.indexOf(second);
+        return index >= 0 && other >= 0 && neighbours[index].get(other);
+    }
+
+    /**
+     * @return the variables that cannot share storage with the given one, none for a variable the graph never touches
+     */
+    public List<VariableSymbol> getNeighbours(VariableSymbol variable) {
+        List<VariableSymbol> result = new ArrayList<>();
+        int index = liveness.indexOf(variable);
+        if (index < 0)
+            return result;
+        BitSet set = neighbours[index];
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1))
+            result.add(liveness.getVariables().get(i));
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.BitSet;
+import java.util.List;
+
+/*
+    A variable is live at a point when some path from there reads it before writing it.
+    Bits are the indexes of getVariables().
+ */
+public final class Liveness extends DataflowAnalysis {
+    private final VariableAccesses accesses;
+
+    private Liveness(ControlFlowGraph graph) {
+        super(false, false);
+        accesses = new VariableAccesses(graph);
+    }
+
+    public static Liveness analyze(ControlFlowGraph graph) {
+        Liveness liveness = new Liveness(graph);
+        liveness.solve(graph);
+        return liveness;
+    }
+
+    @Override
+    protected int getFactCount() {
+        return accesses.getVariables().size();
+    }
+
+    @Override
+    protected BitSet getBoundary() {
+        return new BitSet();
+    }
+
+    @Override
+    protected void summarize(BasicBlock block, BitSet gen, BitSet kill) {
+        // gen holds the reads not preceded by a write of the block, kill every write
+        VariableAccesses.visit(block, new VariableAccesses.Visitor() {
+            @Override
+            public void read(VariableSymbol variable) {
+                int index = accesses.indexOf(variable);
+                if (!kill.get(index))
+                    gen.set(index);
+            }
+
+            @Override
+            public void write(VariableSymbol variable, BoundNode definition) {
+                kill.set(accesses.indexOf(variable));
+            }
+        });
+    }
+
+    public List<VariableSymbol> getVariables() {
+        return accesses.getVariables();
+    }
+
+    int indexOf(VariableSymbol variable) {
+        return accesses.indexOf(variable);
+    }
+
+    public BitSet getLiveIn(BasicBlock block) {
+        return (BitSet) getEntry(block).clone();
+    }
+
+    public BitSet getLiveOut(BasicBlock block) {
+        return (BitSet) getExit(block).clone();
+    }
+
+    public boolean isLiveIn(BasicBlock block, VariableSymbol variable) {
+        int index = accesses.indexOf(variable);
+        return index >= 0 && getEntry(block).get(index);
+    }
+
+    public boolean isLiveOut(BasicBlock block, VariableSymbol variable) {
+        int index = accesses.indexOf(variable);
+        return index >= 0 && getExit(block).get(index);
+    }
+}
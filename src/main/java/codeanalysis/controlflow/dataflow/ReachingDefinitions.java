@@ -0,0 +1,112 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    A definition reaches a point when some path from it gets there without writing its variable again.
+    Every write is a definition, parameters have one more for the value they are called with.
+    Bits are the indexes of getDefinitions().
+ */
+public final class ReachingDefinitions extends DataflowAnalysis {
+    /**
+     * @param node the declaration statement or the assignment expression, null for the value a parameter enters with
+     */
+    public record Definition(VariableSymbol variable, BoundNode node) {
+    }
+
+    private final List<Definition> definitions = new ArrayList<>();
+    private final Map<VariableSymbol, BitSet> definitionsOf = new HashMap<>();
+    private final Map<BasicBlock, List<Integer>> blockDefinitions = new HashMap<>();
+    private final BitSet parameters = new BitSet();
+
+    private ReachingDefinitions(ControlFlowGraph graph) {
+        super(true, false);
+        for (VariableSymbol variable : new VariableAccesses(graph).getVariables()) {
+            if (variable.getKind() == SymbolKind.PARAMETER) {
+                parameters.set(definitions.size());
+                define(variable, null);
+            }
+        }
+        for (BasicBlock block : graph.getBlocks()) {
+            List<Integer> numbers = new ArrayList<>();
+            VariableAccesses.visit(block, new VariableAccesses.Visitor() {
+                @Override
+                public void read(VariableSymbol variable) {
+                }
+
+                @Override
+                public void write(VariableSymbol variable, BoundNode definition) {
+                    numbers.add(define(variable, definition));
+                }
+            });
+            blockDefinitions.put(block, numbers);
+        }
+    }
+
+    private int define(VariableSymbol variable, BoundNode node) {
+        int number = definitions.size();
+        definitions.add(new Definition(variable, node));
+        definitionsOf.computeIfAbsent(variable, v -> new BitSet()).set(number);
+        return number;
+    }
+
+    public static ReachingDefinitions analyze(ControlFlowGraph graph) {
+        ReachingDefinitions reaching = new ReachingDefinitions(graph);
+        reaching.solve(graph);
+        return reaching;
+    }
+
+    @Override
+    protected int getFactCount() {
+        return definitions.size();
+    }
+
+    @Override
+    protected BitSet getBoundary() {
+        return parameters;
+    }
+
+    @Override
+    protected void summarize(BasicBlock block, BitSet gen, BitSet kill) {
+        // a later write of the same variable replaces the earlier one in gen
+        for (int number : blockDefinitions.get(block)) {
+            BitSet others = definitionsOf.get(definitions.get(number).variable());
+            gen.andNot(others);
+            gen.set(number);
+            kill.or(others);
+        }
+    }
+
+    public List<Definition> getDefinitions() {
+        return definitions;
+    }
+
+    public BitSet getReachingIn(BasicBlock block) {
+        return (BitSet) getEntry(block).clone();
+    }
+
+    /**
+     * @return the definitions of the variable that may provide its value when control enters the block
+     */
+    public List<Definition> getReachingIn(BasicBlock block, VariableSymbol variable) {
+        BitSet candidates = definitionsOf.get(variable);
+        List<Definition> result = new ArrayList<>();
+        if (candidates == null)
+            return result;
+        BitSet reaching = (BitSet) getEntry(block).clone();
+        reaching.and(candidates);
+        for (int i = reaching.nextSetBit(0); i >= 0; i = reaching.nextSetBit(i + 1))
+            result.add(definitions.get(i));
+        return result;
+    }
+}
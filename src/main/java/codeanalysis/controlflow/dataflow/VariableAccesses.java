@@ -0,0 +1,139 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.assignment.BoundCompoundAssignmentExpression;
+import codeanalysis.binding.expression.sufixpreffix.BoundPrefixExpression;
+import codeanalysis.binding.expression.sufixpreffix.BoundSuffixExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundExpressionStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Reads and writes of parameters and locals, in evaluation order.
+    Globals are left out: any call may read or write them, so no analysis can say anything about them.
+ */
+final class VariableAccesses {
+    interface Visitor {
+        void read(VariableSymbol variable);
+
+        /**
+         * @param definition the declaration statement or the expression assigning the variable
+         */
+        void write(VariableSymbol variable, BoundNode definition);
+    }
+
+    private final List<VariableSymbol> variables = new ArrayList<>();
+    private final Map<VariableSymbol, Integer> indexes = new HashMap<>();
+
+    VariableAccesses(ControlFlowGraph graph) {
+        Visitor collector = new Visitor() {
+            @Override
+            public void read(VariableSymbol variable) {
+                add(variable);
+            }
+
+            @Override
+            public void write(VariableSymbol variable, BoundNode definition) {
+                add(variable);
+            }
+        };
+        for (BasicBlock block : graph.getBlocks())
+            visit(block, collector);
+    }
+
+    private void add(VariableSymbol variable) {
+        if (indexes.putIfAbsent(variable, variables.size()) == null)
+            variables.add(variable);
+    }
+
+    List<VariableSymbol> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the index of the variable, -1 for a variable the graph never touches
+     */
+    int indexOf(VariableSymbol variable) {
+        return indexes.getOrDefault(variable, -1);
+    }
+
+    static void visit(BasicBlock block, Visitor visitor) {
+        for (BoundStatement statement : block.getStatements())
+            visit(statement, visitor);
+    }
+
+    static void visit(BoundStatement statement, Visitor visitor) {
+        switch (statement.getKind()) {
+            case VARIABLE_DECLARATION_STATEMENT -> {
+                var declaration = (BoundVariableDeclarationStatement) statement;
+                visit(declaration.getInitializer(), visitor);
+                write(declaration.getVariable(), statement, visitor);
+            }
+            case EXPRESSION_STATEMENT -> visit(((BoundExpressionStatement) statement).getExpression(), visitor);
+            case CONDITIONAL_JUMP_TO_STATEMENT ->
+                    visit(((BoundConditionalJumpToStatement) statement).getCondition(), visitor);
+            case RETURN_STATEMENT -> {
+                var expression = ((BoundReturnStatement) statement).getExpression();
+                if (expression != null)
+                    visit(expression, visitor);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static void visit(BoundExpression expression, Visitor visitor) {
+        switch (expression.getKind()) {
+            case VARIABLE_EXPRESSION -> read(((BoundVariableExpression) expression).getVariable(), visitor);
+            case ASSIGNMENT_EXPRESSION -> {
+                var assignment = (BoundAssignmentExpression) expression;
+                visit(assignment.getBoundExpression(), visitor);
+                write(assignment.getVariable(), expression, visitor);
+            }
+            case COMPOUND_ASSIGNMENT_EXPRESSION -> {
+                var assignment = (BoundCompoundAssignmentExpression) expression;
+                read(assignment.getVariable(), visitor);
+                visit(assignment.getBoundExpression(), visitor);
+                write(assignment.getVariable(), expression, visitor);
+            }
+            case PREFIX_EXPRESSION -> {
+                var variable = ((BoundPrefixExpression) expression).getRight();
+                read(variable, visitor);
+                write(variable, expression, visitor);
+            }
+            case SUFFIX_EXPRESSION -> {
+                var variable = ((BoundSuffixExpression) expression).getLeft();
+                read(variable, visitor);
+                write(variable, expression, visitor);
+            }
+            default -> {
+                for (BoundNode child : expression.getChildren())
+                    visit((BoundExpression) child, visitor);
+            }
+        }
+    }
+
+    private static void read(VariableSymbol variable, Visitor visitor) {
+        if (variable.getKind() != SymbolKind.GLOBAL_VARIABLE)
+            visitor.read(variable);
+    }
+
+    private static void write(VariableSymbol variable, BoundNode definition, Visitor visitor) {
+        if (variable.getKind() != SymbolKind.GLOBAL_VARIABLE)
+            visitor.write(variable, definition);
+    }
+}
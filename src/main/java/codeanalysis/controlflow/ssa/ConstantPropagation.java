@@ -0,0 +1,186 @@
+package codeanalysis.controlflow.ssa;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.BasicBlockEdge;
+import codeanalysis.lowering.ConstantFolder;
+import codeanalysis.symbol.TypeSymbol;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+    Sparse conditional constant propagation (Wegman and Zadeck) over an SsaForm.
+    Every value starts undecided and only moves down to a constant and then to unknown, while blocks and edges
+    start unreachable and are only marked executable once a reachable branch can take them.
+    A phi merges only the edges found executable, so a counter or flag reassigned with constants stays constant
+    through the joins, and the branches its value rules out are never visited.
+    Expressions are evaluated by the ConstantFolder, which gives them exactly the semantics of the evaluator.
+ */
+public final class ConstantPropagation {
+    private static final Object UNDECIDED = new Object();
+    private static final Object UNKNOWN = new Object();
+
+    private final SsaForm ssa;
+    private final Object[] lattice;
+    private final Set<BasicBlockEdge> executableEdges = new HashSet<>();
+    private final Set<BasicBlock> executableBlocks = new HashSet<>();
+    private final Deque<BasicBlock> work = new ArrayDeque<>();
+    private final Set<BasicBlock> queued = new HashSet<>();
+    private int visits;
+
+    private ConstantPropagation(SsaForm ssa) {
+        this.ssa = ssa;
+        this.lattice = new Object[ssa.getValues().size()];
+    }
+
+    public static ConstantPropagation analyze(SsaForm ssa) throws Exception {
+        ConstantPropagation propagation = new ConstantPropagation(ssa);
+        propagation.solve();
+        return propagation;
+    }
+
+    private void solve() throws Exception {
+        for (SsaValue value : ssa.getValues()) {
+            boolean known = value.getKind() == SsaValue.Kind.ENTRY || value.getKind() == SsaValue.Kind.CALL;
+            lattice[value.getId()] = known ? UNKNOWN : UNDECIDED;
+        }
+        BasicBlock start = ssa.getGraph().getStart();
+        executableBlocks.add(start);
+        enqueue(start);
+        while (!work.isEmpty()) {
+            BasicBlock block = work.poll();
+            queued.remove(block);
+            visit(block);
+        }
+    }
+
+    private void visit(BasicBlock block) throws Exception {
+        visits++;
+        for (SsaValue phi : ssa.getPhis(block)) {
+            Object value = UNDECIDED;
+            for (BasicBlockEdge edge : block.getIncoming()) {
+                if (executableEdges.contains(edge)) {
+                    SsaValue operand = phi.getOperands().get(edge);
+                    value = meet(value, operand == null ? UNKNOWN : lattice[operand.getId()]);
+                }
+            }
+            update(phi, value);
+        }
+        for (SsaValue definition : ssa.getDefinitions(block)) {
+            if (definition.getKind() == SsaValue.Kind.DEFINITION)
+                update(definition, evaluate(definedExpression(definition.getNode())));
+        }
+        for (BasicBlockEdge edge : block.getOutgoing()) {
+            Object condition = edge.getCondition() == null ? Boolean.TRUE : evaluate(edge.getCondition());
+            if (condition == UNKNOWN || Boolean.TRUE.equals(condition))
+                markExecutable(edge);
+        }
+    }
+
+    private static BoundExpression definedExpression(BoundNode node) {
+        if (node instanceof BoundVariableDeclarationStatement declaration)
+            return declaration.getInitializer();
+        if (node instanceof BoundAssignmentExpression assignment)
+            return assignment.getBoundExpression();
+        return null;
+    }
+
+    private Object evaluate(BoundExpression expression) throws Exception {
+        if (expression == null)
+            return UNKNOWN;
+        if (readsUndecided(expression))
+            return UNDECIDED;
+        BoundLiteralExpression literal = ConstantFolder.fold(expression, this::getConstant);
+        return literal == null ? UNKNOWN : literal.getValue();
+    }
+
+    private boolean readsUndecided(BoundNode node) {
+        if (node instanceof BoundVariableExpression read) {
+            SsaValue value = ssa.getUse(read);
+            return value != null && lattice[value.getId()] == UNDECIDED;
+        }
+        for (BoundNode child : node.getChildren()) {
+            if (readsUndecided(child))
+                return true;
+        }
+        return false;
+    }
+
+    private static Object meet(Object a, Object b) {
+        if (a == UNDECIDED)
+            return b;
+        if (b == UNDECIDED || a.equals(b))
+            return a;
+        return UNKNOWN;
+    }
+
+    private void update(SsaValue value, Object computed) {
+        Object current = lattice[value.getId()];
+        Object next = meet(current, computed);
+        if (next.equals(current))
+            return;
+        lattice[value.getId()] = next;
+        for (BasicBlock user : value.getUsers()) {
+            if (executableBlocks.contains(user))
+                enqueue(user);
+        }
+    }
+
+    private void markExecutable(BasicBlockEdge edge) {
+        if (!executableEdges.add(edge))
+            return;
+        executableBlocks.add(edge.getTo());
+        enqueue(edge.getTo());
+    }
+
+    private void enqueue(BasicBlock block) {
+        if (queued.add(block))
+            work.add(block);
+    }
+
+    public boolean isExecutable(BasicBlock block) {
+        return executableBlocks.contains(block);
+    }
+
+    public boolean isExecutable(BasicBlockEdge edge) {
+        return executableEdges.contains(edge);
+    }
+
+    /**
+     * @return the constant the value always holds, null when it is not known at compile time
+     */
+    public Object getConstant(SsaValue value) {
+        Object constant = lattice[value.getId()];
+        return constant == UNDECIDED || constant == UNKNOWN ? null : constant;
+    }
+
+    /**
+     * @return the literal the read always sees, null when it is not known at compile time
+     */
+    public BoundLiteralExpression getConstant(BoundVariableExpression read) {
+        SsaValue value = ssa.getUse(read);
+        Object constant = value == null ? null : getConstant(value);
+        if (constant == null)
+            return null;
+        TypeSymbol type = read.getVariable().getType();
+        boolean matches = type == TypeSymbol.INTEGER && constant instanceof Integer
+                || type == TypeSymbol.BOOLEAN && constant instanceof Boolean
+                || type == TypeSymbol.STRING && constant instanceof String;
+        return matches ? new BoundLiteralExpression(constant) : null;
+    }
+
+    /**
+     * How many times a block was evaluated before reaching the fixpoint.
+     */
+    public int getVisits() {
+        return visits;
+    }
+}
@@ -0,0 +1,316 @@
+package codeanalysis.controlflow.ssa;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.assignment.BoundCompoundAssignmentExpression;
+import codeanalysis.binding.expression.call.BoundCallExpression;
+import codeanalysis.binding.expression.sufixpreffix.BoundPrefixExpression;
+import codeanalysis.binding.expression.sufixpreffix.BoundSuffixExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundExpressionStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.BasicBlockEdge;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.controlflow.DominatorTree;
+import codeanalysis.controlflow.dataflow.Liveness;
+import codeanalysis.symbol.BuildInFunctions;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Static single assignment form of a lowered function, kept beside the bound tree instead of replacing it:
+    every definition, read and phi of a variable is mapped to the SsaValue it creates or sees.
+    Phis go on the iterated dominance frontier of the blocks assigning the variable, only where the variable is live,
+    and the values are named by walking the dominator tree.
+    Globals take part too, but a call to a user function may assign any of them, so it gives each one a new CALL value.
+ */
+public final class SsaForm {
+    private final ControlFlowGraph graph;
+    private final DominatorTree dominators;
+    private final List<SsaValue> values = new ArrayList<>();
+    private final Map<VariableSymbol, List<BasicBlock>> definingBlocks = new LinkedHashMap<>();
+    private final List<VariableSymbol> globals = new ArrayList<>();
+    private final Map<BasicBlock, List<SsaValue>> phis = new HashMap<>();
+    private final Map<BasicBlock, List<SsaValue>> definitions = new HashMap<>();
+    private final Map<BoundNode, SsaValue> valuesByNode = new IdentityHashMap<>();
+    private final Map<BoundVariableExpression, SsaValue> uses = new IdentityHashMap<>();
+    private final Set<BoundVariableExpression> sharedReads = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private SsaForm(ControlFlowGraph graph) {
+        this.graph = graph;
+        this.dominators = DominatorTree.build(graph);
+    }
+
+    public static SsaForm build(ControlFlowGraph graph) {
+        SsaForm form = new SsaForm(graph);
+        form.collectDefinitions();
+        form.placePhis();
+        form.rename();
+        return form;
+    }
+
+    private void collectDefinitions() {
+        for (BasicBlock block : dominators.getBlocks()) {
+            visit(block, new Visitor() {
+                @Override
+                public void read(BoundVariableExpression node) {
+                    variable(node.getVariable());
+                }
+
+                @Override
+                public void write(VariableSymbol variable, BoundNode definition) {
+                    List<BasicBlock> blocks = variable(variable);
+                    if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block)
+                        blocks.add(block);
+                }
+
+                @Override
+                public void call(BoundCallExpression call) {
+                }
+            });
+        }
+        for (BasicBlock block : dominators.getBlocks()) {
+            visit(block, new Visitor() {
+                @Override
+                public void read(BoundVariableExpression node) {
+                }
+
+                @Override
+                public void write(VariableSymbol variable, BoundNode definition) {
+                }
+
+                @Override
+                public void call(BoundCallExpression call) {
+                    for (VariableSymbol global : globals) {
+                        List<BasicBlock> blocks = definingBlocks.get(global);
+                        if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block)
+                            blocks.add(block);
+                    }
+                }
+            });
+        }
+    }
+
+    private List<BasicBlock> variable(VariableSymbol variable) {
+        return definingBlocks.computeIfAbsent(variable, v -> {
+            if (v.getKind() == SymbolKind.GLOBAL_VARIABLE)
+                globals.add(v);
+            return new ArrayList<>();
+        });
+    }
+
+    private void placePhis() {
+        Liveness liveness = Liveness.analyze(graph);
+        for (var entry : definingBlocks.entrySet()) {
+            VariableSymbol variable = entry.getKey();
+            boolean global = variable.getKind() == SymbolKind.GLOBAL_VARIABLE;
+            Set<BasicBlock> placed = new HashSet<>();
+            Deque<BasicBlock> work = new ArrayDeque<>(entry.getValue());
+            Set<BasicBlock> queued = new HashSet<>(work);
+            while (!work.isEmpty()) {
+                for (BasicBlock join : dominators.getFrontier(work.pop())) {
+                    if (placed.contains(join) || !global && !liveness.isLiveIn(join, variable))
+                        continue;
+                    placed.add(join);
+                    phis.computeIfAbsent(join, b -> new ArrayList<>())
+                            .add(newValue(SsaValue.Kind.PHI, variable, join, null));
+                    if (queued.add(join))
+                        work.push(join);
+                }
+            }
+        }
+    }
+
+    private SsaValue newValue(SsaValue.Kind kind, VariableSymbol variable, BasicBlock block, BoundNode node) {
+        SsaValue value = new SsaValue(values.size(), kind, variable, block, node);
+        values.add(value);
+        return value;
+    }
+
+    private void rename() {
+        Map<VariableSymbol, Deque<SsaValue>> current = new HashMap<>();
+        BasicBlock start = graph.getStart();
+        for (VariableSymbol variable : definingBlocks.keySet()) {
+            Deque<SsaValue> stack = new ArrayDeque<>();
+            stack.push(newValue(SsaValue.Kind.ENTRY, variable, start, null));
+            current.put(variable, stack);
+        }
+
+        // the dominator tree can be as deep as the function is long, so it is walked without recursion
+        BasicBlock leave = new BasicBlock();
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+        Deque<List<VariableSymbol>> pushed = new ArrayDeque<>();
+        pending.push(start);
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+            if (block == leave) {
+                for (VariableSymbol variable : pushed.pop())
+                    current.get(variable).pop();
+                continue;
+            }
+            List<VariableSymbol> definedHere = new ArrayList<>();
+            for (SsaValue phi : phis.getOrDefault(block, List.of())) {
+                current.get(phi.getVariable()).push(phi);
+                definedHere.add(phi.getVariable());
+            }
+            List<SsaValue> blockDefinitions = new ArrayList<>();
+            visit(block, new Visitor() {
+                @Override
+                public void read(BoundVariableExpression node) {
+                    SsaValue value = current.get(node.getVariable()).peek();
+                    value.addUser(block);
+                    SsaValue previous = uses.put(node, value);
+                    if (previous != null && previous != value)
+                        sharedReads.add(node);
+                }
+
+                @Override
+                public void write(VariableSymbol variable, BoundNode definition) {
+                    define(newValue(SsaValue.Kind.DEFINITION, variable, block, definition));
+                }
+
+                @Override
+                public void call(BoundCallExpression call) {
+                    for (VariableSymbol global : globals)
+                        define(newValue(SsaValue.Kind.CALL, global, block, call));
+                }
+
+                private void define(SsaValue value) {
+                    current.get(value.getVariable()).push(value);
+                    definedHere.add(value.getVariable());
+                    blockDefinitions.add(value);
+                    if (value.getKind() == SsaValue.Kind.DEFINITION)
+                        valuesByNode.put(value.getNode(), value);
+                }
+            });
+            definitions.put(block, blockDefinitions);
+            for (BasicBlockEdge edge : block.getOutgoing()) {
+                for (SsaValue phi : phis.getOrDefault(edge.getTo(), List.of())) {
+                    SsaValue operand = current.get(phi.getVariable()).peek();
+                    operand.addUser(edge.getTo());
+                    phi.getOperands().put(edge, operand);
+                }
+            }
+            pushed.push(definedHere);
+            pending.push(leave);
+            List<BasicBlock> children = dominators.getChildren(block);
+            for (int i = children.size() - 1; i >= 0; i--)
+                pending.push(children.get(i));
+        }
+    }
+
+    public ControlFlowGraph getGraph() {
+        return graph;
+    }
+
+    public DominatorTree getDominators() {
+        return dominators;
+    }
+
+    public List<SsaValue> getValues() {
+        return values;
+    }
+
+    public List<SsaValue> getPhis(BasicBlock block) {
+        return phis.getOrDefault(block, List.of());
+    }
+
+    /**
+     * The definitions and call values of the block, in evaluation order.
+     */
+    public List<SsaValue> getDefinitions(BasicBlock block) {
+        return definitions.getOrDefault(block, List.of());
+    }
+
+    /**
+     * @param node a declaration statement or an assignment expression
+     * @return the value it defines, null when the node is not a definition of an analyzed block
+     */
+    public SsaValue getDefinition(BoundNode node) {
+        return valuesByNode.get(node);
+    }
+
+    /**
+     * @return the value the read sees, null when the read is not in a block the start reaches
+     * or when the same node is read in places that see different values
+     */
+    public SsaValue getUse(BoundVariableExpression node) {
+        return sharedReads.contains(node) ? null : uses.get(node);
+    }
+
+    private interface Visitor {
+        void read(BoundVariableExpression node);
+
+        void write(VariableSymbol variable, BoundNode definition);
+
+        void call(BoundCallExpression call);
+    }
+
+    private static void visit(BasicBlock block, Visitor visitor) {
+        for (BoundStatement statement : block.getStatements()) {
+            switch (statement.getKind()) {
+                case VARIABLE_DECLARATION_STATEMENT -> {
+                    var declaration = (BoundVariableDeclarationStatement) statement;
+                    visit(declaration.getInitializer(), visitor);
+                    visitor.write(declaration.getVariable(), statement);
+                }
+                case EXPRESSION_STATEMENT -> visit(((BoundExpressionStatement) statement).getExpression(), visitor);
+                case CONDITIONAL_JUMP_TO_STATEMENT ->
+                        visit(((BoundConditionalJumpToStatement) statement).getCondition(), visitor);
+                case RETURN_STATEMENT -> {
+                    var expression = ((BoundReturnStatement) statement).getExpression();
+                    if (expression != null)
+                        visit(expression, visitor);
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static void visit(BoundExpression expression, Visitor visitor) {
+        switch (expression.getKind()) {
+            case VARIABLE_EXPRESSION -> visitor.read((BoundVariableExpression) expression);
+            case ASSIGNMENT_EXPRESSION -> {
+                var assignment = (BoundAssignmentExpression) expression;
+                visit(assignment.getBoundExpression(), visitor);
+                visitor.write(assignment.getVariable(), expression);
+            }
+            case COMPOUND_ASSIGNMENT_EXPRESSION -> {
+                var assignment = (BoundCompoundAssignmentExpression) expression;
+                visit(assignment.getBoundExpression(), visitor);
+                visitor.write(assignment.getVariable(), expression);
+            }
+            case PREFIX_EXPRESSION -> visitor.write(((BoundPrefixExpression) expression).getRight(), expression);
+            case SUFFIX_EXPRESSION -> visitor.write(((BoundSuffixExpression) expression).getLeft(), expression);
+            case CALL_EXPRESSION -> {
+                var call = (BoundCallExpression) expression;
+                for (BoundExpression argument : call.getArgs())
+                    visit(argument, visitor);
+                if (!BuildInFunctions.getAll().contains(call.getFunction()))
+                    visitor.call(call);
+            }
+            default -> {
+                for (BoundNode child : expression.getChildren())
+                    visit((BoundExpression) child, visitor);
+            }
+        }
+    }
+}
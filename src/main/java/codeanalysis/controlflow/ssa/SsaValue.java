@@ -0,0 +1,98 @@
+package codeanalysis.controlflow.ssa;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.BasicBlockEdge;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    One value a variable holds: it is assigned exactly once and every read sees exactly one of them.
+ */
+public final class SsaValue {
+    public enum Kind {
+        /**
+         * What the variable holds when the function starts: the argument, the global, nothing yet for a local
+         */
+        ENTRY,
+        /**
+         * A declaration statement or an assignment expression
+         */
+        DEFINITION,
+        /**
+         * The value coming from whichever edge control entered the block through
+         */
+        PHI,
+        /**
+         * Whatever a call to a user function left in a global
+         */
+        CALL
+    }
+
+    private final int id;
+    private final Kind kind;
+    private final VariableSymbol variable;
+    private final BasicBlock block;
+    private final BoundNode node;
+    private final Map<BasicBlockEdge, SsaValue> operands = new HashMap<>();
+    private final List<BasicBlock> users = new ArrayList<>();
+
+    SsaValue(int id, Kind kind, VariableSymbol variable, BasicBlock block, BoundNode node) {
+        this.id = id;
+        this.kind = kind;
+        this.variable = variable;
+        this.block = block;
+        this.node = node;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public VariableSymbol getVariable() {
+        return variable;
+    }
+
+    public BasicBlock getBlock() {
+        return block;
+    }
+
+    /**
+     * @return the definition or the call, null for entry values and phis
+     */
+    public BoundNode getNode() {
+        return node;
+    }
+
+    /**
+     * The value each incoming edge brings into a phi.
+     */
+    public Map<BasicBlockEdge, SsaValue> getOperands() {
+        return operands;
+    }
+
+    /**
+     * The blocks reading this value, through a statement or through a phi.
+     */
+    public List<BasicBlock> getUsers() {
+        return users;
+    }
+
+    void addUser(BasicBlock user) {
+        if (users.isEmpty() || users.get(users.size() - 1) != user)
+            users.add(user);
+    }
+
+    @Override
+    public String toString() {
+        return variable.getName() + "_" + id;
+    }
+}
@@ -42,7 +42,7 @@ public class DiagnosticBag implements Iterable<Diagnostic> {
 
 
     public void reportInvalidType(TextLocation location, String text, TypeSymbol type) {
-        String message = "ERROR: The number " + text + "is not a valid representation of " + type + ".";
+        String message = "ERROR: The number " + text + " is not a valid representation of " + type + ".";
         report(location, message);
     }
 
@@ -97,6 +97,11 @@ public class DiagnosticBag implements Iterable<Diagnostic> {
         report(location, message);
     }
 
+    public void reportDivisionByZero(TextLocation location) {
+        String message = "ERROR: Division by constant zero.";
+        report(location, message);
+    }
+
     public void reportUnterminatedString(TextLocation location) {
         String message = "ERROR: Unterminated string literal.";
         report(location, message);
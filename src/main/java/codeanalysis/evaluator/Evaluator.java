@@ -8,66 +8,120 @@ import codeanalysis.binding.expression.binary.BoundBinaryExpression;
 import codeanalysis.binding.expression.call.BoundCallExpression;
 import codeanalysis.binding.expression.literal.BoundLiteralExpression;
 import codeanalysis.binding.expression.unary.BoundUnaryExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryOperatorKind;
 import codeanalysis.binding.expression.variable.BoundVariableExpression;
 import codeanalysis.binding.statement.BoundStatement;
-import codeanalysis.binding.statement.block.BoundBlockStatement;
-import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
 import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
 import codeanalysis.binding.statement.expression.BoundExpressionStatement;
 import codeanalysis.binding.statement.expression.BoundReturnStatement;
 import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
-import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
-import codeanalysis.binding.statement.jumpto.BoundLabel;
+import codeanalysis.lowering.PreparedFunction;
 import codeanalysis.symbol.BuildInFunctions;
 import codeanalysis.symbol.FunctionSymbol;
 import codeanalysis.symbol.ParameterSymbol;
+import codeanalysis.symbol.SymbolKind;
 import codeanalysis.symbol.TypeSymbol;
 import codeanalysis.symbol.variable.VariableSymbol;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.Stack;
 
+/*
+    Expressions are evaluated through the path matching their static type:
+    int and boolean values go through evaluateInt/evaluateBoolean and live unboxed in int slots,
+    every other value goes through evaluateExpression and lives in Object slots.
+ */
 public final class Evaluator {
     private final BoundProgram root;
 
+    private TypeSymbol lastType;
+    private int lastInt;
     private Object lastValue;
 
-    private final Map<FunctionSymbol, BoundBlockStatement> functions = new HashMap<>();
+    private final Map<VariableSymbol, Object> variables;
+    private final Object[] globals;
+    private final int[] intGlobals;
+    private final boolean[] assignedGlobals;
 
-    private final Stack<Map<VariableSymbol, Object>> callStack = new Stack<>();
+    private Object[] frame;
+    private int[] intFrame;
+    private final List<Object[]> framePool = new ArrayList<>();
+    private final List<int[]> intFramePool = new ArrayList<>();
+    private int depth;
+
+    private final Tiering tiering;
 
     public Evaluator(BoundProgram root, Map<VariableSymbol, Object> variables) {
+        this(root, variables, null);
+    }
+
+    public Evaluator(BoundProgram root, Map<VariableSymbol, Object> variables, Tiering tiering) {
         this.root = root;
-        callStack.add(variables);
-        var current = root;
-        while (current != null) {
-            for (var fb : current.getFunctionsBodies().entrySet()) {
-                var function = fb.getKey();
-                var body = fb.getValue();
-                functions.put(function, body);
-            }
-            current = current.getPrevious();
-        }
+        this.variables = variables;
+        int globalCount = root.getGlobalVariables().size();
+        this.globals = new Object[globalCount];
+        this.intGlobals = new int[globalCount];
+        this.assignedGlobals = new boolean[globalCount];
+        this.tiering = tiering;
+        if (tiering != null)
+            tiering.attach(this, root);
     }
 
     public Object evaluate() throws Exception {
         var main = root.getMainFunction();
         if (main == null)
             return null;
-        var body = functions.get(main);
-        return evaluateBlockStatement(body);
+        PreparedFunction function = root.getPreparedFunction(main);
+        if (function == null)
+            return null;
+        loadGlobals();
+        if (tiering != null)
+            tiering.start();
+        try {
+            acquireFrame(function.getFrameSize());
+            frame = framePool.get(0);
+            intFrame = intFramePool.get(0);
+            evaluateFunction(function, tiering == null ? null : tiering.profile(main));
+            return getLastValue();
+        } finally {
+            if (tiering != null)
+                tiering.stop();
+            storeGlobals();
+        }
+    }
+
+    private void loadGlobals() {
+        GlobalBanks.load(root.getGlobalVariables(), variables, intGlobals, globals, assignedGlobals);
+    }
+
+    private void storeGlobals() {
+        GlobalBanks.store(root.getGlobalVariables(), variables, intGlobals, globals, assignedGlobals);
+    }
+
+    private void acquireFrame(int size) {
+        // frames are pooled per call depth, so a call never allocates once the pool is warm
+        if (depth == framePool.size()) {
+            framePool.add(new Object[size]);
+            intFramePool.add(new int[size]);
+        }
+        if (framePool.get(depth).length < size) {
+            framePool.set(depth, new Object[size]);
+            intFramePool.set(depth, new int[size]);
+        }
+        depth++;
     }
 
-    private Object evaluateBlockStatement(BoundBlockStatement body) throws Exception {
-        Map<BoundLabel, Integer> labelIndexes = mapLabels(body);
+    private void evaluateFunction(PreparedFunction function, Tiering.Profile profile) throws Exception {
+        BoundStatement[] statements = function.getStatements();
+        int[] jumpTargets = function.getJumpTargets();
         int index = 0;
-        while (index < body.getStatements().size()) {
-            BoundStatement statement = body.getStatements().get(index);
+        while (index < statements.length) {
+            BoundStatement statement = statements[index];
             switch (statement.getKind()) {
                 case EXPRESSION_STATEMENT -> {
-                    evaluateExpressionStatement((BoundExpressionStatement) statement);
+                    evaluateLastValue(((BoundExpressionStatement) statement).getExpression());
                     index++;
                 }
                 case VARIABLE_DECLARATION_STATEMENT -> {
@@ -75,59 +129,217 @@ public final class Evaluator {
                     index++;
                 }
                 case JUMP_TO_STATEMENT -> {
-                    BoundJumpToStatement jumpTo = (BoundJumpToStatement) statement;
-                    index = labelIndexes.get(jumpTo.getLabel());
+                    if (profile != null && jumpTargets[index] < index)
+                        profile.backEdges++;
+                    index = jumpTargets[index];
                 }
                 case CONDITIONAL_JUMP_TO_STATEMENT -> {
                     BoundConditionalJumpToStatement jumpTo = (BoundConditionalJumpToStatement) statement;
-                    boolean condition = (boolean) evaluateExpression(jumpTo.getCondition());
-                    if (condition == jumpTo.isJumpIfTrue())
-                        index = labelIndexes.get(jumpTo.getLabel());
-                    else
+                    boolean condition = evaluateBoolean(jumpTo.getCondition());
+                    if (condition == jumpTo.isJumpIfTrue()) {
+                        if (profile != null && jumpTargets[index] < index)
+                            profile.backEdges++;
+                        index = jumpTargets[index];
+                    } else
                         index++;
                 }
                 case RETURN_STATEMENT -> {
-                    evaluateReturnStatement((BoundReturnStatement) statement);
-                    return lastValue;
+                    BoundExpression expression = ((BoundReturnStatement) statement).getExpression();
+                    if (expression != null)
+                        evaluateLastValue(expression);
+                    return;
                 }
                 case LABEL_DECLARATION_STATEMENT -> index++;
                 default -> throw new Exception("Unexpected node " + statement.getKind());
             }
         }
+    }
+
+    private void evaluateLastValue(BoundExpression expression) throws Exception {
+        TypeSymbol type = expression.getType();
+        if (type == TypeSymbol.INTEGER)
+            lastInt = evaluateInt(expression);
+        else if (type == TypeSymbol.BOOLEAN)
+            lastInt = evaluateBoolean(expression) ? 1 : 0;
+        else
+            lastValue = evaluateExpression(expression);
+        lastType = type;
+    }
+
+    private Object getLastValue() {
+        if (lastType == TypeSymbol.INTEGER)
+            return lastInt;
+        if (lastType == TypeSymbol.BOOLEAN)
+            return lastInt != 0;
         return lastValue;
     }
 
-    private void evaluateReturnStatement(BoundReturnStatement statement) throws Exception {
-        if (statement.getExpression() != null)
-            lastValue = evaluateExpression(statement.getExpression());
+    private void setLastValue(TypeSymbol type, Object value) {
+        if (type == TypeSymbol.INTEGER)
+            lastInt = (Integer) value;
+        else if (type == TypeSymbol.BOOLEAN)
+            lastInt = (Boolean) value ? 1 : 0;
+        else
+            lastValue = value;
+        lastType = type;
     }
 
-    private Map<BoundLabel, Integer> mapLabels(BoundBlockStatement body) {
-        Map<BoundLabel, Integer> labelIndexes = new HashMap<>();
-        for (int i = 0; i < body.getStatements().size(); i++) {
-            if (body.getStatements().get(i) instanceof BoundLabelDeclarationStatement l)
-                labelIndexes.put(l.getLabel(), i);
+    private void evaluateVariableDeclarationStatement(BoundVariableDeclarationStatement statement) throws Exception {
+        VariableSymbol variable = statement.getVariable();
+        TypeSymbol type = variable.getType();
+        if (type == TypeSymbol.INTEGER) {
+            lastInt = evaluateInt(statement.getInitializer());
+            storeInt(variable, lastInt);
+        } else if (type == TypeSymbol.BOOLEAN) {
+            lastInt = evaluateBoolean(statement.getInitializer()) ? 1 : 0;
+            storeInt(variable, lastInt);
+        } else {
+            lastValue = evaluateExpression(statement.getInitializer());
+            store(variable, lastValue);
         }
-        return labelIndexes;
+        lastType = type;
     }
 
-    private void evaluateVariableDeclarationStatement(BoundVariableDeclarationStatement statement) throws Exception {
-        Object value = evaluateExpression(statement.getInitializer());
-        Map<VariableSymbol, Object> variables = callStack.peek();
-        variables.put(statement.getVariable(), value);
-        lastValue = value;
+    private int evaluateInt(BoundExpression node) throws Exception {
+        return switch (node.getKind()) {
+            case LITERAL_EXPRESSION -> (int) ((BoundLiteralExpression) node).getValue();
+            case VARIABLE_EXPRESSION -> loadInt(((BoundVariableExpression) node).getVariable());
+            case ASSIGNMENT_EXPRESSION -> {
+                BoundAssignmentExpression a = (BoundAssignmentExpression) node;
+                int value = evaluateInt(a.getBoundExpression());
+                storeInt(a.getVariable(), value);
+                yield value;
+            }
+            case UNARY_EXPRESSION -> evaluateIntUnaryExpression((BoundUnaryExpression) node);
+            case BINARY_EXPRESSION -> evaluateIntBinaryExpression((BoundBinaryExpression) node);
+            case CALL_EXPRESSION -> {
+                BoundCallExpression call = (BoundCallExpression) node;
+                if (call.getFunction().equals(BuildInFunctions.RANDOM)) {
+                    int max = evaluateInt(call.getArgs().get(0));
+                    yield (int) Math.floor(Math.random() * (max + 1));
+                }
+                callFunction(call);
+                yield lastInt;
+            }
+            case CONVERSION_EXPRESSION -> {
+                BoundExpression expression = ((BoundConversionExpression) node).getExpression();
+                if (expression.getType() == TypeSymbol.INTEGER)
+                    yield evaluateInt(expression);
+                Object value = evaluateExpression(expression);
+                yield value instanceof Integer i ? i : Integer.parseInt(value.toString());
+            }
+            default -> throw new Exception("Unexpected node " + node.getKind());
+        };
     }
 
-    private void evaluateExpressionStatement(BoundExpressionStatement statement) throws Exception {
-        lastValue = evaluateExpression(statement.getExpression());
+    private int evaluateIntUnaryExpression(BoundUnaryExpression u) throws Exception {
+        return switch (u.getOperator().getKind()) {
+            case IDENTITY -> evaluateInt(u.getRight());
+            case NEGATION -> -evaluateInt(u.getRight());
+            case ONES_COMPLEMENT -> {
+                if (u.getRight().getType() == TypeSymbol.BOOLEAN)
+                    yield evaluateBoolean(u.getRight()) ? ~1 : ~0;
+                yield ~evaluateInt(u.getRight());
+            }
+            default -> throw new Exception("Unexpected unary operation " + u.getOperator());
+        };
+    }
+
+    private int evaluateIntBinaryExpression(BoundBinaryExpression b) throws Exception {
+        int left = evaluateInt(b.getLeft());
+        int right = evaluateInt(b.getRight());
+        return switch (b.getOperator().getKind()) {
+            case ADDITION -> left + right;
+            case SUBTRACTION -> left - right;
+            case MULTIPLICATION -> left * right;
+            case DIVISION -> left / right;
+            case MOD -> left % right;
+            case BITWISE_AND -> left & right;
+            case BITWISE_OR -> left | right;
+            case BITWISE_XOR -> left ^ right;
+            case LOGICAL_OR -> left != 0 || right != 0 ? 1 : 0;
+            default -> throw new Exception("Unexpected binary operation " + b.getOperator());
+        };
+    }
+
+    private boolean evaluateBoolean(BoundExpression node) throws Exception {
+        return switch (node.getKind()) {
+            case LITERAL_EXPRESSION -> (boolean) ((BoundLiteralExpression) node).getValue();
+            case VARIABLE_EXPRESSION -> loadInt(((BoundVariableExpression) node).getVariable()) != 0;
+            case ASSIGNMENT_EXPRESSION -> {
+                BoundAssignmentExpression a = (BoundAssignmentExpression) node;
+                boolean value = evaluateBoolean(a.getBoundExpression());
+                storeInt(a.getVariable(), value ? 1 : 0);
+                yield value;
+            }
+            case UNARY_EXPRESSION -> {
+                BoundUnaryExpression u = (BoundUnaryExpression) node;
+                if (u.getOperator().getKind() != BoundUnaryOperatorKind.LOGICAL_NEGATION)
+                    throw new Exception("Unexpected unary operation " + u.getOperator());
+                yield !evaluateBoolean(u.getRight());
+            }
+            case BINARY_EXPRESSION -> evaluateBooleanBinaryExpression((BoundBinaryExpression) node);
+            case CALL_EXPRESSION -> {
+                callFunction((BoundCallExpression) node);
+                yield lastInt != 0;
+            }
+            case CONVERSION_EXPRESSION -> {
+                BoundExpression expression = ((BoundConversionExpression) node).getExpression();
+                if (expression.getType() == TypeSymbol.BOOLEAN)
+                    yield evaluateBoolean(expression);
+                Object value = evaluateExpression(expression);
+                yield value instanceof Boolean b ? b : Boolean.parseBoolean(value.toString());
+            }
+            default -> throw new Exception("Unexpected node " + node.getKind());
+        };
+    }
+
+    private boolean evaluateBooleanBinaryExpression(BoundBinaryExpression b) throws Exception {
+        TypeSymbol operandType = b.getLeft().getType();
+        if (operandType == TypeSymbol.INTEGER) {
+            int left = evaluateInt(b.getLeft());
+            int right = evaluateInt(b.getRight());
+            return switch (b.getOperator().getKind()) {
+                case LOGICAL_EQUALITY -> left == right;
+                case LOGICAL_INEQUALITY -> left != right;
+                case LESS_THAN -> left < right;
+                case LESS_EQUAL_THAN -> left <= right;
+                case GREATER_THAN -> left > right;
+                case GREATER_EQUAL_THAN -> left >= right;
+                default -> throw new Exception("Unexpected binary operation " + b.getOperator());
+            };
+        } else if (operandType == TypeSymbol.BOOLEAN) {
+            // both operands are always evaluated, && and || do not short-circuit
+            boolean left = evaluateBoolean(b.getLeft());
+            boolean right = evaluateBoolean(b.getRight());
+            return switch (b.getOperator().getKind()) {
+                case LOGICAL_AND, BITWISE_AND -> left & right;
+                case LOGICAL_OR, BITWISE_OR -> left | right;
+                case BITWISE_XOR -> left ^ right;
+                case LOGICAL_EQUALITY -> left == right;
+                case LOGICAL_INEQUALITY -> left != right;
+                default -> throw new Exception("Unexpected binary operation " + b.getOperator());
+            };
+        }
+        Object left = evaluateExpression(b.getLeft());
+        Object right = evaluateExpression(b.getRight());
+        return switch (b.getOperator().getKind()) {
+            case LOGICAL_EQUALITY -> left.equals(right);
+            case LOGICAL_INEQUALITY -> !left.equals(right);
+            default -> throw new Exception("Unexpected binary operation " + b.getOperator());
+        };
     }
 
     private Object evaluateExpression(BoundExpression node) throws Exception {
+        TypeSymbol type = node.getType();
+        if (type == TypeSymbol.INTEGER)
+            return evaluateInt(node);
+        if (type == TypeSymbol.BOOLEAN)
+            return evaluateBoolean(node);
         return switch (node.getKind()) {
-            case LITERAL_EXPRESSION -> evaluateLiteralExpression((BoundLiteralExpression) node);
-            case VARIABLE_EXPRESSION -> evaluateVariableExpression((BoundVariableExpression) node);
+            case LITERAL_EXPRESSION -> ((BoundLiteralExpression) node).getValue();
+            case VARIABLE_EXPRESSION -> load(((BoundVariableExpression) node).getVariable());
             case ASSIGNMENT_EXPRESSION -> evaluateAssignmentExpression((BoundAssignmentExpression) node);
-            case UNARY_EXPRESSION -> evaluateUnaryExpression((BoundUnaryExpression) node);
             case BINARY_EXPRESSION -> evaluateBinaryExpression((BoundBinaryExpression) node);
             case CALL_EXPRESSION -> evaluateCallExpression((BoundCallExpression) node);
             case CONVERSION_EXPRESSION -> evaluateConversionExpression((BoundConversionExpression) node);
@@ -136,19 +348,18 @@ public final class Evaluator {
     }
 
     private Object evaluateConversionExpression(BoundConversionExpression node) throws Exception {
-        Object result = evaluateExpression(node.getExpression());
+        BoundExpression expression = node.getExpression();
         TypeSymbol type = node.getType();
         if (type == TypeSymbol.ANY) {
-            return result;
-        } else if (type == TypeSymbol.BOOLEAN) {
-            return Boolean.parseBoolean(result.toString());
-        } else if (type == TypeSymbol.INTEGER) {
-            return Integer.parseInt(result.toString());
+            return evaluateExpression(expression);
         } else if (type == TypeSymbol.STRING) {
-            return result.toString();
+            if (expression.getType() == TypeSymbol.INTEGER)
+                return Integer.toString(evaluateInt(expression));
+            if (expression.getType() == TypeSymbol.BOOLEAN)
+                return Boolean.toString(evaluateBoolean(expression));
+            return evaluateExpression(expression).toString();
         } else
             throw new Exception("Unexpected type " + type);
-
     }
 
     private Object evaluateCallExpression(BoundCallExpression node) throws Exception {
@@ -163,114 +374,125 @@ public final class Evaluator {
             String message = String.valueOf(evaluateExpression(node.getArgs().get(0)));
             System.out.println(message);
             return null;
-        } else if (node.getFunction().equals(BuildInFunctions.RANDOM)) {
-            int max = (int) evaluateExpression(node.getArgs().get(0));
-            return (int) Math.floor(Math.random() * (max + 1));
         } else {
-            Map<VariableSymbol, Object> variables = new HashMap<>(callStack.get(0));
-            for (int i = 0; i < node.getArgs().size(); i++) {
-                ParameterSymbol param = node.getFunction().getParameters().get(i);
-                Object value = evaluateExpression(node.getArgs().get(i));
-                variables.put(param, value);
-            }
-            callStack.add(variables);
-            BoundBlockStatement statement = functions.get(node.getFunction());
-            Object result = evaluateBlockStatement(statement);
-            callStack.pop();
-            return result;
+            callFunction(node);
+            return getLastValue();
         }
     }
 
-    private Object evaluateLiteralExpression(BoundLiteralExpression l) {
-        return l.getValue();
+    private void callFunction(BoundCallExpression node) throws Exception {
+        Tiering.Profile profile = null;
+        if (tiering != null) {
+            profile = tiering.profile(node.getFunction());
+            if (tiering.enter(profile)) {
+                List<BoundExpression> args = node.getArgs();
+                Object[] values = new Object[args.size()];
+                for (int i = 0; i < values.length; i++)
+                    values[i] = evaluateExpression(args.get(i));
+                setLastValue(node.getFunction().getType(), tiering.invokeCompiled(profile, values));
+                return;
+            }
+        }
+        PreparedFunction function = root.getPreparedFunction(node.getFunction());
+        acquireFrame(function.getFrameSize());
+        Object[] calleeFrame = framePool.get(depth - 1);
+        int[] calleeIntFrame = intFramePool.get(depth - 1);
+        List<BoundExpression> args = node.getArgs();
+        List<ParameterSymbol> parameters = node.getFunction().getParameters();
+        for (int i = 0; i < args.size(); i++) {
+            TypeSymbol type = parameters.get(i).getType();
+            if (type == TypeSymbol.INTEGER)
+                calleeIntFrame[i] = evaluateInt(args.get(i));
+            else if (type == TypeSymbol.BOOLEAN)
+                calleeIntFrame[i] = evaluateBoolean(args.get(i)) ? 1 : 0;
+            else
+                calleeFrame[i] = evaluateExpression(args.get(i));
+        }
+        Object[] callerFrame = frame;
+        int[] callerIntFrame = intFrame;
+        frame = calleeFrame;
+        intFrame = calleeIntFrame;
+        try {
+            evaluateFunction(function, profile);
+        } finally {
+            frame = callerFrame;
+            intFrame = callerIntFrame;
+            depth--;
+        }
     }
 
-    private Object evaluateVariableExpression(BoundVariableExpression v) {
-        Map<VariableSymbol, Object> variables = callStack.peek();
-        return variables.get(v.getVariable());
+    /**
+     * Runs a function called from compiled code, the arguments arrive boxed.
+     */
+    Object invokeInterpreted(FunctionSymbol symbol, Tiering.Profile profile, Object[] args) throws Exception {
+        PreparedFunction function = root.getPreparedFunction(symbol);
+        acquireFrame(function.getFrameSize());
+        Object[] calleeFrame = framePool.get(depth - 1);
+        int[] calleeIntFrame = intFramePool.get(depth - 1);
+        List<ParameterSymbol> parameters = symbol.getParameters();
+        for (int i = 0; i < args.length; i++) {
+            TypeSymbol type = parameters.get(i).getType();
+            if (type == TypeSymbol.INTEGER)
+                calleeIntFrame[i] = (Integer) args[i];
+            else if (type == TypeSymbol.BOOLEAN)
+                calleeIntFrame[i] = (Boolean) args[i] ? 1 : 0;
+            else
+                calleeFrame[i] = args[i];
+        }
+        Object[] callerFrame = frame;
+        int[] callerIntFrame = intFrame;
+        frame = calleeFrame;
+        intFrame = calleeIntFrame;
+        try {
+            evaluateFunction(function, profile);
+            return getLastValue();
+        } finally {
+            frame = callerFrame;
+            intFrame = callerIntFrame;
+            depth--;
+        }
     }
 
     private Object evaluateAssignmentExpression(BoundAssignmentExpression a) throws Exception {
-        Map<VariableSymbol, Object> variables = callStack.peek();
         Object value = evaluateExpression(a.getBoundExpression());
-        variables.put(a.getVariable(), value);
+        store(a.getVariable(), value);
         return value;
     }
 
-    private Object evaluateUnaryExpression(BoundUnaryExpression u) throws Exception {
-        Object value = evaluateExpression(u.getRight());
-        switch (u.getOperator().getKind()) {
-            case IDENTITY:
-                return value;
-            case NEGATION:
-                return -(int) value;
-            case LOGICAL_NEGATION:
-                return !(boolean) value;
-            case ONES_COMPLEMENT: {
-                if (u.getType().equals(TypeSymbol.BOOLEAN)) {
-                    boolean isTrue = (boolean) value;
-                    return isTrue ? ~1 : ~0;
-                } else
-                    return ~(int) value;
-            }
-            default:
-                throw new Exception("Unexpected unary operation " + u.getOperator());
-        }
-    }
-
     private Object evaluateBinaryExpression(BoundBinaryExpression b) throws Exception {
         Object left = evaluateExpression(b.getLeft());
         Object right = evaluateExpression(b.getRight());
-        switch (b.getOperator().getKind()) {
-            case LOGICAL_AND:
-                return (boolean) left && (boolean) right;
-            case BITWISE_AND: {
-                if (b.getType().equals(TypeSymbol.BOOLEAN))
-                    return (boolean) left & (boolean) right;
-                else
-                    return (int) left & (int) right;
-            }
-            case LOGICAL_OR:
-                return (boolean) left || (boolean) right;
-            case BITWISE_OR: {
-                if (b.getType().equals(TypeSymbol.BOOLEAN))
-                    return (boolean) left | (boolean) right;
-                else
-                    return (int) left | (int) right;
-            }
-            case LOGICAL_EQUALITY:
-                return left.equals(right);
-            case LOGICAL_INEQUALITY:
-                return !left.equals(right);
-
-            case BITWISE_XOR: {
-                if (b.getType().equals(TypeSymbol.BOOLEAN))
-                    return (boolean) left ^ (boolean) right;
-                else
-                    return (int) left ^ (int) right;
-            }
-            case ADDITION:
-                return (int) left + (int) right;
-            case CONCATENATION:
-                return left.toString() + right.toString();
-            case SUBTRACTION:
-                return (int) left - (int) right;
-            case DIVISION:
-                return (int) left / (int) right;
-            case MOD:
-                return (int) left % (int) right;
-            case MULTIPLICATION:
-                return (int) left * (int) right;
-            case LESS_THAN:
-                return (int) left < (int) right;
-            case LESS_EQUAL_THAN:
-                return (int) left <= (int) right;
-            case GREATER_THAN:
-                return (int) left > (int) right;
-            case GREATER_EQUAL_THAN:
-                return (int) left >= (int) right;
-            default:
-                throw new Exception("Unexpected binary operation " + b.getOperator());
-        }
+        return switch (b.getOperator().getKind()) {
+            case CONCATENATION -> left.toString() + right.toString();
+            default -> throw new Exception("Unexpected binary operation " + b.getOperator());
+        };
+    }
+
+    private Object load(VariableSymbol variable) {
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE)
+            return globals[variable.getIndex()];
+        return frame[variable.getIndex()];
+    }
+
+    private void store(VariableSymbol variable, Object value) {
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE) {
+            globals[variable.getIndex()] = value;
+            assignedGlobals[variable.getIndex()] = value != null;
+        } else
+            frame[variable.getIndex()] = value;
+    }
+
+    private int loadInt(VariableSymbol variable) {
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE)
+            return intGlobals[variable.getIndex()];
+        return intFrame[variable.getIndex()];
+    }
+
+    private void storeInt(VariableSymbol variable, int value) {
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE) {
+            intGlobals[variable.getIndex()] = value;
+            assignedGlobals[variable.getIndex()] = true;
+        } else
+            intFrame[variable.getIndex()] = value;
     }
 }
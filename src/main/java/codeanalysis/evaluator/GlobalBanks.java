@@ -0,0 +1,52 @@
+package codeanalysis.evaluator;
+
+import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+    Moves globals between the map that carries them from one submission to the next and the two banks
+    every backend runs with: ints and booleans in an int[], everything else in an Object[].
+    The declared type of a global picks its bank, never the value it holds, so an any global holding 5
+    stays in the reference bank where its reads look for it.
+ */
+public final class GlobalBanks {
+    private GlobalBanks() {
+    }
+
+    public static void load(List<VariableSymbol> globals, Map<VariableSymbol, Object> variables,
+                            int[] ints, Object[] refs, boolean[] assigned) {
+        for (VariableSymbol global : globals) {
+            int index = global.getIndex();
+            Object value = variables.get(global);
+            if (value == null)
+                continue;
+            assigned[index] = true;
+            TypeSymbol type = global.getType();
+            if (type == TypeSymbol.INTEGER)
+                ints[index] = (Integer) value;
+            else if (type == TypeSymbol.BOOLEAN)
+                ints[index] = (Boolean) value ? 1 : 0;
+            else
+                refs[index] = value;
+        }
+    }
+
+    public static void store(List<VariableSymbol> globals, Map<VariableSymbol, Object> variables,
+                             int[] ints, Object[] refs, boolean[] assigned) {
+        for (VariableSymbol global : globals) {
+            int index = global.getIndex();
+            if (!assigned[index])
+                continue;
+            TypeSymbol type = global.getType();
+            if (type == TypeSymbol.INTEGER)
+                variables.put(global, ints[index]);
+            else if (type == TypeSymbol.BOOLEAN)
+                variables.put(global, ints[index] != 0);
+            else
+                variables.put(global, refs[index]);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package codeanalysis.evaluator;
+
+import java.util.List;
+
+public record TierReport(long interpretedNanos, long compiledNanos, long compilationNanos,
+                         int interpretedCalls, int compiledCalls, List<String> compiledFunctions) {
+
+    @Override
+    public String toString() {
+        return String.format("interpreted: %.3f ms (%d calls)%n", interpretedNanos / 1e6, interpretedCalls) +
+                String.format("compiled:    %.3f ms (%d calls)%n", compiledNanos / 1e6, compiledCalls) +
+                String.format("compilation: %.3f ms %s", compilationNanos / 1e6, compiledFunctions);
+    }
+}
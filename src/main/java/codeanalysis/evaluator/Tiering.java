@@ -0,0 +1,184 @@
+package codeanalysis.evaluator;
+
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.symbol.FunctionSymbol;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Tiered execution for the Evaluator.
+    Every function starts interpreted and counts its invocations and loop back edges.
+    Once a counter crosses its threshold the function is handed to the compiler and
+    the following calls run the compiled version. A function the compiler refuses stays interpreted.
+    Time is attributed to the tier that is running, switching only when control crosses tiers.
+ */
+public final class Tiering {
+    public static final int DEFAULT_INVOCATION_THRESHOLD = 1_000;
+    public static final int DEFAULT_BACK_EDGE_THRESHOLD = 10_000;
+
+    private static final int INTERPRETED = 0;
+    private static final int COMPILED = 1;
+    private static final int COMPILING = 2;
+
+    @FunctionalInterface
+    public interface Compiler {
+        /**
+         * @return a static method handle taking the function parameters, or null when the function cannot be compiled
+         */
+        MethodHandle compile(FunctionSymbol function, BoundBlockStatement body, Tiering tiering) throws Exception;
+    }
+
+    static final class Profile {
+        private final FunctionSymbol function;
+        private int invocations;
+        int backEdges;
+        private boolean rejected;
+        private MethodHandle compiled;
+        private int compiledCalls;
+
+        private Profile(FunctionSymbol function) {
+            this.function = function;
+        }
+    }
+
+    private final Compiler compiler;
+    private final int invocationThreshold;
+    private final int backEdgeThreshold;
+    private final Map<FunctionSymbol, Profile> profiles = new HashMap<>();
+    private final List<String> compiledFunctions = new ArrayList<>();
+
+    private BoundProgram program;
+    private Evaluator evaluator;
+
+    private final long[] nanos = new long[3];
+    private int tier = INTERPRETED;
+    private long mark;
+
+    public Tiering(Compiler compiler) {
+        this(compiler, DEFAULT_INVOCATION_THRESHOLD, DEFAULT_BACK_EDGE_THRESHOLD);
+    }
+
+    public Tiering(Compiler compiler, int invocationThreshold, int backEdgeThreshold) {
+        this.compiler = compiler;
+        this.invocationThreshold = invocationThreshold;
+        this.backEdgeThreshold = backEdgeThreshold;
+    }
+
+    void attach(Evaluator evaluator, BoundProgram program) {
+        this.evaluator = evaluator;
+        this.program = program;
+    }
+
+    void start() {
+        tier = INTERPRETED;
+        mark = System.nanoTime();
+    }
+
+    void stop() {
+        switchTo(INTERPRETED);
+    }
+
+    Profile profile(FunctionSymbol function) {
+        return profiles.computeIfAbsent(function, Profile::new);
+    }
+
+    /**
+     * Counts an invocation and compiles the function when it just became hot.
+     *
+     * @return true when the call must go to the compiled version
+     */
+    boolean enter(Profile profile) {
+        profile.invocations++;
+        if (profile.compiled != null)
+            return true;
+        if (profile.rejected)
+            return false;
+        if (profile.invocations < invocationThreshold && profile.backEdges < backEdgeThreshold)
+            return false;
+        compile(profile);
+        return profile.compiled != null;
+    }
+
+    private void compile(Profile profile) {
+        int previous = switchTo(COMPILING);
+        try {
+            BoundBlockStatement body = findBody(profile.function);
+            MethodHandle handle = body == null ? null : compiler.compile(profile.function, body, this);
+            if (handle == null) {
+                profile.rejected = true;
+                return;
+            }
+            int parameters = profile.function.getParameters().size();
+            profile.compiled = handle.asType(handle.type().generic()).asSpreader(Object[].class, parameters);
+            compiledFunctions.add(profile.function.getName());
+        } catch (Exception | LinkageError e) {
+            // the interpreter stays the reference implementation, so anything the compiler cannot handle runs there
+            profile.rejected = true;
+        } finally {
+            switchTo(previous);
+        }
+    }
+
+    private BoundBlockStatement findBody(FunctionSymbol function) {
+        for (BoundProgram current = program; current != null; current = current.getPrevious()) {
+            BoundBlockStatement body = current.getFunctionsBodies().get(function);
+            if (body != null)
+                return body;
+        }
+        return null;
+    }
+
+    Object invokeCompiled(Profile profile, Object[] args) throws Exception {
+        int previous = switchTo(COMPILED);
+        profile.compiledCalls++;
+        try {
+            return (Object) profile.compiled.invokeExact(args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new Exception(t);
+        } finally {
+            switchTo(previous);
+        }
+    }
+
+    /**
+     * Entry point for calls made by compiled code, it runs the callee in whichever tier it currently is.
+     */
+    public Object invoke(FunctionSymbol function, Object[] args) throws Exception {
+        Profile profile = profile(function);
+        if (enter(profile))
+            return invokeCompiled(profile, args);
+        int previous = switchTo(INTERPRETED);
+        try {
+            return evaluator.invokeInterpreted(function, profile, args);
+        } finally {
+            switchTo(previous);
+        }
+    }
+
+    private int switchTo(int next) {
+        long now = System.nanoTime();
+        nanos[tier] += now - mark;
+        mark = now;
+        int previous = tier;
+        tier = next;
+        return previous;
+    }
+
+    public TierReport getReport() {
+        int interpretedCalls = 0;
+        int compiledCalls = 0;
+        for (Profile profile : profiles.values()) {
+            compiledCalls += profile.compiledCalls;
+            interpretedCalls += profile.invocations - profile.compiledCalls;
+        }
+        return new TierReport(nanos[INTERPRETED], nanos[COMPILED], nanos[COMPILING],
+                interpretedCalls, compiledCalls, List.copyOf(compiledFunctions));
+    }
+}
@@ -0,0 +1,158 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.evaluator.node.ExpressionNode.IntNode;
+
+final class ArithmeticNodes {
+    private ArithmeticNodes() {
+    }
+
+    abstract static class Binary extends IntNode {
+        final ExpressionNode left;
+        final ExpressionNode right;
+
+        Binary(ExpressionNode left, ExpressionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    static final class Add extends Binary {
+        Add(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) + right.executeInt(frame);
+        }
+    }
+
+    static final class Subtract extends Binary {
+        Subtract(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) - right.executeInt(frame);
+        }
+    }
+
+    static final class Multiply extends Binary {
+        Multiply(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) * right.executeInt(frame);
+        }
+    }
+
+    static final class Divide extends Binary {
+        Divide(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) / right.executeInt(frame);
+        }
+    }
+
+    static final class Mod extends Binary {
+        Mod(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) % right.executeInt(frame);
+        }
+    }
+
+    static final class BitwiseAnd extends Binary {
+        BitwiseAnd(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) & right.executeInt(frame);
+        }
+    }
+
+    static final class BitwiseOr extends Binary {
+        BitwiseOr(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) | right.executeInt(frame);
+        }
+    }
+
+    static final class BitwiseXor extends Binary {
+        BitwiseXor(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return left.executeInt(frame) ^ right.executeInt(frame);
+        }
+    }
+
+    static final class LogicalOr extends Binary {
+        LogicalOr(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            int l = left.executeInt(frame);
+            int r = right.executeInt(frame);
+            return l != 0 || r != 0 ? 1 : 0;
+        }
+    }
+
+    static final class Negate extends IntNode {
+        private final ExpressionNode operand;
+
+        Negate(ExpressionNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return -operand.executeInt(frame);
+        }
+    }
+
+    static final class Complement extends IntNode {
+        private final ExpressionNode operand;
+
+        Complement(ExpressionNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return ~operand.executeInt(frame);
+        }
+    }
+
+    static final class BooleanComplement extends IntNode {
+        private final ExpressionNode operand;
+
+        BooleanComplement(ExpressionNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return operand.executeBoolean(frame) ? ~1 : ~0;
+        }
+    }
+}
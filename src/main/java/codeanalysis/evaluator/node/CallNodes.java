@@ -0,0 +1,114 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.evaluator.node.ExpressionNode.IntNode;
+import codeanalysis.symbol.TypeSymbol;
+
+import java.util.Scanner;
+
+/*
+    Calls are resolved when the node is built: user functions link straight to their CallTarget
+    and every built-in function gets its own node.
+ */
+final class CallNodes {
+    private CallNodes() {
+    }
+
+    static final class Call extends ExpressionNode {
+        private final ExecutionContext context;
+        private final CallTarget target;
+        private final ExpressionNode[] args;
+        private final TypeSymbol[] parameterTypes;
+
+        Call(ExecutionContext context, CallTarget target, ExpressionNode[] args, TypeSymbol[] parameterTypes) {
+            this.context = context;
+            this.target = target;
+            this.args = args;
+            this.parameterTypes = parameterTypes;
+        }
+
+        private void call(Frame frame) {
+            Frame callee = context.enter();
+            try {
+                for (int i = 0; i < args.length; i++) {
+                    TypeSymbol type = parameterTypes[i];
+                    if (type == TypeSymbol.INTEGER)
+                        callee.ints[i] = args[i].executeInt(frame);
+                    else if (type == TypeSymbol.BOOLEAN)
+                        callee.ints[i] = args[i].executeBoolean(frame) ? 1 : 0;
+                    else
+                        callee.refs[i] = args[i].execute(frame);
+                }
+                target.call(callee);
+            } finally {
+                context.leave();
+            }
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            call(frame);
+            return context.getLastValue();
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            call(frame);
+            return context.lastInt;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            call(frame);
+            return context.lastInt != 0;
+        }
+    }
+
+    static final class Print extends ExpressionNode {
+        private final ExpressionNode text;
+        private final TypeSymbol type;
+        private final boolean newLine;
+
+        Print(ExpressionNode text, TypeSymbol type, boolean newLine) {
+            this.text = text;
+            this.type = type;
+            this.newLine = newLine;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            String message;
+            if (type == TypeSymbol.INTEGER)
+                message = Integer.toString(text.executeInt(frame));
+            else if (type == TypeSymbol.BOOLEAN)
+                message = Boolean.toString(text.executeBoolean(frame));
+            else
+                message = String.valueOf(text.execute(frame));
+            if (newLine)
+                System.out.println(message);
+            else
+                System.out.print(message);
+            return null;
+        }
+    }
+
+    static final class Read extends ExpressionNode {
+        @Override
+        Object execute(Frame frame) {
+            Scanner scanner = new Scanner(System.in);
+            return scanner.nextLine();
+        }
+    }
+
+    static final class Random extends IntNode {
+        private final ExpressionNode max;
+
+        Random(ExpressionNode max) {
+            this.max = max;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return (int) Math.floor(Math.random() * (max.executeInt(frame) + 1));
+        }
+    }
+}
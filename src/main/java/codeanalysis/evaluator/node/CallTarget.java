@@ -0,0 +1,31 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.symbol.FunctionSymbol;
+
+/*
+    The executable body of a function. Call nodes are linked to their target when they are built,
+    the body itself is attached once every target of the program exists, so recursion needs no lookup.
+ */
+final class CallTarget {
+    private final FunctionSymbol function;
+    private StatementNode[] body;
+
+    CallTarget(FunctionSymbol function) {
+        this.function = function;
+    }
+
+    FunctionSymbol getFunction() {
+        return function;
+    }
+
+    void setBody(StatementNode[] body) {
+        this.body = body;
+    }
+
+    void call(Frame frame) {
+        StatementNode[] body = this.body;
+        int index = 0;
+        while (index >= 0 && index < body.length)
+            index = body[index].execute(frame);
+    }
+}
@@ -0,0 +1,48 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.evaluator.node.ExpressionNode.BooleanNode;
+import codeanalysis.evaluator.node.ExpressionNode.IntNode;
+
+final class ConstantNodes {
+    private ConstantNodes() {
+    }
+
+    static final class IntConstant extends IntNode {
+        private final int value;
+
+        IntConstant(int value) {
+            this.value = value;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return value;
+        }
+    }
+
+    static final class BooleanConstant extends BooleanNode {
+        private final boolean value;
+
+        BooleanConstant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return value;
+        }
+    }
+
+    static final class ObjectConstant extends ExpressionNode {
+        private final Object value;
+
+        ObjectConstant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return value;
+        }
+    }
+}
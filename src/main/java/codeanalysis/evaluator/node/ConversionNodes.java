@@ -0,0 +1,219 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.evaluator.node.ExpressionNode.BooleanNode;
+import codeanalysis.evaluator.node.ExpressionNode.IntNode;
+
+/*
+    Conversions and string operators.
+    Conversions out of 'any' start uninitialized and rewrite themselves after the first value they see:
+    to an unboxing node when the value already has the target type, to a parsing node otherwise.
+    An unboxing node that meets another type falls back to parsing for good.
+ */
+final class ConversionNodes {
+    private ConversionNodes() {
+    }
+
+    static final class Concat extends ExpressionNode {
+        private final ExpressionNode left;
+        private final ExpressionNode right;
+
+        Concat(ExpressionNode left, ExpressionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object l = left.execute(frame);
+            Object r = right.execute(frame);
+            return l.toString() + r.toString();
+        }
+    }
+
+    static final class IntToString extends ExpressionNode {
+        private final ExpressionNode value;
+
+        IntToString(ExpressionNode value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return Integer.toString(value.executeInt(frame));
+        }
+    }
+
+    static final class BooleanToString extends ExpressionNode {
+        private final ExpressionNode value;
+
+        BooleanToString(ExpressionNode value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return Boolean.toString(value.executeBoolean(frame));
+        }
+    }
+
+    static final class ObjectToString extends ExpressionNode {
+        private final ExpressionNode value;
+
+        ObjectToString(ExpressionNode value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return value.execute(frame).toString();
+        }
+    }
+
+    static final class ToInt extends IntNode {
+        private ExpressionNode specialized;
+
+        ToInt(ExpressionNode value) {
+            this.specialized = new UninitializedToInt(this, value);
+        }
+
+        void replace(ExpressionNode node) {
+            this.specialized = node;
+        }
+
+        ExpressionNode getSpecialized() {
+            return specialized;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return specialized.executeInt(frame);
+        }
+    }
+
+    static final class UninitializedToInt extends IntNode {
+        private final ToInt owner;
+        private final ExpressionNode value;
+
+        UninitializedToInt(ToInt owner, ExpressionNode value) {
+            this.owner = owner;
+            this.value = value;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            Object result = value.execute(frame);
+            if (result instanceof Integer i) {
+                owner.replace(new UnboxInt(owner, value));
+                return i;
+            }
+            owner.replace(new ParseInt(value));
+            return Integer.parseInt(result.toString());
+        }
+    }
+
+    static final class UnboxInt extends IntNode {
+        private final ToInt owner;
+        private final ExpressionNode value;
+
+        UnboxInt(ToInt owner, ExpressionNode value) {
+            this.owner = owner;
+            this.value = value;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            Object result = value.execute(frame);
+            if (result instanceof Integer i)
+                return i;
+            owner.replace(new ParseInt(value));
+            return Integer.parseInt(result.toString());
+        }
+    }
+
+    static final class ParseInt extends IntNode {
+        private final ExpressionNode value;
+
+        ParseInt(ExpressionNode value) {
+            this.value = value;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return Integer.parseInt(value.execute(frame).toString());
+        }
+    }
+
+    static final class ToBoolean extends BooleanNode {
+        private ExpressionNode specialized;
+
+        ToBoolean(ExpressionNode value) {
+            this.specialized = new UninitializedToBoolean(this, value);
+        }
+
+        void replace(ExpressionNode node) {
+            this.specialized = node;
+        }
+
+        ExpressionNode getSpecialized() {
+            return specialized;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return specialized.executeBoolean(frame);
+        }
+    }
+
+    static final class UninitializedToBoolean extends BooleanNode {
+        private final ToBoolean owner;
+        private final ExpressionNode value;
+
+        UninitializedToBoolean(ToBoolean owner, ExpressionNode value) {
+            this.owner = owner;
+            this.value = value;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            Object result = value.execute(frame);
+            if (result instanceof Boolean b) {
+                owner.replace(new UnboxBoolean(owner, value));
+                return b;
+            }
+            owner.replace(new ParseBoolean(value));
+            return Boolean.parseBoolean(result.toString());
+        }
+    }
+
+    static final class UnboxBoolean extends BooleanNode {
+        private final ToBoolean owner;
+        private final ExpressionNode value;
+
+        UnboxBoolean(ToBoolean owner, ExpressionNode value) {
+            this.owner = owner;
+            this.value = value;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            Object result = value.execute(frame);
+            if (result instanceof Boolean b)
+                return b;
+            owner.replace(new ParseBoolean(value));
+            return Boolean.parseBoolean(result.toString());
+        }
+    }
+
+    static final class ParseBoolean extends BooleanNode {
+        private final ExpressionNode value;
+
+        ParseBoolean(ExpressionNode value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return Boolean.parseBoolean(value.execute(frame).toString());
+        }
+    }
+}
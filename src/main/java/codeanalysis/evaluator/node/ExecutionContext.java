@@ -0,0 +1,56 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.symbol.TypeSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class ExecutionContext {
+    final Object[] globals;
+    final int[] intGlobals;
+    final boolean[] assignedGlobals;
+
+    private TypeSymbol lastType;
+    int lastInt;
+    private Object lastValue;
+
+    private final int frameSize;
+    private final List<Frame> frames = new ArrayList<>();
+    private int depth;
+
+    ExecutionContext(int globalCount, int frameSize) {
+        this.globals = new Object[globalCount];
+        this.intGlobals = new int[globalCount];
+        this.assignedGlobals = new boolean[globalCount];
+        this.frameSize = frameSize;
+    }
+
+    // frames are pooled per call depth and sized for the largest function
+    Frame enter() {
+        if (depth == frames.size())
+            frames.add(new Frame(frameSize));
+        return frames.get(depth++);
+    }
+
+    void leave() {
+        depth--;
+    }
+
+    void setLastValue(ExpressionNode expression, TypeSymbol type, Frame frame) {
+        if (type == TypeSymbol.INTEGER)
+            lastInt = expression.executeInt(frame);
+        else if (type == TypeSymbol.BOOLEAN)
+            lastInt = expression.executeBoolean(frame) ? 1 : 0;
+        else
+            lastValue = expression.execute(frame);
+        lastType = type;
+    }
+
+    Object getLastValue() {
+        if (lastType == TypeSymbol.INTEGER)
+            return lastInt;
+        if (lastType == TypeSymbol.BOOLEAN)
+            return lastInt != 0;
+        return lastValue;
+    }
+}
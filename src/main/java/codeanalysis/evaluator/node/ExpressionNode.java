@@ -0,0 +1,37 @@
+package codeanalysis.evaluator.node;
+
+/*
+    Executable form of a bound expression.
+    Int and boolean nodes override executeInt/executeBoolean, so parents that know the static type never box.
+ */
+abstract class ExpressionNode {
+    abstract Object execute(Frame frame);
+
+    int executeInt(Frame frame) {
+        return (int) execute(frame);
+    }
+
+    boolean executeBoolean(Frame frame) {
+        return (boolean) execute(frame);
+    }
+
+    abstract static class IntNode extends ExpressionNode {
+        @Override
+        abstract int executeInt(Frame frame);
+
+        @Override
+        final Object execute(Frame frame) {
+            return executeInt(frame);
+        }
+    }
+
+    abstract static class BooleanNode extends ExpressionNode {
+        @Override
+        abstract boolean executeBoolean(Frame frame);
+
+        @Override
+        final Object execute(Frame frame) {
+            return executeBoolean(frame);
+        }
+    }
+}
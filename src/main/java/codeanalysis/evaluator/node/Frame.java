@@ -0,0 +1,11 @@
+package codeanalysis.evaluator.node;
+
+final class Frame {
+    final Object[] refs;
+    final int[] ints;
+
+    Frame(int size) {
+        this.refs = new Object[size];
+        this.ints = new int[size];
+    }
+}
@@ -0,0 +1,181 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.evaluator.node.ExpressionNode.BooleanNode;
+
+/*
+    Boolean valued operators. Like the other backends, && and || evaluate both operands.
+ */
+final class LogicNodes {
+    private LogicNodes() {
+    }
+
+    abstract static class Binary extends BooleanNode {
+        final ExpressionNode left;
+        final ExpressionNode right;
+
+        Binary(ExpressionNode left, ExpressionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    static final class IntEquals extends Binary {
+        IntEquals(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeInt(frame) == right.executeInt(frame);
+        }
+    }
+
+    static final class IntNotEquals extends Binary {
+        IntNotEquals(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeInt(frame) != right.executeInt(frame);
+        }
+    }
+
+    static final class LessThan extends Binary {
+        LessThan(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeInt(frame) < right.executeInt(frame);
+        }
+    }
+
+    static final class LessEqualThan extends Binary {
+        LessEqualThan(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeInt(frame) <= right.executeInt(frame);
+        }
+    }
+
+    static final class GreaterThan extends Binary {
+        GreaterThan(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeInt(frame) > right.executeInt(frame);
+        }
+    }
+
+    static final class GreaterEqualThan extends Binary {
+        GreaterEqualThan(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeInt(frame) >= right.executeInt(frame);
+        }
+    }
+
+    static final class And extends Binary {
+        And(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeBoolean(frame) & right.executeBoolean(frame);
+        }
+    }
+
+    static final class Or extends Binary {
+        Or(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeBoolean(frame) | right.executeBoolean(frame);
+        }
+    }
+
+    static final class Xor extends Binary {
+        Xor(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeBoolean(frame) ^ right.executeBoolean(frame);
+        }
+    }
+
+    static final class BooleanEquals extends Binary {
+        BooleanEquals(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeBoolean(frame) == right.executeBoolean(frame);
+        }
+    }
+
+    static final class BooleanNotEquals extends Binary {
+        BooleanNotEquals(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return left.executeBoolean(frame) != right.executeBoolean(frame);
+        }
+    }
+
+    static final class ObjectEquals extends Binary {
+        ObjectEquals(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            Object l = left.execute(frame);
+            Object r = right.execute(frame);
+            return l.equals(r);
+        }
+    }
+
+    static final class ObjectNotEquals extends Binary {
+        ObjectNotEquals(ExpressionNode left, ExpressionNode right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            Object l = left.execute(frame);
+            Object r = right.execute(frame);
+            return !l.equals(r);
+        }
+    }
+
+    static final class Not extends BooleanNode {
+        private final ExpressionNode operand;
+
+        Not(ExpressionNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return !operand.executeBoolean(frame);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.binding.conversion.BoundConversionExpression;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.binary.BoundBinaryExpression;
+import codeanalysis.binding.expression.call.BoundCallExpression;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundExpressionStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.lowering.PreparedFunction;
+import codeanalysis.symbol.BuildInFunctions;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+    Turns a prepared function into statement nodes.
+    Operators are picked from the static operand types, so no node checks a type while running.
+ */
+final class NodeBuilder {
+    private final ExecutionContext context;
+    private final Map<FunctionSymbol, CallTarget> targets;
+
+    NodeBuilder(ExecutionContext context, Map<FunctionSymbol, CallTarget> targets) {
+        this.context = context;
+        this.targets = targets;
+    }
+
+    StatementNode[] build(PreparedFunction function) throws Exception {
+        BoundStatement[] statements = function.getStatements();
+        int[] jumpTargets = function.getJumpTargets();
+        StatementNode[] nodes = new StatementNode[statements.length];
+        for (int i = 0; i < statements.length; i++) {
+            BoundStatement statement = statements[i];
+            nodes[i] = switch (statement.getKind()) {
+                case EXPRESSION_STATEMENT -> {
+                    BoundExpression expression = ((BoundExpressionStatement) statement).getExpression();
+                    yield new StatementNode.ExpressionStatement(context, buildExpression(expression),
+                            expression.getType(), i + 1);
+                }
+                case VARIABLE_DECLARATION_STATEMENT -> {
+                    var declaration = (BoundVariableDeclarationStatement) statement;
+                    VariableSymbol variable = declaration.getVariable();
+                    ExpressionNode write = buildWrite(variable, buildExpression(declaration.getInitializer()));
+                    yield new StatementNode.ExpressionStatement(context, write, variable.getType(), i + 1);
+                }
+                case JUMP_TO_STATEMENT -> new StatementNode.Jump(jumpTargets[i]);
+                case LABEL_DECLARATION_STATEMENT -> new StatementNode.Jump(i + 1);
+                case CONDITIONAL_JUMP_TO_STATEMENT -> {
+                    var jump = (BoundConditionalJumpToStatement) statement;
+                    yield new StatementNode.ConditionalJump(buildExpression(jump.getCondition()),
+                            jump.isJumpIfTrue(), jumpTargets[i], i + 1);
+                }
+                case RETURN_STATEMENT -> {
+                    BoundExpression expression = ((BoundReturnStatement) statement).getExpression();
+                    if (expression == null)
+                        yield new StatementNode.Return(context, null, null);
+                    yield new StatementNode.Return(context, buildExpression(expression), expression.getType());
+                }
+                default -> throw new Exception("Unexpected node " + statement.getKind());
+            };
+        }
+        return nodes;
+    }
+
+    private ExpressionNode buildExpression(BoundExpression node) throws Exception {
+        return switch (node.getKind()) {
+            case LITERAL_EXPRESSION -> buildLiteralExpression((BoundLiteralExpression) node);
+            case VARIABLE_EXPRESSION -> buildVariableExpression((BoundVariableExpression) node);
+            case ASSIGNMENT_EXPRESSION -> {
+                BoundAssignmentExpression a = (BoundAssignmentExpression) node;
+                yield buildWrite(a.getVariable(), buildExpression(a.getBoundExpression()));
+            }
+            case UNARY_EXPRESSION -> buildUnaryExpression((BoundUnaryExpression) node);
+            case BINARY_EXPRESSION -> buildBinaryExpression((BoundBinaryExpression) node);
+            case CALL_EXPRESSION -> buildCallExpression((BoundCallExpression) node);
+            case CONVERSION_EXPRESSION -> buildConversionExpression((BoundConversionExpression) node);
+            default -> throw new Exception("Unexpected node " + node.getKind());
+        };
+    }
+
+    private ExpressionNode buildLiteralExpression(BoundLiteralExpression node) {
+        Object value = node.getValue();
+        if (value instanceof Integer i)
+            return new ConstantNodes.IntConstant(i);
+        if (value instanceof Boolean b)
+            return new ConstantNodes.BooleanConstant(b);
+        return new ConstantNodes.ObjectConstant(value);
+    }
+
+    private ExpressionNode buildVariableExpression(BoundVariableExpression node) {
+        VariableSymbol variable = node.getVariable();
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE)
+            return new VariableNodes.ReadGlobal(context, variable.getIndex(), variable.getType());
+        return new VariableNodes.ReadLocal(variable.getIndex(), variable.getType());
+    }
+
+    private ExpressionNode buildWrite(VariableSymbol variable, ExpressionNode value) {
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE)
+            return new VariableNodes.WriteGlobal(context, variable.getIndex(), variable.getType(), value);
+        return new VariableNodes.WriteLocal(variable.getIndex(), variable.getType(), value);
+    }
+
+    private ExpressionNode buildUnaryExpression(BoundUnaryExpression node) throws Exception {
+        ExpressionNode operand = buildExpression(node.getRight());
+        return switch (node.getOperator().getKind()) {
+            case IDENTITY -> operand;
+            case NEGATION -> new ArithmeticNodes.Negate(operand);
+            case LOGICAL_NEGATION -> new LogicNodes.Not(operand);
+            case ONES_COMPLEMENT -> node.getRight().getType() == TypeSymbol.BOOLEAN
+                    ? new ArithmeticNodes.BooleanComplement(operand)
+                    : new ArithmeticNodes.Complement(operand);
+        };
+    }
+
+    private ExpressionNode buildBinaryExpression(BoundBinaryExpression node) throws Exception {
+        ExpressionNode left = buildExpression(node.getLeft());
+        ExpressionNode right = buildExpression(node.getRight());
+        TypeSymbol operandType = node.getLeft().getType();
+        boolean booleanResult = node.getType() == TypeSymbol.BOOLEAN;
+        return switch (node.getOperator().getKind()) {
+            case ADDITION -> new ArithmeticNodes.Add(left, right);
+            case SUBTRACTION -> new ArithmeticNodes.Subtract(left, right);
+            case MULTIPLICATION -> new ArithmeticNodes.Multiply(left, right);
+            case DIVISION -> new ArithmeticNodes.Divide(left, right);
+            case MOD -> new ArithmeticNodes.Mod(left, right);
+            case CONCATENATION -> new ConversionNodes.Concat(left, right);
+            case LOGICAL_AND -> new LogicNodes.And(left, right);
+            case BITWISE_AND -> booleanResult ? new LogicNodes.And(left, right)
+                    : new ArithmeticNodes.BitwiseAnd(left, right);
+            case LOGICAL_OR -> booleanResult ? new LogicNodes.Or(left, right)
+                    : new ArithmeticNodes.LogicalOr(left, right);
+            case BITWISE_OR -> booleanResult ? new LogicNodes.Or(left, right)
+                    : new ArithmeticNodes.BitwiseOr(left, right);
+            case BITWISE_XOR -> booleanResult ? new LogicNodes.Xor(left, right)
+                    : new ArithmeticNodes.BitwiseXor(left, right);
+            case LOGICAL_EQUALITY -> {
+                if (operandType == TypeSymbol.INTEGER)
+                    yield new LogicNodes.IntEquals(left, right);
+                if (operandType == TypeSymbol.BOOLEAN)
+                    yield new LogicNodes.BooleanEquals(left, right);
+                yield new LogicNodes.ObjectEquals(left, right);
+            }
+            case LOGICAL_INEQUALITY -> {
+                if (operandType == TypeSymbol.INTEGER)
+                    yield new LogicNodes.IntNotEquals(left, right);
+                if (operandType == TypeSymbol.BOOLEAN)
+                    yield new LogicNodes.BooleanNotEquals(left, right);
+                yield new LogicNodes.ObjectNotEquals(left, right);
+            }
+            case LESS_THAN -> new LogicNodes.LessThan(left, right);
+            case LESS_EQUAL_THAN -> new LogicNodes.LessEqualThan(left, right);
+            case GREATER_THAN -> new LogicNodes.GreaterThan(left, right);
+            case GREATER_EQUAL_THAN -> new LogicNodes.GreaterEqualThan(left, right);
+        };
+    }
+
+    private ExpressionNode buildCallExpression(BoundCallExpression node) throws Exception {
+        FunctionSymbol function = node.getFunction();
+        List<BoundExpression> args = node.getArgs();
+        if (function.equals(BuildInFunctions.PRINT) || function.equals(BuildInFunctions.PRINTF)) {
+            BoundExpression text = args.get(0);
+            return new CallNodes.Print(buildExpression(text), text.getType(),
+                    function.equals(BuildInFunctions.PRINTF));
+        } else if (function.equals(BuildInFunctions.READ)) {
+            return new CallNodes.Read();
+        } else if (function.equals(BuildInFunctions.RANDOM)) {
+            return new CallNodes.Random(buildExpression(args.get(0)));
+        }
+
+        CallTarget target = targets.get(function);
+        if (target == null)
+            throw new Exception("Unexpected function " + function.getName());
+        ExpressionNode[] argNodes = new ExpressionNode[args.size()];
+        TypeSymbol[] parameterTypes = new TypeSymbol[args.size()];
+        for (int i = 0; i < args.size(); i++) {
+            argNodes[i] = buildExpression(args.get(i));
+            parameterTypes[i] = function.getParameters().get(i).getType();
+        }
+        return new CallNodes.Call(context, target, argNodes, parameterTypes);
+    }
+
+    private ExpressionNode buildConversionExpression(BoundConversionExpression node) throws Exception {
+        BoundExpression expression = node.getExpression();
+        ExpressionNode value = buildExpression(expression);
+        TypeSymbol from = expression.getType();
+        TypeSymbol to = node.getType();
+        if (from == to || to == TypeSymbol.ANY)
+            return value;
+        if (to == TypeSymbol.STRING) {
+            if (from == TypeSymbol.INTEGER)
+                return new ConversionNodes.IntToString(value);
+            if (from == TypeSymbol.BOOLEAN)
+                return new ConversionNodes.BooleanToString(value);
+            return new ConversionNodes.ObjectToString(value);
+        }
+        if (to == TypeSymbol.INTEGER)
+            return new ConversionNodes.ToInt(value);
+        if (to == TypeSymbol.BOOLEAN)
+            return new ConversionNodes.ToBoolean(value);
+        throw new Exception("Unexpected type " + to);
+    }
+}
@@ -0,0 +1,68 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.evaluator.GlobalBanks;
+import codeanalysis.lowering.PreparedFunction;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Interpreter over executable nodes built once from the lowered program.
+    Every function of the program chain gets a CallTarget before any body is built,
+    so call nodes are linked directly to their callee.
+ */
+public final class NodeInterpreter {
+    private final BoundProgram root;
+    private final Map<VariableSymbol, Object> variables;
+    private final ExecutionContext context;
+    private final CallTarget main;
+
+    public NodeInterpreter(BoundProgram root, Map<VariableSymbol, Object> variables) throws Exception {
+        this.root = root;
+        this.variables = variables;
+
+        Map<FunctionSymbol, PreparedFunction> functions = new HashMap<>();
+        for (var current = root; current != null; current = current.getPrevious()) {
+            for (FunctionSymbol function : current.getFunctionsBodies().keySet())
+                functions.putIfAbsent(function, root.getPreparedFunction(function));
+        }
+        Map<FunctionSymbol, CallTarget> targets = new HashMap<>();
+        int frameSize = 0;
+        for (var function : functions.entrySet()) {
+            targets.put(function.getKey(), new CallTarget(function.getKey()));
+            frameSize = Math.max(frameSize, function.getValue().getFrameSize());
+        }
+
+        this.context = new ExecutionContext(root.getGlobalVariables().size(), frameSize);
+        NodeBuilder builder = new NodeBuilder(context, targets);
+        for (var function : functions.entrySet())
+            targets.get(function.getKey()).setBody(builder.build(function.getValue()));
+        this.main = root.getMainFunction() == null ? null : targets.get(root.getMainFunction());
+    }
+
+    public Object evaluate() {
+        if (main == null)
+            return null;
+        loadGlobals();
+        try {
+            main.call(context.enter());
+            context.leave();
+        } finally {
+            storeGlobals();
+        }
+        return context.getLastValue();
+    }
+
+    private void loadGlobals() {
+        GlobalBanks.load(root.getGlobalVariables(), variables,
+                context.intGlobals, context.globals, context.assignedGlobals);
+    }
+
+    private void storeGlobals() {
+        GlobalBanks.store(root.getGlobalVariables(), variables,
+                context.intGlobals, context.globals, context.assignedGlobals);
+    }
+}
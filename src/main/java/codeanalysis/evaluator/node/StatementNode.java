@@ -0,0 +1,83 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.symbol.TypeSymbol;
+
+abstract class StatementNode {
+    static final int RETURN = -1;
+
+    /**
+     * @return the index of the next statement to execute or RETURN
+     */
+    abstract int execute(Frame frame);
+
+    static final class ExpressionStatement extends StatementNode {
+        private final ExecutionContext context;
+        private final ExpressionNode expression;
+        private final TypeSymbol type;
+        private final int next;
+
+        ExpressionStatement(ExecutionContext context, ExpressionNode expression, TypeSymbol type, int next) {
+            this.context = context;
+            this.expression = expression;
+            this.type = type;
+            this.next = next;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            context.setLastValue(expression, type, frame);
+            return next;
+        }
+    }
+
+    static final class Jump extends StatementNode {
+        private final int target;
+
+        Jump(int target) {
+            this.target = target;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            return target;
+        }
+    }
+
+    static final class ConditionalJump extends StatementNode {
+        private final ExpressionNode condition;
+        private final boolean jumpIfTrue;
+        private final int target;
+        private final int next;
+
+        ConditionalJump(ExpressionNode condition, boolean jumpIfTrue, int target, int next) {
+            this.condition = condition;
+            this.jumpIfTrue = jumpIfTrue;
+            this.target = target;
+            this.next = next;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            return condition.executeBoolean(frame) == jumpIfTrue ? target : next;
+        }
+    }
+
+    static final class Return extends StatementNode {
+        private final ExecutionContext context;
+        private final ExpressionNode expression;
+        private final TypeSymbol type;
+
+        Return(ExecutionContext context, ExpressionNode expression, TypeSymbol type) {
+            this.context = context;
+            this.expression = expression;
+            this.type = type;
+        }
+
+        @Override
+        int execute(Frame frame) {
+            if (expression != null)
+                context.setLastValue(expression, type, frame);
+            return RETURN;
+        }
+    }
+}
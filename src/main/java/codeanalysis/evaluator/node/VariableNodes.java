@@ -0,0 +1,155 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.symbol.TypeSymbol;
+
+/*
+    Reads and writes of variable slots. Int and boolean variables share the int slots,
+    every other type lives in the reference slots.
+ */
+final class VariableNodes {
+    private VariableNodes() {
+    }
+
+    static boolean isIntSlot(TypeSymbol type) {
+        return type == TypeSymbol.INTEGER || type == TypeSymbol.BOOLEAN;
+    }
+
+    static final class ReadLocal extends ExpressionNode {
+        private final int index;
+        private final TypeSymbol type;
+
+        ReadLocal(int index, TypeSymbol type) {
+            this.index = index;
+            this.type = type;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            if (type == TypeSymbol.INTEGER)
+                return frame.ints[index];
+            if (type == TypeSymbol.BOOLEAN)
+                return frame.ints[index] != 0;
+            return frame.refs[index];
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return frame.ints[index];
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return frame.ints[index] != 0;
+        }
+    }
+
+    static final class WriteLocal extends ExpressionNode {
+        private final int index;
+        private final TypeSymbol type;
+        private final ExpressionNode value;
+
+        WriteLocal(int index, TypeSymbol type, ExpressionNode value) {
+            this.index = index;
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            if (type == TypeSymbol.INTEGER)
+                return executeInt(frame);
+            if (type == TypeSymbol.BOOLEAN)
+                return executeBoolean(frame);
+            Object result = value.execute(frame);
+            frame.refs[index] = result;
+            return result;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            int result = value.executeInt(frame);
+            frame.ints[index] = result;
+            return result;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            boolean result = value.executeBoolean(frame);
+            frame.ints[index] = result ? 1 : 0;
+            return result;
+        }
+    }
+
+    static final class ReadGlobal extends ExpressionNode {
+        private final ExecutionContext context;
+        private final int index;
+        private final TypeSymbol type;
+
+        ReadGlobal(ExecutionContext context, int index, TypeSymbol type) {
+            this.context = context;
+            this.index = index;
+            this.type = type;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            if (type == TypeSymbol.INTEGER)
+                return context.intGlobals[index];
+            if (type == TypeSymbol.BOOLEAN)
+                return context.intGlobals[index] != 0;
+            return context.globals[index];
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            return context.intGlobals[index];
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            return context.intGlobals[index] != 0;
+        }
+    }
+
+    static final class WriteGlobal extends ExpressionNode {
+        private final ExecutionContext context;
+        private final int index;
+        private final TypeSymbol type;
+        private final ExpressionNode value;
+
+        WriteGlobal(ExecutionContext context, int index, TypeSymbol type, ExpressionNode value) {
+            this.context = context;
+            this.index = index;
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            if (type == TypeSymbol.INTEGER)
+                return executeInt(frame);
+            if (type == TypeSymbol.BOOLEAN)
+                return executeBoolean(frame);
+            Object result = value.execute(frame);
+            context.globals[index] = result;
+            context.assignedGlobals[index] = result != null;
+            return result;
+        }
+
+        @Override
+        int executeInt(Frame frame) {
+            int result = value.executeInt(frame);
+            context.intGlobals[index] = result;
+            context.assignedGlobals[index] = true;
+            return result;
+        }
+
+        @Override
+        boolean executeBoolean(Frame frame) {
+            boolean result = value.executeBoolean(frame);
+            context.intGlobals[index] = result ? 1 : 0;
+            context.assignedGlobals[index] = true;
+            return result;
+        }
+    }
+}
@@ -4,14 +4,89 @@ import codeanalysis.diagnostics.DiagnosticBag;
 import codeanalysis.source.SourceText;
 import codeanalysis.source.TextLocation;
 import codeanalysis.source.TextSpan;
+import codeanalysis.symbol.TypeSymbol;
 import codeanalysis.syntax.SyntaxFacts;
 import codeanalysis.syntax.SyntaxKind;
 import codeanalysis.syntax.SyntaxToken;
 import codeanalysis.syntax.SyntaxTree;
 
-
+/*
+    A table-driven scanner. The first character of a token picks what to read from a table of character classes,
+    and operators come from tables built from the fixed texts of SyntaxFacts: the token of a character alone,
+    of the character doubled and of the character followed by '='.
+    Keywords are found with Cichelli's minimal perfect hash on the length and the first and last letters of a word,
+    then compared in place against the source text, so a word only becomes a string in the token that keeps it.
+    Numbers are accumulated while they are read.
+ */
 public final class Lexer {
+    private static final byte OTHER = 0;
+    private static final byte END = 1;
+    private static final byte WHITESPACE = 2;
+    private static final byte DIGIT = 3;
+    private static final byte LETTER = 4;
+    private static final byte QUOTE = 5;
+    private static final byte OPERATOR = 6;
+
+    private static final byte[] CLASSES = new byte[128];
+    private static final SyntaxKind[] SINGLE = new SyntaxKind[128];
+    private static final SyntaxKind[] DOUBLED = new SyntaxKind[128];
+    private static final SyntaxKind[] WITH_EQUALS = new SyntaxKind[128];
+
+    // the letter values of the hash, found by search so that the 12 keywords fall in 12 different slots
+    private static final int[] LETTER_VALUES = new int[128];
+    private static final SyntaxKind[] KEYWORD_KINDS = new SyntaxKind[12];
+    private static final String[] KEYWORD_TEXTS = new String[12];
+
+    static {
+        for (SyntaxKind kind : SyntaxKind.values()) {
+            String text = SyntaxFacts.getText(kind);
+            if (text == null || Character.isLetter(text.charAt(0)))
+                continue;
+            char first = text.charAt(0);
+            if (text.length() == 1)
+                SINGLE[first] = kind;
+            else if (text.charAt(1) == '=')
+                WITH_EQUALS[first] = kind;
+            else
+                DOUBLED[first] = kind;
+        }
+        for (char c = 0; c < 128; c++) {
+            if (c == '\0')
+                CLASSES[c] = END;
+            else if (c == '\'' || c == '"')
+                CLASSES[c] = QUOTE;
+            else if (c >= '0' && c <= '9')
+                CLASSES[c] = DIGIT;
+            else if (SINGLE[c] != null)
+                CLASSES[c] = OPERATOR;
+            else if (Character.isLetter(c))
+                CLASSES[c] = LETTER;
+            else if (Character.isWhitespace(c))
+                CLASSES[c] = WHITESPACE;
+        }
+
+        LETTER_VALUES['b'] = 8;
+        LETTER_VALUES['l'] = 7;
+        LETTER_VALUES['n'] = 3;
+        LETTER_VALUES['t'] = 2;
+        LETTER_VALUES['v'] = 7;
+        LETTER_VALUES['w'] = 2;
+        for (SyntaxKind kind : SyntaxKind.values()) {
+            String text = SyntaxFacts.getText(kind);
+            if (text == null || !Character.isLetter(text.charAt(0)))
+                continue;
+            int slot = keywordSlot(text.length(), text.charAt(0), text.charAt(text.length() - 1));
+            if (KEYWORD_KINDS[slot] != null)
+                throw new RuntimeException("Unexpected keyword collision " + text + " " + KEYWORD_TEXTS[slot]);
+            KEYWORD_KINDS[slot] = kind;
+            KEYWORD_TEXTS[slot] = text;
+        }
+    }
+
     private final SourceText text;
+    // the characters are read through the sequence, a mapped file is never copied whole
+    private final CharSequence chars;
+    private final int length;
     private final SyntaxTree syntaxTree;
     private int position;
 
@@ -26,6 +101,8 @@ public final class Lexer {
 
     public Lexer(SyntaxTree syntaxTree) {
         this.text = syntaxTree.getText();
+        this.chars = text.getText();
+        this.length = chars.length();
         this.syntaxTree = syntaxTree;
         this.position = 0;
     }
@@ -36,262 +113,155 @@ public final class Lexer {
 
 
     public SyntaxToken lex() {
+        scan();
+        String text = SyntaxFacts.getText(kind);
+        if (text == null) {
+            text = this.text.toString(start, position);
+        }
+        return new SyntaxToken(syntaxTree, kind, start, text, value);
+    }
+
+    // lexes the whole text for the parser, which skips whitespace and bad tokens anyway
+    public TokenBuffer tokenize() {
+        TokenBuffer tokens = new TokenBuffer(syntaxTree);
+        do {
+            scan();
+            if (kind != SyntaxKind.WHITESPACE_TOKEN && kind != SyntaxKind.BAD_TOKEN)
+                tokens.add(kind, start, position - start, value);
+        } while (kind != SyntaxKind.END_OF_FILE_TOKEN);
+        return tokens;
+    }
+
+    private void scan() {
         start = position;
         kind = SyntaxKind.BAD_TOKEN;
         value = null;
-        switch (getCurrent()) {
-            case '\0':
-                kind = SyntaxKind.END_OF_FILE_TOKEN;
-                break;
-            case ';':
-                kind = SyntaxKind.SEMICOLON_TOKEN;
-                next();
-                break;
-            case '+': {
-                if (lookahead() == '+') {
-                    kind = SyntaxKind.PLUS_PLUS_TOKEN;
-                    next();
-                } else if (lookahead() == '=') {
-                    kind = SyntaxKind.PLUS_EQUALS_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.PLUS_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '-': {
-                if (lookahead() == '-') {
-                    kind = SyntaxKind.MINUS_MINUS_TOKEN;
-                    next();
-                } else if (lookahead() == '=') {
-                    kind = SyntaxKind.MINUS_EQUALS_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.MINUS_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '/':
-                if (lookahead() == '=') {
-                    kind = SyntaxKind.SLASH_EQUALS_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.SLASH_TOKEN;
-                }
-                next();
-                break;
-            case '*':
-                if (lookahead() == '=') {
-                    kind = SyntaxKind.STAR_EQUALS_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.STAR_TOKEN;
-                }
-                next();
-                break;
-            case '(':
-                kind = SyntaxKind.OPEN_PARENTHESIS_TOKEN;
-                next();
-                break;
-            case ')':
-                kind = SyntaxKind.CLOSE_PARENTHESIS_TOKEN;
-                next();
-                break;
-            case '{':
-                kind = SyntaxKind.OPEN_BRACE_TOKEN;
-                next();
-                break;
-            case '}':
-                kind = SyntaxKind.CLOSE_BRACE_TOKEN;
-                next();
-                break;
-            case '=': {
-                if (lookahead() == '=') {
-                    kind = SyntaxKind.EQUAL_EQUAL_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.EQUAL_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '<': {
-                if (lookahead() == '=') {
-                    kind = SyntaxKind.LESS_EQUAL_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.LESS_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '>': {
-                if (lookahead() == '=') {
-                    kind = SyntaxKind.GREATER_EQUAL_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.GREATER_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '!': {
-                if (lookahead() == '=') {
-                    kind = SyntaxKind.EXCLAMATION_EQUAL_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.EXCLAMATION_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '&': {
-                if (lookahead() == '&') {
-                    kind = SyntaxKind.AMPERSAND_AMPERSAND_TOKEN;
-                    next();
-                } else if (lookahead() == '=') {
-                    kind = SyntaxKind.AMPERSAND_EQUALS_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.AMPERSAND_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '|': {
-                if (lookahead() == '|') {
-                    kind = SyntaxKind.PIPE_PIPE_TOKEN;
-                    next();
-                } else if (lookahead() == '=') {
-                    kind = SyntaxKind.PIPE_EQUALS_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.PIPE_TOKEN;
-                }
-                next();
-                break;
-            }
-            case '~': {
-                kind = SyntaxKind.TILDE_TOKEN;
-                next();
-                break;
-            }
-            case '^': {
-                if (lookahead() == '=') {
-                    kind = SyntaxKind.HAT_EQUALS_TOKEN;
-                    next();
-                } else {
-                    kind = SyntaxKind.HAT_TOKEN;
-                }
+        char current = getCurrent();
+        switch (classOf(current)) {
+            case END -> kind = SyntaxKind.END_OF_FILE_TOKEN;
+            case WHITESPACE -> readWhitespace();
+            case DIGIT -> readNumberToken();
+            case LETTER -> readWordToken();
+            case QUOTE -> readString();
+            case OPERATOR -> readOperator(current);
+            default -> {
+                var span = new TextSpan(position, 1);
+                var location = new TextLocation(text, span);
+                diagnostics.reportBadChar(location, current);
                 next();
-                break;
             }
-            case ',':
-                kind = SyntaxKind.COMMA_TOKEN;
-                next();
-                break;
-            case '%':
-                kind = SyntaxKind.PERCENTAGE_TOKEN;
-                next();
-                break;
-            case ':':
-                kind = SyntaxKind.COLON_TOKEN;
-                next();
-                break;
-            case '\'':
-            case '"':
-                readString();
-                break;
-            case '0':
-            case '1':
-            case '2':
-            case '3':
-            case '4':
-            case '5':
-            case '6':
-            case '7':
-            case '8':
-            case '9':
-                readNumberToken();
-                break;
-            case ' ':
-            case '\t':
-            case '\n':
-            case '\r':
-                readWhitespace();
-                break;
-            default:
-                if (Character.isLetter(getCurrent()))
-                    readWordToken();
-                else if (Character.isWhitespace(getCurrent()))
-                    readWhitespace();
-                else {
-                    var span = new TextSpan(position, 1);
-                    var location = new TextLocation(text, span);
-                    diagnostics.reportBadChar(location, getCurrent());
-                    next();
-                }
-                break;
         }
+    }
 
-        String text = SyntaxFacts.getText(kind);
-        if (text == null) {
-            text = this.text.toString(start, position);
+    private static byte classOf(char c) {
+        if (c < 128)
+            return CLASSES[c];
+        if (Character.isLetter(c))
+            return LETTER;
+        if (Character.isWhitespace(c))
+            return WHITESPACE;
+        return OTHER;
+    }
+
+    private void readOperator(char current) {
+        char next = lookahead();
+        if (next == current && DOUBLED[current] != null) {
+            kind = DOUBLED[current];
+            position += 2;
+        } else if (next == '=' && WITH_EQUALS[current] != null) {
+            kind = WITH_EQUALS[current];
+            position += 2;
+        } else {
+            kind = SINGLE[current];
+            position++;
         }
-        return new SyntaxToken(syntaxTree, kind, start, text, value);
     }
 
+    // the characters are only copied when an escape makes the value differ from the text between the quotes
     private void readString() {
         char stringStarter = getCurrent();
-        boolean done = false;
-        StringBuilder builder = new StringBuilder();
+        StringBuilder builder = null;
         next();
-        while (!done) {
-            if (getCurrent() == '\\') {
+        int contentStart = position;
+        int contentEnd = -1;
+        while (contentEnd < 0) {
+            char current = getCurrent();
+            if (current == '\\') {
+                if (builder == null)
+                    builder = new StringBuilder(text.toString(contentStart, position));
                 next();
                 builder.append(getCurrent());
                 next();
-            } else if (getCurrent() == '\0' || getCurrent() == '\n' || getCurrent() == '\r') {
+            } else if (current == '\0' || current == '\n' || current == '\r') {
                 TextSpan span = new TextSpan(start, 1);
                 var location = new TextLocation(text, span);
-                done = true;
                 diagnostics.reportUnterminatedString(location);
-            } else if (getCurrent() == stringStarter) {
-                done = true;
+                contentEnd = position;
+            } else if (current == stringStarter) {
+                contentEnd = position;
                 next();
             } else {
-                builder.append(getCurrent());
+                if (builder != null)
+                    builder.append(current);
                 next();
             }
         }
         kind = SyntaxKind.STRING_TOKEN;
-        value = builder.toString();
+        value = builder != null ? builder.toString() : text.toString(contentStart, contentEnd);
     }
 
     private void readNumberToken() {
-        while (Character.isDigit(getCurrent()))
+        int number = 0;
+        boolean overflow = false;
+        char current;
+        while (Character.isDigit(current = getCurrent())) {
+            int digit = Character.digit(current, 10);
+            if (number > (Integer.MAX_VALUE - digit) / 10)
+                overflow = true;
+            else
+                number = number * 10 + digit;
             next();
-
-        String text = this.text.toString(start, position);
-
+        }
+        if (overflow) {
+            var location = new TextLocation(text, TextSpan.fromBounds(start, position));
+            diagnostics.reportInvalidType(location, text.toString(start, position), TypeSymbol.INTEGER);
+            number = 0;
+        }
         kind = SyntaxKind.NUMBER_TOKEN;
-        value = Integer.parseInt(text);
+        value = number;
     }
 
     private void readWhitespace() {
-        while (Character.isWhitespace(getCurrent()))
+        while (classOf(getCurrent()) == WHITESPACE)
             next();
         kind = SyntaxKind.WHITESPACE_TOKEN;
     }
 
     private void readWordToken() {
-        while (Character.isLetter(getCurrent()))
+        while (classOf(getCurrent()) == LETTER)
             next();
+        kind = keywordKind();
+    }
+
+    private static int keywordSlot(int length, char first, char last) {
+        return (length + LETTER_VALUES[first] + LETTER_VALUES[last]) % KEYWORD_KINDS.length;
+    }
 
-        String text = this.text.toString(start, position);
-        kind = SyntaxFacts.getKeywordKind(text);
+    private SyntaxKind keywordKind() {
+        int length = position - start;
+        char first = chars.charAt(start);
+        char last = chars.charAt(position - 1);
+        if (first >= 128 || last >= 128)
+            return SyntaxKind.IDENTIFIER_TOKEN;
+        int slot = keywordSlot(length, first, last);
+        String keyword = KEYWORD_TEXTS[slot];
+        if (keyword == null || keyword.length() != length)
+            return SyntaxKind.IDENTIFIER_TOKEN;
+        for (int i = 0; i < length; i++) {
+            if (chars.charAt(start + i) != keyword.charAt(i))
+                return SyntaxKind.IDENTIFIER_TOKEN;
+        }
+        return KEYWORD_KINDS[slot];
     }
 
     private void next() {
@@ -304,9 +274,9 @@ public final class Lexer {
 
     private char peek(int offset) {
         int index = position + offset;
-        if (index >= text.length())
+        if (index >= length)
             return '\0';
-        return text.charAt(index);
+        return chars.charAt(index);
     }
 
     private char lookahead() {
@@ -0,0 +1,87 @@
+package codeanalysis.lexer;
+
+import codeanalysis.source.TextSpan;
+import codeanalysis.syntax.SyntaxFacts;
+import codeanalysis.syntax.SyntaxKind;
+import codeanalysis.syntax.SyntaxToken;
+import codeanalysis.syntax.SyntaxTree;
+
+import java.util.Arrays;
+
+/*
+    The tokens of a source text the parser reads, without whitespace and bad tokens.
+    A token is an index into parallel arrays of kinds, starts and lengths; the few tokens with a value
+    keep it in a side table sorted by index. A SyntaxToken is only created for a token the syntax tree keeps.
+ */
+public final class TokenBuffer {
+    private static final SyntaxKind[] KINDS = SyntaxKind.values();
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final SyntaxTree syntaxTree;
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private int[] valueIndexes = new int[16];
+    private Object[] values = new Object[16];
+    private int valueCount;
+
+    TokenBuffer(SyntaxTree syntaxTree) {
+        this.syntaxTree = syntaxTree;
+    }
+
+    void add(SyntaxKind kind, int start, int length, Object value) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        if (value != null) {
+            if (valueCount == values.length) {
+                valueIndexes = Arrays.copyOf(valueIndexes, valueCount * 2);
+                values = Arrays.copyOf(values, valueCount * 2);
+            }
+            valueIndexes[valueCount] = size;
+            values[valueCount++] = value;
+        }
+        kinds[size] = kind.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public SyntaxKind getKind(int index) {
+        return KINDS[kinds[index]];
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public TextSpan getSpan(int index) {
+        return new TextSpan(starts[index], lengths[index]);
+    }
+
+    public Object getValue(int index) {
+        int found = Arrays.binarySearch(valueIndexes, 0, valueCount, index);
+        return found < 0 ? null : values[found];
+    }
+
+    public SyntaxToken createToken(int index) {
+        SyntaxKind kind = getKind(index);
+        String text = SyntaxFacts.getText(kind);
+        if (text == null)
+            text = syntaxTree.getText().toString(starts[index], starts[index] + lengths[index]);
+        return new SyntaxToken(syntaxTree, kind, starts[index], text, getValue(index));
+    }
+}
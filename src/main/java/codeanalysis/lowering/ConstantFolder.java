@@ -0,0 +1,256 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.conversion.BoundConversionExpression;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.binary.BoundBinaryExpression;
+import codeanalysis.binding.expression.binary.BoundBinaryOperatorKind;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryOperatorKind;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.rewriter.BoundTreeRewriter;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/*
+    Evaluates at compile time everything whose operands are literals, with the same semantics as the evaluator.
+    A read-only variable initialized with a constant is replaced by that constant wherever it is read.
+    && and || evaluate both operands, so a literal operand only absorbs the other one when it has no side effects
+    and cannot fail.
+    Anything that would fail at runtime (a division by zero, int('a')) is left as it is, so it still fails there.
+ */
+public final class ConstantFolder extends BoundTreeRewriter {
+    private final Map<VariableSymbol, BoundLiteralExpression> constants;
+    private final Function<BoundVariableExpression, BoundLiteralExpression> reads;
+
+    private ConstantFolder(Map<VariableSymbol, BoundLiteralExpression> constants,
+                           Function<BoundVariableExpression, BoundLiteralExpression> reads) {
+        this.constants = constants;
+        this.reads = reads;
+    }
+
+    public static BoundStatement fold(BoundStatement statement) throws Exception {
+        return new ConstantFolder(new HashMap<>(), read -> null).rewriteStatement(statement);
+    }
+
+    /**
+     * Folds the statement with every read the function knows the value of replaced by that value.
+     */
+    public static BoundStatement fold(BoundStatement statement,
+                                      Function<BoundVariableExpression, BoundLiteralExpression> reads) throws Exception {
+        return new ConstantFolder(new HashMap<>(), reads).rewriteStatement(statement);
+    }
+
+    /**
+     * @return the value of the expression when it is known at compile time, null otherwise
+     */
+    public static BoundLiteralExpression fold(BoundExpression expression,
+                                              Function<BoundVariableExpression, BoundLiteralExpression> reads) throws Exception {
+        BoundExpression result = new ConstantFolder(new HashMap<>(), reads).rewriteExpression(expression);
+        return result instanceof BoundLiteralExpression l ? l : null;
+    }
+
+    /**
+     * @return the value of the expression when it is known at compile time, null otherwise
+     */
+    public static BoundLiteralExpression fold(BoundExpression expression,
+                                              Map<VariableSymbol, BoundLiteralExpression> constants) throws Exception {
+        BoundExpression result = new ConstantFolder(constants, read -> null).rewriteExpression(expression);
+        return result instanceof BoundLiteralExpression l ? l : null;
+    }
+
+    @Override
+    protected BoundStatement rewriteVariableDeclarationStatement(BoundVariableDeclarationStatement statement) throws Exception {
+        BoundStatement result = super.rewriteVariableDeclarationStatement(statement);
+        BoundVariableDeclarationStatement declaration = (BoundVariableDeclarationStatement) result;
+        if (declaration.getVariable().isReadOnly() && declaration.getInitializer() instanceof BoundLiteralExpression l)
+            constants.put(declaration.getVariable(), l);
+        return result;
+    }
+
+    @Override
+    protected BoundStatement rewriteConditionalJumpToStatement(BoundConditionalJumpToStatement statement) throws Exception {
+        BoundExpression condition = rewriteExpression(statement.getCondition());
+        if (condition instanceof BoundLiteralExpression l) {
+            if ((boolean) l.getValue() == statement.isJumpIfTrue())
+                return new BoundJumpToStatement(statement.getLabel());
+            return new BoundBlockStatement(List.of());
+        }
+        if (condition.equals(statement.getCondition()))
+            return statement;
+        return new BoundConditionalJumpToStatement(statement.getLabel(), condition, statement.isJumpIfTrue());
+    }
+
+    @Override
+    protected BoundExpression rewriteVariableExpression(BoundVariableExpression node) {
+        BoundLiteralExpression constant = reads.apply(node);
+        if (constant == null)
+            constant = constants.get(node.getVariable());
+        return constant == null ? node : constant;
+    }
+
+    @Override
+    protected BoundExpression rewriteUnaryExpression(BoundUnaryExpression node) throws Exception {
+        BoundExpression result = super.rewriteUnaryExpression(node);
+        if (!(result instanceof BoundUnaryExpression unary))
+            return result;
+        BoundExpression operand = unary.getRight();
+        BoundUnaryOperatorKind kind = unary.getOperator().getKind();
+        if (kind == BoundUnaryOperatorKind.LOGICAL_NEGATION && operand instanceof BoundUnaryExpression inner
+                && inner.getOperator().getKind() == BoundUnaryOperatorKind.LOGICAL_NEGATION)
+            return inner.getRight();
+        if (!(operand instanceof BoundLiteralExpression l))
+            return result;
+        Object value = l.getValue();
+        return new BoundLiteralExpression(switch (kind) {
+            case IDENTITY -> value;
+            case NEGATION -> -(int) value;
+            case LOGICAL_NEGATION -> !(boolean) value;
+            case ONES_COMPLEMENT -> value instanceof Boolean b ? (b ? ~1 : ~0) : ~(int) value;
+        });
+    }
+
+    @Override
+    protected BoundExpression rewriteBinaryExpression(BoundBinaryExpression node) throws Exception {
+        BoundExpression result = super.rewriteBinaryExpression(node);
+        if (!(result instanceof BoundBinaryExpression binary))
+            return result;
+        BoundExpression left = binary.getLeft();
+        BoundExpression right = binary.getRight();
+        BoundBinaryOperatorKind kind = binary.getOperator().getKind();
+        if (left instanceof BoundLiteralExpression l && right instanceof BoundLiteralExpression r) {
+            Object value = computeBinary(kind, l.getValue(), r.getValue());
+            return value == null ? result : new BoundLiteralExpression(value);
+        }
+        if (left.getType() != TypeSymbol.BOOLEAN)
+            return result;
+        boolean and = kind == BoundBinaryOperatorKind.LOGICAL_AND || kind == BoundBinaryOperatorKind.BITWISE_AND;
+        boolean or = kind == BoundBinaryOperatorKind.LOGICAL_OR || kind == BoundBinaryOperatorKind.BITWISE_OR;
+        if (!and && !or)
+            return result;
+        BoundExpression simplified = simplifyLogical(and, left, right);
+        if (simplified == null)
+            simplified = simplifyLogical(and, right, left);
+        return simplified == null ? result : simplified;
+    }
+
+    // true && x is x, false && x is false as long as dropping x changes nothing and hides no failure, and the reverse for ||
+    private static BoundExpression simplifyLogical(boolean and, BoundExpression constant, BoundExpression other) {
+        if (!(constant instanceof BoundLiteralExpression l))
+            return null;
+        if ((boolean) l.getValue() == and)
+            return other;
+        return isPure(other) ? constant : null;
+    }
+
+    /**
+     * @return whether evaluating the node itself, its operands aside, changes nothing and cannot fail.
+     * A division or a modulo can only be by a non-zero literal, and a conversion can only be to string, to any
+     * or to the type its operand already has.
+     */
+    public static boolean isPureOperation(BoundNode node) {
+        return switch (node.getKind()) {
+            case LITERAL_EXPRESSION, VARIABLE_EXPRESSION, UNARY_EXPRESSION -> true;
+            case BINARY_EXPRESSION -> {
+                var binary = (BoundBinaryExpression) node;
+                BoundBinaryOperatorKind kind = binary.getOperator().getKind();
+                yield kind != BoundBinaryOperatorKind.DIVISION && kind != BoundBinaryOperatorKind.MOD
+                        || binary.getRight() instanceof BoundLiteralExpression l && !l.getValue().equals(0);
+            }
+            case CONVERSION_EXPRESSION -> {
+                var conversion = (BoundConversionExpression) node;
+                TypeSymbol type = conversion.getType();
+                yield type == TypeSymbol.STRING || type == TypeSymbol.ANY || conversion.getExpression().getType() == type;
+            }
+            default -> false;
+        };
+    }
+
+    /**
+     * @return whether the whole expression can be dropped or evaluated at another time: nothing in it changes
+     * anything or can fail. Every pass asks this before removing or moving an expression.
+     */
+    public static boolean isPure(BoundNode node) {
+        if (!isPureOperation(node))
+            return false;
+        for (BoundNode child : node.getChildren()) {
+            if (!isPure(child))
+                return false;
+        }
+        return true;
+    }
+
+    private static Object computeBinary(BoundBinaryOperatorKind kind, Object left, Object right) {
+        if (left instanceof Integer a && right instanceof Integer b) {
+            return switch (kind) {
+                case ADDITION -> a + b;
+                case SUBTRACTION -> a - b;
+                case MULTIPLICATION -> a * b;
+                case DIVISION -> b == 0 ? null : a / b;
+                case MOD -> b == 0 ? null : a % b;
+                case BITWISE_AND -> a & b;
+                case BITWISE_OR -> a | b;
+                case BITWISE_XOR -> a ^ b;
+                case LOGICAL_OR -> a != 0 || b != 0 ? 1 : 0;
+                case LOGICAL_EQUALITY -> a.intValue() == b.intValue();
+                case LOGICAL_INEQUALITY -> a.intValue() != b.intValue();
+                case LESS_THAN -> a < b;
+                case LESS_EQUAL_THAN -> a <= b;
+                case GREATER_THAN -> a > b;
+                case GREATER_EQUAL_THAN -> a >= b;
+                default -> null;
+            };
+        }
+        if (left instanceof Boolean a && right instanceof Boolean b) {
+            return switch (kind) {
+                case LOGICAL_AND, BITWISE_AND -> a & b;
+                case LOGICAL_OR, BITWISE_OR -> a | b;
+                case BITWISE_XOR -> a ^ b;
+                case LOGICAL_EQUALITY -> a.booleanValue() == b.booleanValue();
+                case LOGICAL_INEQUALITY -> a.booleanValue() != b.booleanValue();
+                default -> null;
+            };
+        }
+        return switch (kind) {
+            case CONCATENATION -> left.toString() + right;
+            case LOGICAL_EQUALITY -> left.equals(right);
+            case LOGICAL_INEQUALITY -> !left.equals(right);
+            default -> null;
+        };
+    }
+
+    @Override
+    protected BoundExpression rewriteConversionExpression(BoundConversionExpression expression) throws Exception {
+        BoundExpression result = super.rewriteConversionExpression(expression);
+        if (!(result instanceof BoundConversionExpression conversion)
+                || !(conversion.getExpression() instanceof BoundLiteralExpression l))
+            return result;
+        Object value = l.getValue();
+        TypeSymbol type = conversion.getType();
+        if (type == TypeSymbol.STRING)
+            return new BoundLiteralExpression(value.toString());
+        if (type == TypeSymbol.BOOLEAN)
+            return new BoundLiteralExpression(value instanceof Boolean ? value : Boolean.parseBoolean(value.toString()));
+        if (type == TypeSymbol.INTEGER) {
+            if (value instanceof Integer)
+                return l;
+            try {
+                return new BoundLiteralExpression(Integer.parseInt(value.toString()));
+            } catch (NumberFormatException e) {
+                return result;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,408 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.BoundNodeKind;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.conversion.BoundConversionExpression;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.call.BoundCallExpression;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.rewriter.BoundTreeRewriter;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundExpressionStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundLabel;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.LocalVariableSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Replaces calls to small functions by a copy of their lowered body.
+    Functions that are part of a cycle of calls are never copied. The others are handled callees first,
+    so a callee already holds the calls inlined into it when it is copied, and its size counts them.
+    A copy gets its own locals in the frame of the caller, one for each parameter and local of the callee,
+    and its own labels; each return becomes an assignment of the result and a jump past the copy.
+    The copy runs before the statement holding the call, so the call is only taken out when nothing its statement
+    evaluates first could tell: literals and reads of locals, which the callee cannot touch.
+ */
+public final class Inliner {
+    public static final String PASS = "inlined calls";
+    public static final int DEFAULT_BUDGET = 40;
+    // a caller stops receiving copies once it has grown by this many budgets
+    private static final int CALLER_GROWTH = 16;
+
+    /**
+     * What happened to the calls from one function to another, for one reason.
+     */
+    public record Decision(FunctionSymbol caller, FunctionSymbol callee, boolean inlined, String reason, int calls) {
+        @Override
+        public String toString() {
+            return caller.getName() + " -> " + callee.getName() + ": " + (inlined ? "inlined" : "kept")
+                    + (calls > 1 ? " x" + calls : "") + ", " + reason;
+        }
+    }
+
+    private final int budget;
+    private final Map<FunctionSymbol, BoundBlockStatement> bodies = new HashMap<>();
+    private final Set<FunctionSymbol> recursive = new HashSet<>();
+    private final Map<Decision, Integer> decisions = new LinkedHashMap<>();
+
+    /**
+     * @param budget the largest callee, in bound nodes, that gets copied into its callers
+     */
+    public Inliner(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Inlines into every body of the map, replacing it.
+     *
+     * @param previous the program of the previous submissions, whose functions can be called but not changed
+     * @param script   the function holding the statements of a script, null when there is none
+     * @return what was inlined and why the other calls were kept
+     */
+    public List<Decision> inline(Map<FunctionSymbol, BoundBlockStatement> functions, BoundProgram previous,
+                                 FunctionSymbol script) throws Exception {
+        for (BoundProgram program = previous; program != null; program = program.getPrevious()) {
+            for (var entry : program.getFunctionsBodies().entrySet())
+                bodies.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        bodies.putAll(functions);
+        for (FunctionSymbol function : calleesFirst()) {
+            if (functions.containsKey(function)) {
+                BoundBlockStatement body = inlineInto(function, bodies.get(function), function == script);
+                bodies.put(function, body);
+                functions.put(function, body);
+            }
+        }
+        List<Decision> result = new ArrayList<>();
+        for (var entry : decisions.entrySet()) {
+            Decision decision = entry.getKey();
+            result.add(new Decision(decision.caller(), decision.callee(), decision.inlined(), decision.reason(),
+                    entry.getValue()));
+        }
+        return result;
+    }
+
+    /*
+        Tarjan's strongly connected components come out callees first.
+        A component with more than one function, or one calling itself, is recursive.
+     */
+    private List<FunctionSymbol> calleesFirst() {
+        List<FunctionSymbol> order = new ArrayList<>();
+        Map<FunctionSymbol, Integer> indexes = new HashMap<>();
+        Map<FunctionSymbol, Integer> lowLinks = new HashMap<>();
+        Deque<FunctionSymbol> stack = new ArrayDeque<>();
+        Set<FunctionSymbol> onStack = new HashSet<>();
+        for (FunctionSymbol function : bodies.keySet()) {
+            if (!indexes.containsKey(function))
+                connect(function, indexes, lowLinks, stack, onStack, order);
+        }
+        return order;
+    }
+
+    private void connect(FunctionSymbol function, Map<FunctionSymbol, Integer> indexes,
+                         Map<FunctionSymbol, Integer> lowLinks, Deque<FunctionSymbol> stack,
+                         Set<FunctionSymbol> onStack, List<FunctionSymbol> order) {
+        indexes.put(function, indexes.size());
+        lowLinks.put(function, indexes.get(function));
+        stack.push(function);
+        onStack.add(function);
+        Set<FunctionSymbol> callees = new HashSet<>();
+        collectCallees(bodies.get(function), callees);
+        for (FunctionSymbol callee : callees) {
+            if (!bodies.containsKey(callee))
+                continue;
+            if (!indexes.containsKey(callee)) {
+                connect(callee, indexes, lowLinks, stack, onStack, order);
+                lowLinks.put(function, Math.min(lowLinks.get(function), lowLinks.get(callee)));
+            } else if (onStack.contains(callee)) {
+                lowLinks.put(function, Math.min(lowLinks.get(function), indexes.get(callee)));
+            }
+        }
+        if (!lowLinks.get(function).equals(indexes.get(function)))
+            return;
+        List<FunctionSymbol> component = new ArrayList<>();
+        FunctionSymbol member;
+        do {
+            member = stack.pop();
+            onStack.remove(member);
+            component.add(member);
+        } while (member != function);
+        if (component.size() > 1 || callees.contains(function))
+            recursive.addAll(component);
+        order.addAll(component);
+    }
+
+    private static void collectCallees(BoundNode node, Set<FunctionSymbol> callees) {
+        if (node instanceof BoundCallExpression call)
+            callees.add(call.getFunction());
+        for (BoundNode child : node.getChildren())
+            collectCallees(child, callees);
+    }
+
+    private BoundBlockStatement inlineInto(FunctionSymbol caller, BoundBlockStatement body, boolean script) throws Exception {
+        Site site = new Site(caller, Lowerer.getFrameSize(caller, body), script);
+        List<BoundStatement> result = new ArrayList<>();
+        for (BoundStatement statement : body.getStatements()) {
+            BoundStatement current = statement;
+            BoundCallExpression call;
+            while (current != null && (call = site.find(current)) != null) {
+                BoundExpression value = site.copy(call, bodies.get(call.getFunction()), result);
+                // a call made for its effects alone leaves nothing behind
+                if (current instanceof BoundExpressionStatement e && e.getExpression() == call)
+                    current = null;
+                else
+                    current = replace(current, call, value);
+            }
+            if (current != null)
+                result.add(current);
+        }
+        return new BoundBlockStatement(List.copyOf(result));
+    }
+
+    private static BoundStatement replace(BoundStatement statement, BoundCallExpression call,
+                                          BoundExpression value) throws Exception {
+        return new BoundTreeRewriter() {
+            @Override
+            protected BoundExpression rewriteCallExpression(BoundCallExpression expression) throws Exception {
+                return expression == call ? value : super.rewriteCallExpression(expression);
+            }
+        }.rewriteStatement(statement);
+    }
+
+    private static int size(BoundNode node) {
+        int size = 1;
+        for (BoundNode child : node.getChildren())
+            size += size(child);
+        return size;
+    }
+
+    private void decide(FunctionSymbol caller, FunctionSymbol callee, boolean inlined, String reason) {
+        decisions.merge(new Decision(caller, callee, inlined, reason, 0), 1, Integer::sum);
+    }
+
+    // the inlining state of one caller
+    private final class Site {
+        private final FunctionSymbol caller;
+        private final boolean script;
+        private final Set<BoundCallExpression> decided = Collections.newSetFromMap(new IdentityHashMap<>());
+        private int nextIndex;
+        private int copies;
+        private int growth;
+        private boolean stable;
+
+        Site(FunctionSymbol caller, int frameSize, boolean script) {
+            this.caller = caller;
+            this.nextIndex = frameSize;
+            this.script = script;
+        }
+
+        /**
+         * @return the first call of the statement, in evaluation order, that gets inlined
+         */
+        BoundCallExpression find(BoundStatement statement) {
+            stable = true;
+            for (BoundNode child : statement.getChildren()) {
+                BoundCallExpression call = find(child, statement);
+                if (call != null)
+                    return call;
+            }
+            return null;
+        }
+
+        private BoundCallExpression find(BoundNode node, BoundStatement statement) {
+            boolean stableBefore = stable;
+            for (BoundNode child : node.getChildren()) {
+                BoundCallExpression call = find(child, statement);
+                if (call != null)
+                    return call;
+            }
+            if (node instanceof BoundCallExpression call && decided.add(call) && accept(call, statement, stableBefore))
+                return call;
+            if (!isStable(node))
+                stable = false;
+            return null;
+        }
+
+        private boolean accept(BoundCallExpression call, BoundStatement statement, boolean stableBefore) {
+            FunctionSymbol callee = call.getFunction();
+            BoundBlockStatement body = bodies.get(callee);
+            if (body == null)
+                return false;
+            String reason = null;
+            int size = size(body);
+            if (recursive.contains(callee))
+                reason = "recursive";
+            else if (size > budget)
+                reason = size + " nodes, over the budget of " + budget;
+            else if (growth + size > CALLER_GROWTH * budget)
+                reason = "the caller already grew by " + growth + " nodes";
+            else if (script && (callee.getType() == TypeSymbol.VOID || !setsResult(statement)))
+                reason = "the statement would no longer be the last value of the script";
+            else if (!stableBefore || writesVariables(call))
+                reason = "the statement depends on state before the call";
+            if (reason != null) {
+                decide(caller, callee, false, reason);
+                return false;
+            }
+            decide(caller, callee, true, size + " nodes");
+            growth += size;
+            return true;
+        }
+
+        /**
+         * Appends the copy of the callee to the statements and returns what replaces the call.
+         */
+        BoundExpression copy(BoundCallExpression call, BoundBlockStatement body, List<BoundStatement> statements) throws Exception {
+            FunctionSymbol callee = call.getFunction();
+            String prefix = callee.getName() + "." + (++copies) + ".";
+            Copier copier = new Copier(prefix);
+            for (int i = 0; i < callee.getParameters().size(); i++) {
+                VariableSymbol local = copier.rename(callee.getParameters().get(i));
+                // an argument reaches an any parameter unconverted, the local has to hold it converted
+                BoundExpression argument = call.getArgs().get(i);
+                if (argument.getType() != local.getType())
+                    argument = new BoundConversionExpression(local.getType(), argument);
+                statements.add(new BoundVariableDeclarationStatement(local, argument));
+            }
+            VariableSymbol result = null;
+            if (callee.getType() != TypeSymbol.VOID) {
+                result = newLocal(callee.getName(), callee.getType());
+                statements.add(new BoundVariableDeclarationStatement(result, defaultValue(callee.getType())));
+            }
+            BoundLabel end = new BoundLabel(prefix + "end");
+            List<BoundStatement> copied = new ArrayList<>();
+            for (BoundStatement statement : body.getStatements()) {
+                if (statement instanceof BoundReturnStatement r) {
+                    if (r.getExpression() != null && result != null)
+                        copied.add(new BoundExpressionStatement(
+                                new BoundAssignmentExpression(result, copier.rewriteExpression(r.getExpression()))));
+                    copied.add(new BoundJumpToStatement(end));
+                } else {
+                    copied.add(copier.copy(statement));
+                }
+            }
+            if (!copied.isEmpty() && copied.get(copied.size() - 1) instanceof BoundJumpToStatement j && j.getLabel() == end)
+                copied.remove(copied.size() - 1);
+            statements.addAll(copied);
+            statements.add(new BoundLabelDeclarationStatement(end));
+            if (result == null)
+                return new BoundLiteralExpression(0);
+            return new BoundVariableExpression(result);
+        }
+
+        private VariableSymbol newLocal(String name, TypeSymbol type) {
+            return new LocalVariableSymbol(name, type, false, nextIndex++);
+        }
+
+        // copies statements and expressions of the callee with new nodes for every variable and label
+        private final class Copier extends BoundTreeRewriter {
+            private final String prefix;
+            private final Map<VariableSymbol, VariableSymbol> locals = new HashMap<>();
+            private final Map<BoundLabel, BoundLabel> labels = new HashMap<>();
+
+            Copier(String prefix) {
+                this.prefix = prefix;
+            }
+
+            VariableSymbol rename(VariableSymbol variable) {
+                if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE)
+                    return variable;
+                return locals.computeIfAbsent(variable, v -> newLocal(v.getName(), v.getType()));
+            }
+
+            private BoundLabel rename(BoundLabel label) {
+                return labels.computeIfAbsent(label, l -> new BoundLabel(prefix + l.name()));
+            }
+
+            BoundStatement copy(BoundStatement statement) throws Exception {
+                return switch (statement.getKind()) {
+                    case VARIABLE_DECLARATION_STATEMENT -> {
+                        var declaration = (BoundVariableDeclarationStatement) statement;
+                        yield new BoundVariableDeclarationStatement(rename(declaration.getVariable()),
+                                rewriteExpression(declaration.getInitializer()));
+                    }
+                    case EXPRESSION_STATEMENT -> new BoundExpressionStatement(
+                            rewriteExpression(((BoundExpressionStatement) statement).getExpression()));
+                    case LABEL_DECLARATION_STATEMENT ->
+                            new BoundLabelDeclarationStatement(rename(((BoundLabelDeclarationStatement) statement).getLabel()));
+                    case JUMP_TO_STATEMENT -> new BoundJumpToStatement(rename(((BoundJumpToStatement) statement).getLabel()));
+                    case CONDITIONAL_JUMP_TO_STATEMENT -> {
+                        var jump = (BoundConditionalJumpToStatement) statement;
+                        yield new BoundConditionalJumpToStatement(rename(jump.getLabel()),
+                                rewriteExpression(jump.getCondition()), jump.isJumpIfTrue());
+                    }
+                    default -> throw new RuntimeException("Unexpected node " + statement.getKind());
+                };
+            }
+
+            @Override
+            protected BoundExpression rewriteVariableExpression(BoundVariableExpression node) {
+                return new BoundVariableExpression(rename(node.getVariable()));
+            }
+
+            @Override
+            protected BoundExpression rewriteAssignmentExpression(BoundAssignmentExpression node) throws Exception {
+                return new BoundAssignmentExpression(rename(node.getVariable()), rewriteExpression(node.getBoundExpression()));
+            }
+        }
+    }
+
+    // the interpreters take the value of a script from its last declaration or expression statement
+    private static boolean setsResult(BoundStatement statement) {
+        return statement.getKind() == BoundNodeKind.VARIABLE_DECLARATION_STATEMENT
+                || statement.getKind() == BoundNodeKind.EXPRESSION_STATEMENT;
+    }
+
+    // the arguments now run before the rest of the statement, so they must not change what it reads
+    private static boolean writesVariables(BoundNode node) {
+        BoundNodeKind kind = node.getKind();
+        if (kind == BoundNodeKind.ASSIGNMENT_EXPRESSION || kind == BoundNodeKind.COMPOUND_ASSIGNMENT_EXPRESSION
+                || kind == BoundNodeKind.PREFIX_EXPRESSION || kind == BoundNodeKind.SUFFIX_EXPRESSION)
+            return true;
+        for (BoundNode child : node.getChildren()) {
+            if (writesVariables(child))
+                return true;
+        }
+        return false;
+    }
+
+    // evaluating it earlier or later gives the same value, cannot fail and changes nothing
+    private static boolean isStable(BoundNode node) {
+        if (node instanceof BoundVariableExpression read)
+            return read.getVariable().getKind() != SymbolKind.GLOBAL_VARIABLE;
+        return ConstantFolder.isPureOperation(node);
+    }
+
+    private static BoundExpression defaultValue(TypeSymbol type) {
+        if (type == TypeSymbol.INTEGER)
+            return new BoundLiteralExpression(0);
+        if (type == TypeSymbol.BOOLEAN)
+            return new BoundLiteralExpression(false);
+        if (type == TypeSymbol.STRING)
+            return new BoundLiteralExpression("");
+        return new BoundConversionExpression(TypeSymbol.ANY, new BoundLiteralExpression(0));
+    }
+}
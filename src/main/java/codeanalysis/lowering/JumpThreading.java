@@ -0,0 +1,265 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundLabel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Cleans up the jumps and labels the lowerer leaves behind, on the flat statements of a body:
+    - a jump to a label that only jumps again goes straight to the final label
+    - a conditional jump over a single goto becomes the inverted jump to where the goto went
+    - jumps to the very next statement, labels nothing jumps to and statements no jump reaches are removed
+    - a block only reached by one goto, and not fallen into, replaces that goto
+    The statements that run are the same ones, so the last value of a script does not change.
+ */
+public final class JumpThreading {
+    public static final String THREADED = "threaded jumps";
+    public static final String REMOVED = "removed jumps and labels";
+
+    private List<BoundStatement> statements;
+    private int threaded;
+
+    private JumpThreading(List<BoundStatement> statements) {
+        this.statements = new ArrayList<>(statements);
+    }
+
+    public static BoundBlockStatement clean(BoundBlockStatement body, PassStatistics statistics) {
+        JumpThreading threading = new JumpThreading(body.getStatements());
+        boolean changed;
+        do {
+            changed = threading.thread();
+            changed |= threading.invertJumpsOverJumps();
+            changed |= threading.removeUselessJumps();
+            changed |= threading.removeUnreachable();
+            changed |= threading.mergeBlocks();
+        } while (changed);
+        statistics.add(THREADED, threading.threaded);
+        statistics.add(REMOVED, body.getStatements().size() - threading.statements.size());
+        if (threading.statements.size() == body.getStatements().size() && threading.threaded == 0)
+            return body;
+        return new BoundBlockStatement(List.copyOf(threading.statements));
+    }
+
+    private static boolean isTerminator(BoundStatement statement) {
+        return statement instanceof BoundJumpToStatement || statement instanceof BoundReturnStatement;
+    }
+
+    private static BoundLabel targetOf(BoundStatement statement) {
+        if (statement instanceof BoundJumpToStatement jump)
+            return jump.getLabel();
+        if (statement instanceof BoundConditionalJumpToStatement jump)
+            return jump.getLabel();
+        return null;
+    }
+
+    private static BoundStatement retarget(BoundStatement statement, BoundLabel label) {
+        if (statement instanceof BoundConditionalJumpToStatement jump)
+            return new BoundConditionalJumpToStatement(label, jump.getCondition(), jump.isJumpIfTrue());
+        return new BoundJumpToStatement(label);
+    }
+
+    private Map<BoundLabel, Integer> labelPositions() {
+        Map<BoundLabel, Integer> positions = new HashMap<>();
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i) instanceof BoundLabelDeclarationStatement label)
+                positions.put(label.getLabel(), i);
+        }
+        return positions;
+    }
+
+    // whether the label is declared among the labels that start at the position
+    private boolean labelsAt(int position, BoundLabel label) {
+        for (int i = position; i < statements.size(); i++) {
+            if (!(statements.get(i) instanceof BoundLabelDeclarationStatement declaration))
+                return false;
+            if (declaration.getLabel().equals(label))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+        Labels declared next to each other are the same place, the first one stands for all of them,
+        and a place holding a goto is the place the goto leads to.
+     */
+    private boolean thread() {
+        Map<BoundLabel, Integer> positions = labelPositions();
+        Map<BoundLabel, BoundLabel> finals = new HashMap<>();
+        boolean changed = false;
+        for (int i = 0; i < statements.size(); i++) {
+            BoundStatement statement = statements.get(i);
+            BoundLabel target = targetOf(statement);
+            if (target == null)
+                continue;
+            BoundLabel destination = resolve(target, positions, finals);
+            if (!destination.equals(target)) {
+                statements.set(i, retarget(statement, destination));
+                threaded++;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private BoundLabel resolve(BoundLabel label, Map<BoundLabel, Integer> positions, Map<BoundLabel, BoundLabel> finals) {
+        BoundLabel known = finals.get(label);
+        if (known != null)
+            return known;
+        List<BoundLabel> chain = new ArrayList<>();
+        Set<BoundLabel> seen = new HashSet<>();
+        BoundLabel current = label;
+        BoundLabel result = null;
+        while (result == null) {
+            if (!seen.add(current) || !positions.containsKey(current)) {
+                // a goto cycle never leaves, any label of it will do
+                result = current;
+                break;
+            }
+            chain.add(current);
+            int first = positions.get(current);
+            while (first > 0 && statements.get(first - 1) instanceof BoundLabelDeclarationStatement)
+                first--;
+            int next = first;
+            while (next < statements.size() && statements.get(next) instanceof BoundLabelDeclarationStatement)
+                next++;
+            BoundLabel place = ((BoundLabelDeclarationStatement) statements.get(first)).getLabel();
+            if (next < statements.size() && statements.get(next) instanceof BoundJumpToStatement jump)
+                current = finals.getOrDefault(jump.getLabel(), jump.getLabel());
+            else
+                result = place;
+        }
+        for (BoundLabel link : chain)
+            finals.put(link, result);
+        return result;
+    }
+
+    /*
+        if <condition> goto then            if !<condition> goto else
+        goto else                   ----->  then:
+        then:
+     */
+    private boolean invertJumpsOverJumps() {
+        boolean changed = false;
+        List<BoundStatement> result = new ArrayList<>(statements.size());
+        for (int i = 0; i < statements.size(); i++) {
+            BoundStatement statement = statements.get(i);
+            if (statement instanceof BoundConditionalJumpToStatement conditional && i + 2 < statements.size()
+                    && statements.get(i + 1) instanceof BoundJumpToStatement jump
+                    && labelsAt(i + 2, conditional.getLabel())) {
+                result.add(new BoundConditionalJumpToStatement(jump.getLabel(), conditional.getCondition(),
+                        !conditional.isJumpIfTrue()));
+                i++;
+                changed = true;
+            } else {
+                result.add(statement);
+            }
+        }
+        statements = result;
+        return changed;
+    }
+
+    // a jump to the next statement does nothing, a conditional one only when its condition does nothing either
+    private boolean removeUselessJumps() {
+        boolean changed = false;
+        List<BoundStatement> result = new ArrayList<>(statements.size());
+        for (int i = 0; i < statements.size(); i++) {
+            BoundStatement statement = statements.get(i);
+            BoundLabel target = targetOf(statement);
+            boolean useless = target != null && labelsAt(i + 1, target);
+            if (useless && statement instanceof BoundConditionalJumpToStatement conditional)
+                useless = ConstantFolder.isPure(conditional.getCondition());
+            if (useless)
+                changed = true;
+            else
+                result.add(statement);
+        }
+        statements = result;
+        return changed;
+    }
+
+    // after a goto or a return, nothing runs until a label something jumps to
+    private boolean removeUnreachable() {
+        Set<BoundLabel> referenced = new HashSet<>();
+        for (BoundStatement statement : statements) {
+            BoundLabel target = targetOf(statement);
+            if (target != null)
+                referenced.add(target);
+        }
+        boolean changed = false;
+        boolean reachable = true;
+        List<BoundStatement> result = new ArrayList<>(statements.size());
+        for (BoundStatement statement : statements) {
+            if (statement instanceof BoundLabelDeclarationStatement label) {
+                if (!referenced.contains(label.getLabel())) {
+                    changed = true;
+                    continue;
+                }
+                reachable = true;
+            }
+            if (reachable)
+                result.add(statement);
+            else
+                changed = true;
+            if (isTerminator(statement))
+                reachable = false;
+        }
+        statements = result;
+        return changed;
+    }
+
+    /*
+        goto next                           <block>
+        ...                                 ...
+        <terminator>            ----->      <terminator>
+        next:
+        <block>
+        <terminator>
+        The block ends with its own terminator, so moving it next to the goto changes no fall through.
+     */
+    private boolean mergeBlocks() {
+        Map<BoundLabel, Integer> references = new HashMap<>();
+        for (BoundStatement statement : statements) {
+            BoundLabel target = targetOf(statement);
+            if (target != null)
+                references.merge(target, 1, Integer::sum);
+        }
+        Map<BoundLabel, Integer> positions = labelPositions();
+        for (int i = 0; i < statements.size(); i++) {
+            if (!(statements.get(i) instanceof BoundJumpToStatement jump) || references.get(jump.getLabel()) != 1
+                    || !positions.containsKey(jump.getLabel()))
+                continue;
+            int start = positions.get(jump.getLabel());
+            if (start == 0 || !isTerminator(statements.get(start - 1)))
+                continue;
+            int end = start + 1;
+            while (end < statements.size() && !isTerminator(statements.get(end))
+                    && !(statements.get(end) instanceof BoundLabelDeclarationStatement))
+                end++;
+            if (end == statements.size() || !isTerminator(statements.get(end)) || (i >= start && i <= end))
+                continue;
+            List<BoundStatement> block = new ArrayList<>(statements.subList(start + 1, end + 1));
+            List<BoundStatement> result = new ArrayList<>(statements.size());
+            for (int j = 0; j < statements.size(); j++) {
+                if (j == i)
+                    result.addAll(block);
+                else if (j < start || j > end)
+                    result.add(statements.get(j));
+            }
+            statements = result;
+            // positions moved, the next round picks up the other blocks
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,246 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.BoundNodeKind;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.assignment.BoundCompoundAssignmentExpression;
+import codeanalysis.binding.expression.call.BoundCallExpression;
+import codeanalysis.binding.expression.sufixpreffix.BoundPrefixExpression;
+import codeanalysis.binding.expression.sufixpreffix.BoundSuffixExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.rewriter.BoundTreeRewriter;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.BasicBlockEdge;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.controlflow.NaturalLoop;
+import codeanalysis.symbol.BuildInFunctions;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.variable.LocalVariableSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Loop-invariant code motion over a lowered body.
+    An expression keeps its value through a loop when nothing in the loop assigns the variables it reads,
+    and, for a global, when the loop calls no function of the program, since any of them may assign it.
+    Such an expression is computed once into a read-only local declared in the preheader, right where the only entry
+    into the loop goes in, as long as computing it cannot fail and changes nothing: the preheader runs even when
+    the loop body never does. Calls are never moved, builtins included.
+    Outer loops go first, so an expression leaves all the loops it is invariant in at once.
+ */
+public final class LoopInvariantCodeMotion {
+    public static final String PASS = "loop-invariant code motion";
+
+    private final List<BoundStatement> statements;
+    private final Map<BoundStatement, Integer> positions = new IdentityHashMap<>();
+    private final Map<BoundNode, Integer> occurrences = new IdentityHashMap<>();
+    private final Map<BoundStatement, List<BoundVariableDeclarationStatement>> preheaders = new IdentityHashMap<>();
+    private final Map<BoundExpression, VariableSymbol> hoisted = new IdentityHashMap<>();
+    private int nextIndex;
+
+    private LoopInvariantCodeMotion(FunctionSymbol function, BoundBlockStatement body) {
+        this.statements = body.getStatements();
+        this.nextIndex = Lowerer.getFrameSize(function, body);
+        for (int i = 0; i < statements.size(); i++) {
+            positions.put(statements.get(i), i);
+            count(statements.get(i));
+        }
+    }
+
+    public static BoundBlockStatement hoist(FunctionSymbol function, BoundBlockStatement body,
+                                            PassStatistics statistics) throws Exception {
+        ControlFlowGraph graph = ControlFlowGraph.create(body);
+        List<NaturalLoop> loops = graph.getLoops();
+        if (loops.isEmpty())
+            return body;
+        LoopInvariantCodeMotion motion = new LoopInvariantCodeMotion(function, body);
+        for (NaturalLoop loop : loops)
+            motion.hoist(loop);
+        statistics.add(PASS, motion.hoisted.size());
+        return motion.rewrite(body);
+    }
+
+    private void count(BoundNode node) {
+        occurrences.merge(node, 1, Integer::sum);
+        for (BoundNode child : node.getChildren())
+            count(child);
+    }
+
+    private void hoist(NaturalLoop loop) {
+        BoundStatement preheader = findPreheader(loop);
+        if (preheader == null)
+            return;
+        List<BoundStatement> body = new ArrayList<>();
+        for (BasicBlock block : loop.getBlocks())
+            body.addAll(block.getStatements());
+        body.sort(Comparator.comparingInt(positions::get));
+
+        Set<VariableSymbol> assigned = new HashSet<>();
+        boolean callsFunctions = false;
+        for (BoundStatement statement : body)
+            callsFunctions |= collectWrites(statement, assigned);
+        Invariance invariance = new Invariance(assigned, callsFunctions);
+
+        List<BoundExpression> found = new ArrayList<>();
+        for (BoundStatement statement : body)
+            invariance.find(statement, found);
+        for (BoundExpression expression : found) {
+            VariableSymbol local = new LocalVariableSymbol("invariant" + nextIndex, expression.getType(), true, nextIndex++);
+            hoisted.put(expression, local);
+            preheaders.computeIfAbsent(preheader, s -> new ArrayList<>())
+                    .add(new BoundVariableDeclarationStatement(local, expression));
+        }
+    }
+
+    /*
+        The statement the hoisted declarations go before, null when the loop has no place for them.
+        With a single entry, a block that only leads into the loop takes them before its jump,
+        and a header entered by falling into its label takes them before the label, where the back edges jump.
+     */
+    private BoundStatement findPreheader(NaturalLoop loop) {
+        List<BasicBlockEdge> entries = loop.getEntries();
+        BasicBlock header = loop.getHeader();
+        if (entries.size() != 1 || header.isEnd() || header.getStatements().isEmpty())
+            return null;
+        BasicBlock from = entries.get(0).getFrom();
+        BoundStatement first = header.getStatements().get(0);
+        BoundStatement last = from.isStart() ? null : from.getStatements().get(from.getStatements().size() - 1);
+        if (!(last instanceof BoundJumpToStatement) && !(last instanceof BoundConditionalJumpToStatement))
+            return first;
+        if (from.getOutgoing().size() == 1)
+            return last;
+        if (first instanceof BoundLabelDeclarationStatement label && positions.get(last) + 1 == positions.get(first)
+                && last instanceof BoundConditionalJumpToStatement jump && !jump.getLabel().equals(label.getLabel()))
+            return first;
+        return null;
+    }
+
+    // collects the variables the statement assigns and tells whether it calls a function of the program
+    private static boolean collectWrites(BoundNode node, Set<VariableSymbol> assigned) {
+        boolean calls = false;
+        if (node instanceof BoundVariableDeclarationStatement declaration)
+            assigned.add(declaration.getVariable());
+        else if (node instanceof BoundAssignmentExpression assignment)
+            assigned.add(assignment.getVariable());
+        else if (node instanceof BoundCompoundAssignmentExpression assignment)
+            assigned.add(assignment.getVariable());
+        else if (node instanceof BoundPrefixExpression prefix)
+            assigned.add(prefix.getRight());
+        else if (node instanceof BoundSuffixExpression suffix)
+            assigned.add(suffix.getLeft());
+        else if (node instanceof BoundCallExpression call)
+            calls = !BuildInFunctions.getAll().contains(call.getFunction());
+        for (BoundNode child : node.getChildren())
+            calls |= collectWrites(child, assigned);
+        return calls;
+    }
+
+    private BoundBlockStatement rewrite(BoundBlockStatement body) throws Exception {
+        if (hoisted.isEmpty())
+            return body;
+        List<BoundStatement> result = new ArrayList<>(statements.size() + hoisted.size());
+        for (BoundStatement statement : statements) {
+            for (BoundVariableDeclarationStatement declaration : preheaders.getOrDefault(statement, List.of())) {
+                BoundExpression initializer = new Replacer(declaration.getInitializer())
+                        .rewriteExpression(declaration.getInitializer());
+                result.add(new BoundVariableDeclarationStatement(declaration.getVariable(), initializer));
+            }
+            result.add(new Replacer(null).rewriteStatement(statement));
+        }
+        return new BoundBlockStatement(List.copyOf(result));
+    }
+
+    // replaces hoisted expressions by a read of their local, except for the one being declared
+    private final class Replacer extends BoundTreeRewriter {
+        private final BoundExpression declared;
+
+        Replacer(BoundExpression declared) {
+            this.declared = declared;
+        }
+
+        @Override
+        public BoundExpression rewriteExpression(BoundExpression expression) throws Exception {
+            VariableSymbol local = expression == declared ? null : hoisted.get(expression);
+            if (local != null)
+                return new BoundVariableExpression(local);
+            return super.rewriteExpression(expression);
+        }
+    }
+
+    private final class Invariance {
+        private final Set<VariableSymbol> assigned;
+        private final boolean callsFunctions;
+
+        Invariance(Set<VariableSymbol> assigned, boolean callsFunctions) {
+            this.assigned = assigned;
+            this.callsFunctions = callsFunctions;
+        }
+
+        /**
+         * Adds to found the largest invariant expressions under the node.
+         *
+         * @return whether the node itself keeps its value through the loop
+         */
+        boolean find(BoundNode node, List<BoundExpression> found) {
+            if (hoisted.containsKey(node))
+                return true;
+            boolean childrenInvariant = true;
+            List<BoundNode> invariantChildren = new ArrayList<>();
+            for (BoundNode child : node.getChildren()) {
+                if (find(child, found))
+                    invariantChildren.add(child);
+                else
+                    childrenInvariant = false;
+            }
+            if (childrenInvariant && isInvariant(node))
+                return true;
+            for (BoundNode child : invariantChildren) {
+                if (isWorthHoisting(child))
+                    found.add((BoundExpression) child);
+            }
+            return false;
+        }
+
+        private boolean isInvariant(BoundNode node) {
+            if (node instanceof BoundVariableExpression read) {
+                VariableSymbol variable = read.getVariable();
+                return !assigned.contains(variable)
+                        && !(callsFunctions && variable.getKind() == SymbolKind.GLOBAL_VARIABLE);
+            }
+            return ConstantFolder.isPureOperation(node);
+        }
+
+        // an operation on at least one variable, seen only once in the body and not already out of an outer loop
+        private boolean isWorthHoisting(BoundNode node) {
+            BoundNodeKind kind = node.getKind();
+            return !hoisted.containsKey(node) && (kind == BoundNodeKind.BINARY_EXPRESSION || kind == BoundNodeKind.UNARY_EXPRESSION
+                    || kind == BoundNodeKind.CONVERSION_EXPRESSION)
+                    && occurrences.get(node) == 1 && readsVariable(node);
+        }
+
+        private static boolean readsVariable(BoundNode node) {
+            if (node.getKind() == BoundNodeKind.VARIABLE_EXPRESSION)
+                return true;
+            for (BoundNode child : node.getChildren()) {
+                if (readsVariable(child))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
 import codeanalysis.binding.expression.assignment.BoundCompoundAssignmentExpression;
 import codeanalysis.binding.expression.binary.BoundBinaryExpression;
 import codeanalysis.binding.expression.binary.BoundBinaryOperator;
+import codeanalysis.binding.expression.call.BoundCallExpression;
 import codeanalysis.binding.expression.literal.BoundLiteralExpression;
 import codeanalysis.binding.expression.sufixpreffix.BoundPrefixExpression;
 import codeanalysis.binding.expression.sufixpreffix.BoundPrefixSuffixOperatorKind;
@@ -26,6 +27,7 @@ import codeanalysis.binding.statement.loop.BoundForConditionClause;
 import codeanalysis.binding.statement.loop.BoundForStatement;
 import codeanalysis.binding.statement.loop.BoundWhileStatement;
 import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.SymbolKind;
 import codeanalysis.symbol.TypeSymbol;
 import codeanalysis.syntax.SyntaxKind;
 
@@ -44,10 +46,10 @@ public final class Lowerer extends BoundTreeRewriter {
     public static BoundBlockStatement lower(FunctionSymbol function, BoundStatement statement) throws Exception {
         Lowerer lowerer = new Lowerer();
         BoundStatement result = lowerer.rewriteStatement(statement);
-        return flatten(function, result);
+        return flatten(function, ConstantFolder.fold(result));
     }
 
-    private static BoundBlockStatement flatten(FunctionSymbol function, BoundStatement statement) {
+    static BoundBlockStatement flatten(FunctionSymbol function, BoundStatement statement) {
         List<BoundStatement> statements = new ArrayList<>();
         Stack<BoundStatement> stack = new Stack<>();
         stack.push(statement);
@@ -69,6 +71,16 @@ public final class Lowerer extends BoundTreeRewriter {
         return new BoundBlockStatement(List.copyOf(statements));
     }
 
+    public static int getFrameSize(FunctionSymbol function, BoundBlockStatement body) {
+        int size = function.getParameters().size();
+        for (BoundStatement statement : body.getStatements()) {
+            if (statement instanceof BoundVariableDeclarationStatement d
+                    && d.getVariable().getKind() == SymbolKind.LOCAL_VARIABLE)
+                size = Math.max(size, d.getVariable().getIndex() + 1);
+        }
+        return size;
+    }
+
     private static boolean canFallThrough(BoundStatement statement) {
         return statement.getKind() != BoundNodeKind.RETURN_STATEMENT &&
                 statement.getKind() != BoundNodeKind.JUMP_TO_STATEMENT;
@@ -202,32 +214,55 @@ public final class Lowerer extends BoundTreeRewriter {
                 }
              }
              ----->
-             continue:
-             jumpTo check
+             jumpToFalse <condition> end
              body:
              <loop>
-             check:
-             jumpToTrue <condition> continue:
+             continue:
+             jumpToTrue <condition> body
              end:
+
+             The loop is rotated: the guard is only taken once, and each iteration ends with a single
+             conditional jump back, which continue reaches by falling through.
          */
-        BoundLabel continueLabel = statement.getContinueLabel();
-        BoundLabel checkLabel = genLabel();
         BoundLabel bodyLabel = genLabel();
         BoundLabel endLabel = statement.getBreakLabel();
-        BoundJumpToStatement jumpToCheck = new BoundJumpToStatement(checkLabel);
+        BoundConditionalJumpToStatement guard =
+                new BoundConditionalJumpToStatement(endLabel, copy(statement.getCondition()), false);
         BoundConditionalJumpToStatement jumpToTrue =
                 new BoundConditionalJumpToStatement(bodyLabel, statement.getCondition());
-        BoundLabelDeclarationStatement continueS = new BoundLabelDeclarationStatement(continueLabel);
-        BoundLabelDeclarationStatement check = new BoundLabelDeclarationStatement(checkLabel);
+        BoundLabelDeclarationStatement continueS = new BoundLabelDeclarationStatement(statement.getContinueLabel());
         BoundLabelDeclarationStatement bodyS = new BoundLabelDeclarationStatement(bodyLabel);
         BoundLabelDeclarationStatement end = new BoundLabelDeclarationStatement(endLabel);
 
         BoundBlockStatement result = new BoundBlockStatement(
-                List.of(continueS, jumpToCheck, bodyS, statement.getThenStatement(), check, jumpToTrue, end)
+                List.of(guard, bodyS, statement.getThenStatement(), continueS, jumpToTrue, end)
         );
         return rewriteStatement(result);
     }
 
+    // the condition is written twice, and the passes after lowering tell the places of a node apart by identity
+    private static BoundExpression copy(BoundExpression expression) throws Exception {
+        return new BoundTreeRewriter() {
+            @Override
+            protected BoundExpression rewriteCallExpression(BoundCallExpression expression) throws Exception {
+                List<BoundExpression> args = new ArrayList<>(expression.getArgs().size());
+                for (BoundExpression arg : expression.getArgs())
+                    args.add(rewriteExpression(arg));
+                return new BoundCallExpression(expression.getFunction(), List.copyOf(args));
+            }
+
+            @Override
+            protected BoundExpression rewriteVariableExpression(BoundVariableExpression node) {
+                return new BoundVariableExpression(node.getVariable());
+            }
+
+            @Override
+            protected BoundExpression rewriteLiteralExpression(BoundLiteralExpression node) {
+                return new BoundLiteralExpression(node.getValue());
+            }
+        }.rewriteExpression(expression);
+    }
+
 
     @Override
     protected BoundStatement rewriteForStatement(BoundForStatement statement) throws Exception {
@@ -0,0 +1,197 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundExpressionStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.BasicBlockEdge;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.controlflow.ssa.ConstantPropagation;
+import codeanalysis.controlflow.ssa.SsaForm;
+import codeanalysis.controlflow.ssa.SsaValue;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Optimizations over the lowered body of a function, run once the binder is done checking it.
+    Self tail calls first become jumps back to the entry, so the passes after see the loop they really are.
+    Constants are propagated through the SSA form of the function, so a variable reassigned with known values
+    is known wherever it is read, and a branch that cannot be taken is dropped with the code only it reaches.
+    Definitions of locals nothing reads any more are removed afterwards, when computing them has no effect and cannot fail,
+    operations computed twice are computed once, and what is left inside loops without depending on them moves out.
+    Last, the jumps and labels are cleaned up.
+ */
+public final class Optimizer {
+    public static final String UNREACHABLE_CODE = "unreachable statements";
+    public static final String DEAD_DEFINITIONS = "dead definitions";
+
+    private Optimizer() {
+    }
+
+    /**
+     * @param script true for the statements of a script, whose last value is its result:
+     *               they keep all their definitions and get no new ones
+     * @param statistics where each pass adds how much it changed
+     */
+    public static BoundBlockStatement optimize(FunctionSymbol function, BoundBlockStatement body, boolean script,
+                                               PassStatistics statistics) throws Exception {
+        if (!script)
+            body = TailCallElimination.eliminate(function, body, statistics);
+        ControlFlowGraph graph = ControlFlowGraph.create(body);
+        SsaForm ssa = SsaForm.build(graph);
+        ConstantPropagation constants = ConstantPropagation.analyze(ssa);
+
+        Map<BoundStatement, BasicBlock> blocks = new IdentityHashMap<>();
+        for (BasicBlock block : graph.getBlocks()) {
+            for (BoundStatement statement : block.getStatements())
+                blocks.put(statement, block);
+        }
+        List<BoundStatement> reachable = new ArrayList<>();
+        for (BoundStatement statement : body.getStatements()) {
+            BasicBlock block = blocks.get(statement);
+            if (block != null && constants.isExecutable(block))
+                reachable.add(statement);
+        }
+        Set<BoundStatement> dead = script ? Set.of() : deadDefinitions(reachable, ssa, constants);
+        statistics.add(UNREACHABLE_CODE, body.getStatements().size() - reachable.size());
+        statistics.add(DEAD_DEFINITIONS, dead.size());
+
+        List<BoundStatement> statements = new ArrayList<>();
+        Set<VariableSymbol> referenced = new HashSet<>();
+        for (BoundStatement statement : reachable) {
+            if (dead.contains(statement)) {
+                statements.add(statement);
+                continue;
+            }
+            BoundStatement folded = ConstantFolder.fold(statement, constants::getConstant);
+            collectReferences(folded, referenced);
+            statements.add(folded);
+        }
+
+        // a dead declaration goes away with its variable, or keeps declaring it for the assignments that are left
+        List<BoundStatement> result = new ArrayList<>(statements.size());
+        for (BoundStatement statement : statements) {
+            if (!dead.contains(statement))
+                result.add(statement);
+            else if (statement instanceof BoundVariableDeclarationStatement declaration
+                    && referenced.contains(declaration.getVariable()))
+                result.add(new BoundVariableDeclarationStatement(declaration.getVariable(),
+                        defaultValue(declaration.getVariable().getType())));
+        }
+        BoundBlockStatement optimized = Lowerer.flatten(function, new BoundBlockStatement(result));
+        optimized = ValueNumbering.eliminate(function, optimized, script, statistics);
+        if (!script)
+            optimized = LoopInvariantCodeMotion.hoist(function, optimized, statistics);
+        return JumpThreading.clean(optimized, statistics);
+    }
+
+    /*
+        A definition is alive when a statement that stays reads it, or when it flows into a phi or a definition
+        that is alive. Reads replaced by their constant keep nothing alive.
+     */
+    private static Set<BoundStatement> deadDefinitions(List<BoundStatement> statements, SsaForm ssa,
+                                                       ConstantPropagation constants) {
+        Map<SsaValue, BoundExpression> removable = new HashMap<>();
+        Map<BoundStatement, SsaValue> candidates = new IdentityHashMap<>();
+        for (BoundStatement statement : statements) {
+            BoundNode definition = null;
+            BoundExpression value = null;
+            if (statement instanceof BoundVariableDeclarationStatement declaration
+                    && defaultValue(declaration.getVariable().getType()) != null) {
+                definition = declaration;
+                value = declaration.getInitializer();
+            } else if (statement instanceof BoundExpressionStatement expression
+                    && expression.getExpression() instanceof BoundAssignmentExpression assignment) {
+                definition = assignment;
+                value = assignment.getBoundExpression();
+            }
+            SsaValue defined = definition == null ? null : ssa.getDefinition(definition);
+            if (defined == null || defined.getVariable().getKind() == SymbolKind.GLOBAL_VARIABLE
+                    || !ConstantFolder.isPure(value))
+                continue;
+            removable.put(defined, value);
+            candidates.put(statement, defined);
+        }
+
+        Set<SsaValue> alive = new HashSet<>();
+        Set<VariableSymbol> pinned = new HashSet<>();
+        Deque<SsaValue> work = new ArrayDeque<>();
+        for (BoundStatement statement : statements) {
+            if (!candidates.containsKey(statement))
+                markReads(statement, ssa, constants, alive, pinned, work);
+        }
+        while (!work.isEmpty()) {
+            SsaValue value = work.pop();
+            if (value.getKind() == SsaValue.Kind.PHI) {
+                for (var operand : value.getOperands().entrySet()) {
+                    BasicBlockEdge edge = operand.getKey();
+                    if (constants.isExecutable(edge) && alive.add(operand.getValue()))
+                        work.push(operand.getValue());
+                }
+            }
+            BoundExpression expression = removable.get(value);
+            if (expression != null)
+                markReads(expression, ssa, constants, alive, pinned, work);
+        }
+
+        Set<BoundStatement> dead = new HashSet<>();
+        for (var candidate : candidates.entrySet()) {
+            SsaValue value = candidate.getValue();
+            if (!alive.contains(value) && !pinned.contains(value.getVariable()))
+                dead.add(candidate.getKey());
+        }
+        return dead;
+    }
+
+    // a read without a single value it sees keeps every definition of its variable
+    private static void markReads(BoundNode node, SsaForm ssa, ConstantPropagation constants,
+                                  Set<SsaValue> alive, Set<VariableSymbol> pinned, Deque<SsaValue> work) {
+        if (node instanceof BoundVariableExpression read) {
+            SsaValue value = ssa.getUse(read);
+            if (value == null)
+                pinned.add(read.getVariable());
+            else if (constants.getConstant(read) == null && alive.add(value))
+                work.push(value);
+            return;
+        }
+        for (BoundNode child : node.getChildren())
+            markReads(child, ssa, constants, alive, pinned, work);
+    }
+
+    private static void collectReferences(BoundNode node, Set<VariableSymbol> referenced) {
+        if (node instanceof BoundVariableExpression read)
+            referenced.add(read.getVariable());
+        else if (node instanceof BoundAssignmentExpression assignment)
+            referenced.add(assignment.getVariable());
+        for (BoundNode child : node.getChildren())
+            collectReferences(child, referenced);
+    }
+
+    private static BoundLiteralExpression defaultValue(TypeSymbol type) {
+        if (type == TypeSymbol.INTEGER)
+            return new BoundLiteralExpression(0);
+        if (type == TypeSymbol.BOOLEAN)
+            return new BoundLiteralExpression(false);
+        if (type == TypeSymbol.STRING)
+            return new BoundLiteralExpression("");
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package codeanalysis.lowering;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    How much each optimization pass changed, summed over the functions of a program.
+ */
+public final class PassStatistics {
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+    public void add(String pass, int count) {
+        counts.merge(pass, count, Integer::sum);
+    }
+
+    public int get(String pass) {
+        return counts.getOrDefault(pass, 0);
+    }
+
+    public Map<String, Integer> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (var entry : counts.entrySet())
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        return builder.toString();
+    }
+}
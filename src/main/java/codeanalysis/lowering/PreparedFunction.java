@@ -0,0 +1,72 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundLabel;
+import codeanalysis.symbol.FunctionSymbol;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    A lowered body ready to be interpreted: statements in an array and
+    every jump resolved to the index of its label, so nothing is looked up while running.
+ */
+public final class PreparedFunction {
+    private final FunctionSymbol function;
+    private final BoundStatement[] statements;
+    private final int[] jumpTargets;
+    private final int frameSize;
+
+    private PreparedFunction(FunctionSymbol function, BoundStatement[] statements, int[] jumpTargets, int frameSize) {
+        this.function = function;
+        this.statements = statements;
+        this.jumpTargets = jumpTargets;
+        this.frameSize = frameSize;
+    }
+
+    public static PreparedFunction prepare(FunctionSymbol function, BoundBlockStatement body) {
+        List<BoundStatement> list = body.getStatements();
+        BoundStatement[] statements = list.toArray(BoundStatement[]::new);
+
+        Map<BoundLabel, Integer> labelIndexes = new HashMap<>();
+        for (int i = 0; i < statements.length; i++) {
+            if (statements[i] instanceof BoundLabelDeclarationStatement l)
+                labelIndexes.put(l.getLabel(), i);
+        }
+
+        int[] jumpTargets = new int[statements.length];
+        Arrays.fill(jumpTargets, -1);
+        for (int i = 0; i < statements.length; i++) {
+            if (statements[i] instanceof BoundJumpToStatement j)
+                jumpTargets[i] = labelIndexes.get(j.getLabel());
+            else if (statements[i] instanceof BoundConditionalJumpToStatement j)
+                jumpTargets[i] = labelIndexes.get(j.getLabel());
+        }
+        return new PreparedFunction(function, statements, jumpTargets, Lowerer.getFrameSize(function, body));
+    }
+
+    public FunctionSymbol getFunction() {
+        return function;
+    }
+
+    public BoundStatement[] getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return for every jump statement the index of the statement it jumps to, -1 for the other statements
+     */
+    public int[] getJumpTargets() {
+        return jumpTargets;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+}
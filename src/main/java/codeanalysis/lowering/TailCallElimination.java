@@ -0,0 +1,125 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.call.BoundCallExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundExpressionStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundLabel;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.ParameterSymbol;
+import codeanalysis.symbol.variable.LocalVariableSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Self tail calls over a lowered body.
+    A function returning the result of a call to itself, or a void function calling itself right before it returns,
+    has nothing left to do with its frame after the call, so the call reuses it: the arguments are assigned to
+    the parameters and the body starts over from a label at its entry. The recursion becomes a loop and runs
+    in constant stack in every backend.
+    The arguments are evaluated in order before the body starts over. A parameter is assigned as soon as its
+    argument is computed unless a later argument still reads it, then the argument waits in a temporary.
+ */
+public final class TailCallElimination {
+    public static final String PASS = "tail calls";
+
+    private static final BoundLabel ENTRY = new BoundLabel("entry");
+
+    private final FunctionSymbol function;
+    private int nextIndex;
+
+    private TailCallElimination(FunctionSymbol function, BoundBlockStatement body) {
+        this.function = function;
+        this.nextIndex = Lowerer.getFrameSize(function, body);
+    }
+
+    public static BoundBlockStatement eliminate(FunctionSymbol function, BoundBlockStatement body,
+                                                PassStatistics statistics) {
+        TailCallElimination elimination = new TailCallElimination(function, body);
+        List<BoundStatement> statements = body.getStatements();
+        List<BoundStatement> result = new ArrayList<>(statements.size() + 1);
+        result.add(new BoundLabelDeclarationStatement(ENTRY));
+        int eliminated = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            BoundCallExpression call = elimination.tailCall(statements, i);
+            if (call == null) {
+                result.add(statements.get(i));
+                continue;
+            }
+            elimination.restart(call, result);
+            eliminated++;
+        }
+        statistics.add(PASS, eliminated);
+        if (eliminated == 0)
+            return body;
+        return new BoundBlockStatement(List.copyOf(result));
+    }
+
+    // the call to the function itself that the statement at the position ends the function with, null if none
+    private BoundCallExpression tailCall(List<BoundStatement> statements, int position) {
+        BoundStatement statement = statements.get(position);
+        if (statement instanceof BoundReturnStatement returned
+                && returned.getExpression() instanceof BoundCallExpression call && call.getFunction() == function)
+            return call;
+        if (!(statement instanceof BoundExpressionStatement expression)
+                || !(expression.getExpression() instanceof BoundCallExpression call) || call.getFunction() != function)
+            return null;
+        int next = position + 1;
+        while (next < statements.size() && statements.get(next) instanceof BoundLabelDeclarationStatement)
+            next++;
+        if (next < statements.size() && statements.get(next) instanceof BoundReturnStatement returned
+                && returned.getExpression() == null)
+            return call;
+        return null;
+    }
+
+    private void restart(BoundCallExpression call, List<BoundStatement> result) {
+        List<ParameterSymbol> parameters = function.getParameters();
+        List<BoundExpression> args = call.getArgs();
+        List<BoundStatement> delayed = new ArrayList<>();
+        for (int i = 0; i < args.size(); i++) {
+            ParameterSymbol parameter = parameters.get(i);
+            BoundExpression argument = args.get(i);
+            if (argument instanceof BoundVariableExpression read && read.getVariable() == parameter)
+                continue;
+            if (!isReadAfter(parameter, args, i)) {
+                result.add(new BoundExpressionStatement(new BoundAssignmentExpression(parameter, argument)));
+                continue;
+            }
+            VariableSymbol temporary = new LocalVariableSymbol("tail" + nextIndex, parameter.getType(), true, nextIndex++);
+            result.add(new BoundVariableDeclarationStatement(temporary, argument));
+            delayed.add(new BoundExpressionStatement(
+                    new BoundAssignmentExpression(parameter, new BoundVariableExpression(temporary))));
+        }
+        result.addAll(delayed);
+        result.add(new BoundJumpToStatement(ENTRY));
+    }
+
+    private static boolean isReadAfter(ParameterSymbol parameter, List<BoundExpression> args, int position) {
+        for (int i = position + 1; i < args.size(); i++) {
+            if (reads(args.get(i), parameter))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean reads(BoundNode node, VariableSymbol variable) {
+        if (node instanceof BoundVariableExpression read && read.getVariable() == variable)
+            return true;
+        for (BoundNode child : node.getChildren()) {
+            if (reads(child, variable))
+                return true;
+        }
+        return false;
+    }
+}
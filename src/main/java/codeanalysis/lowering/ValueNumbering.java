@@ -0,0 +1,248 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.BoundNodeKind;
+import codeanalysis.binding.conversion.BoundConversionExpression;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.binary.BoundBinaryExpression;
+import codeanalysis.binding.expression.binary.BoundBinaryOperatorKind;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryExpression;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.rewriter.BoundTreeRewriter;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.controlflow.DominatorTree;
+import codeanalysis.controlflow.ssa.SsaForm;
+import codeanalysis.controlflow.ssa.SsaValue;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.LocalVariableSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Dominator-based value numbering over the SSA form of a lowered body.
+    Two operations get the same number when they apply the same operator to operands with the same numbers,
+    and a variable read is numbered by the SSA value it sees, so a reassignment in between, a loop going around
+    or a call changing a global all give a new number.
+    An operation whose number was already computed in a dominating block, or earlier in the same block, is replaced
+    by a read of a temporary that the first computation now also stores.
+    Only binary, unary and conversion expressions over variables and literals are reused: they have no effects,
+    and when one of them fails, the first computation failed before the copy could be reached.
+ */
+public final class ValueNumbering {
+    public static final String PASS = "value numbering";
+
+    private final SsaForm ssa;
+    private final boolean script;
+    private final Map<List<Object>, Integer> numbers = new HashMap<>();
+    private final Map<BoundNode, Integer> occurrences = new IdentityHashMap<>();
+    private final Map<Integer, BoundExpression> available = new HashMap<>();
+    private final Map<BoundExpression, BoundExpression> leaders = new IdentityHashMap<>();
+    private final Map<BoundExpression, BoundStatement> statements = new IdentityHashMap<>();
+    private final Map<BoundExpression, VariableSymbol> temporaries = new IdentityHashMap<>();
+    private int nextIndex;
+
+    private ValueNumbering(FunctionSymbol function, BoundBlockStatement body, boolean script) {
+        this.ssa = SsaForm.build(ControlFlowGraph.create(body));
+        this.script = script;
+        this.nextIndex = Lowerer.getFrameSize(function, body);
+        for (BoundStatement statement : body.getStatements())
+            count(statement);
+    }
+
+    /**
+     * @param script true for the statements of a script, where only declarations and expression statements,
+     *               which set the last value anyway, get a temporary declared before them
+     */
+    public static BoundBlockStatement eliminate(FunctionSymbol function, BoundBlockStatement body, boolean script,
+                                                PassStatistics statistics) throws Exception {
+        ValueNumbering numbering = new ValueNumbering(function, body, script);
+        numbering.number();
+        return numbering.rewrite(body, statistics);
+    }
+
+    private void count(BoundNode node) {
+        occurrences.merge(node, 1, Integer::sum);
+        for (BoundNode child : node.getChildren())
+            count(child);
+    }
+
+    // the dominator tree can be as deep as the function is long, so it is walked without recursion
+    private void number() {
+        DominatorTree dominators = ssa.getDominators();
+        BasicBlock leave = new BasicBlock();
+        Deque<BasicBlock> pending = new ArrayDeque<>();
+        Deque<List<Integer>> scopes = new ArrayDeque<>();
+        pending.push(ssa.getGraph().getStart());
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.pop();
+            if (block == leave) {
+                for (Integer number : scopes.pop())
+                    available.remove(number);
+                continue;
+            }
+            List<Integer> scope = new ArrayList<>();
+            for (BoundStatement statement : block.getStatements()) {
+                for (BoundNode child : statement.getChildren())
+                    number(child, statement, scope);
+            }
+            scopes.push(scope);
+            pending.push(leave);
+            List<BasicBlock> children = dominators.getChildren(block);
+            for (int i = children.size() - 1; i >= 0; i--)
+                pending.push(children.get(i));
+        }
+    }
+
+    /**
+     * Numbers the node after its children, in the order they are evaluated.
+     *
+     * @return the number of the value, -1 for a node that is not a pure operation on variables and literals
+     */
+    private int number(BoundNode node, BoundStatement statement, List<Integer> scope) {
+        List<Integer> operands = new ArrayList<>(node.getChildren().size());
+        boolean known = true;
+        for (BoundNode child : node.getChildren()) {
+            int number = number(child, statement, scope);
+            known &= number >= 0;
+            operands.add(number);
+        }
+        List<Object> key = known ? key(node, operands) : null;
+        if (key == null)
+            return -1;
+        Integer number = numbers.computeIfAbsent(key, k -> numbers.size());
+        if (isReusable(node)) {
+            BoundExpression leader = available.get(number);
+            if (leader != null) {
+                leaders.put((BoundExpression) node, leader);
+            } else if (!script || setsResult(statement)) {
+                available.put(number, (BoundExpression) node);
+                statements.put((BoundExpression) node, statement);
+                scope.add(number);
+            }
+        }
+        return number;
+    }
+
+    private List<Object> key(BoundNode node, List<Integer> operands) {
+        return switch (node.getKind()) {
+            case LITERAL_EXPRESSION -> {
+                var literal = (BoundLiteralExpression) node;
+                yield List.of(node.getKind(), literal.getType(), literal.getValue());
+            }
+            case VARIABLE_EXPRESSION -> {
+                SsaValue value = ssa.getUse((BoundVariableExpression) node);
+                yield value == null ? null : List.of(node.getKind(), value.getId());
+            }
+            case UNARY_EXPRESSION ->
+                    List.of(node.getKind(), ((BoundUnaryExpression) node).getOperator().getKind(), operands.get(0));
+            case BINARY_EXPRESSION -> {
+                var binary = (BoundBinaryExpression) node;
+                BoundBinaryOperatorKind kind = binary.getOperator().getKind();
+                if (isCommutative(binary) && operands.get(0) > operands.get(1))
+                    Collections.swap(operands, 0, 1);
+                yield List.of(node.getKind(), kind, binary.getType(), operands.get(0), operands.get(1));
+            }
+            case CONVERSION_EXPRESSION ->
+                    List.of(node.getKind(), ((BoundConversionExpression) node).getType(), operands.get(0));
+            default -> null;
+        };
+    }
+
+    private static boolean isCommutative(BoundBinaryExpression binary) {
+        TypeSymbol type = binary.getOperator().getLeftType();
+        if (type != binary.getOperator().getRightType() || type != TypeSymbol.INTEGER && type != TypeSymbol.BOOLEAN)
+            return false;
+        return switch (binary.getOperator().getKind()) {
+            case ADDITION, MULTIPLICATION, BITWISE_AND, BITWISE_OR, BITWISE_XOR, LOGICAL_EQUALITY, LOGICAL_INEQUALITY ->
+                    true;
+            default -> false;
+        };
+    }
+
+    // an operation seen only once in the body, a node reused by the lowerer cannot tell its places apart
+    private boolean isReusable(BoundNode node) {
+        BoundNodeKind kind = node.getKind();
+        return (kind == BoundNodeKind.BINARY_EXPRESSION || kind == BoundNodeKind.UNARY_EXPRESSION
+                || kind == BoundNodeKind.CONVERSION_EXPRESSION) && occurrences.get(node) == 1;
+    }
+
+    private static boolean setsResult(BoundStatement statement) {
+        return statement.getKind() == BoundNodeKind.VARIABLE_DECLARATION_STATEMENT
+                || statement.getKind() == BoundNodeKind.EXPRESSION_STATEMENT;
+    }
+
+    /*
+        A replaced operation never holds the first computation of another one: that computation would be inside
+        the operation it was replaced by, earlier still. So the leaders found from the top are the ones kept.
+     */
+    private BoundBlockStatement rewrite(BoundBlockStatement body, PassStatistics statistics) throws Exception {
+        int eliminated = 0;
+        Map<BoundStatement, List<VariableSymbol>> declarations = new IdentityHashMap<>();
+        for (BoundStatement statement : body.getStatements())
+            eliminated += collectLeaders(statement, declarations);
+        statistics.add(PASS, eliminated);
+        if (eliminated == 0)
+            return body;
+
+        BoundTreeRewriter rewriter = new BoundTreeRewriter() {
+            @Override
+            public BoundExpression rewriteExpression(BoundExpression expression) throws Exception {
+                BoundExpression leader = leaders.get(expression);
+                if (leader != null)
+                    return new BoundVariableExpression(temporaries.get(leader));
+                VariableSymbol temporary = temporaries.get(expression);
+                if (temporary != null)
+                    return new BoundAssignmentExpression(temporary, super.rewriteExpression(expression));
+                return super.rewriteExpression(expression);
+            }
+        };
+        List<BoundStatement> result = new ArrayList<>(body.getStatements().size() + temporaries.size());
+        for (BoundStatement statement : body.getStatements()) {
+            for (VariableSymbol temporary : declarations.getOrDefault(statement, List.of()))
+                result.add(new BoundVariableDeclarationStatement(temporary, defaultValue(temporary.getType())));
+            result.add(rewriter.rewriteStatement(statement));
+        }
+        return new BoundBlockStatement(List.copyOf(result));
+    }
+
+    private int collectLeaders(BoundNode node, Map<BoundStatement, List<VariableSymbol>> declarations) {
+        BoundExpression leader = node instanceof BoundExpression e ? leaders.get(e) : null;
+        if (leader != null) {
+            if (!temporaries.containsKey(leader)) {
+                VariableSymbol temporary = new LocalVariableSymbol("common" + nextIndex, leader.getType(), false, nextIndex++);
+                temporaries.put(leader, temporary);
+                declarations.computeIfAbsent(statements.get(leader), s -> new ArrayList<>()).add(temporary);
+            }
+            return 1;
+        }
+        int eliminated = 0;
+        for (BoundNode child : node.getChildren())
+            eliminated += collectLeaders(child, declarations);
+        return eliminated;
+    }
+
+    private static BoundExpression defaultValue(TypeSymbol type) {
+        if (type == TypeSymbol.INTEGER)
+            return new BoundLiteralExpression(0);
+        if (type == TypeSymbol.BOOLEAN)
+            return new BoundLiteralExpression(false);
+        if (type == TypeSymbol.STRING)
+            return new BoundLiteralExpression("");
+        return new BoundConversionExpression(TypeSymbol.ANY, new BoundLiteralExpression(0));
+    }
+}
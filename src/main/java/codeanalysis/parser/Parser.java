@@ -2,7 +2,9 @@ package codeanalysis.parser;
 
 import codeanalysis.diagnostics.DiagnosticBag;
 import codeanalysis.lexer.Lexer;
+import codeanalysis.lexer.TokenBuffer;
 import codeanalysis.source.SourceText;
+import codeanalysis.source.TextLocation;
 import codeanalysis.syntax.*;
 import codeanalysis.syntax.clause.ElseClauseSyntax;
 import codeanalysis.syntax.clause.ForConditionClauseSyntax;
@@ -19,7 +21,7 @@ import java.util.List;
 
 public final class Parser {
 
-    private final List<SyntaxToken> tokens;
+    private final TokenBuffer tokens;
     private final SyntaxTree syntaxTree;
 
     private final SourceText text;
@@ -31,15 +33,8 @@ public final class Parser {
     public Parser(SyntaxTree syntaxTree) {
 
         position = 0;
-        SyntaxToken token;
-        List<SyntaxToken> tokens = new ArrayList<>();
         Lexer lexer = new Lexer(syntaxTree);
-        do {
-            token = lexer.lex();
-            if (token.getKind() != SyntaxKind.WHITESPACE_TOKEN && token.getKind() != SyntaxKind.BAD_TOKEN)
-                tokens.add(token);
-        } while (token.getKind() != SyntaxKind.END_OF_FILE_TOKEN);
-        this.tokens = tokens;
+        this.tokens = lexer.tokenize();
         this.syntaxTree = syntaxTree;
         this.text = syntaxTree.getText();
         diagnostics.addAll(lexer.getDiagnostics());
@@ -57,7 +52,7 @@ public final class Parser {
 
     private List<MemberSyntax> parseMembers() {
         List<MemberSyntax> members = new ArrayList<>();
-        while (getCurrent().getKind() != SyntaxKind.END_OF_FILE_TOKEN) {
+        while (getCurrentKind() != SyntaxKind.END_OF_FILE_TOKEN) {
             MemberSyntax member = parseMember();
             members.add(member);
         }
@@ -65,7 +60,7 @@ public final class Parser {
     }
 
     private MemberSyntax parseMember() {
-        if (getCurrent().getKind() == SyntaxKind.FUNCTION_KEYWORD)
+        if (getCurrentKind() == SyntaxKind.FUNCTION_KEYWORD)
             return parseFunctionDeclaration();
         return parseGlobalStatement();
 
@@ -84,11 +79,11 @@ public final class Parser {
 
     private SeparatedSyntaxList<ParameterClauseSyntax> parseParameterList() {
         List<SyntaxNode> nodes = new ArrayList<>();
-        while (getCurrent().getKind() != SyntaxKind.END_OF_FILE_TOKEN &&
-                getCurrent().getKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
+        while (getCurrentKind() != SyntaxKind.END_OF_FILE_TOKEN &&
+                getCurrentKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
             ParameterClauseSyntax parameter = parseParameter();
             nodes.add(parameter);
-            if (getCurrent().getKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
+            if (getCurrentKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
                 SyntaxToken comma = matchToken(SyntaxKind.COMMA_TOKEN);
                 nodes.add(comma);
             }
@@ -109,7 +104,7 @@ public final class Parser {
 
 
     private StatementSyntax parseStatement() {
-        StatementSyntax statement = switch (getCurrent().getKind()) {
+        StatementSyntax statement = switch (getCurrentKind()) {
             case OPEN_BRACE_TOKEN -> parseBlockStatement();
             case VAR_KEYWORD, LET_KEYWORD -> parseVariableDeclarationStatement();
             case IF_KEYWORD -> parseIfStatement();
@@ -120,18 +115,18 @@ public final class Parser {
             case RETURN_KEYWORD -> parseReturnStatement();
             default -> parseExpressionStatement();
         };
-        if (getCurrent().getKind() == SyntaxKind.SEMICOLON_TOKEN)
-            nextToken();
+        if (getCurrentKind() == SyntaxKind.SEMICOLON_TOKEN)
+            position++;
         return statement;
     }
 
     private StatementSyntax parseReturnStatement() {
         var keyword = matchToken(SyntaxKind.RETURN_KEYWORD);
         var keywordLine = text.getLineIndex(keyword.getSpan().start());
-        var currentLine = text.getLineIndex(getCurrent().getSpan().start());
+        var currentLine = text.getLineIndex(tokens.getStart(index(0)));
         var sameLine = keywordLine == currentLine;
-        var isEoF = getCurrent().getKind() == SyntaxKind.END_OF_FILE_TOKEN;
-        var needsExpression = !isEoF && sameLine && getCurrent().getKind() != SyntaxKind.SEMICOLON_TOKEN;
+        var isEoF = getCurrentKind() == SyntaxKind.END_OF_FILE_TOKEN;
+        var needsExpression = !isEoF && sameLine && getCurrentKind() != SyntaxKind.SEMICOLON_TOKEN;
         var expression = needsExpression ? parseExpression() : null;
         return new ReturnStatementSyntax(syntaxTree, keyword, expression);
     }
@@ -144,16 +139,16 @@ public final class Parser {
     }
 
     private ForConditionClauseSyntax parseForConditionClause() {
-        matchToken(SyntaxKind.OPEN_PARENTHESIS_TOKEN);
-        SyntaxNode variableExpression = switch (getCurrent().getKind()) {
+        skipToken(SyntaxKind.OPEN_PARENTHESIS_TOKEN);
+        SyntaxNode variableExpression = switch (getCurrentKind()) {
             case VAR_KEYWORD, LET_KEYWORD -> parseVariableDeclarationStatement();
             default -> parseNameExpression();
         };
-        matchToken(SyntaxKind.SEMICOLON_TOKEN);
+        skipToken(SyntaxKind.SEMICOLON_TOKEN);
         ExpressionSyntax condition = parseExpression();
-        matchToken(SyntaxKind.SEMICOLON_TOKEN);
+        skipToken(SyntaxKind.SEMICOLON_TOKEN);
         ExpressionSyntax increment = parseExpression();
-        matchToken(SyntaxKind.CLOSE_PARENTHESIS_TOKEN);
+        skipToken(SyntaxKind.CLOSE_PARENTHESIS_TOKEN);
         return new ForConditionClauseSyntax(syntaxTree, variableExpression, condition, increment);
     }
 
@@ -173,7 +168,7 @@ public final class Parser {
     }
 
     private ElseClauseSyntax parseElseClause() {
-        if (getCurrent().getKind() == SyntaxKind.ELSE_KEYWORD) {
+        if (getCurrentKind() == SyntaxKind.ELSE_KEYWORD) {
             SyntaxToken elseKeyword = matchToken(SyntaxKind.ELSE_KEYWORD);
             StatementSyntax thenStatement = parseStatement();
             return new ElseClauseSyntax(syntaxTree, elseKeyword, thenStatement);
@@ -182,7 +177,7 @@ public final class Parser {
     }
 
     private StatementSyntax parseVariableDeclarationStatement() {
-        SyntaxToken keyword = matchToken(getCurrent().getKind());
+        SyntaxToken keyword = matchToken(getCurrentKind());
         SyntaxToken identifier = matchToken(SyntaxKind.IDENTIFIER_TOKEN);
         TypeClauseSyntax type = parseOptionalType();
         SyntaxToken equals = matchToken(SyntaxKind.EQUAL_TOKEN);
@@ -202,7 +197,7 @@ public final class Parser {
     }
 
     private TypeClauseSyntax parseOptionalType() {
-        if (getCurrent().getKind() != SyntaxKind.COLON_TOKEN)
+        if (getCurrentKind() != SyntaxKind.COLON_TOKEN)
             return null;
         return parseType();
     }
@@ -216,8 +211,8 @@ public final class Parser {
     private BlockStatementSyntax parseBlockStatement() {
         SyntaxToken open = matchToken(SyntaxKind.OPEN_BRACE_TOKEN);
         List<StatementSyntax> statements = new ArrayList<>();
-        while (getCurrent().getKind() != SyntaxKind.END_OF_FILE_TOKEN &&
-                getCurrent().getKind() != SyntaxKind.CLOSE_BRACE_TOKEN) {
+        while (getCurrentKind() != SyntaxKind.END_OF_FILE_TOKEN &&
+                getCurrentKind() != SyntaxKind.CLOSE_BRACE_TOKEN) {
             StatementSyntax statement = parseStatement();
             statements.add(statement);
         }
@@ -235,12 +230,12 @@ public final class Parser {
     }
 
     private ExpressionSyntax parseAssignmentExpression() {
-        if (getCurrent().getKind() == SyntaxKind.IDENTIFIER_TOKEN) {
-            switch (peek(1).getKind()) {
+        if (getCurrentKind() == SyntaxKind.IDENTIFIER_TOKEN) {
+            switch (peekKind(1)) {
                 case PLUS_EQUALS_TOKEN, MINUS_EQUALS_TOKEN, SLASH_EQUALS_TOKEN, STAR_EQUALS_TOKEN,
                         AMPERSAND_EQUALS_TOKEN, PIPE_EQUALS_TOKEN, HAT_EQUALS_TOKEN, EQUAL_TOKEN -> {
                     var identifier = matchToken(SyntaxKind.IDENTIFIER_TOKEN);
-                    var operator = matchToken(getCurrent().getKind());
+                    var operator = matchToken(getCurrentKind());
                     var right = parseAssignmentExpression();
                     return new AssignmentExpressionSyntax(syntaxTree, identifier, operator, right);
                 }
@@ -258,7 +253,7 @@ public final class Parser {
     private ExpressionSyntax parseBinaryExpression(int parentPrecedence) {
         ExpressionSyntax left = parseUnaryExpression();
         while (true) {
-            int precedence = SyntaxFacts.getBinaryOperatorPrecedence(getCurrent().getKind());
+            int precedence = SyntaxFacts.getBinaryOperatorPrecedence(getCurrentKind());
             if (precedence <= parentPrecedence)
                 break;
 
@@ -271,7 +266,7 @@ public final class Parser {
     }
 
     private ExpressionSyntax parseUnaryExpression() {
-        int unaryPrecedence = SyntaxFacts.getUnaryOperatorPrecedence(getCurrent().getKind());
+        int unaryPrecedence = SyntaxFacts.getUnaryOperatorPrecedence(getCurrentKind());
         if (unaryPrecedence > 0) {
             SyntaxToken operator = nextToken();
             ExpressionSyntax left = parseUnaryExpression();
@@ -281,7 +276,7 @@ public final class Parser {
     }
 
     private ExpressionSyntax parsePrimaryExpression() {
-        return switch (getCurrent().getKind()) {
+        return switch (getCurrentKind()) {
             case OPEN_PARENTHESIS_TOKEN -> parseParenthesizedExpression();
             case TRUE_KEYWORD, FALSE_KEYWORD -> parseBooleanLiteralExpression();
             case NUMBER_TOKEN -> parseNumberLiteralExpression();
@@ -293,7 +288,7 @@ public final class Parser {
     }
 
     private ExpressionSyntax parsePrefixExpression() {
-        var token = matchToken(getCurrent().getKind());
+        var token = matchToken(getCurrentKind());
         var identifier = matchToken(SyntaxKind.IDENTIFIER_TOKEN);
         return new PrefixExpressionSyntax(syntaxTree, token, identifier);
     }
@@ -306,7 +301,7 @@ public final class Parser {
     }
 
     private LiteralExpressionSyntax parseBooleanLiteralExpression() {
-        boolean isTrue = getCurrent().getKind() == SyntaxKind.TRUE_KEYWORD;
+        boolean isTrue = getCurrentKind() == SyntaxKind.TRUE_KEYWORD;
         SyntaxToken token = isTrue ? matchToken(SyntaxKind.TRUE_KEYWORD) :
                 matchToken(SyntaxKind.FALSE_KEYWORD);
         return new LiteralExpressionSyntax(syntaxTree, token, isTrue);
@@ -318,12 +313,12 @@ public final class Parser {
     }
 
     private ExpressionSyntax parseIdentifierToken() {
-        if (getCurrent().getKind() == SyntaxKind.IDENTIFIER_TOKEN && peek(1).getKind() == SyntaxKind.OPEN_PARENTHESIS_TOKEN)
+        if (getCurrentKind() == SyntaxKind.IDENTIFIER_TOKEN && peekKind(1) == SyntaxKind.OPEN_PARENTHESIS_TOKEN)
             return parseCallExpression();
         else if (
-                getCurrent().getKind() == SyntaxKind.IDENTIFIER_TOKEN
-                        && (peek(1).getKind() == SyntaxKind.PLUS_PLUS_TOKEN
-                        || peek(1).getKind() == SyntaxKind.MINUS_MINUS_TOKEN)
+                getCurrentKind() == SyntaxKind.IDENTIFIER_TOKEN
+                        && (peekKind(1) == SyntaxKind.PLUS_PLUS_TOKEN
+                        || peekKind(1) == SyntaxKind.MINUS_MINUS_TOKEN)
         )
             return parseSuffixExpression();
         return parseNameExpression();
@@ -331,7 +326,7 @@ public final class Parser {
 
     private ExpressionSyntax parseSuffixExpression() {
         var identifier = matchToken(SyntaxKind.IDENTIFIER_TOKEN);
-        var token = matchToken(getCurrent().getKind());
+        var token = matchToken(getCurrentKind());
         return new SuffixExpressionSyntax(syntaxTree, identifier, token);
     }
 
@@ -345,11 +340,11 @@ public final class Parser {
 
     private SeparatedSyntaxList<ExpressionSyntax> parseArguments() {
         List<SyntaxNode> nodes = new ArrayList<>();
-        while (getCurrent().getKind() != SyntaxKind.END_OF_FILE_TOKEN &&
-                getCurrent().getKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
+        while (getCurrentKind() != SyntaxKind.END_OF_FILE_TOKEN &&
+                getCurrentKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
             ExpressionSyntax expression = parseExpression();
             nodes.add(expression);
-            if (getCurrent().getKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
+            if (getCurrentKind() != SyntaxKind.CLOSE_PARENTHESIS_TOKEN) {
                 SyntaxToken comma = matchToken(SyntaxKind.COMMA_TOKEN);
                 nodes.add(comma);
             }
@@ -367,29 +362,43 @@ public final class Parser {
         return new LiteralExpressionSyntax(syntaxTree, token);
     }
 
-    private SyntaxToken peek(int offset) {
-        int index = position + offset;
-        if (index >= tokens.size())
-            return peek(offset - 1);
-        return tokens.get(index);
+    // past the end, every token is the end of file token
+    private int index(int offset) {
+        return Math.min(position + offset, tokens.size() - 1);
     }
 
-    private SyntaxToken getCurrent() {
-        return peek(0);
+    private SyntaxKind peekKind(int offset) {
+        return tokens.getKind(index(offset));
+    }
+
+    private SyntaxKind getCurrentKind() {
+        return peekKind(0);
     }
 
     private SyntaxToken nextToken() {
-        SyntaxToken token = getCurrent();
+        SyntaxToken token = tokens.createToken(index(0));
         position++;
         return token;
     }
 
     private SyntaxToken matchToken(SyntaxKind type) {
-        if (getCurrent().getKind() == type)
+        if (getCurrentKind() == type)
             return nextToken();
 
-        diagnostics.reportUnexpectedToken(getCurrent().getLocation(), getCurrent().getKind(), type);
-        nextToken();
-        return new SyntaxToken(syntaxTree, type, getCurrent().getPosition(), null, null);
+        reportUnexpectedToken(type);
+        position++;
+        return new SyntaxToken(syntaxTree, type, tokens.getStart(index(0)), null, null);
+    }
+
+    // matches a token the syntax tree does not keep, without creating it
+    private void skipToken(SyntaxKind type) {
+        if (getCurrentKind() != type)
+            reportUnexpectedToken(type);
+        position++;
+    }
+
+    private void reportUnexpectedToken(SyntaxKind expected) {
+        var location = new TextLocation(text, tokens.getSpan(index(0)));
+        diagnostics.reportUnexpectedToken(location, getCurrentKind(), expected);
     }
 }
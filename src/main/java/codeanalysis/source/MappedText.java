@@ -0,0 +1,158 @@
+package codeanalysis.source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+    The characters of a UTF-8 file mapped in memory, decoded only where they are read.
+    The file is split in blocks that do not cut a character. A block of ASCII bytes is read as it is,
+    any other block is decoded when one of its characters is read, and only the last decoded block is kept.
+    Opening the file counts the characters of each block, so positions can be found without decoding again.
+    The decoded block is kept per thread, so threads sharing a text never read each other's characters.
+ */
+final class MappedText implements CharSequence {
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final MappedByteBuffer bytes;
+    private final int[] byteStarts;
+    private final int[] charStarts;
+    private final boolean[] ascii;
+    private final int blockCount;
+    private final ThreadLocal<DecodedBlock> decoded = ThreadLocal.withInitial(DecodedBlock::new);
+
+    // only a hint, any block a thread reads here is checked before it is used
+    private int lastBlock;
+
+    private MappedText(MappedByteBuffer bytes) {
+        this.bytes = bytes;
+        int size = bytes.limit();
+        int capacity = size / BLOCK_SIZE + 2;
+        int[] byteStarts = new int[capacity];
+        int[] charStarts = new int[capacity];
+        boolean[] ascii = new boolean[capacity];
+        DecodedBlock counting = new DecodedBlock();
+        int blocks = 0;
+        int start = 0;
+        int chars = 0;
+        while (start < size) {
+            int end = Math.min(start + BLOCK_SIZE, size);
+            // a block never ends inside a character, continuation bytes stay with the bytes they continue
+            while (end < size && (bytes.get(end) & 0xC0) == 0x80)
+                end++;
+            byteStarts[blocks] = start;
+            charStarts[blocks] = chars;
+            ascii[blocks] = isAscii(start, end);
+            chars += ascii[blocks] ? end - start : counting.decode(bytes, start, end).remaining();
+            blocks++;
+            start = end;
+        }
+        byteStarts[blocks] = size;
+        charStarts[blocks] = chars;
+        this.byteStarts = byteStarts;
+        this.charStarts = charStarts;
+        this.ascii = ascii;
+        this.blockCount = blocks;
+    }
+
+    static MappedText map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Unexpected file size " + size + " of " + path);
+            return new MappedText(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    private boolean isAscii(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes.get(i) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    // reads mostly move forward, so the block of the last read is tried first
+    private int blockOf(int index) {
+        int last = lastBlock;
+        if (index >= charStarts[last] && index < charStarts[last + 1])
+            return last;
+        int found = Arrays.binarySearch(charStarts, 0, blockCount, index);
+        // blocks are never empty, so a position is either a block start or inside the block before
+        last = found >= 0 ? found : -found - 2;
+        lastBlock = last;
+        return last;
+    }
+
+    @Override
+    public int length() {
+        return charStarts[blockCount];
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length())
+            throw new IndexOutOfBoundsException(index);
+        int block = blockOf(index);
+        int offset = index - charStarts[block];
+        if (ascii[block])
+            return (char) bytes.get(byteStarts[block] + offset);
+        DecodedBlock decodedBlock = decoded.get();
+        if (block != decodedBlock.block) {
+            decodedBlock.decode(bytes, byteStarts[block], byteStarts[block + 1]);
+            decodedBlock.block = block;
+        }
+        return decodedBlock.chars.get(offset);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end)
+            throw new IndexOutOfBoundsException("Unexpected range " + start + ", " + end);
+        int block = start < end ? blockOf(start) : lastBlock;
+        if (end <= charStarts[block + 1] && ascii[block]) {
+            byte[] chars = new byte[end - start];
+            bytes.get(byteStarts[block] + start - charStarts[block], chars);
+            return new String(chars, StandardCharsets.ISO_8859_1);
+        }
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++)
+            builder.append(charAt(i));
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length()).toString();
+    }
+
+    private static final class DecodedBlock {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private int block = -1;
+        private CharBuffer chars = CharBuffer.allocate(0);
+
+        private CharBuffer decode(MappedByteBuffer bytes, int start, int end) {
+            ByteBuffer slice = bytes.slice(start, end - start);
+            int capacity = end - start;
+            if (chars.capacity() < capacity)
+                chars = CharBuffer.allocate(capacity);
+            chars.clear();
+            decoder.reset();
+            decoder.decode(slice, chars, true);
+            decoder.flush(chars);
+            chars.flip();
+            block = -1;
+            return chars;
+        }
+    }
+}
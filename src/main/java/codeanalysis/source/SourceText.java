@@ -1,35 +1,102 @@
 package codeanalysis.source;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
+/*
+    The characters of a source, held as a string or read from a file mapped in memory.
+    Lines are only the positions where they start, found the first time a line is asked for;
+    a TextLine is created when one is read.
+    Positions are mostly looked up in order, by the lexer, the parser and the diagnostics, so the line found last
+    and the one after it are tried before searching.
+ */
 public class SourceText {
 
-    private final List<TextLine> lines;
     private final String fileName;
-    private final String text;
+    private final CharSequence text;
+    // trimmed to the number of lines, and published whole so that texts shared between threads see them complete
+    private volatile int[] lineStarts;
+    private int lastLine;
 
-    private SourceText(String text, String fileName) {
+    private SourceText(CharSequence text, String fileName) {
         this.fileName = fileName;
         this.text = text;
-        List<TextLine> lines = SourceText.parseLines(this, text);
-        this.lines = Collections.unmodifiableList(lines);
     }
 
     public int getLineIndex(int position) {
-        return getLineIndex(lines, position, 0, this.lines.size());
+        if (position < 0 || position > text.length())
+            return -1;
+        int[] starts = getLineStarts();
+        int lineCount = starts.length;
+        int line = lastLine;
+        if (starts[line] <= position) {
+            if (line + 1 == lineCount || position < starts[line + 1])
+                return line;
+            if (line + 2 == lineCount || position < starts[line + 2])
+                return lastLine = line + 1;
+        }
+        // the last line starting at or before the position
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= position)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return lastLine = low;
+    }
+
+    public int getLineStart(int index) {
+        return getLineStarts()[index];
+    }
+
+    // the end of the line before its line break
+    public int getLineEnd(int index) {
+        int[] starts = getLineStarts();
+        if (index == starts.length - 1)
+            return text.length();
+        int next = starts[index + 1];
+        if (next - starts[index] >= 2 && text.charAt(next - 2) == '\r' && text.charAt(next - 1) == '\n')
+            return next - 2;
+        return next - 1;
+    }
+
+    public int getLineCount() {
+        return getLineStarts().length;
+    }
+
+    public TextLine getLine(int index) {
+        int[] starts = getLineStarts();
+        int start = starts[index];
+        int end = getLineEnd(index);
+        int endWithLineBreak = index == starts.length - 1 ? end : starts[index + 1];
+        return new TextLine(this, start, end - start, endWithLineBreak - start);
     }
 
     public List<TextLine> getLines() {
-        return lines;
+        return new AbstractList<>() {
+            @Override
+            public TextLine get(int index) {
+                return getLine(index);
+            }
+
+            @Override
+            public int size() {
+                return getLineCount();
+            }
+        };
     }
 
     public String getFileName() {
         return fileName;
     }
 
-    public String getText() {
+    public CharSequence getText() {
         return text;
     }
 
@@ -43,11 +110,11 @@ public class SourceText {
 
     @Override
     public String toString() {
-        return this.text;
+        return this.text.toString();
     }
 
     public String toString(int start, int end) {
-        return this.text.substring(start, end);
+        return this.text.subSequence(start, end).toString();
     }
 
     public String toString(TextSpan span) {
@@ -62,51 +129,33 @@ public class SourceText {
         return new SourceText(text, fileName);
     }
 
-    private static List<TextLine> parseLines(SourceText source, String text) {
-        List<TextLine> lines = new ArrayList<>();
-        int lineStartingPosition = 0;
-        int position = 0;
-        while (position < text.length()) {
-            int lineBreakWidth = getLineBreakWidth(text, position);
-            if (lineBreakWidth == 0) {
-                position++;
-            } else {
-                addLine(source, lineStartingPosition, position, lineBreakWidth, lines);
-                position += lineBreakWidth;
-                lineStartingPosition = position;
-            }
-        }
-        addLine(source, lineStartingPosition, position, 0, lines);
-        return lines;
-    }
-
-    private static void addLine(SourceText source, int lineStartingPosition, int position, int lineBreakWidth, List<TextLine> lines) {
-        int lineLength = position - lineStartingPosition;
-        int lineLengthWithLineBreak = lineLength + lineBreakWidth;
-        TextLine line = new TextLine(source, lineStartingPosition, lineLength, lineLengthWithLineBreak);
-        lines.add(line);
+    // the file is decoded as UTF-8 where it is read, it is never copied whole on the heap
+    public static SourceText map(Path path) throws IOException {
+        return new SourceText(MappedText.map(path), path.toString());
     }
 
-    private static int getLineBreakWidth(String text, int i) {
-        char c = text.charAt(i);
-        char lookAhead = i >= text.length() - 1 ? '\0' : text.charAt(i + 1);
-        if (c == '\r' && lookAhead == '\n')
-            return 2;
-        if (c == '\r' || c == '\n')
-            return 1;
-        return 0;
+    private int[] getLineStarts() {
+        int[] starts = lineStarts;
+        if (starts == null)
+            lineStarts = starts = parseLines();
+        return starts;
     }
 
-    private int getLineIndex(List<TextLine> lines, int target, int start, int end) {
-        int mid = start + (end - start) / 2;
-        if (start > end)
-            return -1;
-        if (lines.get(mid).getStart() <= target && lines.get(mid).getEndWithLineBreak() >= target)
-            return mid;
-
-        if (lines.get(mid).getEnd() < target)
-            return getLineIndex(lines, target, mid + 1, end);
-
-        return getLineIndex(lines, target, start, mid - 1);
+    private int[] parseLines() {
+        int[] starts = new int[Math.max(16, text.length() / 32)];
+        int count = 1;
+        int position = 0;
+        int length = text.length();
+        while (position < length) {
+            char c = text.charAt(position++);
+            if (c == '\r' && position < length && text.charAt(position) == '\n')
+                position++;
+            else if (c != '\r' && c != '\n')
+                continue;
+            if (count == starts.length)
+                starts = Arrays.copyOf(starts, count * 2);
+            starts[count++] = position;
+        }
+        return Arrays.copyOf(starts, count);
     }
 }
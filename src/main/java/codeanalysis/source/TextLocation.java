@@ -11,7 +11,7 @@ public record TextLocation(SourceText text, TextSpan span) {
     }
 
     public int startChar() {
-        return span.start() - text.getLines().get(startLine()).getStart();
+        return span.start() - text.getLineStart(startLine());
     }
 
     public int endLine() {
@@ -20,6 +20,6 @@ public record TextLocation(SourceText text, TextSpan span) {
 
 
     public int endChar() {
-        return span.end() - text.getLines().get(endLine()).getEnd();
+        return span.end() - text.getLineEnd(endLine());
     }
 }
@@ -3,10 +3,10 @@ package codeanalysis.symbol;
 import java.util.List;
 
 public class BuildInFunctions {
-    public static final FunctionSymbol PRINT = new FunctionSymbol("print", List.of(new ParameterSymbol("text", TypeSymbol.ANY)), TypeSymbol.VOID);
-    public static final FunctionSymbol PRINTF = new FunctionSymbol("printf", List.of(new ParameterSymbol("text", TypeSymbol.ANY)), TypeSymbol.VOID);
+    public static final FunctionSymbol PRINT = new FunctionSymbol("print", List.of(new ParameterSymbol("text", TypeSymbol.ANY, 0)), TypeSymbol.VOID);
+    public static final FunctionSymbol PRINTF = new FunctionSymbol("printf", List.of(new ParameterSymbol("text", TypeSymbol.ANY, 0)), TypeSymbol.VOID);
     public static final FunctionSymbol READ = new FunctionSymbol("read", List.of(), TypeSymbol.STRING);
-    public static final FunctionSymbol RANDOM = new FunctionSymbol("random", List.of(new ParameterSymbol("max", TypeSymbol.INTEGER)), TypeSymbol.INTEGER);
+    public static final FunctionSymbol RANDOM = new FunctionSymbol("random", List.of(new ParameterSymbol("max", TypeSymbol.INTEGER, 0)), TypeSymbol.INTEGER);
 
     private BuildInFunctions() {
     }
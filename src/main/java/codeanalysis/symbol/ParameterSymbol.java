@@ -1,12 +1,12 @@
 package codeanalysis.symbol;
 
-import codeanalysis.symbol.variable.VariableSymbol;
+import codeanalysis.symbol.variable.LocalVariableSymbol;
 
-public class ParameterSymbol extends VariableSymbol {
+public class ParameterSymbol extends LocalVariableSymbol {
     private final SymbolKind kind;
 
-    public ParameterSymbol(String name, TypeSymbol type) {
-        super(name, type, false);
+    public ParameterSymbol(String name, TypeSymbol type, int index) {
+        super(name, type, false, index);
         this.kind = SymbolKind.PARAMETER;
     }
 
@@ -1,5 +1,5 @@
 package codeanalysis.symbol;
 
 public enum SymbolKind {
-    TYPE, PARAMETER, FUNCTION, VARIABLE
+    TYPE, PARAMETER, FUNCTION, GLOBAL_VARIABLE, LOCAL_VARIABLE
 }
@@ -0,0 +1,18 @@
+package codeanalysis.symbol.variable;
+
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.TypeSymbol;
+
+public class GlobalVariableSymbol extends VariableSymbol {
+    private final SymbolKind kind;
+
+    public GlobalVariableSymbol(String name, TypeSymbol type, boolean readOnly, int index) {
+        super(name, type, readOnly, index);
+        this.kind = SymbolKind.GLOBAL_VARIABLE;
+    }
+
+    @Override
+    public SymbolKind getKind() {
+        return kind;
+    }
+}
@@ -1,24 +1,22 @@
 package codeanalysis.symbol.variable;
 
 import codeanalysis.symbol.Symbol;
-import codeanalysis.symbol.SymbolKind;
 import codeanalysis.symbol.TypeSymbol;
 
-public class VariableSymbol extends Symbol {
+public abstract class VariableSymbol extends Symbol {
     private final String name;
 
     private final TypeSymbol type;
 
     private final boolean readOnly;
 
-    private final SymbolKind kind;
+    private final int index;
 
-    public VariableSymbol(String name, TypeSymbol type, boolean readOnly) {
+    protected VariableSymbol(String name, TypeSymbol type, boolean readOnly, int index) {
         this.name = name;
         this.type = type;
         this.readOnly = readOnly;
-        this.kind = SymbolKind.VARIABLE;
-
+        this.index = index;
     }
 
     @Override
@@ -46,9 +44,12 @@ public class VariableSymbol extends Symbol {
         return type;
     }
 
-    @Override
-    public SymbolKind getKind() {
-        return kind;
+    /**
+     * Slot of the variable inside its storage: the global slot array for globals,
+     * the activation frame of the declaring function for locals and parameters.
+     */
+    public int getIndex() {
+        return index;
     }
 
 }
@@ -8,9 +8,17 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.List;
 
+/*
+    A node never changes once the parser built it, so its span, location and last token are found
+    the first time they are asked for and kept. The binder and the diagnostics ask for them over and over,
+    and finding them walks down to the first and last tokens and builds the children lists on the way.
+ */
 public abstract class SyntaxNode {
 
     private final SyntaxTree tree;
+    private TextSpan span;
+    private TextLocation location;
+    private SyntaxToken lastToken;
 
     protected SyntaxNode(SyntaxTree tree) {
         this.tree = tree;
@@ -25,24 +33,27 @@ public abstract class SyntaxNode {
     }
 
     public TextSpan getSpan() {
-        TextSpan first = null;
-        TextSpan last = null;
-        if (!this.getChildren().isEmpty()) {
-            first = this.getChildren().get(0).getSpan();
-            last = this.getChildren().get(this.getChildren().size() - 1).getSpan();
+        if (span == null) {
+            List<SyntaxNode> children = getChildren();
+            TextSpan first = children.get(0).getSpan();
+            TextSpan last = children.get(children.size() - 1).getSpan();
+            span = TextSpan.fromBounds(first.start(), last.end());
         }
-        return TextSpan.fromBounds(first.start(), last.end());
+        return span;
     }
 
     public TextLocation getLocation() {
-        return new TextLocation(tree.getText(), getSpan());
+        if (location == null)
+            location = new TextLocation(tree.getText(), getSpan());
+        return location;
     }
 
     public SyntaxToken getLastToken() {
-        if (this instanceof SyntaxToken t)
-            return t;
-
-        return this.getChildren().get(this.getChildren().size() - 1).getLastToken();
+        if (lastToken == null) {
+            List<SyntaxNode> children = getChildren();
+            lastToken = children.get(children.size() - 1).getLastToken();
+        }
+        return lastToken;
     }
 
     public void writeTo(PrintWriter out) {
@@ -45,6 +45,11 @@ public class SyntaxToken extends SyntaxNode {
         return span;
     }
 
+    @Override
+    public SyntaxToken getLastToken() {
+        return this;
+    }
+
     public List<SyntaxNode> getChildren() {
         return children;
     }
@@ -7,10 +7,9 @@ import codeanalysis.source.handler.IParseHandler;
 import codeanalysis.source.handler.ParserHandler;
 import codeanalysis.source.handler.TokenParserHandler;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 public class SyntaxTree {
@@ -26,20 +25,10 @@ public class SyntaxTree {
         this.diagnostics = List.copyOf(handler.getDiagnostics());
     }
 
-    public static SyntaxTree load(String fileName) throws FileNotFoundException {
-        var file = new File(fileName);
-        if (file.exists()) {
-            var br = new BufferedReader(new FileReader(file));
-
-            var builder = new StringBuilder();
-            br.lines().forEach(line -> {
-                builder.append(line);
-                builder.append("\n");
-            });
-            var text = builder.toString();
-            var sourceText = SourceText.from(text, fileName);
-            return parse(sourceText);
-        }
+    public static SyntaxTree load(String fileName) throws IOException {
+        var path = Path.of(fileName);
+        if (Files.exists(path))
+            return parse(SourceText.map(path));
         return null;
     }
 
@@ -72,7 +61,6 @@ public class SyntaxTree {
     }
 
     public String toString(TextSpan span) {
-        var text = this.text.toString();
-        return text.substring(span.start(), span.length());
+        return text.toString(span);
     }
 }
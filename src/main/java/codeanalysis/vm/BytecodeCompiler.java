@@ -0,0 +1,457 @@
+package codeanalysis.vm;
+
+import codeanalysis.binding.conversion.BoundConversionExpression;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.assignment.BoundAssignmentExpression;
+import codeanalysis.binding.expression.binary.BoundBinaryExpression;
+import codeanalysis.binding.expression.binary.BoundBinaryOperatorKind;
+import codeanalysis.binding.expression.call.BoundCallExpression;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryOperatorKind;
+import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundExpressionStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundLabel;
+import codeanalysis.lowering.Lowerer;
+import codeanalysis.symbol.BuildInFunctions;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.ParameterSymbol;
+import codeanalysis.symbol.SymbolKind;
+import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Translates a lowered function body into a Chunk.
+    A local variable in slot s lives in register s of the bank matching its type,
+    temporaries are allocated above the frame size and released after every statement.
+ */
+public final class BytecodeCompiler {
+    private static final int NO_REGISTER = -1;
+    private static final int NO_OP = -1;
+
+    private final FunctionSymbol function;
+    private final BoundBlockStatement body;
+    private final Map<FunctionSymbol, Integer> functionIndexes;
+    private final boolean tracksResult;
+    private final int frameSize;
+
+    private int[] code = new int[64];
+    private int size;
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndexes = new HashMap<>();
+    private final Map<BoundLabel, Integer> labels = new HashMap<>();
+    private final Map<Integer, BoundLabel> fixups = new HashMap<>();
+
+    private int nextIntTemp;
+    private int nextRefTemp;
+    private int intRegisters;
+    private int refRegisters;
+
+    private BytecodeCompiler(FunctionSymbol function, BoundBlockStatement body,
+                             Map<FunctionSymbol, Integer> functionIndexes, boolean tracksResult) {
+        this.function = function;
+        this.body = body;
+        this.functionIndexes = functionIndexes;
+        this.tracksResult = tracksResult;
+        this.frameSize = Lowerer.getFrameSize(function, body);
+        this.intRegisters = frameSize;
+        this.refRegisters = frameSize;
+    }
+
+    public static Chunk compile(FunctionSymbol function, BoundBlockStatement body,
+                                Map<FunctionSymbol, Integer> functionIndexes, boolean tracksResult) throws Exception {
+        return new BytecodeCompiler(function, body, functionIndexes, tracksResult).compile();
+    }
+
+    private Chunk compile() throws Exception {
+        List<BoundStatement> statements = body.getStatements();
+        for (int i = 0; i < statements.size(); i++) {
+            nextIntTemp = frameSize;
+            nextRefTemp = frameSize;
+            compileStatement(statements.get(i), tracksResult && mayBeLastValue(statements, i));
+        }
+        emit(OpCode.RETURN);
+
+        for (var fixup : fixups.entrySet())
+            code[fixup.getKey()] = labels.get(fixup.getValue());
+
+        List<ParameterSymbol> parameters = function.getParameters();
+        boolean[] intParameters = new boolean[parameters.size()];
+        for (int i = 0; i < parameters.size(); i++)
+            intParameters[i] = isIntBank(parameters.get(i).getType());
+
+        return new Chunk(function, Arrays.copyOf(code, size), constants.toArray(), intRegisters, refRegisters,
+                intParameters, isIntBank(function.getType()));
+    }
+
+    // a value only needs to be recorded if no later statement can overwrite it before control leaves the block
+    private static boolean mayBeLastValue(List<BoundStatement> statements, int index) {
+        for (int i = index + 1; i < statements.size(); i++) {
+            switch (statements.get(i).getKind()) {
+                case EXPRESSION_STATEMENT, VARIABLE_DECLARATION_STATEMENT -> {
+                    return false;
+                }
+                case JUMP_TO_STATEMENT, CONDITIONAL_JUMP_TO_STATEMENT, LABEL_DECLARATION_STATEMENT,
+                        RETURN_STATEMENT -> {
+                    return true;
+                }
+                default -> {
+                }
+            }
+        }
+        return true;
+    }
+
+    private void compileStatement(BoundStatement statement, boolean recordResult) throws Exception {
+        switch (statement.getKind()) {
+            case EXPRESSION_STATEMENT -> {
+                BoundExpression expression = ((BoundExpressionStatement) statement).getExpression();
+                int register = compileExpression(expression, NO_REGISTER);
+                if (recordResult)
+                    emitResult(expression.getType(), register);
+            }
+            case VARIABLE_DECLARATION_STATEMENT -> {
+                var declaration = (BoundVariableDeclarationStatement) statement;
+                VariableSymbol variable = declaration.getVariable();
+                int register = compileStore(variable, declaration.getInitializer());
+                if (recordResult)
+                    emitResult(variable.getType(), register);
+            }
+            case LABEL_DECLARATION_STATEMENT -> labels.put(((BoundLabelDeclarationStatement) statement).getLabel(), size);
+            case JUMP_TO_STATEMENT -> {
+                emit(OpCode.JUMP);
+                emitLabel(((BoundJumpToStatement) statement).getLabel());
+            }
+            case CONDITIONAL_JUMP_TO_STATEMENT -> {
+                var jump = (BoundConditionalJumpToStatement) statement;
+                compileConditionalJump(jump.getCondition(), jump.isJumpIfTrue(), jump.getLabel());
+            }
+            case RETURN_STATEMENT -> compileReturnStatement((BoundReturnStatement) statement);
+            default -> throw new Exception("Unexpected node " + statement.getKind());
+        }
+    }
+
+    private void compileReturnStatement(BoundReturnStatement statement) throws Exception {
+        BoundExpression expression = statement.getExpression();
+        if (expression == null) {
+            emit(OpCode.RETURN);
+            return;
+        }
+        int register = compileExpression(expression, NO_REGISTER);
+        if (tracksResult)
+            emitResult(expression.getType(), register);
+        emit(isIntBank(expression.getType()) ? OpCode.RETURN_INT : OpCode.RETURN_REF, register);
+    }
+
+    private void emitResult(TypeSymbol type, int register) {
+        if (type == TypeSymbol.VOID)
+            emit(OpCode.RESULT_NONE);
+        else if (type == TypeSymbol.INTEGER)
+            emit(OpCode.RESULT_INT, register);
+        else if (type == TypeSymbol.BOOLEAN)
+            emit(OpCode.RESULT_BOOL, register);
+        else
+            emit(OpCode.RESULT_REF, register);
+    }
+
+    private void compileConditionalJump(BoundExpression condition, boolean jumpIfTrue, BoundLabel label) throws Exception {
+        if (condition instanceof BoundUnaryExpression u
+                && u.getOperator().getKind() == BoundUnaryOperatorKind.LOGICAL_NEGATION) {
+            compileConditionalJump(u.getRight(), !jumpIfTrue, label);
+            return;
+        }
+        if (condition instanceof BoundBinaryExpression b && isIntBank(b.getLeft().getType())) {
+            int opCode = compareJump(b.getOperator().getKind(), jumpIfTrue);
+            if (opCode != NO_OP) {
+                int left = compileOperand(b.getLeft(), b.getRight());
+                int right = compileExpression(b.getRight(), NO_REGISTER);
+                emit(opCode, left, right);
+                emitLabel(label);
+                return;
+            }
+        }
+        int register = compileExpression(condition, NO_REGISTER);
+        emit(jumpIfTrue ? OpCode.JUMP_IF_TRUE : OpCode.JUMP_IF_FALSE, register);
+        emitLabel(label);
+    }
+
+    private static int compareJump(BoundBinaryOperatorKind kind, boolean jumpIfTrue) {
+        return switch (kind) {
+            case LOGICAL_EQUALITY -> jumpIfTrue ? OpCode.JUMP_EQ : OpCode.JUMP_NE;
+            case LOGICAL_INEQUALITY -> jumpIfTrue ? OpCode.JUMP_NE : OpCode.JUMP_EQ;
+            case LESS_THAN -> jumpIfTrue ? OpCode.JUMP_LT : OpCode.JUMP_GE;
+            case LESS_EQUAL_THAN -> jumpIfTrue ? OpCode.JUMP_LE : OpCode.JUMP_GT;
+            case GREATER_THAN -> jumpIfTrue ? OpCode.JUMP_GT : OpCode.JUMP_LE;
+            case GREATER_EQUAL_THAN -> jumpIfTrue ? OpCode.JUMP_GE : OpCode.JUMP_LT;
+            default -> NO_OP;
+        };
+    }
+
+    /*
+        Compiles expression and returns the register holding its value.
+        When target is a register the value is guaranteed to end up there.
+     */
+    private int compileExpression(BoundExpression node, int target) throws Exception {
+        return switch (node.getKind()) {
+            case LITERAL_EXPRESSION -> compileLiteralExpression((BoundLiteralExpression) node, target);
+            case VARIABLE_EXPRESSION -> compileVariableExpression((BoundVariableExpression) node, target);
+            case ASSIGNMENT_EXPRESSION -> compileAssignmentExpression((BoundAssignmentExpression) node, target);
+            case UNARY_EXPRESSION -> compileUnaryExpression((BoundUnaryExpression) node, target);
+            case BINARY_EXPRESSION -> compileBinaryExpression((BoundBinaryExpression) node, target);
+            case CALL_EXPRESSION -> compileCallExpression((BoundCallExpression) node, target);
+            case CONVERSION_EXPRESSION -> compileConversionExpression((BoundConversionExpression) node, target);
+            default -> throw new Exception("Unexpected node " + node.getKind());
+        };
+    }
+
+    private int compileLiteralExpression(BoundLiteralExpression node, int target) {
+        Object value = node.getValue();
+        if (value instanceof Integer i) {
+            target = orTemp(target, TypeSymbol.INTEGER);
+            emit(OpCode.INT_CONST, target, i);
+        } else if (value instanceof Boolean b) {
+            target = orTemp(target, TypeSymbol.BOOLEAN);
+            emit(OpCode.INT_CONST, target, b ? 1 : 0);
+        } else {
+            target = orTemp(target, TypeSymbol.STRING);
+            emit(OpCode.REF_CONST, target, constant(value));
+        }
+        return target;
+    }
+
+    private int compileVariableExpression(BoundVariableExpression node, int target) {
+        VariableSymbol variable = node.getVariable();
+        boolean intBank = isIntBank(variable.getType());
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE) {
+            target = orTemp(target, variable.getType());
+            emit(intBank ? OpCode.LOAD_GLOBAL_INT : OpCode.LOAD_GLOBAL_REF, target, variable.getIndex());
+            return target;
+        }
+        int register = variable.getIndex();
+        if (target == NO_REGISTER || target == register)
+            return register;
+        emit(intBank ? OpCode.INT_MOVE : OpCode.REF_MOVE, target, register);
+        return target;
+    }
+
+    private int compileAssignmentExpression(BoundAssignmentExpression node, int target) throws Exception {
+        VariableSymbol variable = node.getVariable();
+        int register = compileStore(variable, node.getBoundExpression());
+        if (target == NO_REGISTER || target == register)
+            return register;
+        emit(isIntBank(variable.getType()) ? OpCode.INT_MOVE : OpCode.REF_MOVE, target, register);
+        return target;
+    }
+
+    private int compileStore(VariableSymbol variable, BoundExpression value) throws Exception {
+        boolean intBank = isIntBank(variable.getType());
+        if (variable.getKind() == SymbolKind.GLOBAL_VARIABLE) {
+            int register = compileExpression(value, NO_REGISTER);
+            emit(intBank ? OpCode.STORE_GLOBAL_INT : OpCode.STORE_GLOBAL_REF, variable.getIndex(), register);
+            return register;
+        }
+        return compileExpression(value, variable.getIndex());
+    }
+
+    private int compileUnaryExpression(BoundUnaryExpression node, int target) throws Exception {
+        int opCode = switch (node.getOperator().getKind()) {
+            case IDENTITY -> NO_OP;
+            case NEGATION -> OpCode.NEG;
+            case LOGICAL_NEGATION -> OpCode.NOT;
+            case ONES_COMPLEMENT -> OpCode.COMPLEMENT;
+        };
+        if (opCode == NO_OP)
+            return compileExpression(node.getRight(), target);
+        int operand = compileExpression(node.getRight(), NO_REGISTER);
+        target = orTemp(target, node.getType());
+        emit(opCode, target, operand);
+        return target;
+    }
+
+    private int compileBinaryExpression(BoundBinaryExpression node, int target) throws Exception {
+        boolean intOperands = isIntBank(node.getLeft().getType());
+        int opCode = switch (node.getOperator().getKind()) {
+            case ADDITION -> OpCode.ADD;
+            case SUBTRACTION -> OpCode.SUB;
+            case MULTIPLICATION -> OpCode.MUL;
+            case DIVISION -> OpCode.DIV;
+            case MOD -> OpCode.REM;
+            case LOGICAL_AND, BITWISE_AND -> OpCode.AND;
+            case BITWISE_OR -> OpCode.OR;
+            case BITWISE_XOR -> OpCode.XOR;
+            case LOGICAL_OR -> node.getType() == TypeSymbol.BOOLEAN ? OpCode.OR : OpCode.LOGICAL_OR;
+            case LOGICAL_EQUALITY -> intOperands ? OpCode.EQ : OpCode.REF_EQ;
+            case LOGICAL_INEQUALITY -> intOperands ? OpCode.NE : OpCode.REF_NE;
+            case LESS_THAN -> OpCode.LT;
+            case LESS_EQUAL_THAN -> OpCode.LE;
+            case GREATER_THAN -> OpCode.GT;
+            case GREATER_EQUAL_THAN -> OpCode.GE;
+            case CONCATENATION -> OpCode.CONCAT;
+        };
+        int left = compileOperand(node.getLeft(), node.getRight());
+        int right = compileExpression(node.getRight(), NO_REGISTER);
+        target = orTemp(target, node.getType());
+        emit(opCode, target, left, right);
+        return target;
+    }
+
+    private int compileCallExpression(BoundCallExpression node, int target) throws Exception {
+        FunctionSymbol callee = node.getFunction();
+        List<BoundExpression> args = node.getArgs();
+        if (callee.equals(BuildInFunctions.PRINT) || callee.equals(BuildInFunctions.PRINTF)) {
+            BoundExpression arg = args.get(0);
+            int register = compileExpression(arg, NO_REGISTER);
+            boolean newLine = callee.equals(BuildInFunctions.PRINTF);
+            if (arg.getType() == TypeSymbol.INTEGER)
+                emit(newLine ? OpCode.PRINTLN_INT : OpCode.PRINT_INT, register);
+            else if (arg.getType() == TypeSymbol.BOOLEAN)
+                emit(newLine ? OpCode.PRINTLN_BOOL : OpCode.PRINT_BOOL, register);
+            else
+                emit(newLine ? OpCode.PRINTLN_REF : OpCode.PRINT_REF, register);
+            return NO_REGISTER;
+        } else if (callee.equals(BuildInFunctions.READ)) {
+            target = orTemp(target, TypeSymbol.STRING);
+            emit(OpCode.READ, target);
+            return target;
+        } else if (callee.equals(BuildInFunctions.RANDOM)) {
+            int max = compileExpression(args.get(0), NO_REGISTER);
+            target = orTemp(target, TypeSymbol.INTEGER);
+            emit(OpCode.RANDOM, target, max);
+            return target;
+        }
+
+        int[] registers = new int[args.size()];
+        List<ParameterSymbol> parameters = callee.getParameters();
+        for (int i = 0; i < args.size(); i++) {
+            BoundExpression arg = args.get(i);
+            List<BoundExpression> rest = args.subList(i + 1, args.size());
+            int register = compileOperand(arg, rest.toArray(BoundExpression[]::new));
+            TypeSymbol parameterType = parameters.get(i).getType();
+            // 'any' parameters receive their arguments without a conversion node
+            if (!isIntBank(parameterType) && isIntBank(arg.getType())) {
+                int boxed = newTemp(TypeSymbol.ANY);
+                emit(arg.getType() == TypeSymbol.BOOLEAN ? OpCode.BOX_BOOL : OpCode.BOX_INT, boxed, register);
+                register = boxed;
+            }
+            registers[i] = register;
+        }
+        if (callee.getType() == TypeSymbol.VOID)
+            target = NO_REGISTER;
+        else
+            target = orTemp(target, callee.getType());
+
+        Integer index = functionIndexes.get(callee);
+        if (index == null)
+            throw new Exception("Unexpected function " + callee.getName());
+        emit(OpCode.CALL, index, target, registers.length);
+        for (int register : registers)
+            emit(register);
+        return target;
+    }
+
+    private int compileConversionExpression(BoundConversionExpression node, int target) throws Exception {
+        BoundExpression expression = node.getExpression();
+        TypeSymbol from = expression.getType();
+        TypeSymbol to = node.getType();
+        if (from == to || (to == TypeSymbol.ANY && !isIntBank(from)))
+            return compileExpression(expression, target);
+
+        int operand = compileExpression(expression, NO_REGISTER);
+        if (isIntBank(from) && !(to == TypeSymbol.ANY || to == TypeSymbol.STRING)) {
+            // int <-> boolean goes through the textual representation like the other conversions
+            int boxed = newTemp(TypeSymbol.ANY);
+            emit(from == TypeSymbol.BOOLEAN ? OpCode.BOX_BOOL : OpCode.BOX_INT, boxed, operand);
+            operand = boxed;
+            from = TypeSymbol.ANY;
+        }
+        int opCode;
+        if (to == TypeSymbol.ANY)
+            opCode = from == TypeSymbol.BOOLEAN ? OpCode.BOX_BOOL : OpCode.BOX_INT;
+        else if (to == TypeSymbol.STRING)
+            opCode = from == TypeSymbol.INTEGER ? OpCode.INT_TO_STRING
+                    : from == TypeSymbol.BOOLEAN ? OpCode.BOOL_TO_STRING : OpCode.REF_TO_STRING;
+        else if (to == TypeSymbol.INTEGER)
+            opCode = OpCode.REF_TO_INT;
+        else if (to == TypeSymbol.BOOLEAN)
+            opCode = OpCode.REF_TO_BOOL;
+        else
+            throw new Exception("Unexpected type " + to);
+        target = orTemp(target, to);
+        emit(opCode, target, operand);
+        return target;
+    }
+
+    /*
+        Compiles an operand whose register must still hold the same value after the following operands ran.
+        A variable register is read in place unless one of them assigns.
+     */
+    private int compileOperand(BoundExpression operand, BoundExpression... following) throws Exception {
+        for (BoundExpression expression : following) {
+            if (containsAssignment(expression))
+                return compileExpression(operand, newTemp(operand.getType()));
+        }
+        return compileExpression(operand, NO_REGISTER);
+    }
+
+    private static boolean containsAssignment(BoundExpression node) {
+        return switch (node.getKind()) {
+            case ASSIGNMENT_EXPRESSION -> true;
+            case UNARY_EXPRESSION -> containsAssignment(((BoundUnaryExpression) node).getRight());
+            case BINARY_EXPRESSION -> containsAssignment(((BoundBinaryExpression) node).getLeft())
+                    || containsAssignment(((BoundBinaryExpression) node).getRight());
+            case CONVERSION_EXPRESSION -> containsAssignment(((BoundConversionExpression) node).getExpression());
+            case CALL_EXPRESSION -> ((BoundCallExpression) node).getArgs().stream()
+                    .anyMatch(BytecodeCompiler::containsAssignment);
+            default -> false;
+        };
+    }
+
+    private static boolean isIntBank(TypeSymbol type) {
+        return type == TypeSymbol.INTEGER || type == TypeSymbol.BOOLEAN;
+    }
+
+    private int orTemp(int target, TypeSymbol type) {
+        return target == NO_REGISTER ? newTemp(type) : target;
+    }
+
+    private int newTemp(TypeSymbol type) {
+        if (isIntBank(type)) {
+            intRegisters = Math.max(intRegisters, nextIntTemp + 1);
+            return nextIntTemp++;
+        }
+        refRegisters = Math.max(refRegisters, nextRefTemp + 1);
+        return nextRefTemp++;
+    }
+
+    private int constant(Object value) {
+        return constantIndexes.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    private void emitLabel(BoundLabel label) {
+        fixups.put(size, label);
+        emit(0);
+    }
+
+    private void emit(int... values) {
+        if (size + values.length > code.length)
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + values.length));
+        System.arraycopy(values, 0, code, size, values.length);
+        size += values.length;
+    }
+}
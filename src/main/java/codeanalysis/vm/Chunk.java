@@ -0,0 +1,52 @@
+package codeanalysis.vm;
+
+import codeanalysis.symbol.FunctionSymbol;
+
+public final class Chunk {
+    private final FunctionSymbol function;
+    private final int[] code;
+    private final Object[] constants;
+    private final int intRegisters;
+    private final int refRegisters;
+    private final boolean[] intParameters;
+    private final boolean returnsInt;
+
+    public Chunk(FunctionSymbol function, int[] code, Object[] constants, int intRegisters, int refRegisters,
+                 boolean[] intParameters, boolean returnsInt) {
+        this.function = function;
+        this.code = code;
+        this.constants = constants;
+        this.intRegisters = intRegisters;
+        this.refRegisters = refRegisters;
+        this.intParameters = intParameters;
+        this.returnsInt = returnsInt;
+    }
+
+    public FunctionSymbol getFunction() {
+        return function;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public Object[] getConstants() {
+        return constants;
+    }
+
+    public int getIntRegisters() {
+        return intRegisters;
+    }
+
+    public int getRefRegisters() {
+        return refRegisters;
+    }
+
+    public boolean[] getIntParameters() {
+        return intParameters;
+    }
+
+    public boolean returnsInt() {
+        return returnsInt;
+    }
+}
@@ -0,0 +1,82 @@
+package codeanalysis.vm;
+
+/*
+    Instruction set of the register machine.
+    Every instruction is an opcode followed by its operands, all stored inline in the int[] stream.
+    Registers live in two banks: int/boolean values in the int bank, string/any values in the reference bank.
+    The comment next to each opcode lists its operands.
+ */
+public final class OpCode {
+    public static final int INT_CONST = 0;          // dst, value
+    public static final int REF_CONST = 1;          // dst, constant index
+    public static final int INT_MOVE = 2;           // dst, src
+    public static final int REF_MOVE = 3;           // dst, src
+
+    public static final int LOAD_GLOBAL_INT = 4;    // dst, global
+    public static final int LOAD_GLOBAL_REF = 6;    // dst, global
+    public static final int STORE_GLOBAL_INT = 7;   // global, src
+    public static final int STORE_GLOBAL_REF = 9;   // global, src
+
+    public static final int ADD = 10;               // dst, left, right
+    public static final int SUB = 11;
+    public static final int MUL = 12;
+    public static final int DIV = 13;
+    public static final int REM = 14;
+    public static final int AND = 15;
+    public static final int OR = 16;
+    public static final int XOR = 17;
+    public static final int LOGICAL_OR = 18;
+    public static final int EQ = 19;
+    public static final int NE = 20;
+    public static final int LT = 21;
+    public static final int LE = 22;
+    public static final int GT = 23;
+    public static final int GE = 24;
+    public static final int REF_EQ = 25;
+    public static final int REF_NE = 26;
+    public static final int CONCAT = 27;
+
+    public static final int NEG = 28;               // dst, src
+    public static final int NOT = 29;
+    public static final int COMPLEMENT = 30;
+
+    public static final int BOX_INT = 31;           // dst, src
+    public static final int BOX_BOOL = 32;
+    public static final int INT_TO_STRING = 33;
+    public static final int BOOL_TO_STRING = 34;
+    public static final int REF_TO_STRING = 35;
+    public static final int REF_TO_INT = 36;
+    public static final int REF_TO_BOOL = 37;
+
+    public static final int JUMP = 38;              // target
+    public static final int JUMP_IF_TRUE = 39;      // condition, target
+    public static final int JUMP_IF_FALSE = 40;     // condition, target
+    public static final int JUMP_EQ = 41;           // left, right, target
+    public static final int JUMP_NE = 42;
+    public static final int JUMP_LT = 43;
+    public static final int JUMP_LE = 44;
+    public static final int JUMP_GT = 45;
+    public static final int JUMP_GE = 46;
+
+    public static final int CALL = 47;              // function, dst, argc, args...
+    public static final int RETURN = 48;            //
+    public static final int RETURN_INT = 49;        // src
+    public static final int RETURN_REF = 50;        // src
+
+    public static final int PRINT_INT = 51;         // src
+    public static final int PRINT_BOOL = 52;
+    public static final int PRINT_REF = 53;
+    public static final int PRINTLN_INT = 54;
+    public static final int PRINTLN_BOOL = 55;
+    public static final int PRINTLN_REF = 56;
+    public static final int READ = 57;              // dst
+    public static final int RANDOM = 58;            // dst, max
+
+    public static final int RESULT_INT = 59;        // src
+    public static final int RESULT_BOOL = 60;       // src
+    public static final int RESULT_REF = 61;        // src
+    public static final int RESULT_NONE = 62;       //
+
+    private OpCode() {
+    }
+}
@@ -0,0 +1,372 @@
+package codeanalysis.vm;
+
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.evaluator.GlobalBanks;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.variable.VariableSymbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+public final class VirtualMachine {
+    private static final int RESULT_NONE = 0;
+    private static final int RESULT_INT = 1;
+    private static final int RESULT_BOOL = 2;
+    private static final int RESULT_REF = 3;
+
+    private final BoundProgram root;
+    private final Map<VariableSymbol, Object> variables;
+    private final Chunk[] chunks;
+    private final int mainIndex;
+
+    private final int[] globalInts;
+    private final Object[] globalRefs;
+    private final boolean[] assignedGlobals;
+
+    private final int intFrameSize;
+    private final int refFrameSize;
+    private final List<int[]> intFrames = new ArrayList<>();
+    private final List<Object[]> refFrames = new ArrayList<>();
+    private int depth;
+
+    private int intReturn;
+    private Object refReturn;
+
+    private int resultKind;
+    private int intResult;
+    private Object refResult;
+
+    public VirtualMachine(BoundProgram root, Map<VariableSymbol, Object> variables) throws Exception {
+        this.root = root;
+        this.variables = variables;
+
+        Map<FunctionSymbol, BoundBlockStatement> functions = new LinkedHashMap<>();
+        var current = root;
+        while (current != null) {
+            for (var fb : current.getFunctionsBodies().entrySet())
+                functions.putIfAbsent(fb.getKey(), fb.getValue());
+            current = current.getPrevious();
+        }
+        Map<FunctionSymbol, Integer> functionIndexes = new HashMap<>();
+        for (FunctionSymbol function : functions.keySet())
+            functionIndexes.put(function, functionIndexes.size());
+
+        this.chunks = new Chunk[functions.size()];
+        int intFrameSize = 0;
+        int refFrameSize = 0;
+        FunctionSymbol main = root.getMainFunction();
+        for (var fb : functions.entrySet()) {
+            FunctionSymbol function = fb.getKey();
+            Chunk chunk = BytecodeCompiler.compile(function, fb.getValue(), functionIndexes, function.equals(main));
+            chunks[functionIndexes.get(function)] = chunk;
+            intFrameSize = Math.max(intFrameSize, chunk.getIntRegisters());
+            refFrameSize = Math.max(refFrameSize, chunk.getRefRegisters());
+        }
+        this.intFrameSize = intFrameSize;
+        this.refFrameSize = refFrameSize;
+        this.mainIndex = functionIndexes.getOrDefault(main, -1);
+
+        int globalCount = root.getGlobalVariables().size();
+        this.globalInts = new int[globalCount];
+        this.globalRefs = new Object[globalCount];
+        this.assignedGlobals = new boolean[globalCount];
+    }
+
+    public Object evaluate() throws Exception {
+        if (mainIndex < 0)
+            return null;
+        loadGlobals();
+        try {
+            run(chunks[mainIndex], acquireInts(), acquireRefs());
+            depth--;
+        } finally {
+            storeGlobals();
+        }
+        return switch (resultKind) {
+            case RESULT_INT -> intResult;
+            case RESULT_BOOL -> intResult != 0;
+            case RESULT_REF -> refResult;
+            default -> null;
+        };
+    }
+
+    private void loadGlobals() {
+        GlobalBanks.load(root.getGlobalVariables(), variables, globalInts, globalRefs, assignedGlobals);
+    }
+
+    private void storeGlobals() {
+        GlobalBanks.store(root.getGlobalVariables(), variables, globalInts, globalRefs, assignedGlobals);
+    }
+
+    // register files are pooled per call depth and sized for the largest chunk
+    private int[] acquireInts() {
+        if (depth == intFrames.size()) {
+            intFrames.add(new int[intFrameSize]);
+            refFrames.add(new Object[refFrameSize]);
+        }
+        return intFrames.get(depth);
+    }
+
+    private Object[] acquireRefs() {
+        return refFrames.get(depth++);
+    }
+
+    private void run(Chunk chunk, int[] ints, Object[] refs) throws Exception {
+        final int[] code = chunk.getCode();
+        final Object[] constants = chunk.getConstants();
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case OpCode.INT_CONST -> {
+                    ints[code[pc + 1]] = code[pc + 2];
+                    pc += 3;
+                }
+                case OpCode.REF_CONST -> {
+                    refs[code[pc + 1]] = constants[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.INT_MOVE -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.REF_MOVE -> {
+                    refs[code[pc + 1]] = refs[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.LOAD_GLOBAL_INT -> {
+                    ints[code[pc + 1]] = globalInts[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.LOAD_GLOBAL_REF -> {
+                    refs[code[pc + 1]] = globalRefs[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.STORE_GLOBAL_INT -> {
+                    globalInts[code[pc + 1]] = ints[code[pc + 2]];
+                    assignedGlobals[code[pc + 1]] = true;
+                    pc += 3;
+                }
+                case OpCode.STORE_GLOBAL_REF -> {
+                    globalRefs[code[pc + 1]] = refs[code[pc + 2]];
+                    assignedGlobals[code[pc + 1]] = true;
+                    pc += 3;
+                }
+                case OpCode.ADD -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] + ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.SUB -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] - ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.MUL -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] * ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.DIV -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] / ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.REM -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] % ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.AND -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] & ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.OR -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] | ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.XOR -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] ^ ints[code[pc + 3]];
+                    pc += 4;
+                }
+                case OpCode.LOGICAL_OR -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] != 0 || ints[code[pc + 3]] != 0 ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.EQ -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] == ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.NE -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] != ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.LT -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] < ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.LE -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] <= ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.GT -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] > ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.GE -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] >= ints[code[pc + 3]] ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.REF_EQ -> {
+                    ints[code[pc + 1]] = refs[code[pc + 2]].equals(refs[code[pc + 3]]) ? 1 : 0;
+                    pc += 4;
+                }
+                case OpCode.REF_NE -> {
+                    ints[code[pc + 1]] = refs[code[pc + 2]].equals(refs[code[pc + 3]]) ? 0 : 1;
+                    pc += 4;
+                }
+                case OpCode.CONCAT -> {
+                    refs[code[pc + 1]] = refs[code[pc + 2]].toString() + refs[code[pc + 3]].toString();
+                    pc += 4;
+                }
+                case OpCode.NEG -> {
+                    ints[code[pc + 1]] = -ints[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.NOT -> {
+                    ints[code[pc + 1]] = ints[code[pc + 2]] ^ 1;
+                    pc += 3;
+                }
+                case OpCode.COMPLEMENT -> {
+                    ints[code[pc + 1]] = ~ints[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.BOX_INT -> {
+                    refs[code[pc + 1]] = ints[code[pc + 2]];
+                    pc += 3;
+                }
+                case OpCode.BOX_BOOL -> {
+                    refs[code[pc + 1]] = ints[code[pc + 2]] != 0;
+                    pc += 3;
+                }
+                case OpCode.INT_TO_STRING -> {
+                    refs[code[pc + 1]] = Integer.toString(ints[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OpCode.BOOL_TO_STRING -> {
+                    refs[code[pc + 1]] = Boolean.toString(ints[code[pc + 2]] != 0);
+                    pc += 3;
+                }
+                case OpCode.REF_TO_STRING -> {
+                    refs[code[pc + 1]] = refs[code[pc + 2]].toString();
+                    pc += 3;
+                }
+                case OpCode.REF_TO_INT -> {
+                    Object value = refs[code[pc + 2]];
+                    ints[code[pc + 1]] = value instanceof Integer i ? i : Integer.parseInt(value.toString());
+                    pc += 3;
+                }
+                case OpCode.REF_TO_BOOL -> {
+                    ints[code[pc + 1]] = Boolean.parseBoolean(refs[code[pc + 2]].toString()) ? 1 : 0;
+                    pc += 3;
+                }
+                case OpCode.JUMP -> pc = code[pc + 1];
+                case OpCode.JUMP_IF_TRUE -> pc = ints[code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+                case OpCode.JUMP_IF_FALSE -> pc = ints[code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+                case OpCode.JUMP_EQ -> pc = ints[code[pc + 1]] == ints[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_NE -> pc = ints[code[pc + 1]] != ints[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_LT -> pc = ints[code[pc + 1]] < ints[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_LE -> pc = ints[code[pc + 1]] <= ints[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_GT -> pc = ints[code[pc + 1]] > ints[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.JUMP_GE -> pc = ints[code[pc + 1]] >= ints[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case OpCode.CALL -> {
+                    Chunk callee = chunks[code[pc + 1]];
+                    int target = code[pc + 2];
+                    int argc = code[pc + 3];
+                    int[] calleeInts = acquireInts();
+                    Object[] calleeRefs = acquireRefs();
+                    boolean[] intParameters = callee.getIntParameters();
+                    for (int i = 0; i < argc; i++) {
+                        int register = code[pc + 4 + i];
+                        if (intParameters[i])
+                            calleeInts[i] = ints[register];
+                        else
+                            calleeRefs[i] = refs[register];
+                    }
+                    run(callee, calleeInts, calleeRefs);
+                    depth--;
+                    if (target >= 0) {
+                        if (callee.returnsInt())
+                            ints[target] = intReturn;
+                        else
+                            refs[target] = refReturn;
+                    }
+                    pc += 4 + argc;
+                }
+                case OpCode.RETURN -> {
+                    return;
+                }
+                case OpCode.RETURN_INT -> {
+                    intReturn = ints[code[pc + 1]];
+                    return;
+                }
+                case OpCode.RETURN_REF -> {
+                    refReturn = refs[code[pc + 1]];
+                    return;
+                }
+                case OpCode.PRINT_INT -> {
+                    System.out.print(ints[code[pc + 1]]);
+                    pc += 2;
+                }
+                case OpCode.PRINT_BOOL -> {
+                    System.out.print(ints[code[pc + 1]] != 0);
+                    pc += 2;
+                }
+                case OpCode.PRINT_REF -> {
+                    System.out.print(refs[code[pc + 1]]);
+                    pc += 2;
+                }
+                case OpCode.PRINTLN_INT -> {
+                    System.out.println(ints[code[pc + 1]]);
+                    pc += 2;
+                }
+                case OpCode.PRINTLN_BOOL -> {
+                    System.out.println(ints[code[pc + 1]] != 0);
+                    pc += 2;
+                }
+                case OpCode.PRINTLN_REF -> {
+                    System.out.println(refs[code[pc + 1]]);
+                    pc += 2;
+                }
+                case OpCode.READ -> {
+                    Scanner scanner = new Scanner(System.in);
+                    refs[code[pc + 1]] = scanner.nextLine();
+                    pc += 2;
+                }
+                case OpCode.RANDOM -> {
+                    ints[code[pc + 1]] = (int) Math.floor(Math.random() * (ints[code[pc + 2]] + 1));
+                    pc += 3;
+                }
+                case OpCode.RESULT_INT -> {
+                    resultKind = RESULT_INT;
+                    intResult = ints[code[pc + 1]];
+                    pc += 2;
+                }
+                case OpCode.RESULT_BOOL -> {
+                    resultKind = RESULT_BOOL;
+                    intResult = ints[code[pc + 1]];
+                    pc += 2;
+                }
+                case OpCode.RESULT_REF -> {
+                    resultKind = RESULT_REF;
+                    refResult = refs[code[pc + 1]];
+                    pc += 2;
+                }
+                case OpCode.RESULT_NONE -> {
+                    resultKind = RESULT_NONE;
+                    pc += 1;
+                }
+                default -> throw new Exception("Unexpected op code " + code[pc]);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package compilation;
+
+public enum Backend {
+    EVALUATOR,
+    NODE_INTERPRETER,
+    VIRTUAL_MACHINE,
+    TIERED
+}
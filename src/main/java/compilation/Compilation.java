@@ -6,9 +6,15 @@ import codeanalysis.binding.scopes.BoundGlobalScope;
 import codeanalysis.controlflow.ControlFlowGraph;
 import codeanalysis.diagnostics.Diagnostic;
 import codeanalysis.evaluator.Evaluator;
+import codeanalysis.evaluator.Tiering;
+import codeanalysis.evaluator.node.NodeInterpreter;
+import codeanalysis.lowering.Inliner;
 import codeanalysis.symbol.variable.VariableSymbol;
 import codeanalysis.syntax.SyntaxTree;
+import codeanalysis.vm.VirtualMachine;
 import emit.Emitter;
+import emit.ProgramLoader;
+import emit.TierCompiler;
 import io.BoundNodeWriter;
 import io.DiagnosticsWriter;
 import io.SymbolWriter;
@@ -27,10 +33,14 @@ public class Compilation {
     private final List<SyntaxTree> trees;
 
     private final AtomicReference<BoundGlobalScope> globalScope = new AtomicReference<>();
+    private final AtomicReference<BoundProgram> program = new AtomicReference<>();
+    private final AtomicReference<Tiering> tiering = new AtomicReference<>();
+    private int inliningBudget;
 
     private Compilation(Compilation previous, SyntaxTree... trees) {
         this.trees = List.of(trees);
         this.previous = previous;
+        this.inliningBudget = previous == null ? Inliner.DEFAULT_BUDGET : previous.inliningBudget;
     }
 
     public static Compilation create(SyntaxTree... trees) {
@@ -49,9 +59,29 @@ public class Compilation {
         return previous;
     }
 
+    /**
+     * Sets the largest function, in bound nodes, copied into its callers, 0 to keep every call.
+     * Only has an effect before the program is bound, and carries over to the submissions continuing this one.
+     */
+    public Compilation setInliningBudget(int inliningBudget) {
+        this.inliningBudget = inliningBudget;
+        return this;
+    }
+
     private BoundProgram getProgram() throws Exception {
-        var previous = getPrevious() == null ? null : getPrevious().getProgram();
-        return Binder.bindProgram(previous, getGlobalScope());
+        if (this.program.get() == null) {
+            var previous = getPrevious() == null ? null : getPrevious().getProgram();
+            BoundProgram program = Binder.bindProgram(previous, getGlobalScope(), inliningBudget);
+            this.program.compareAndSet(null, program);
+        }
+        return this.program.get();
+    }
+
+    // the same program keeps its hot functions compiled between evaluations
+    private Tiering getTiering() {
+        if (this.tiering.get() == null)
+            this.tiering.compareAndSet(null, new Tiering(new TierCompiler()));
+        return this.tiering.get();
     }
 
     private BoundGlobalScope getGlobalScope() throws Exception {
@@ -68,6 +98,21 @@ public class Compilation {
     }
 
     public EvaluationResult evaluate(Map<VariableSymbol, Object> variables) throws Exception {
+        return evaluate(variables, Backend.EVALUATOR);
+    }
+
+    public EvaluationResult evaluate(Map<VariableSymbol, Object> variables, Backend backend) throws Exception {
+        return evaluate(variables, backend, backend == Backend.TIERED ? getTiering() : null);
+    }
+
+    /**
+     * Evaluates with the given tiering, profiles and compiled functions carry over every evaluation it is used for.
+     */
+    public EvaluationResult evaluate(Map<VariableSymbol, Object> variables, Tiering tiering) throws Exception {
+        return evaluate(variables, Backend.TIERED, tiering);
+    }
+
+    private EvaluationResult evaluate(Map<VariableSymbol, Object> variables, Backend backend, Tiering tiering) throws Exception {
         BoundGlobalScope globalScope = getGlobalScope();
         var treesDiagnostics = new ArrayList<Diagnostic>();
         trees.forEach(tree -> treesDiagnostics.addAll(tree.getDiagnostics()));
@@ -82,29 +127,65 @@ public class Compilation {
 
         if (!program.getDiagnostics().isEmpty())
             return new EvaluationResult(program.getDiagnostics().getDiagnostics(), null);
-        Evaluator evaluator = new Evaluator(program, variables);
-        Object result = evaluator.evaluate();
+        Object result = switch (backend) {
+            case EVALUATOR -> new Evaluator(program, variables).evaluate();
+            case NODE_INTERPRETER -> new NodeInterpreter(program, variables).evaluate();
+            case VIRTUAL_MACHINE -> new VirtualMachine(program, variables).evaluate();
+            case TIERED -> new Evaluator(program, variables, tiering).evaluate();
+        };
         return new EvaluationResult(diagnostics, result);
     }
 
     public void emmit() throws Exception {
+        var diagnostics = getEmitDiagnostics();
+        if (!diagnostics.isEmpty()) {
+            DiagnosticsWriter.write(diagnostics);
+            return;
+        }
+        var emitter = new Emitter(getProgram());
+        emitter.emit();
+    }
+
+    /**
+     * Emits the program in memory under a class name no other compilation uses.
+     */
+    public EmitResult emitClass() throws Exception {
+        var diagnostics = getEmitDiagnostics();
+        if (!diagnostics.isEmpty())
+            return new EmitResult(diagnostics, null, null);
+        var className = ProgramLoader.nextClassName();
+        var emitter = new Emitter(getProgram(), className);
+        return new EmitResult(diagnostics, className, emitter.emitClass());
+    }
+
+    /**
+     * Emits the program and runs its main in this JVM, without writing the class anywhere.
+     */
+    public EmitResult run(String[] args) throws Exception {
+        var emitted = emitClass();
+        if (!emitted.diagnostics().isEmpty())
+            return emitted;
+        try {
+            ProgramLoader.loadMain(emitted.bytes()).invokeExact(args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new Exception(t);
+        }
+        return emitted;
+    }
+
+    private List<Diagnostic> getEmitDiagnostics() throws Exception {
         BoundGlobalScope globalScope = getGlobalScope();
         var treesDiagnostics = new ArrayList<Diagnostic>();
         trees.forEach(tree -> treesDiagnostics.addAll(tree.getDiagnostics()));
         List<Diagnostic> diagnostics = Stream.concat(globalScope.getDiagnostics().stream(),
                         treesDiagnostics.stream())
                 .collect(Collectors.toList());
-        if (!diagnostics.isEmpty()) {
-            DiagnosticsWriter.write(diagnostics);
-            return;
-        }
+        if (!diagnostics.isEmpty())
+            return diagnostics;
         var program = getProgram();
-        if (!program.getDiagnostics().isEmpty()) {
-            DiagnosticsWriter.write(program.getDiagnostics().toUnmodifiableList());
-            return;
-        }
-        var emitter = new Emitter(program);
-        emitter.emit();
+        return program.getDiagnostics().toUnmodifiableList();
     }
 
     public void emitTree(PrintWriter printWriter) throws Exception {
@@ -119,6 +200,14 @@ public class Compilation {
 
     }
 
+    public void writeOptimizationReport(PrintWriter printWriter) throws Exception {
+        BoundProgram program = getProgram();
+        for (var decision : program.getInlining())
+            printWriter.println(decision);
+        printWriter.print(program.getStatistics());
+        printWriter.flush();
+    }
+
     public void writeFlowGraph() throws Exception {
         BoundProgram program = getProgram();
         var fileName = trees.get(0).getRoot().getLocation().fileName();
@@ -0,0 +1,8 @@
+package compilation;
+
+import codeanalysis.diagnostics.Diagnostic;
+
+import java.util.List;
+
+public record EmitResult(List<Diagnostic> diagnostics, String className, byte[] bytes) {
+}
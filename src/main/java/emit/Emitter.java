@@ -9,7 +9,9 @@ import codeanalysis.binding.expression.binary.BoundBinaryOperatorKind;
 import codeanalysis.binding.expression.call.BoundCallExpression;
 import codeanalysis.binding.expression.literal.BoundLiteralExpression;
 import codeanalysis.binding.expression.unary.BoundUnaryExpression;
+import codeanalysis.binding.expression.unary.BoundUnaryOperatorKind;
 import codeanalysis.binding.expression.variable.BoundVariableExpression;
+import codeanalysis.binding.statement.BoundStatement;
 import codeanalysis.binding.statement.block.BoundBlockStatement;
 import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
 import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
@@ -18,34 +20,68 @@ import codeanalysis.binding.statement.expression.BoundReturnStatement;
 import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
 import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
 import codeanalysis.binding.statement.jumpto.BoundLabel;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.controlflow.dataflow.DefiniteAssignment;
+import codeanalysis.controlflow.dataflow.InterferenceGraph;
+import codeanalysis.controlflow.dataflow.Liveness;
+import codeanalysis.lowering.ConstantFolder;
 import codeanalysis.symbol.BuildInFunctions;
 import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.symbol.SymbolKind;
 import codeanalysis.symbol.TypeSymbol;
+import codeanalysis.symbol.variable.LocalVariableSymbol;
 import codeanalysis.symbol.variable.VariableSymbol;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 public class Emitter {
+    private static final Handle CONCATENATION_BOOTSTRAP = new Handle(Opcodes.H_INVOKESTATIC,
+            "java/lang/invoke/StringConcatFactory", "makeConcatWithConstants",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;"
+                    + "Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
+    private static final char CONCATENATION_ARGUMENT = '\u0001';
+    private static final char CONCATENATION_CONSTANT = '\u0002';
+    // StringConcatFactory takes at most 200 argument slots
+    private static final int MAX_CONCATENATION_ARGUMENTS = 199;
     private final String className;
     private final ClassWriter cw;
     private MethodVisitor mv;
     private final Map<FunctionSymbol, BoundBlockStatement> functions = new HashMap<>();
+    private final List<FunctionSymbol> linkedFunctions;
+    private final List<VariableSymbol> globals;
     private final Map<BoundLabel, Label> labels = new HashMap<>();
     private Map<VariableSymbol, Integer> variables;
     private int variableIndex;
-    private int maxLocals;
+    private FrameWriter frames;
+    private Object[] parameterTypes;
+    private Liveness liveness;
+    private Set<BoundLabel> jumpTargets;
 
 
     public Emitter(BoundProgram program) {
-        cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
-        className = "GeneratedClass";
+        this(program, "GeneratedClass");
+    }
+
+    public Emitter(BoundProgram program, String className) {
+        cw = new ClassWriter(0);
+        this.className = className;
+        linkedFunctions = null;
+        globals = program.getGlobalVariables();
         var current = program;
         while (current != null) {
             for (var fb : current.getFunctionsBodies().entrySet()) {
@@ -57,17 +93,35 @@ public class Emitter {
         }
     }
 
-    public void emit() throws Exception {
-        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+    /*
+        Emits a class holding only the given function.
+        Calls to any other function are linked through invokedynamic and bootstrapped by TierBridge,
+        the n-th call site target being getLinkedFunctions().get(n).
+     */
+    public Emitter(String className, FunctionSymbol function, BoundBlockStatement body) {
+        cw = new ClassWriter(0);
+        this.className = className;
+        linkedFunctions = new ArrayList<>();
+        globals = List.of();
+        functions.put(function, body);
+    }
+
+    public byte[] emitClass() {
+        cw.visit(Opcodes.V11, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
         emitConstructor();
-        for (var function : functions.entrySet()) {
-            maxLocals = 0;
+        // main's top level variables are static fields, so every function of the class can reach them
+        for (var global : globals)
+            cw.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC, global.getName(),
+                    typeDescriptor(global.getType()), null, null).visitEnd();
+        for (var function : functions.entrySet())
             createFunction(function.getKey(), function.getValue());
-        }
         cw.visitEnd();
+        return cw.toByteArray();
+    }
 
+    public void emit() throws Exception {
         // Write the bytes as a class file
-        byte[] bytes = cw.toByteArray();
+        byte[] bytes = emitClass();
         try (FileOutputStream stream = new FileOutputStream(className + ".class")) {
             stream.write(bytes);
         }
@@ -89,19 +143,70 @@ public class Emitter {
         var descriptor = "";
         if (function.getName().equals("main")) {
             variables = new HashMap<>();
-            variables.put(new VariableSymbol("args", TypeSymbol.ANY, false), 0);
+            variables.put(new LocalVariableSymbol("args", TypeSymbol.ANY, false, 0), 0);
             descriptor = "([Ljava/lang/String;)V";
         } else {
             variables = setParams(function);
             descriptor = descriptorBuilder(function);
         }
         variableIndex = variables.size();
-        mv = cw.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, function.getName(), descriptor, null, null);
-        emitStatement(block);
-        mv.visitMaxs(64, maxLocals);
+        parameterTypes = new Object[variableIndex];
+        for (var parameter : variables.entrySet())
+            parameterTypes[parameter.getValue()] = function.getName().equals("main")
+                    ? "[Ljava/lang/String;" : verificationType(parameter.getKey().getType());
+        var graph = ControlFlowGraph.create(block);
+        mapSlots(block, graph);
+        frames = new FrameWriter(cw.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC,
+                function.getName(), descriptor, null, null), Arrays.copyOf(parameterTypes, variableIndex));
+        mv = frames;
+        emitStatement(graph);
+        mv.visitMaxs(frames.getMaxStack(), variableIndex);
         mv.visitEnd();
     }
 
+    /*
+        Locals get their slots before emitting, in declaration order, each taking the lowest slot
+        not held by a variable it interferes with. Variables never live at the same time share a slot,
+        parameters keep theirs and the slot of a dead parameter can be reused.
+     */
+    private void mapSlots(BoundBlockStatement block, ControlFlowGraph graph) {
+        var interference = InterferenceGraph.build(graph);
+        liveness = interference.getLiveness();
+        jumpTargets = new HashSet<>();
+        for (var statement : block.getStatements()) {
+            if (statement instanceof BoundVariableDeclarationStatement d && !isGlobal(d.getVariable())) {
+                BitSet taken = new BitSet();
+                for (var neighbour : interference.getNeighbours(d.getVariable())) {
+                    Integer slot = variables.get(neighbour);
+                    if (slot != null)
+                        taken.set(slot);
+                }
+                int slot = taken.nextClearBit(0);
+                variables.put(d.getVariable(), slot);
+                variableIndex = Math.max(variableIndex, slot + 1);
+            } else if (statement instanceof BoundJumpToStatement j) {
+                jumpTargets.add(j.getLabel());
+            } else if (statement instanceof BoundConditionalJumpToStatement j) {
+                jumpTargets.add(j.getLabel());
+            }
+        }
+    }
+
+    /*
+        Only the variables live at the start of a block are in its frame, any other slot is TOP:
+        a shared slot may hold a value of another type left by a variable that is dead by then.
+     */
+    private Object[] blockLocals(BasicBlock block, DefiniteAssignment assignment) {
+        var locals = new Object[variableIndex];
+        BitSet live = liveness.getLiveIn(block);
+        for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+            var variable = liveness.getVariables().get(i);
+            if (assignment.isAssignedIn(block, variable))
+                locals[variables.get(variable)] = verificationType(variable.getType());
+        }
+        return locals;
+    }
+
     private void mapLabels(BoundBlockStatement block) {
         for (var statement : block.getStatements()) {
             if (statement instanceof BoundLabelDeclarationStatement b)
@@ -109,23 +214,35 @@ public class Emitter {
         }
     }
 
-    private void emitStatement(BoundBlockStatement block) {
+    private void emitStatement(ControlFlowGraph graph) {
         mv.visitCode();
-        for (var statement : block.getStatements()) {
-            switch (statement.getKind()) {
-                case EXPRESSION_STATEMENT -> emitExpressionStatement((BoundExpressionStatement) statement);
-                case VARIABLE_DECLARATION_STATEMENT ->
-                        emitVariableDeclarationStatement((BoundVariableDeclarationStatement) statement);
-                case JUMP_TO_STATEMENT -> emitJumpToStatement((BoundJumpToStatement) statement);
-                case CONDITIONAL_JUMP_TO_STATEMENT ->
-                        emitConditionalJumpToStatement((BoundConditionalJumpToStatement) statement);
-                case RETURN_STATEMENT -> emitReturnStatement((BoundReturnStatement) statement);
-                case LABEL_DECLARATION_STATEMENT -> emitLabel((BoundLabelDeclarationStatement) statement);
-                default -> throw new RuntimeException("Unexpected node " + statement.getKind());
+        var assignment = DefiniteAssignment.analyze(graph);
+        // blocks the graph left out are unreachable and never emitted, so every emitted label has a known frame
+        for (var block : graph.getBlocks()) {
+            if (block.isStart() || block.isEnd())
+                continue;
+            for (var statement : block.getStatements()) {
+                if (statement instanceof BoundLabelDeclarationStatement l)
+                    emitLabel(l, blockLocals(block, assignment));
+                else
+                    emitStatement(statement);
             }
         }
     }
 
+    private void emitStatement(BoundStatement statement) {
+        switch (statement.getKind()) {
+            case EXPRESSION_STATEMENT -> emitExpressionStatement((BoundExpressionStatement) statement);
+            case VARIABLE_DECLARATION_STATEMENT ->
+                    emitVariableDeclarationStatement((BoundVariableDeclarationStatement) statement);
+            case JUMP_TO_STATEMENT -> emitJumpToStatement((BoundJumpToStatement) statement);
+            case CONDITIONAL_JUMP_TO_STATEMENT ->
+                    emitConditionalJumpToStatement((BoundConditionalJumpToStatement) statement);
+            case RETURN_STATEMENT -> emitReturnStatement((BoundReturnStatement) statement);
+            default -> throw new RuntimeException("Unexpected node " + statement.getKind());
+        }
+    }
+
     private void emitExpressionStatement(BoundExpressionStatement statement) {
         emitExpression(statement.getExpression());
         if (statement.getExpression().getType() != TypeSymbol.VOID)
@@ -144,9 +261,127 @@ public class Emitter {
 
     private void emitConditionalJumpToStatement(BoundConditionalJumpToStatement statement) {
         var label = labels.get(statement.getLabel());
-        emitExpression(statement.getCondition());
-        var opcode = statement.isJumpIfTrue() ? Opcodes.IFNE : Opcodes.IFEQ;
-        mv.visitJumpInsn(opcode, label);
+        emitBranch(statement.getCondition(), label, statement.isJumpIfTrue());
+    }
+
+    /*
+        Jumps to the target when the condition evaluates to jumpIfTrue and falls through otherwise.
+        Comparisons branch on their operands instead of pushing a boolean and testing it.
+        && and || only skip their right operand when it has no side effects, every other backend evaluates both.
+     */
+    private void emitBranch(BoundExpression condition, Label target, boolean jumpIfTrue) {
+        // constant conditions are folded the same way the control flow graph folds them
+        if (condition instanceof BoundLiteralExpression l) {
+            if ((boolean) l.getValue() == jumpIfTrue)
+                mv.visitJumpInsn(Opcodes.GOTO, target);
+            return;
+        }
+        if (condition instanceof BoundUnaryExpression u
+                && u.getOperator().getKind() == BoundUnaryOperatorKind.LOGICAL_NEGATION) {
+            emitBranch(u.getRight(), target, !jumpIfTrue);
+            return;
+        }
+        if (condition instanceof BoundBinaryExpression b) {
+            var kind = b.getOperator().getKind();
+            int compare = compareOpcode(b);
+            if (compare >= 0) {
+                emitExpression(b.getLeft());
+                var right = b.getRight();
+                if (right instanceof BoundLiteralExpression l && Integer.valueOf(0).equals(l.getValue())) {
+                    // IFxx are laid out like IF_ICMPxx and compare against zero
+                    compare -= Opcodes.IF_ICMPEQ - Opcodes.IFEQ;
+                } else {
+                    emitExpression(right);
+                }
+                mv.visitJumpInsn(jumpIfTrue ? compare : negateCompare(compare), target);
+                return;
+            }
+            if (b.getLeft().getType() == TypeSymbol.STRING
+                    && (kind == BoundBinaryOperatorKind.LOGICAL_EQUALITY || kind == BoundBinaryOperatorKind.LOGICAL_INEQUALITY)) {
+                emitStringEquals(b);
+                var jumpIfEqual = (kind == BoundBinaryOperatorKind.LOGICAL_EQUALITY) == jumpIfTrue;
+                mv.visitJumpInsn(jumpIfEqual ? Opcodes.IFNE : Opcodes.IFEQ, target);
+                return;
+            }
+            if (canShortCircuit(b)) {
+                if ((kind == BoundBinaryOperatorKind.LOGICAL_AND) != jumpIfTrue) {
+                    // either operand alone decides the jump
+                    emitBranch(b.getLeft(), target, jumpIfTrue);
+                    emitBranch(b.getRight(), target, jumpIfTrue);
+                } else {
+                    var skip = new Label();
+                    emitBranch(b.getLeft(), skip, !jumpIfTrue);
+                    emitBranch(b.getRight(), target, jumpIfTrue);
+                    mv.visitLabel(skip);
+                }
+                return;
+            }
+        }
+        emitExpression(condition);
+        mv.visitJumpInsn(jumpIfTrue ? Opcodes.IFNE : Opcodes.IFEQ, target);
+    }
+
+    private void emitBooleanValue(BoundExpression condition) {
+        var falseLabel = new Label();
+        var endLabel = new Label();
+        emitBranch(condition, falseLabel, false);
+        mv.visitInsn(Opcodes.ICONST_1);
+        mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+        mv.visitLabel(falseLabel);
+        mv.visitInsn(Opcodes.ICONST_0);
+        mv.visitLabel(endLabel);
+    }
+
+    private void emitStringEquals(BoundBinaryExpression b) {
+        emitExpression(b.getLeft());
+        emitExpression(b.getRight());
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+    }
+
+    /**
+     * @return the IF_ICMPxx jumping when the comparison holds, -1 when the operands are not primitive
+     */
+    private int compareOpcode(BoundBinaryExpression b) {
+        var type = b.getLeft().getType();
+        if (type != TypeSymbol.INTEGER && type != TypeSymbol.BOOLEAN)
+            return -1;
+        return switch (b.getOperator().getKind()) {
+            case LOGICAL_EQUALITY -> Opcodes.IF_ICMPEQ;
+            case LOGICAL_INEQUALITY -> Opcodes.IF_ICMPNE;
+            case LESS_THAN -> Opcodes.IF_ICMPLT;
+            case LESS_EQUAL_THAN -> Opcodes.IF_ICMPLE;
+            case GREATER_THAN -> Opcodes.IF_ICMPGT;
+            case GREATER_EQUAL_THAN -> Opcodes.IF_ICMPGE;
+            default -> -1;
+        };
+    }
+
+    private int negateCompare(int opcode) {
+        return switch (opcode) {
+            case Opcodes.IF_ICMPEQ -> Opcodes.IF_ICMPNE;
+            case Opcodes.IF_ICMPNE -> Opcodes.IF_ICMPEQ;
+            case Opcodes.IF_ICMPLT -> Opcodes.IF_ICMPGE;
+            case Opcodes.IF_ICMPGE -> Opcodes.IF_ICMPLT;
+            case Opcodes.IF_ICMPGT -> Opcodes.IF_ICMPLE;
+            case Opcodes.IF_ICMPLE -> Opcodes.IF_ICMPGT;
+            case Opcodes.IFEQ -> Opcodes.IFNE;
+            case Opcodes.IFNE -> Opcodes.IFEQ;
+            case Opcodes.IFLT -> Opcodes.IFGE;
+            case Opcodes.IFGE -> Opcodes.IFLT;
+            case Opcodes.IFGT -> Opcodes.IFLE;
+            case Opcodes.IFLE -> Opcodes.IFGT;
+            default -> throw new RuntimeException("Unexpected opcode " + opcode);
+        };
+    }
+
+    // the interpreters evaluate both operands, so the right one can only be skipped when it changes nothing and cannot fail
+    private boolean canShortCircuit(BoundBinaryExpression b) {
+        var kind = b.getOperator().getKind();
+        return (kind == BoundBinaryOperatorKind.LOGICAL_AND || kind == BoundBinaryOperatorKind.LOGICAL_OR)
+                && b.getLeft().getType() == TypeSymbol.BOOLEAN
+                && !(b.getLeft() instanceof BoundLiteralExpression)
+                && !(b.getRight() instanceof BoundLiteralExpression)
+                && ConstantFolder.isPure(b.getRight());
     }
 
     private void emitJumpToStatement(BoundJumpToStatement statement) {
@@ -154,20 +389,18 @@ public class Emitter {
         mv.visitJumpInsn(Opcodes.GOTO, label);
     }
 
-    private void emitLabel(BoundLabelDeclarationStatement statement) {
+    private void emitLabel(BoundLabelDeclarationStatement statement, Object[] locals) {
         var label = labels.get(statement.getLabel());
-        mv.visitLabel(label);
-
+        frames.visitBlockLabel(label, locals, jumpTargets.contains(statement.getLabel()));
     }
 
     private void emitVariableDeclarationStatement(BoundVariableDeclarationStatement statement) {
         emitExpression(statement.getInitializer());
-        if (statement.getVariable().getType() == TypeSymbol.ANY && statement.getInitializer() instanceof BoundConversionExpression b) {
-            emitConversionToObject(b.getFrom());
+        if (isGlobal(statement.getVariable())) {
+            emitFieldInsn(Opcodes.PUTSTATIC, statement.getVariable());
+            return;
         }
-        variables.put(statement.getVariable(), variableIndex);
-        mv.visitVarInsn(typeStore(statement.getVariable().getType()), variableIndex++);
-        maxLocals++;
+        mv.visitVarInsn(typeStore(statement.getVariable().getType()), variables.get(statement.getVariable()));
     }
 
     private void emitExpression(BoundExpression node) {
@@ -202,7 +435,9 @@ public class Emitter {
                     "valueOf", "(Ljava/lang/String;)" + objectDescriptor, false);
             mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner,
                     typeCaster, "()" + descriptor, false);
-        } else if (type != TypeSymbol.ANY)
+        } else if (type == TypeSymbol.ANY) {
+            emitConversionToObject(node.getExpression());
+        } else
             throw new RuntimeException("Unexpected type " + type);
     }
 
@@ -215,8 +450,15 @@ public class Emitter {
             mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "random", "()D", false);
         }
         var descriptor = descriptorBuilder(node.getFunction());
-        for (var argument : node.getArgs())
+        var parameters = node.getFunction().getParameters();
+        var builtIn = BuildInFunctions.getAll().contains(node.getFunction());
+        for (int i = 0; i < node.getArgs().size(); i++) {
+            var argument = node.getArgs().get(i);
             emitExpression(argument);
+            // the binder passes an argument to an any parameter as it is, the method takes it as an Object
+            if (!builtIn && parameters.get(i).getType() == TypeSymbol.ANY)
+                emitConversionToObject(argument);
+        }
         if (node.getFunction().equals(BuildInFunctions.PRINT)) {
             var type = typeDescriptor(node.getArgs().get(0).getType());
             mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", "print", "(" + type + ")V", false);
@@ -224,6 +466,8 @@ public class Emitter {
             var type = typeDescriptor(node.getArgs().get(0).getType());
             mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/PrintStream", "println", "(" + type + ")V", false);
         } else if (node.getFunction().equals(BuildInFunctions.READ)) {
+            if (linkedFunctions != null)
+                throw new RuntimeException("Unexpected read in a single function class");
             mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System", "console", "()Ljava/io/Console;", false);
             mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/io/Console", "readLine", descriptor, false);
         } else if (node.getFunction().equals(BuildInFunctions.RANDOM)) {
@@ -233,29 +477,21 @@ public class Emitter {
             mv.visitInsn(Opcodes.DMUL);
             mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "floor", "(D)D", false);
             mv.visitInsn(Opcodes.D2I);
+        } else if (functions.containsKey(node.getFunction())) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, node.getFunction().getName(), descriptor, false);
         } else {
-            mv.visitMethodInsn(Opcodes.INVOKESTATIC, "GeneratedClass", node.getFunction().getName(), descriptor, false);
+            int index = linkedFunctions.indexOf(node.getFunction());
+            if (index < 0) {
+                index = linkedFunctions.size();
+                linkedFunctions.add(node.getFunction());
+            }
+            mv.visitInvokeDynamicInsn(node.getFunction().getName(), descriptor, TierBridge.BOOTSTRAP, index);
         }
     }
 
     private void emitBinaryExpression(BoundBinaryExpression b) {
         switch (b.getOperator().getKind()) {
-            case CONCATENATION -> {
-                final String stringPath = "java/lang/String";
-                final String stringBPath = "java/lang/StringBuilder";
-                mv.visitTypeInsn(Opcodes.NEW, "java/lang/StringBuilder");
-                mv.visitInsn(Opcodes.DUP);
-                mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
-                emitExpression(b.getLeft());
-                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, stringBPath, "append",
-                        "(L" + stringPath + ";)L" + stringBPath + ";", false);
-                emitExpression(b.getRight());
-                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, stringBPath, "append",
-                        "(L" + stringPath + ";)L" + stringBPath + ";", false);
-                //turn builder to string and throw on stack to be processed
-                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, stringBPath,
-                        "toString", "()L" + stringPath + ";", false);
-            }
+            case CONCATENATION -> emitConcatenation(b);
             case ADDITION -> {
                 emitExpression(b.getLeft());
                 emitExpression(b.getRight());
@@ -281,67 +517,39 @@ public class Emitter {
                 emitExpression(b.getRight());
                 mv.visitInsn(Opcodes.IREM);
             }
-            case GREATER_THAN, GREATER_EQUAL_THAN, LESS_THAN, LESS_EQUAL_THAN -> {
-                int opcode;
-                if (b.getOperator().getKind() == BoundBinaryOperatorKind.GREATER_THAN) {
-                    opcode = Opcodes.IF_ICMPLE;
-                } else if (b.getOperator().getKind() == BoundBinaryOperatorKind.GREATER_EQUAL_THAN) {
-                    opcode = Opcodes.IF_ICMPLT;
-                } else if (b.getOperator().getKind() == BoundBinaryOperatorKind.LESS_THAN) {
-                    opcode = Opcodes.IF_ICMPGE;
+            case GREATER_THAN, GREATER_EQUAL_THAN, LESS_THAN, LESS_EQUAL_THAN -> emitBooleanValue(b);
+            case LOGICAL_EQUALITY, LOGICAL_INEQUALITY -> {
+                if (b.getLeft().getType() != TypeSymbol.STRING) {
+                    emitBooleanValue(b);
                 } else {
-                    opcode = Opcodes.IF_ICMPGT;
+                    emitStringEquals(b);
+                    if (b.getOperator().getKind() == BoundBinaryOperatorKind.LOGICAL_INEQUALITY)
+                        emitNegation();
                 }
-                var icmLabel = new Label();
-                var gotoLabel = new Label();
-                emitExpression(b.getLeft());
-                emitExpression(b.getRight());
-                mv.visitJumpInsn(opcode, icmLabel);
-                mv.visitInsn(Opcodes.ICONST_1);
-                mv.visitJumpInsn(Opcodes.GOTO, gotoLabel);
-                mv.visitLabel(icmLabel);
-                mv.visitInsn(Opcodes.ICONST_0);
-                mv.visitLabel(gotoLabel);
             }
-            case LOGICAL_EQUALITY, LOGICAL_INEQUALITY -> {
-                emitExpression(b.getLeft());
-                emitConversionToObject(b.getLeft());
-                emitExpression(b.getRight());
-                emitConversionToObject(b.getRight());
-                var owner = typeOwner(b.getLeft().getType());
-                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, "equals", "(Ljava/lang/Object;)Z", false);
-                if (b.getOperator().getKind() == BoundBinaryOperatorKind.LOGICAL_INEQUALITY) {
-                    emitNegation();
+            case LOGICAL_AND, LOGICAL_OR -> {
+                if (canShortCircuit(b)) {
+                    emitBooleanValue(b);
+                } else {
+                    emitExpression(b.getLeft());
+                    emitExpression(b.getRight());
+                    if (b.getOperator().getKind() == BoundBinaryOperatorKind.LOGICAL_AND) {
+                        mv.visitInsn(Opcodes.IAND);
+                    } else {
+                        // on int operands || yields 1 when either side is not zero
+                        mv.visitInsn(Opcodes.IOR);
+                        if (b.getType() == TypeSymbol.INTEGER) {
+                            var zeroLabel = new Label();
+                            var endLabel = new Label();
+                            mv.visitJumpInsn(Opcodes.IFEQ, zeroLabel);
+                            mv.visitInsn(Opcodes.ICONST_1);
+                            mv.visitJumpInsn(Opcodes.GOTO, endLabel);
+                            mv.visitLabel(zeroLabel);
+                            mv.visitInsn(Opcodes.ICONST_0);
+                            mv.visitLabel(endLabel);
+                        }
+                    }
                 }
-
-            }
-            case LOGICAL_AND -> {
-                var eqLabel = new Label();
-                var gotoLabel = new Label();
-                emitExpression(b.getLeft());
-                mv.visitJumpInsn(Opcodes.IFEQ, eqLabel);
-                emitExpression(b.getRight());
-                mv.visitJumpInsn(Opcodes.IFEQ, eqLabel);
-                mv.visitInsn(Opcodes.ICONST_1);
-                mv.visitJumpInsn(Opcodes.GOTO, gotoLabel);
-                mv.visitLabel(eqLabel);
-                mv.visitInsn(Opcodes.ICONST_0);
-                mv.visitLabel(gotoLabel);
-            }
-            case LOGICAL_OR -> {
-                var neLabel = new Label();
-                var eqLabel = new Label();
-                var gotoLabel = new Label();
-                emitExpression(b.getLeft());
-                mv.visitJumpInsn(Opcodes.IFNE, neLabel);
-                emitExpression(b.getRight());
-                mv.visitJumpInsn(Opcodes.IFEQ, eqLabel);
-                mv.visitLabel(neLabel);
-                mv.visitInsn(Opcodes.ICONST_1);
-                mv.visitJumpInsn(Opcodes.GOTO, gotoLabel);
-                mv.visitLabel(eqLabel);
-                mv.visitInsn(Opcodes.ICONST_0);
-                mv.visitLabel(gotoLabel);
             }
             case BITWISE_AND -> {
                 emitExpression(b.getLeft());
@@ -363,6 +571,76 @@ public class Emitter {
 
     }
 
+    /*
+        A whole concatenation tree becomes one invokedynamic to StringConcatFactory.
+        Literals go into the recipe, and ints or booleans converted to string are passed unconverted.
+     */
+    private void emitConcatenation(BoundBinaryExpression b) {
+        var parts = new ArrayList<BoundExpression>();
+        flattenConcatenation(b, parts);
+        var recipe = new StringBuilder();
+        var descriptor = new StringBuilder("(");
+        var arguments = 0;
+        for (var part : parts) {
+            var constant = concatenationConstant(part);
+            if (constant != null) {
+                recipe.append(constant);
+                continue;
+            }
+            if (arguments == MAX_CONCATENATION_ARGUMENTS) {
+                // the previous parts are concatenated first and become the first argument of the rest
+                emitConcatenationCall(recipe, descriptor);
+                recipe.setLength(0);
+                recipe.append(CONCATENATION_ARGUMENT);
+                descriptor.setLength(0);
+                descriptor.append("(Ljava/lang/String;");
+                arguments = 1;
+            }
+            if (part instanceof BoundConversionExpression c && c.getExpression().getType() != TypeSymbol.STRING) {
+                emitExpression(c.getExpression());
+                descriptor.append(typeDescriptor(c.getExpression().getType()));
+            } else {
+                emitExpression(part);
+                descriptor.append(typeDescriptor(part.getType()));
+            }
+            recipe.append(CONCATENATION_ARGUMENT);
+            arguments++;
+        }
+        if (arguments == 0)
+            mv.visitLdcInsn(recipe.toString());
+        else
+            emitConcatenationCall(recipe, descriptor);
+    }
+
+    private void flattenConcatenation(BoundExpression node, List<BoundExpression> parts) {
+        if (node instanceof BoundBinaryExpression b && b.getOperator().getKind() == BoundBinaryOperatorKind.CONCATENATION) {
+            flattenConcatenation(b.getLeft(), parts);
+            flattenConcatenation(b.getRight(), parts);
+        } else {
+            parts.add(node);
+        }
+    }
+
+    /**
+     * @return the text a part always contributes, or null when it is only known at run time
+     */
+    private String concatenationConstant(BoundExpression part) {
+        if (part instanceof BoundConversionExpression c && c.getType() == TypeSymbol.STRING)
+            part = c.getExpression();
+        if (!(part instanceof BoundLiteralExpression l))
+            return null;
+        var text = String.valueOf(l.getValue());
+        // the recipe reserves these two characters as tags
+        if (text.indexOf(CONCATENATION_ARGUMENT) >= 0 || text.indexOf(CONCATENATION_CONSTANT) >= 0)
+            return null;
+        return text;
+    }
+
+    private void emitConcatenationCall(StringBuilder recipe, StringBuilder descriptor) {
+        descriptor.append(")Ljava/lang/String;");
+        mv.visitInvokeDynamicInsn("concat", descriptor.toString(), CONCATENATION_BOOTSTRAP, recipe.toString());
+    }
+
     private void emitUnaryExpression(BoundUnaryExpression u) {
         emitExpression(u.getRight());
         switch (u.getOperator().getKind()) {
@@ -379,27 +657,31 @@ public class Emitter {
     }
 
     private void emitNegation() {
-        var ifneLabel = new Label();
-        var gotoLabel = new Label();
-        mv.visitJumpInsn(Opcodes.IFNE, ifneLabel);//!true
+        // booleans are 0 or 1
         mv.visitInsn(Opcodes.ICONST_1);
-        mv.visitJumpInsn(Opcodes.GOTO, gotoLabel);
-        mv.visitLabel(ifneLabel);
-        mv.visitInsn(Opcodes.ICONST_0);
-        mv.visitLabel(gotoLabel);
+        mv.visitInsn(Opcodes.IXOR);
     }
 
     private void emitAssignmentExpression(BoundAssignmentExpression node) {
         emitExpression(node.getBoundExpression());
-        if (node.getVariable().getType() == TypeSymbol.ANY && node.getBoundExpression() instanceof BoundConversionExpression b) {
-            emitConversionToObject(b.getFrom());
+        mv.visitInsn(Opcodes.DUP);
+        if (isGlobal(node.getVariable())) {
+            emitFieldInsn(Opcodes.PUTSTATIC, node.getVariable());
+            return;
         }
         var index = variables.get(node.getVariable());
-        mv.visitInsn(Opcodes.DUP);
+        if (index == null)
+            throw new RuntimeException("Unexpected variable " + node.getVariable().getName());
         mv.visitVarInsn(typeStore(node.getType()), index);
     }
 
     private void emitVariableExpression(BoundVariableExpression node) {
+        if (isGlobal(node.getVariable())) {
+            emitFieldInsn(Opcodes.GETSTATIC, node.getVariable());
+            return;
+        }
+        if (!variables.containsKey(node.getVariable()))
+            throw new RuntimeException("Unexpected variable " + node.getVariable().getName());
         mv.visitVarInsn(typeLoad(node.getVariable().getType()), variables.get(node.getVariable()));
     }
 
@@ -413,6 +695,18 @@ public class Emitter {
     }
 
 
+    private boolean isGlobal(VariableSymbol variable) {
+        return variable.getKind() == SymbolKind.GLOBAL_VARIABLE && globals.contains(variable);
+    }
+
+    private void emitFieldInsn(int opcode, VariableSymbol global) {
+        mv.visitFieldInsn(opcode, className, global.getName(), typeDescriptor(global.getType()));
+    }
+
+    public List<FunctionSymbol> getLinkedFunctions() {
+        return linkedFunctions;
+    }
+
     private String descriptorBuilder(FunctionSymbol function) {
         var builder = new StringBuilder();
         builder.append("(");
@@ -453,6 +747,15 @@ public class Emitter {
         }
     }
 
+    private Object verificationType(TypeSymbol type) {
+        return switch (type.getName()) {
+            case "boolean", "int" -> Opcodes.INTEGER;
+            case "string" -> "java/lang/String";
+            case "any" -> "java/lang/Object";
+            default -> throw new RuntimeException("Unexpected type");
+        };
+    }
+
     private String typeValueCaster(TypeSymbol type) {
         return switch (type.getName()) {
             case "boolean" -> "booleanValue";
@@ -0,0 +1,279 @@
+package emit;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Writes the StackMapTable and max stack of a method while it is being emitted, in a single pass.
+    The operand stack is simulated instruction by instruction. Branches inside expressions only jump forward,
+    so the state at their labels is the one recorded at the jump.
+    Labels of the lowered statements are given their locals by the emitter, the stack being empty between statements.
+    A frame is only written before the next instruction, so labels sharing an offset get the last frame.
+ */
+final class FrameWriter extends MethodVisitor {
+    private static final Object UNINITIALIZED = new Object();
+
+    private record State(Object[] locals, Object[] stack) {
+    }
+
+    private Object[] locals;
+    private final List<Object> stack = new ArrayList<>();
+    private final Map<Label, State> forwardJumps = new HashMap<>();
+    private State pendingFrame;
+    private boolean unreachable;
+    private int stackSize;
+    private int maxStack;
+    private Object newType;
+
+    FrameWriter(MethodVisitor mv, Object[] locals) {
+        super(Opcodes.ASM9, mv);
+        this.locals = locals.clone();
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Starts a basic block at a statement label, the verifier type of every local slot, null if unassigned.
+     */
+    void visitBlockLabel(Label label, Object[] blockLocals, boolean jumpTarget) {
+        super.visitLabel(label);
+        forwardJumps.remove(label);
+        locals = blockLocals.clone();
+        stack.clear();
+        stackSize = 0;
+        unreachable = false;
+        if (jumpTarget)
+            pendingFrame = snapshot();
+    }
+
+    @Override
+    public void visitLabel(Label label) {
+        super.visitLabel(label);
+        State jump = forwardJumps.remove(label);
+        if (unreachable) {
+            if (jump == null)
+                throw new IllegalStateException("Unexpected unreachable label");
+            restore(jump);
+        }
+        if (jump != null || unreachable)
+            pendingFrame = snapshot();
+        unreachable = false;
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+        flushFrame();
+        switch (opcode) {
+            case Opcodes.IFEQ, Opcodes.IFNE, Opcodes.IFLT, Opcodes.IFGE, Opcodes.IFGT, Opcodes.IFLE,
+                    Opcodes.IFNULL, Opcodes.IFNONNULL -> pop(1);
+            case Opcodes.IF_ICMPEQ, Opcodes.IF_ICMPNE, Opcodes.IF_ICMPLT, Opcodes.IF_ICMPGE, Opcodes.IF_ICMPGT,
+                    Opcodes.IF_ICMPLE, Opcodes.IF_ACMPEQ, Opcodes.IF_ACMPNE -> pop(2);
+            case Opcodes.GOTO -> unreachable = true;
+            default -> throw new IllegalArgumentException("Unexpected opcode " + opcode);
+        }
+        forwardJumps.putIfAbsent(label, new State(locals.clone(), stack.toArray()));
+        super.visitJumpInsn(opcode, label);
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+        flushFrame();
+        switch (opcode) {
+            case Opcodes.ICONST_M1, Opcodes.ICONST_0, Opcodes.ICONST_1, Opcodes.ICONST_2, Opcodes.ICONST_3,
+                    Opcodes.ICONST_4, Opcodes.ICONST_5 -> push(Opcodes.INTEGER);
+            case Opcodes.IADD, Opcodes.ISUB, Opcodes.IMUL, Opcodes.IDIV, Opcodes.IREM, Opcodes.IAND, Opcodes.IOR,
+                    Opcodes.IXOR -> {
+                pop(2);
+                push(Opcodes.INTEGER);
+            }
+            case Opcodes.INEG -> {
+            }
+            case Opcodes.I2D -> {
+                pop(1);
+                push(Opcodes.DOUBLE);
+            }
+            case Opcodes.D2I -> {
+                pop(1);
+                push(Opcodes.INTEGER);
+            }
+            case Opcodes.DMUL -> {
+                pop(2);
+                push(Opcodes.DOUBLE);
+            }
+            case Opcodes.DUP -> push(stack.get(stack.size() - 1));
+            case Opcodes.SWAP -> {
+                Object top = stack.remove(stack.size() - 1);
+                stack.add(stack.size() - 1, top);
+            }
+            case Opcodes.POP -> pop(1);
+            case Opcodes.IRETURN, Opcodes.ARETURN, Opcodes.RETURN, Opcodes.ATHROW -> {
+                stack.clear();
+                stackSize = 0;
+                unreachable = true;
+            }
+            default -> throw new IllegalArgumentException("Unexpected opcode " + opcode);
+        }
+        super.visitInsn(opcode);
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+        flushFrame();
+        if (opcode != Opcodes.BIPUSH && opcode != Opcodes.SIPUSH)
+            throw new IllegalArgumentException("Unexpected opcode " + opcode);
+        push(Opcodes.INTEGER);
+        super.visitIntInsn(opcode, operand);
+    }
+
+    @Override
+    public void visitLdcInsn(Object value) {
+        flushFrame();
+        if (value instanceof Integer)
+            push(Opcodes.INTEGER);
+        else if (value instanceof String)
+            push("java/lang/String");
+        else
+            throw new IllegalArgumentException("Unexpected constant " + value);
+        super.visitLdcInsn(value);
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int slot) {
+        flushFrame();
+        switch (opcode) {
+            case Opcodes.ILOAD -> push(Opcodes.INTEGER);
+            case Opcodes.ALOAD -> push(locals[slot]);
+            case Opcodes.ISTORE, Opcodes.ASTORE -> locals[slot] = pop(1);
+            default -> throw new IllegalArgumentException("Unexpected opcode " + opcode);
+        }
+        super.visitVarInsn(opcode, slot);
+    }
+
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+        flushFrame();
+        switch (opcode) {
+            case Opcodes.NEW -> {
+                newType = type;
+                push(UNINITIALIZED);
+            }
+            case Opcodes.CHECKCAST -> {
+                pop(1);
+                push(type);
+            }
+            default -> throw new IllegalArgumentException("Unexpected opcode " + opcode);
+        }
+        super.visitTypeInsn(opcode, type);
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+        flushFrame();
+        switch (opcode) {
+            case Opcodes.GETSTATIC -> push(verificationType(Type.getType(descriptor)));
+            case Opcodes.PUTSTATIC -> pop(1);
+            default -> throw new IllegalArgumentException("Unexpected opcode " + opcode);
+        }
+        super.visitFieldInsn(opcode, owner, name, descriptor);
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+        flushFrame();
+        pop(Type.getArgumentTypes(descriptor).length);
+        if (opcode != Opcodes.INVOKESTATIC) {
+            Object receiver = pop(1);
+            if (receiver == UNINITIALIZED) {
+                // the NEW and its DUP both become the initialized object
+                for (int i = 0; i < stack.size(); i++) {
+                    if (stack.get(i) == UNINITIALIZED)
+                        stack.set(i, newType);
+                }
+            }
+        }
+        pushReturn(Type.getReturnType(descriptor));
+        super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap, Object... arguments) {
+        flushFrame();
+        pop(Type.getArgumentTypes(descriptor).length);
+        pushReturn(Type.getReturnType(descriptor));
+        super.visitInvokeDynamicInsn(name, descriptor, bootstrap, arguments);
+    }
+
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        super.visitMaxs(this.maxStack, maxLocals);
+    }
+
+    private void pushReturn(Type type) {
+        if (type.getSort() != Type.VOID)
+            push(verificationType(type));
+    }
+
+    private static Object verificationType(Type type) {
+        return switch (type.getSort()) {
+            case Type.BOOLEAN, Type.INT -> Opcodes.INTEGER;
+            case Type.DOUBLE -> Opcodes.DOUBLE;
+            case Type.OBJECT, Type.ARRAY -> type.getInternalName();
+            default -> throw new IllegalArgumentException("Unexpected type " + type);
+        };
+    }
+
+    private void push(Object type) {
+        stack.add(type);
+        stackSize += type == Opcodes.DOUBLE ? 2 : 1;
+        maxStack = Math.max(maxStack, stackSize);
+    }
+
+    private Object pop(int count) {
+        Object type = null;
+        for (int i = 0; i < count; i++) {
+            type = stack.remove(stack.size() - 1);
+            stackSize -= type == Opcodes.DOUBLE ? 2 : 1;
+        }
+        return type;
+    }
+
+    private State snapshot() {
+        return new State(locals.clone(), stack.toArray());
+    }
+
+    private void restore(State state) {
+        locals = state.locals().clone();
+        stack.clear();
+        stackSize = 0;
+        for (Object type : state.stack())
+            push(type);
+    }
+
+    private void flushFrame() {
+        if (pendingFrame == null)
+            return;
+        Object[] frameLocals = pendingFrame.locals();
+        int count = frameLocals.length;
+        while (count > 0 && frameLocals[count - 1] == null)
+            count--;
+        Object[] local = new Object[count];
+        for (int i = 0; i < count; i++)
+            local[i] = frameLocals[i] == null ? Opcodes.TOP : frameLocals[i];
+        Object[] frameStack = pendingFrame.stack();
+        if (Arrays.asList(frameStack).contains(UNINITIALIZED))
+            throw new IllegalStateException("Unexpected branch over an uninitialized object");
+        super.visitFrame(Opcodes.F_NEW, local.length, local, frameStack.length, frameStack);
+        pendingFrame = null;
+    }
+}
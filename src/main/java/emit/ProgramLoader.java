@@ -0,0 +1,29 @@
+package emit;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Loads emitted programs in the running JVM as hidden classes.
+    Every load gets a class of its own, so the same bytes can run many times and are unloaded once unused.
+ */
+public final class ProgramLoader {
+    private static final AtomicInteger programs = new AtomicInteger();
+
+    private ProgramLoader() {
+    }
+
+    /**
+     * Hidden classes live in the package of the lookup that defines them, so emitted names must come from here.
+     */
+    public static String nextClassName() {
+        return "emit/Program" + programs.incrementAndGet();
+    }
+
+    public static MethodHandle loadMain(byte[] bytes) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+        return lookup.findStatic(lookup.lookupClass(), "main", MethodType.methodType(void.class, String[].class));
+    }
+}
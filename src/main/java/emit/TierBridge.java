@@ -0,0 +1,50 @@
+package emit;
+
+import codeanalysis.evaluator.Tiering;
+import codeanalysis.symbol.FunctionSymbol;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.constant.ConstantDescs;
+import java.util.List;
+
+/*
+    Links the calls a compiled function makes to other functions.
+    The call site goes back through Tiering, which runs the callee compiled or interpreted
+    depending on how hot it is at the moment of the call.
+ */
+public final class TierBridge {
+    static final Handle BOOTSTRAP = new Handle(Opcodes.H_INVOKESTATIC, "emit/TierBridge", "bootstrap",
+            MethodType.methodType(CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class, int.class)
+                    .toMethodDescriptorString(), false);
+
+    private static final MethodHandle INVOKE;
+
+    static {
+        try {
+            INVOKE = MethodHandles.lookup().findVirtual(Tiering.class, "invoke",
+                    MethodType.methodType(Object.class, FunctionSymbol.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    record Link(Tiering tiering, List<FunctionSymbol> functions) {
+    }
+
+    private TierBridge() {
+    }
+
+    public static CallSite bootstrap(MethodHandles.Lookup caller, String name, MethodType type, int index) throws Exception {
+        Link link = MethodHandles.classData(caller, ConstantDescs.DEFAULT_NAME, Link.class);
+        MethodHandle target = MethodHandles.insertArguments(INVOKE, 0, link.tiering(), link.functions().get(index))
+                .asCollector(Object[].class, type.parameterCount())
+                .asType(type);
+        return new ConstantCallSite(target);
+    }
+}
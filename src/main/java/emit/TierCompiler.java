@@ -0,0 +1,32 @@
+package emit;
+
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.evaluator.Tiering;
+import codeanalysis.symbol.FunctionSymbol;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Second tier of the Evaluator: a hot function is emitted alone in a hidden class,
+    which is unloaded together with the handle once nothing references it anymore.
+ */
+public final class TierCompiler implements Tiering.Compiler {
+    private static final AtomicInteger classes = new AtomicInteger();
+
+    @Override
+    public MethodHandle compile(FunctionSymbol function, BoundBlockStatement body, Tiering tiering) throws Exception {
+        String className = "emit/Tier" + classes.incrementAndGet();
+        Emitter emitter = new Emitter(className, function, body);
+        byte[] bytes = emitter.emitClass();
+        TierBridge.Link link = new TierBridge.Link(tiering, emitter.getLinkedFunctions());
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClassWithClassData(bytes, link, true);
+        for (Method method : lookup.lookupClass().getDeclaredMethods()) {
+            if (method.getName().equals(function.getName()))
+                return lookup.unreflect(method);
+        }
+        return null;
+    }
+}
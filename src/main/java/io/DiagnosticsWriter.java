@@ -2,7 +2,6 @@ package io;
 
 import codeanalysis.diagnostics.Diagnostic;
 import codeanalysis.source.SourceText;
-import codeanalysis.source.TextLine;
 import util.ConsoleColors;
 
 import java.util.List;
@@ -19,16 +18,17 @@ public class DiagnosticsWriter {
                 var filePath = diagnostic.location().fileName();
                 var span = diagnostic.location().span();
                 int lineIndex = text.getLineIndex(span.start());
-                TextLine line = text.getLines().get(lineIndex);
+                int lineStart = text.getLineStart(lineIndex);
+                int lineEnd = text.getLineEnd(lineIndex);
                 int lineNumber = lineIndex + 1;
-                int character = span.start() - line.getStart() + 1;
+                int character = span.start() - lineStart + 1;
 
                 System.out.println(ConsoleColors.RED);
                 System.out.println(diagnostic);
 
-                String prefix = text.toString().substring(line.getStart(), span.start());
+                String prefix = text.toString(lineStart, span.start());
                 String error = text.toString(span);
-                String suffix = text.toString().substring(span.end(), line.getEnd());
+                String suffix = text.toString(span.end(), lineEnd);
 
                 System.out.println(filePath + ":" + lineNumber + ":" + character);
                 System.out.println(ConsoleColors.WHITE + prefix + ConsoleColors.RED + error + ConsoleColors.WHITE + suffix);
@@ -0,0 +1,143 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundNodeKind;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.symbol.variable.VariableSymbol;
+import codeanalysis.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataflowAnalysisTest {
+    private static final String COUNT = """
+            function count(n: int): int {
+                var total = 0
+                var unused = random(n)
+                for (var i = 0; i < n; i++) {
+                    if (i == 2)
+                        continue
+                    total = total + i
+                }
+                return total
+            }
+            """;
+
+    @Test
+    void livenessFollowsReadsAcrossTheLoop() throws Exception {
+        ControlFlowGraph graph = graph(COUNT);
+        Liveness liveness = Liveness.analyze(graph);
+        BasicBlock loopHeader = loopHeader(graph);
+
+        // the header reads i and n, the loop body later reads total before writing it again
+        assertTrue(liveness.isLiveOut(graph.getStart(), variable(liveness.getVariables(), "n")));
+        assertFalse(liveness.isLiveOut(graph.getStart(), variable(liveness.getVariables(), "total")));
+        BitSet liveIn = liveness.getLiveIn(loopHeader);
+        for (String name : List.of("i", "n", "total"))
+            assertTrue(liveIn.get(liveness.getVariables().indexOf(variable(liveness.getVariables(), name))), name);
+        assertFalse(liveIn.get(liveness.getVariables().indexOf(variable(liveness.getVariables(), "unused"))));
+        assertTrue(liveness.getLiveOut(graph.getEnd()).isEmpty());
+    }
+
+    @Test
+    void reachingDefinitionsMergeAtTheLoopHeader() throws Exception {
+        ControlFlowGraph graph = graph(COUNT);
+        ReachingDefinitions reaching = ReachingDefinitions.analyze(graph);
+        BasicBlock loopHeader = loopHeader(graph);
+
+        List<VariableSymbol> variables = reaching.getDefinitions().stream()
+                .map(ReachingDefinitions.Definition::variable)
+                .toList();
+        var totals = reaching.getReachingIn(loopHeader, variable(variables, "total"));
+        assertEquals(2, totals.size());
+        assertEquals(BoundNodeKind.VARIABLE_DECLARATION_STATEMENT, totals.get(0).node().getKind());
+        assertEquals(BoundNodeKind.ASSIGNMENT_EXPRESSION, totals.get(1).node().getKind());
+
+        var parameter = reaching.getReachingIn(loopHeader, variable(variables, "n"));
+        assertEquals(1, parameter.size());
+        assertNull(parameter.get(0).node());
+    }
+
+    @Test
+    void variablesInterfereOnlyWhileBothAreLive() throws Exception {
+        InterferenceGraph interference = InterferenceGraph.build(graph(COUNT));
+        List<VariableSymbol> variables = interference.getVariables();
+
+        assertTrue(interference.interferes(variable(variables, "total"), variable(variables, "i")));
+        assertTrue(interference.interferes(variable(variables, "unused"), variable(variables, "total")));
+        assertTrue(interference.interferes(variable(variables, "n"), variable(variables, "i")));
+        // unused is never read, so it is dead before i is declared
+        assertFalse(interference.interferes(variable(variables, "unused"), variable(variables, "i")));
+    }
+
+    @Test
+    void definiteAssignmentNeedsEveryPath() throws Exception {
+        ControlFlowGraph graph = graph("""
+                function pick(flag: boolean): int {
+                    var result = 0
+                    if (flag) {
+                        var a = random(1)
+                        result = a
+                    } else {
+                        var b = random(2)
+                        result = b
+                    }
+                    return result
+                }
+                """);
+        DefiniteAssignment assignment = DefiniteAssignment.analyze(graph);
+        BasicBlock last = graph.getEnd().getIncoming().get(0).getFrom();
+        List<VariableSymbol> variables = assignment.getVariables();
+
+        assertTrue(assignment.isAssignedIn(last, variable(variables, "flag")));
+        assertTrue(assignment.isAssignedIn(last, variable(variables, "result")));
+        assertFalse(assignment.isAssignedIn(last, variable(variables, "a")));
+        assertFalse(assignment.isAssignedIn(last, variable(variables, "b")));
+    }
+
+    @Test
+    void passesAreBoundedByTheNestingDepth() throws Exception {
+        int depth = 10;
+        StringBuilder text = new StringBuilder("function nested(n: int): int {\n    var total = 0\n");
+        for (char c = 'a'; c < 'a' + depth; c++)
+            text.append("    for (var x").append(c).append(" = 0; x").append(c).append(" < n; x").append(c).append("++) {\n");
+        text.append("    total = total + 1\n");
+        text.append("    }\n".repeat(depth));
+        text.append("    return total\n}\n");
+        ControlFlowGraph graph = graph(text.toString());
+
+        // the innermost definition of total has to cross every back edge to reach the outermost loop
+        int bound = (depth + 2) * graph.getBlocks().size();
+        Liveness liveness = Liveness.analyze(graph);
+        assertTrue(liveness.getVisits() <= bound, "visits " + liveness.getVisits());
+        ReachingDefinitions reaching = ReachingDefinitions.analyze(graph);
+        assertTrue(reaching.getVisits() <= bound, "visits " + reaching.getVisits());
+        DefiniteAssignment assignment = DefiniteAssignment.analyze(graph);
+        assertTrue(assignment.getVisits() <= 2 * graph.getBlocks().size(), "visits " + assignment.getVisits());
+    }
+
+    private static BasicBlock loopHeader(ControlFlowGraph graph) {
+        assertEquals(1, graph.getLoops().size());
+        return graph.getLoops().get(0).getHeader();
+    }
+
+    private static VariableSymbol variable(List<VariableSymbol> variables, String name) {
+        return variables.stream().filter(v -> v.getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static ControlFlowGraph graph(String text) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        BoundProgram program = Binder.bindProgram(null, scope);
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        return ControlFlowGraph.create(program.getFunctionsBodies().values().iterator().next());
+    }
+}
@@ -0,0 +1,98 @@
+package codeanalysis.controlflow.dataflow;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.syntax.SyntaxTree;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+    Times the control flow graph and the dataflow analyses on generated functions of growing size,
+    made of straight-line code, branches and nested loops with breaks.
+    The time per lowered statement must stay flat as the functions grow.
+    Not a unit test, run it with the test classpath: java codeanalysis.controlflow.dataflow.DataflowBenchmark
+ */
+public class DataflowBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] units = args.length > 0 ? new int[]{Integer.parseInt(args[0])} : new int[]{250, 1_000, 4_000};
+        BoundBlockStatement warmup = generate(units[0]);
+        for (int i = 0; i < 50; i++) {
+            ControlFlowGraph graph = ControlFlowGraph.create(warmup);
+            Liveness.analyze(graph);
+            ReachingDefinitions.analyze(graph);
+            DefiniteAssignment.analyze(graph);
+        }
+        for (int count : units) {
+            BoundBlockStatement body = generate(count);
+            int statements = body.getStatements().size();
+            ControlFlowGraph graph = measure("graph", statements, () -> ControlFlowGraph.create(body));
+            Liveness liveness = measure("liveness", statements, () -> Liveness.analyze(graph));
+            measure("reaching definitions", statements, () -> ReachingDefinitions.analyze(graph));
+            DefiniteAssignment assignment = measure("definite assignment", statements,
+                    () -> DefiniteAssignment.analyze(graph));
+            System.out.printf("%d statements, %d blocks, %d variables, visits per block: liveness %.2f, assignment %.2f%n%n",
+                    statements, graph.getBlocks().size(), liveness.getVariables().size(),
+                    liveness.getVisits() / (double) graph.getBlocks().size(),
+                    assignment.getVisits() / (double) graph.getBlocks().size());
+        }
+    }
+
+    private static <T> T measure(String name, int statements, Supplier<T> task) {
+        T result = null;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            result = task.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-22s %9.3f ms %8.1f ns/statement%n", name, best / 1e6, best / (double) statements);
+        return result;
+    }
+
+    private static BoundBlockStatement generate(int units) throws Exception {
+        StringBuilder text = new StringBuilder("function big(n: int): int {\n    var " + name(0) + " = n\n");
+        for (int i = 1; i <= units; i++) {
+            String current = name(i);
+            String previous = name(i - 1);
+            text.append("""
+                        var %1$s = %2$s + %3$d
+                        if (%1$s > n)
+                            %1$s = %1$s - 1
+                        else
+                            %2$s = %2$s + 1
+                    """.formatted(current, previous, i));
+            if (i % 4 == 0) {
+                text.append("""
+                            for (var i%1$s = 0; i%1$s < n; i%1$s++) {
+                                while (%1$s < n) {
+                                    %1$s = %1$s + %2$s
+                                    if (%1$s == 3)
+                                        break
+                                }
+                            }
+                        """.formatted(current, previous));
+            }
+        }
+        text.append("    return ").append(name(units)).append("\n}\n");
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text.toString())), null);
+        BoundProgram program = Binder.bindProgram(null, scope);
+        if (!scope.getDiagnostics().isEmpty() || !program.getDiagnostics().getDiagnostics().isEmpty())
+            throw new IllegalStateException("Unexpected diagnostics in the generated function");
+        return program.getFunctionsBodies().values().iterator().next();
+    }
+
+    // identifiers cannot hold digits, the x keeps the names clear of the keywords
+    private static String name(int number) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + number % 26));
+            number /= 26;
+        } while (number > 0);
+        return name.append('x').reverse().toString();
+    }
+}
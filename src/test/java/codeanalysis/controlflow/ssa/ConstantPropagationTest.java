@@ -0,0 +1,201 @@
+package codeanalysis.controlflow.ssa;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.BoundNodeKind;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConstantPropagationTest {
+
+    @Test
+    void phisAreOnlyPlacedWhereALiveVariableMeetsAnotherValue() throws Exception {
+        SsaForm ssa = SsaForm.build(ControlFlowGraph.create(functionBody("""
+                function count(n: int): int {
+                    var total = 0
+                    for (var i = 0; i < n; i++)
+                        total = total + i
+                    return total
+                }
+                """, "count")));
+
+        List<BasicBlock> joins = ssa.getGraph().getBlocks().stream()
+                .filter(block -> !ssa.getPhis(block).isEmpty())
+                .toList();
+        BasicBlock header = ssa.getGraph().getLoops().get(0).getHeader();
+        assertEquals(2, joins.size());
+        assertEquals(Set.of("total", "i"), phiVariables(ssa, header));
+        for (SsaValue phi : ssa.getPhis(header))
+            assertEquals(2, phi.getOperands().size());
+        // past the loop, only total is still live where skipping the loop meets leaving it
+        BasicBlock exit = joins.get(0) == header ? joins.get(1) : joins.get(0);
+        assertEquals(Set.of("total"), phiVariables(ssa, exit));
+        assertTrue(ssa.getDominators().dominates(header, ssa.getGraph().getLoops().get(0).getBackEdges().get(0).getFrom()));
+    }
+
+    private static Set<String> phiVariables(SsaForm ssa, BasicBlock block) {
+        return ssa.getPhis(block).stream()
+                .map(phi -> phi.getVariable().getName())
+                .collect(Collectors.toSet());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideFoldedFunctions")
+    void knownValuesFlowThroughReassignmentsAndBranches(String text, Object expectedValue) throws Exception {
+        BoundBlockStatement body = functionBody(text, "f");
+
+        // every definition only fed the return, so none of them is left
+        assertEquals(0, count(body, BoundNodeKind.VARIABLE_DECLARATION_STATEMENT));
+        assertEquals(0, count(body, BoundNodeKind.ASSIGNMENT_EXPRESSION));
+        var result = assertInstanceOf(BoundReturnStatement.class, body.getStatements().get(body.getStatements().size() - 1));
+        var literal = assertInstanceOf(BoundLiteralExpression.class, result.getExpression());
+        assertEquals(expectedValue, literal.getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideUnknownFunctions")
+    void valuesNotKnownAtCompileTimeAreKept(String text) throws Exception {
+        BoundBlockStatement body = functionBody(text, "f");
+        var result = (BoundReturnStatement) body.getStatements().get(body.getStatements().size() - 1);
+
+        assertFalse(result.getExpression() instanceof BoundLiteralExpression);
+    }
+
+    @Test
+    void branchesGuardedByAFlagAreRemoved() throws Exception {
+        BoundBlockStatement body = functionBody("""
+                function f(n: int): int {
+                    var verbose = false
+                    var total = 0
+                    for (var i = 0; i < n; i++) {
+                        if (verbose)
+                            printf('step ' + string(i))
+                        total = total + i
+                    }
+                    if (!verbose && total > 10)
+                        printf('done')
+                    return total
+                }
+                """, "f");
+
+        // the guard and the bottom test of the loop and total > 10 are the only branches left,
+        // printf('done') the only call
+        assertEquals(3, count(body, BoundNodeKind.CONDITIONAL_JUMP_TO_STATEMENT));
+        assertEquals(1, count(body, BoundNodeKind.CALL_EXPRESSION));
+    }
+
+    static Stream<Arguments> provideFoldedFunctions() {
+        return Stream.of(
+                Arguments.of("""
+                        function f(): int {
+                            var steps = 0
+                            steps = steps + 1
+                            steps = steps * 10
+                            steps = steps - 3
+                            return steps
+                        }
+                        """, 7),
+                Arguments.of("""
+                        function f(): string {
+                            var debug = false
+                            var mode = 'fast'
+                            if (debug)
+                                mode = 'slow'
+                            return mode
+                        }
+                        """, "fast"),
+                Arguments.of("""
+                        function f(x: int): int {
+                            var level = 2
+                            if (x > 0)
+                                level = 2
+                            else
+                                level = 1 + 1
+                            return level
+                        }
+                        """, 2),
+                Arguments.of("""
+                        function f(): int {
+                            var done = false
+                            var count = 5
+                            while (done) {
+                                count = count + 1
+                                done = count > 3
+                            }
+                            return count
+                        }
+                        """, 5)
+        );
+    }
+
+    static Stream<Arguments> provideUnknownFunctions() {
+        return Stream.of(
+                Arguments.of("""
+                        function f(x: int): int {
+                            var level = 1
+                            if (x > 0)
+                                level = 2
+                            return level
+                        }
+                        """),
+                Arguments.of("""
+                        function f(n: int): int {
+                            var count = 0
+                            while (count < n)
+                                count = count + 1
+                            return count
+                        }
+                        """),
+                Arguments.of("""
+                        var setting = 1
+                        function change() {
+                            setting = 2
+                        }
+                        function f(): int {
+                            setting = 1
+                            change()
+                            return setting
+                        }
+                        """)
+        );
+    }
+
+    private static int count(BoundNode node, BoundNodeKind kind) {
+        int count = node.getKind() == kind ? 1 : 0;
+        for (BoundNode child : node.getChildren())
+            count += count(child, kind);
+        return count;
+    }
+
+    private static BoundBlockStatement functionBody(String text, String name) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        // without inlining, calls stay for the analysis to see
+        BoundProgram program = Binder.bindProgram(null, scope, 0);
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        return program.getFunctionsBodies().entrySet().stream()
+                .filter(e -> e.getKey().getName().equals(name))
+                .findFirst()
+                .orElseThrow()
+                .getValue();
+    }
+}
@@ -1,10 +1,25 @@
 package codeanalysis.diagnostics.text;
 
 import codeanalysis.source.SourceText;
+import codeanalysis.source.TextLine;
+import codeanalysis.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -26,6 +41,118 @@ class SourceTextTest {
         assertEquals(expectedIndex, lineIndex);
     }
 
+    @ParameterizedTest
+    @MethodSource("provideFileText")
+    void lineIndexFollowsAnyOrderOfLookups(String text) {
+        SourceText source = SourceText.from(text);
+        int[] expected = new int[text.length() + 1];
+        int line = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i > 0 && (text.charAt(i - 1) == '\n' || text.charAt(i - 1) == '\r'
+                    && (i == text.length() || text.charAt(i) != '\n')))
+                line++;
+            expected[i] = line;
+        }
+
+        for (int i = 0; i <= text.length(); i++)
+            assertEquals(expected[i], source.getLineIndex(i), "forward at " + i);
+        for (int i = text.length(); i >= 0; i--)
+            assertEquals(expected[i], source.getLineIndex(i), "backward at " + i);
+        Random random = new Random(23);
+        for (int i = 0; i < 1000; i++) {
+            int position = random.nextInt(text.length() + 1);
+            assertEquals(expected[position], source.getLineIndex(position), "at " + position);
+        }
+        assertEquals(-1, source.getLineIndex(-1));
+        assertEquals(-1, source.getLineIndex(text.length() + 1));
+        assertEquals(line + 1, source.getLineCount());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideFileText")
+    void mappedFileReadsLikeTheString(String text, @TempDir Path directory) throws IOException {
+        Path path = directory.resolve("source.lk");
+        Files.writeString(path, text, StandardCharsets.UTF_8);
+        SourceText expected = SourceText.from(text);
+        SourceText mapped = SourceText.map(path);
+
+        assertEquals(expected.length(), mapped.length());
+        for (int i = 0; i < expected.length(); i++)
+            assertEquals(expected.charAt(i), mapped.charAt(i), "at " + i);
+        assertEquals(text, mapped.toString());
+        assertEquals(expected.getLineCount(), mapped.getLineCount());
+        for (int i = 0; i < expected.getLineCount(); i++) {
+            TextLine line = expected.getLine(i);
+            TextLine mappedLine = mapped.getLine(i);
+            assertEquals(line.getSpanWithLineBreak(), mappedLine.getSpanWithLineBreak());
+            assertEquals(line.getEnd(), mappedLine.getEnd());
+            assertEquals(expected.toString(line.getSpan()), mapped.toString(mappedLine.getSpan()));
+        }
+        for (int i = 0; i <= expected.length(); i += 7)
+            assertEquals(expected.getLineIndex(i), mapped.getLineIndex(i));
+    }
+
+    @Test
+    void mappedTextIsReadByManyThreads(@TempDir Path directory) throws Exception {
+        // every block holds multi-byte characters, so every block has to be decoded
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 600_000; i++)
+            builder.append("var s").append(i % 10).append(" = 'ünïcödé € ").append(i).append("'\n");
+        String text = builder.toString();
+        Path path = directory.resolve("source.lk");
+        Files.writeString(path, text, StandardCharsets.UTF_8);
+        SourceText mapped = SourceText.map(path);
+
+        List<Callable<Integer>> readers = new ArrayList<>();
+        for (int reader = 0; reader < 8; reader++) {
+            int seed = reader;
+            readers.add(() -> {
+                // each thread reads runs of characters across the blocks in its own order
+                Random random = new Random(seed);
+                int mismatches = 0;
+                for (int run = 0; run < 100; run++) {
+                    int start = random.nextInt(text.length() - 5_000);
+                    for (int position = start; position < start + 5_000; position++) {
+                        if (mapped.charAt(position) != text.charAt(position))
+                            mismatches++;
+                    }
+                }
+                return mismatches;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(readers.size());
+        try {
+            for (Future<Integer> mismatches : executor.invokeAll(readers))
+                assertEquals(0, mismatches.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void loadedFileIsParsed(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("source.lk");
+        Files.writeString(path, "var a = 'é'\r\nvar b = a\r\n", StandardCharsets.UTF_8);
+        SyntaxTree tree = SyntaxTree.load(path.toString());
+
+        assertEquals(0, tree.getDiagnostics().size());
+        assertEquals(path.toString(), tree.getText().getFileName());
+        assertEquals(3, tree.getText().getLineCount());
+    }
+
+    static Stream<Arguments> provideFileText() {
+        String ascii = "var i = 0\n".repeat(20000);
+        // blocks are cut at 64K bytes, the multi-byte characters fall across those boundaries
+        String mixed = "var s = 'ünïcödé €'\r\n".repeat(9000) + "print(s)";
+        return Stream.of(
+                Arguments.of(""),
+                Arguments.of(".\r.\n.\r\n"),
+                Arguments.of(ascii),
+                Arguments.of(mixed),
+                Arguments.of(ascii + mixed + ascii)
+        );
+    }
+
     static Stream<Arguments> provideText() {
         return Stream.of(
                 Arguments.of(".", 1),
@@ -5,13 +5,17 @@ import codeanalysis.diagnostics.Diagnostic;
 import codeanalysis.source.TextSpan;
 import codeanalysis.symbol.variable.VariableSymbol;
 import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
 import compilation.Compilation;
 import compilation.EvaluationResult;
+import emit.TierCompiler;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -48,6 +52,179 @@ class EvaluatorTest {
     }
 
 
+    @ParameterizedTest
+    @MethodSource("provideEvaluations")
+    void evaluate(String text, Object expectedValue) throws Exception {
+        for (Backend backend : Backend.values()) {
+            SyntaxTree tree = SyntaxTree.parse(text);
+            Compilation compilation = Compilation.create(tree);
+            EvaluationResult result = compilation.evaluate(new HashMap<>(), backend);
+            assertTrue(result.diagnostics().isEmpty());
+            assertEquals(expectedValue, result.result(), backend.name());
+        }
+    }
+
+    @Test
+    void globalsSurviveSubmissions() throws Exception {
+        for (Backend backend : Backend.values()) {
+            Map<VariableSymbol, Object> variables = new HashMap<>();
+            Compilation first = Compilation.createScript(null, SyntaxTree.parse("var a = 10"));
+            first.evaluate(variables, backend);
+            Compilation second = Compilation.createScript(first, SyntaxTree.parse("var b = a * 2"));
+            second.evaluate(variables, backend);
+            Compilation third = Compilation.createScript(second, SyntaxTree.parse("a = a + b"));
+            EvaluationResult result = third.evaluate(variables, backend);
+            assertEquals(30, result.result(), backend.name());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideAnyGlobals")
+    void anyGlobalsSurviveSubmissions(String value, String expected) throws Exception {
+        String read = """
+                function show(): string {
+                    return string(x)
+                }
+                var shown = ''
+                for (var i = 0; i < 20; i++)
+                    shown = show()
+                var y: any = x
+                shown = shown + string(y)
+                """;
+        for (Backend backend : Backend.values()) {
+            Map<VariableSymbol, Object> variables = new HashMap<>();
+            Compilation first = Compilation.createScript(null, SyntaxTree.parse("var x: any = " + value));
+            first.evaluate(variables, backend);
+            Compilation second = Compilation.createScript(first, SyntaxTree.parse(read));
+            EvaluationResult result = second.evaluate(variables, backend);
+            assertEquals(expected + expected, result.result(), backend.name());
+        }
+        // show is compiled after its first calls, and then reads x from the compiled code
+        Map<VariableSymbol, Object> variables = new HashMap<>();
+        Compilation first = Compilation.createScript(null, SyntaxTree.parse("var x: any = " + value));
+        first.evaluate(variables, new Tiering(new TierCompiler(), 2, 2));
+        Compilation second = Compilation.createScript(first, SyntaxTree.parse(read));
+        EvaluationResult result = second.evaluate(variables, new Tiering(new TierCompiler(), 2, 2));
+        assertEquals(expected + expected, result.result(), "tiering");
+    }
+
+    @Test
+    void countingLoopDoesNotAllocate() throws Exception {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] allocated = new long[2];
+        int[] iterations = {1_000, 1_000_000};
+        for (int run = 0; run < 3; run++) {
+            for (int i = 0; i < iterations.length; i++) {
+                Compilation compilation = Compilation.create(SyntaxTree.parse("""
+                        function count(n: int): int {
+                            var total = 0
+                            for (var i = 0; i < n; i++) {
+                                if (i %% 3 == 0 || i == 7)
+                                    total = total + i
+                            }
+                            return total
+                        }
+                        var a = count(%d)
+                        """.formatted(iterations[i])));
+                compilation.evaluate(new HashMap<>());
+                long before = threads.getCurrentThreadAllocatedBytes();
+                compilation.evaluate(new HashMap<>());
+                allocated[i] = threads.getCurrentThreadAllocatedBytes() - before;
+            }
+        }
+        // a thousand times more iterations must not cost a single extra allocation per iteration
+        assertTrue(allocated[1] - allocated[0] < 1024,
+                "loop allocated " + (allocated[1] - allocated[0]) + " bytes");
+    }
+
+    static Stream<Arguments> provideAnyGlobals() {
+        return Stream.of(
+                Arguments.of("5", "5"),
+                Arguments.of("true", "true"),
+                Arguments.of("'five'", "five")
+        );
+    }
+
+    static Stream<Arguments> provideEvaluations() {
+        return Stream.of(
+                Arguments.of("var a = 1 + 2 * 3", 7),
+                Arguments.of("var a = 10 / 3 + 10 % 3", 4),
+                Arguments.of("var a = -(~5)", 6),
+                Arguments.of("var a = 1 == 1 && 2 != 3", true),
+                Arguments.of("var a = 'a' + 'b' == 'ab'", true),
+                Arguments.of("var a = string(12) + string(true)", "12true"),
+                Arguments.of("var a = int('41') + 1", 42),
+                Arguments.of("var a = !(true ^ false) | 3 > 2", true),
+                Arguments.of("""
+                        var x: any = 5
+                        var y: any = '4'
+                        var a = int(x) + int(y)
+                        """, 9),
+                Arguments.of("""
+                        var s = ''
+                        for (var i = 0; i < 3; i++) {
+                            s = s + string(i)
+                        }
+                        s = s
+                        """, "012"),
+                Arguments.of("""
+                        var a = 0
+                        for (var i = 0; i < 10; i++) {
+                            if (i == 5)
+                                continue
+                            a = a + i
+                        }
+                        a = a
+                        """, 40),
+                Arguments.of("""
+                        var a = 0
+                        while (true) {
+                            a++
+                            if (a >= 7)
+                                break
+                        }
+                        a = a
+                        """, 7),
+                Arguments.of("""
+                        function fib(n: int): int {
+                            if (n < 2)
+                                return n
+                            return fib(n - 1) + fib(n - 2)
+                        }
+                        var a = fib(15)
+                        """, 610),
+                Arguments.of("""
+                        function add(a: int, b: int): int {
+                            var sum = a + b
+                            return sum
+                        }
+                        var x = add(add(1, 2), add(3, add(4, 5)))
+                        """, 15),
+                Arguments.of("""
+                        var counter = 0
+                        function increment() {
+                            counter = counter + 1
+                        }
+                        increment()
+                        increment()
+                        var a = counter
+                        """, 2),
+                Arguments.of("""
+                        function limit(n: int): int {
+                            var strict = true
+                            var max = 10
+                            if (!strict)
+                                max = max * 2
+                            var count = 0
+                            while (count < n && count < max)
+                                count = count + 1
+                            return count
+                        }
+                        var a = limit(4) + limit(50)
+                        """, 14)
+        );
+    }
+
     static Stream<Arguments> provideDiagnostics() {
         return Stream.of(
                 Arguments.of("""
@@ -98,6 +275,13 @@ class EvaluatorTest {
                                 }
                                 """,
                         "ERROR: Cannot convert 'int' into 'string'."
+                ), Arguments.of("""
+                                {
+                                    let zero = 0
+                                    var a = 10 % [zero]
+                                }
+                                """,
+                        "ERROR: Division by constant zero."
                 )
         );
     }
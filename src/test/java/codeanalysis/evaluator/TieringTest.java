@@ -0,0 +1,99 @@
+package codeanalysis.evaluator;
+
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Compilation;
+import compilation.EvaluationResult;
+import emit.TierCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TieringTest {
+
+    // inlining is turned off so that every call reaches the tiering
+    @ParameterizedTest
+    @MethodSource("provideHotFunctions")
+    void hotFunctionsAreCompiled(String text, Object expectedValue, List<String> expectedCompiled) throws Exception {
+        Tiering tiering = new Tiering(new TierCompiler(), 10, 50);
+        EvaluationResult result = Compilation.create(SyntaxTree.parse(text)).setInliningBudget(0).evaluate(new HashMap<>(), tiering);
+        TierReport report = tiering.getReport();
+
+        assertTrue(result.diagnostics().isEmpty());
+        assertEquals(expectedValue, result.result());
+        assertEquals(expectedCompiled, report.compiledFunctions());
+        if (!expectedCompiled.isEmpty())
+            assertTrue(report.compiledCalls() > 0, report.toString());
+    }
+
+    @Test
+    void coldFunctionsStayInterpreted() throws Exception {
+        Tiering tiering = new Tiering(new TierCompiler());
+        Compilation.create(SyntaxTree.parse("""
+                function add(a: int, b: int): int {
+                    return a + b
+                }
+                var a = add(1, 2)
+                """)).setInliningBudget(0).evaluate(new HashMap<>(), tiering);
+        TierReport report = tiering.getReport();
+
+        assertTrue(report.compiledFunctions().isEmpty());
+        assertEquals(1, report.interpretedCalls());
+        assertEquals(0, report.compiledCalls());
+    }
+
+    static Stream<Arguments> provideHotFunctions() {
+        return Stream.of(
+                Arguments.of("""
+                        function fib(n: int): int {
+                            if (n < 2)
+                                return n
+                            return fib(n - 1) + fib(n - 2)
+                        }
+                        var a = fib(20)
+                        """, 6765, List.of("fib")),
+                Arguments.of("""
+                        function square(n: int): int {
+                            return n * n
+                        }
+                        function sum(n: int): int {
+                            var total = 0
+                            for (var i = 0; i < n; i++)
+                                total = total + square(i)
+                            return total
+                        }
+                        var a = sum(100) + sum(100)
+                        """, 656700, List.of("square", "sum")),
+                Arguments.of("""
+                        function even(n: int): boolean {
+                            return n % 2 == 0
+                        }
+                        function label(n: int): string {
+                            if (even(n))
+                                return 'even'
+                            return string(n)
+                        }
+                        var s = ''
+                        for (var i = 0; i < 20; i++)
+                            s = label(i)
+                        s = s + label(4)
+                        """, "19even", List.of("label", "even")),
+                Arguments.of("""
+                        var counter = 0
+                        function increment() {
+                            counter = counter + 1
+                        }
+                        for (var i = 0; i < 100; i++)
+                            increment()
+                        var a = counter
+                        """, 100, List.of())
+        );
+    }
+}
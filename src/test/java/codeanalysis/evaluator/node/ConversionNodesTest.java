@@ -0,0 +1,41 @@
+package codeanalysis.evaluator.node;
+
+import codeanalysis.symbol.TypeSymbol;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionNodesTest {
+
+    @Test
+    void toIntSpecializesOnObservedType() {
+        Frame frame = new Frame(1);
+        var node = new ConversionNodes.ToInt(new VariableNodes.ReadLocal(0, TypeSymbol.ANY));
+        assertInstanceOf(ConversionNodes.UninitializedToInt.class, node.getSpecialized());
+
+        frame.refs[0] = 5;
+        assertEquals(5, node.executeInt(frame));
+        assertInstanceOf(ConversionNodes.UnboxInt.class, node.getSpecialized());
+        frame.refs[0] = 6;
+        assertEquals(6, node.executeInt(frame));
+        assertInstanceOf(ConversionNodes.UnboxInt.class, node.getSpecialized());
+
+        frame.refs[0] = "7";
+        assertEquals(7, node.executeInt(frame));
+        assertInstanceOf(ConversionNodes.ParseInt.class, node.getSpecialized());
+        frame.refs[0] = 8;
+        assertEquals(8, node.executeInt(frame));
+    }
+
+    @Test
+    void toBooleanParsesText() {
+        Frame frame = new Frame(1);
+        var node = new ConversionNodes.ToBoolean(new VariableNodes.ReadLocal(0, TypeSymbol.STRING));
+
+        frame.refs[0] = "true";
+        assertTrue(node.executeBoolean(frame));
+        assertInstanceOf(ConversionNodes.ParseBoolean.class, node.getSpecialized());
+    }
+}
@@ -0,0 +1,56 @@
+package codeanalysis.lexer;
+
+import codeanalysis.syntax.SyntaxTree;
+
+/*
+    Measures how fast the lexer reads a generated program, in megabytes of source per second.
+    Not a unit test, run it with the test classpath: java codeanalysis.lexer.LexerBenchmark [functions]
+ */
+public class LexerBenchmark {
+    private static final String FUNCTION = """
+            function compute%1$s(count: int, name: string): int {
+                var total = 0
+                for (var index = 0; index < count; index++) {
+                    if (index %% 3 == 0 && name != 'skip \\'this\\'')
+                        total += index * 2147
+                    else
+                        total = total - 1
+                }
+                while (total > 1000)
+                    total = total / 2
+                return total
+            }
+            """;
+
+    public static void main(String[] args) {
+        int functions = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < functions; i++)
+            builder.append(FUNCTION.formatted(name(i)));
+        String text = builder.toString();
+        SyntaxTree tree = SyntaxTree.parse(text);
+        double megabytes = text.length() / 1e6;
+
+        for (int i = 0; i < 40; i++)
+            new Lexer(tree).tokenize();
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int i = 0; i < 40; i++) {
+            long start = System.nanoTime();
+            tokens = new Lexer(tree).tokenize().size();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%.1f MB, %d tokens: %.2f ms, %.1f MB/s%n", megabytes, tokens, best / 1e6,
+                megabytes / (best / 1e9));
+    }
+
+    // identifiers are letters only
+    private static String name(int index) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return name.toString();
+    }
+}
@@ -78,6 +78,66 @@ class LexerTest {
         assertEquals(tokens.get(2).getText(), t2);
     }
 
+    @Test
+    void tokenBufferHoldsTheTokensTheParserReads() {
+        String text = """
+                function f(n: int): string {
+                    var s = 'a\\'b' # 12
+                    return s + string(n + 345)
+                }
+                """;
+        var tree = SyntaxTree.parse(text);
+        TokenBuffer buffer = new Lexer(tree).tokenize();
+        List<SyntaxToken> expected = new ArrayList<>();
+        Lexer lexer = new Lexer(tree);
+        SyntaxToken token;
+        do {
+            token = lexer.lex();
+            if (token.getKind() != SyntaxKind.WHITESPACE_TOKEN && token.getKind() != SyntaxKind.BAD_TOKEN)
+                expected.add(token);
+        } while (token.getKind() != SyntaxKind.END_OF_FILE_TOKEN);
+
+        assertEquals(expected.size(), buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            SyntaxToken created = buffer.createToken(i);
+            assertEquals(expected.get(i).getKind(), buffer.getKind(i));
+            assertEquals(expected.get(i).getSpan(), buffer.getSpan(i));
+            assertEquals(expected.get(i).getText(), created.getText());
+            assertEquals(expected.get(i).getValue(), buffer.getValue(i));
+            assertEquals(expected.get(i).getSpan(), created.getSpan());
+        }
+        assertEquals("a'b", buffer.getValue(13));
+        assertEquals(12, buffer.getValue(14));
+        assertEquals(345, buffer.getValue(buffer.size() - 4));
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideKeywordLookalikes")
+    void wordsCloseToKeywordsAreIdentifiers(String text) {
+        List<SyntaxToken> tokens = SyntaxTree.parseTokens(text);
+        assertEquals(1, tokens.size());
+        assertEquals(SyntaxKind.IDENTIFIER_TOKEN, tokens.get(0).getKind());
+        assertEquals(text, tokens.get(0).getText());
+    }
+
+    @Test
+    void numbersOutsideOfIntAreReported() {
+        var largest = new Lexer(SyntaxTree.parse("2147483647")).tokenize();
+        assertEquals(Integer.MAX_VALUE, largest.getValue(0));
+
+        var tree = SyntaxTree.parse("2147483648");
+        Lexer lexer = new Lexer(tree);
+        var tokens = lexer.tokenize();
+        assertEquals(SyntaxKind.NUMBER_TOKEN, tokens.getKind(0));
+        assertEquals(1, lexer.getDiagnostics().getDiagnostics().size());
+        assertEquals(10, lexer.getDiagnostics().getDiagnostics().get(0).location().span().length());
+    }
+
+    private static Stream<String> provideKeywordLookalikes() {
+        return Stream.of("fore", "fo", "retur", "returns", "whilee", "tru", "True", "breaf", "lett", "vat",
+                "continuo", "functions", "el", "elsé", "ïf", "esle", "x");
+    }
+
     private static Stream<Arguments> provideTokens() {
         return Stream.concat(getTokens(), getSeparator());
     }
@@ -0,0 +1,217 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundNodeKind;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.conversion.BoundConversionExpression;
+import codeanalysis.binding.expression.BoundExpression;
+import codeanalysis.binding.expression.literal.BoundLiteralExpression;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.binding.statement.expression.BoundReturnStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConstantFolderTest {
+
+    @ParameterizedTest
+    @MethodSource("provideFoldedExpressions")
+    void literalOperandsAreFolded(String expression, Object expectedValue) throws Exception {
+        BoundExpression result = declaredValue("""
+                function f(x: int, b: boolean): any {
+                    let five = 5
+                    let name = 'five'
+                    var value: any = %s
+                    return value
+                }
+                """.formatted(expression));
+
+        BoundLiteralExpression literal = assertInstanceOf(BoundLiteralExpression.class, result);
+        assertEquals(expectedValue, literal.getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideKeptExpressions")
+    void expressionsNotKnownAtCompileTimeAreKept(String expression, BoundNodeKind expectedKind) throws Exception {
+        BoundExpression result = declaredValue("""
+                function g(): boolean {
+                    return true
+                }
+                function f(x: int, b: boolean): any {
+                    var y = x
+                    var value: any = %s
+                    return value
+                }
+                """.formatted(expression));
+
+        assertEquals(expectedKind, result.getKind());
+    }
+
+    @ParameterizedTest
+    @MethodSource("providePureExpressions")
+    void everyPassSeesTheSamePureExpressions(String expression, boolean expectedPure) throws Exception {
+        BoundExpression result = declaredValue("""
+                function g(): int {
+                    return 1
+                }
+                function f(x: int, s: string, b: boolean): any {
+                    var y = x + g()
+                    var value: any = %s
+                    return value
+                }
+                """.formatted(expression));
+
+        assertEquals(expectedPure, ConstantFolder.isPure(result), result.getKind().name());
+    }
+
+    @Test
+    void constantConditionsLeaveNoConditionalJump() throws Exception {
+        BoundBlockStatement body = functionBody("""
+                function f(): int {
+                    let debug = false
+                    var total = 0
+                    while (debug) {
+                        total = total + 1
+                    }
+                    if (!debug)
+                        total = 10
+                    return total
+                }
+                """);
+
+        for (BoundStatement statement : body.getStatements())
+            assertFalse(statement instanceof BoundConditionalJumpToStatement, statement.getKind().name());
+    }
+
+    @Test
+    void operandsThatMayFailAreNotAbsorbed() {
+        String text = """
+                function bf(x: int): boolean {
+                    let off = false
+                    return off && 10 / x > 1
+                }
+                function f(x: int): boolean {
+                    return x != 0 && 10 / x > 1
+                }
+                var r = %s(0)
+                """;
+        for (String function : List.of("bf", "f")) {
+            for (Backend backend : Backend.values()) {
+                for (int budget : new int[]{0, Inliner.DEFAULT_BUDGET}) {
+                    Compilation compilation = Compilation.create(SyntaxTree.parse(text.formatted(function)))
+                            .setInliningBudget(budget);
+                    assertThrows(ArithmeticException.class, () -> compilation.evaluate(new HashMap<>(), backend),
+                            function + " on " + backend + " with a budget of " + budget);
+                }
+            }
+        }
+    }
+
+    @Test
+    void divisionByConstantZeroIsReported() throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse("""
+                function f(x: int): int {
+                    let zero = 1 - 1
+                    return x / zero
+                }
+                """)), null);
+        BoundProgram program = Binder.bindProgram(null, scope);
+
+        assertEquals(1, program.getDiagnostics().getDiagnostics().size());
+        assertEquals("ERROR: Division by constant zero.", program.getDiagnostics().getDiagnostics().get(0).message());
+    }
+
+    static Stream<Arguments> provideFoldedExpressions() {
+        return Stream.of(
+                Arguments.of("1 + 2 * 3", 7),
+                Arguments.of("10 / 3 + 10 % 3", 4),
+                Arguments.of("-(~5)", 6),
+                Arguments.of("~true", -2),
+                Arguments.of("'a' + 'b'", "ab"),
+                Arguments.of("'ab' == 'a' + 'b'", true),
+                Arguments.of("string(12) + string(true)", "12true"),
+                Arguments.of("int('41') + 1", 42),
+                Arguments.of("boolean('true') && 2 >= 1", true),
+                Arguments.of("!(true ^ false) | 3 > 2", true),
+                Arguments.of("1 || 0", 1),
+                Arguments.of("five * five", 25),
+                Arguments.of("name + string(five)", "five5"),
+                Arguments.of("false && b", false),
+                Arguments.of("x == x || true", true)
+        );
+    }
+
+    static Stream<Arguments> providePureExpressions() {
+        return Stream.of(
+                Arguments.of("x * y + 1", true),
+                Arguments.of("y / 2 - y % 3", true),
+                Arguments.of("s + string(y)", true),
+                Arguments.of("!b | y > x", true),
+                Arguments.of("x / y", false),
+                Arguments.of("y % x", false),
+                Arguments.of("int(s) + 1", false),
+                Arguments.of("boolean(s) && b", false),
+                Arguments.of("g() + 1", false),
+                Arguments.of("(y = 2) + 1", false),
+                Arguments.of("y++", false)
+        );
+    }
+
+    static Stream<Arguments> provideKeptExpressions() {
+        return Stream.of(
+                Arguments.of("x + 1 * 2", BoundNodeKind.BINARY_EXPRESSION),
+                Arguments.of("true && b", BoundNodeKind.VARIABLE_EXPRESSION),
+                Arguments.of("!!b", BoundNodeKind.VARIABLE_EXPRESSION),
+                Arguments.of("false && g()", BoundNodeKind.BINARY_EXPRESSION),
+                Arguments.of("true || (y = 1) > 0", BoundNodeKind.BINARY_EXPRESSION),
+                Arguments.of("int('a')", BoundNodeKind.CONVERSION_EXPRESSION),
+                Arguments.of("false && 10 / x > 1", BoundNodeKind.BINARY_EXPRESSION),
+                Arguments.of("y % x == 0 || true", BoundNodeKind.BINARY_EXPRESSION),
+                Arguments.of("false && int(string(y)) > 0", BoundNodeKind.BINARY_EXPRESSION),
+                Arguments.of("y * 2", BoundNodeKind.BINARY_EXPRESSION)
+        );
+    }
+
+    // the initializer of value, seen through its conversion to any
+    private static BoundExpression declaredValue(String text) throws Exception {
+        BoundBlockStatement body = functionBody(text);
+        assertInstanceOf(BoundReturnStatement.class, body.getStatements().get(body.getStatements().size() - 1));
+        var declaration = body.getStatements().stream()
+                .filter(s -> s instanceof BoundVariableDeclarationStatement d && d.getVariable().getName().equals("value"))
+                .map(BoundVariableDeclarationStatement.class::cast)
+                .findFirst()
+                .orElseThrow();
+        var conversion = (BoundConversionExpression) declaration.getInitializer();
+        return conversion.getExpression();
+    }
+
+    private static BoundBlockStatement functionBody(String text) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        // without inlining, calls stay for the analysis to see
+        BoundProgram program = Binder.bindProgram(null, scope, 0);
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        return program.getFunctionsBodies().entrySet().stream()
+                .filter(e -> e.getKey().getName().equals("f"))
+                .findFirst()
+                .orElseThrow()
+                .getValue();
+    }
+}
@@ -0,0 +1,207 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.BoundNodeKind;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+import compilation.EvaluationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InlinerTest {
+
+    @ParameterizedTest
+    @MethodSource("provideInlinedPrograms")
+    void inlinedProgramsEvaluateAsBefore(String text, Object expectedValue, String expectedDecision) throws Exception {
+        for (Backend backend : Backend.values()) {
+            for (int budget : new int[]{0, Inliner.DEFAULT_BUDGET}) {
+                EvaluationResult result = Compilation.create(SyntaxTree.parse(text))
+                        .setInliningBudget(budget)
+                        .evaluate(new HashMap<>(), backend);
+
+                assertTrue(result.diagnostics().isEmpty());
+                assertEquals(expectedValue, result.result(), backend + " with a budget of " + budget);
+            }
+        }
+        List<String> report = bind(text, Inliner.DEFAULT_BUDGET).getInlining().stream()
+                .map(Inliner.Decision::toString)
+                .toList();
+        assertTrue(report.stream().anyMatch(decision -> decision.startsWith(expectedDecision)), report.toString());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideKeptCalls")
+    void callsAreKeptWithAReason(String text, int budget, String expectedDecision) throws Exception {
+        BoundProgram program = bind(text, budget);
+        List<String> report = program.getInlining().stream()
+                .map(Inliner.Decision::toString)
+                .toList();
+
+        assertEquals(1, report.size());
+        assertTrue(report.get(0).startsWith(expectedDecision), report.get(0));
+    }
+
+    @Test
+    void everyCopyGetsItsOwnLabels() throws Exception {
+        BoundProgram program = bind("""
+                function sum(n: int): int {
+                    var total = 0
+                    for (var i = 0; i < n; i++)
+                        total = total + i
+                    return total
+                }
+                function f(n: int): int {
+                    var result = 0
+                    while (n > 0) {
+                        result = result + sum(n) + sum(n + 1)
+                        n = n - 1
+                    }
+                    return result
+                }
+                """, Inliner.DEFAULT_BUDGET);
+        BoundBlockStatement body = program.getFunctionsBodies().entrySet().stream()
+                .filter(e -> e.getKey().getName().equals("f"))
+                .findFirst()
+                .orElseThrow()
+                .getValue();
+
+        assertEquals(0, count(body, BoundNodeKind.CALL_EXPRESSION));
+        Set<String> labels = new HashSet<>();
+        for (BoundStatement statement : body.getStatements()) {
+            if (statement instanceof BoundLabelDeclarationStatement label)
+                assertTrue(labels.add(label.getLabel().name()), label.getLabel().name());
+        }
+        assertEquals(1, program.getInlining().size());
+        assertEquals(2, program.getInlining().get(0).calls());
+    }
+
+    static Stream<Arguments> provideInlinedPrograms() {
+        return Stream.of(
+                Arguments.of("""
+                        function square(n: int): int {
+                            return n * n
+                        }
+                        function f(n: int): int {
+                            return square(n) + square(n + 1)
+                        }
+                        var a = f(3)
+                        """, 25, "f -> square: inlined x2"),
+                Arguments.of("""
+                        function sign(n: int): int {
+                            if (n < 0)
+                                return -1
+                            if (n == 0)
+                                return 0
+                            return 1
+                        }
+                        function f(): int {
+                            var total = 0
+                            for (var i = -3; i < 5; i++)
+                                total = total * 3 + sign(i)
+                            return total
+                        }
+                        var a = f()
+                        """, -3119, "f -> sign: inlined"),
+                Arguments.of("""
+                        var calls = 0
+                        function next(): int {
+                            calls = calls + 1
+                            return calls
+                        }
+                        function f(): int {
+                            var first = next()
+                            var second = next()
+                            return first * 10 + second
+                        }
+                        var a = f() + calls
+                        """, 14, "f -> next: inlined x2"),
+                Arguments.of("""
+                        function greet(name: string): string {
+                            let greeting = 'hi '
+                            return greeting + name
+                        }
+                        function shout(name: string): string {
+                            return greet(name) + '!'
+                        }
+                        var a = shout('bob')
+                        """, "hi bob!", "shout -> greet: inlined"),
+                Arguments.of("""
+                        function show(x: any): string {
+                            return string(x)
+                        }
+                        function f(): string {
+                            return show(3) + show(true) + show('s')
+                        }
+                        var a = f()
+                        """, "3trues", "f -> show: inlined x3")
+        );
+    }
+
+    static Stream<Arguments> provideKeptCalls() {
+        return Stream.of(
+                Arguments.of("""
+                        function fact(n: int): int {
+                            if (n < 2)
+                                return 1
+                            return n * fact(n - 1)
+                        }
+                        """, Inliner.DEFAULT_BUDGET, "fact -> fact: kept, recursive"),
+                Arguments.of("""
+                        function square(n: int): int {
+                            return n * n
+                        }
+                        function f(n: int): int {
+                            return square(n)
+                        }
+                        """, 4, "f -> square: kept, 5 nodes, over the budget of 4"),
+                Arguments.of("""
+                        var calls = 0
+                        function next(): int {
+                            calls = calls + 1
+                            return calls
+                        }
+                        function f(): int {
+                            return calls + next()
+                        }
+                        """, Inliner.DEFAULT_BUDGET, "f -> next: kept, the statement depends on state before the call"),
+                Arguments.of("""
+                        function log(n: int) {
+                            print(string(n))
+                        }
+                        log(1)
+                        """, Inliner.DEFAULT_BUDGET, "main -> log: kept, the statement would no longer be the last value of the script")
+        );
+    }
+
+    private static int count(BoundNode node, BoundNodeKind kind) {
+        int count = node.getKind() == kind ? 1 : 0;
+        for (BoundNode child : node.getChildren())
+            count += count(child, kind);
+        return count;
+    }
+
+    private static BoundProgram bind(String text, int budget) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        BoundProgram program = Binder.bindProgram(null, scope, budget);
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        return program;
+    }
+}
@@ -0,0 +1,161 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundLabel;
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+import compilation.EvaluationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JumpThreadingTest {
+
+    @ParameterizedTest
+    @MethodSource("provideBranchyFunctions")
+    void cleanedBodiesKeepNoScaffolding(String text, Object expectedValue) throws Exception {
+        BoundBlockStatement body = functionBody(text);
+        List<BoundStatement> statements = body.getStatements();
+        Set<BoundLabel> targets = new HashSet<>();
+        for (BoundStatement statement : statements) {
+            if (statement instanceof BoundJumpToStatement jump)
+                targets.add(jump.getLabel());
+            else if (statement instanceof BoundConditionalJumpToStatement jump)
+                targets.add(jump.getLabel());
+        }
+
+        for (int i = 0; i < statements.size(); i++) {
+            BoundStatement statement = statements.get(i);
+            BoundStatement next = i + 1 < statements.size() ? statements.get(i + 1) : null;
+            if (statement instanceof BoundLabelDeclarationStatement label) {
+                assertTrue(targets.contains(label.getLabel()), label.getLabel().name());
+                // a label holding a goto would have been threaded
+                assertFalse(next instanceof BoundJumpToStatement, label.getLabel().name());
+            }
+            if (statement instanceof BoundJumpToStatement jump)
+                assertFalse(next instanceof BoundLabelDeclarationStatement l && l.getLabel().equals(jump.getLabel()));
+        }
+        for (Backend backend : Backend.values()) {
+            EvaluationResult result = Compilation.create(SyntaxTree.parse(text + "var result = f(12)"))
+                    .evaluate(new HashMap<>(), backend);
+            assertEquals(expectedValue, result.result(), backend.name());
+        }
+    }
+
+    @Test
+    void jumpsOverJumpsAreInverted() throws Exception {
+        BoundProgram program = bind("""
+                function f(n: int): int {
+                    var total = 0
+                    for (var i = 0; i < n; i++) {
+                        if (i == 3)
+                            continue
+                        total = total + i
+                    }
+                    return total
+                }
+                """);
+        BoundBlockStatement body = program.getFunctionsBodies().values().iterator().next();
+
+        // the continue is a branch straight to the increment, and the rotated loop needs no goto of its own
+        long gotos = body.getStatements().stream().filter(s -> s instanceof BoundJumpToStatement).count();
+        assertEquals(0, gotos);
+        assertTrue(program.getStatistics().get(JumpThreading.REMOVED) > 0);
+    }
+
+    static Stream<Arguments> provideBranchyFunctions() {
+        return Stream.of(
+                Arguments.of("""
+                        function f(n: int): int {
+                            var total = 0
+                            for (var i = 0; i < n; i++) {
+                                if (i == 3)
+                                    continue
+                                if (i > 5) {
+                                    if (i > 7)
+                                        break
+                                    total = total + 1
+                                } else
+                                    total = total + i
+                            }
+                            return total
+                        }
+                        """, 14),
+                Arguments.of("""
+                        function f(n: int): string {
+                            var s = ''
+                            while (true) {
+                                n = n - 1
+                                if (n < 0)
+                                    break
+                                if (n % 2 == 0)
+                                    continue
+                                else if (n % 3 == 0)
+                                    s = s + 'a'
+                                else
+                                    s = s + 'b'
+                            }
+                            return s
+                        }
+                        """, "babbab"),
+                Arguments.of("""
+                        function f(n: int): int {
+                            if (n > 10) {
+                                if (n > 20)
+                                    return 3
+                                else
+                                    return 2
+                            } else if (n > 5)
+                                return 1
+                            return 0
+                        }
+                        """, 2),
+                Arguments.of("""
+                        function f(n: int): int {
+                            var count = 0
+                            for (var i = 0; i < n; i++)
+                                for (var j = 0; j < n; j++) {
+                                    if (j > i)
+                                        break
+                                    count = count + 1
+                                }
+                            return count
+                        }
+                        """, 78)
+        );
+    }
+
+    private static BoundBlockStatement functionBody(String text) throws Exception {
+        return bind(text).getFunctionsBodies().entrySet().stream()
+                .filter(e -> e.getKey().getName().equals("f"))
+                .findFirst()
+                .orElseThrow()
+                .getValue();
+    }
+
+    private static BoundProgram bind(String text) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        BoundProgram program = Binder.bindProgram(null, scope, 0);
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        return program;
+    }
+}
@@ -0,0 +1,165 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundNode;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.expression.call.BoundCallExpression;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.binding.statement.declaration.BoundVariableDeclarationStatement;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.controlflow.NaturalLoop;
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+import compilation.EvaluationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoopInvariantCodeMotionTest {
+
+    @Test
+    void nestedLoopsAreFoundOutermostFirst() throws Exception {
+        BoundBlockStatement body = functionBody("""
+                function f(n: int): int {
+                    var total = 0
+                    for (var i = 0; i < n; i++) {
+                        var j = 0
+                        while (j < i) {
+                            if (j == 3)
+                                break
+                            total = total + j
+                            j++
+                        }
+                    }
+                    return total
+                }
+                """);
+        List<NaturalLoop> loops = ControlFlowGraph.create(body).getLoops();
+
+        assertEquals(2, loops.size());
+        assertTrue(loops.get(0).getBlocks().containsAll(loops.get(1).getBlocks()));
+        assertTrue(loops.get(0).getBlocks().size() > loops.get(1).getBlocks().size());
+        for (NaturalLoop loop : loops)
+            assertEquals(1, loop.getEntries().size());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideHoistedLoops")
+    void invariantExpressionsLeaveTheLoop(String text, int expectedHoisted, Object expectedValue) throws Exception {
+        BoundBlockStatement body = functionBody(text);
+        int hoisted = 0;
+        for (BoundStatement statement : body.getStatements()) {
+            if (statement instanceof BoundVariableDeclarationStatement declaration
+                    && declaration.getVariable().getName().startsWith("invariant"))
+                hoisted++;
+        }
+
+        assertEquals(expectedHoisted, hoisted);
+        for (Backend backend : Backend.values()) {
+            EvaluationResult result = Compilation.create(SyntaxTree.parse(text + "var result = f(7, 3)"))
+                    .evaluate(new HashMap<>(), backend);
+            assertEquals(expectedValue, result.result(), backend.name());
+        }
+    }
+
+    @Test
+    void callsStayInTheLoop() throws Exception {
+        BoundBlockStatement body = functionBody("""
+                var scale = 2
+                function grow() {
+                    scale = scale * 2
+                }
+                function f(n: int, m: int): int {
+                    var total = 0
+                    for (var i = 0; i < n; i++) {
+                        total = total + random(m) * 0 + scale * m
+                        grow()
+                    }
+                    return total
+                }
+                """);
+
+        // random is still called once per iteration, and scale changes with every call to grow
+        for (BoundStatement statement : body.getStatements()) {
+            if (statement instanceof BoundVariableDeclarationStatement declaration)
+                assertTrue(!declaration.getVariable().getName().startsWith("invariant"), declaration.getVariable().getName());
+        }
+        assertEquals(1, countCalls(body, "random"));
+    }
+
+    static Stream<Arguments> provideHoistedLoops() {
+        return Stream.of(
+                Arguments.of("""
+                        function f(n: int, m: int): int {
+                            var total = 0
+                            for (var i = 0; i < n; i++)
+                                total = total + n * m
+                            return total
+                        }
+                        """, 1, 147),
+                Arguments.of("""
+                        function f(n: int, m: int): int {
+                            var total = 0
+                            var k = 0
+                            while (k < n) {
+                                var j = 0
+                                while (j < m) {
+                                    total = total + (n - m) * k + n * m
+                                    j++
+                                }
+                                k++
+                            }
+                            return total
+                        }
+                        """, 4, 693),
+                Arguments.of("""
+                        function f(n: int, m: int): string {
+                            var label = ''
+                            for (var i = 0; i < n; i++) {
+                                if (i == m)
+                                    continue
+                                label = string(n) + ':' + string(i)
+                            }
+                            return label
+                        }
+                        """, 1, "7:6"),
+                Arguments.of("""
+                        function f(n: int, m: int): int {
+                            var total = 0
+                            for (var i = 0; i < n; i++)
+                                total = total + i / m + n / m
+                            return total
+                        }
+                        """, 0, 19)
+        );
+    }
+
+    private static int countCalls(BoundNode node, String name) {
+        int count = node instanceof BoundCallExpression call && call.getFunction().getName().equals(name) ? 1 : 0;
+        for (BoundNode child : node.getChildren())
+            count += countCalls(child, name);
+        return count;
+    }
+
+    private static BoundBlockStatement functionBody(String text) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        BoundProgram program = Binder.bindProgram(null, scope, 0);
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        return program.getFunctionsBodies().entrySet().stream()
+                .filter(e -> e.getKey().getName().equals("f"))
+                .findFirst()
+                .orElseThrow()
+                .getValue();
+    }
+}
@@ -0,0 +1,86 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.statement.block.BoundBlockStatement;
+import codeanalysis.controlflow.BasicBlock;
+import codeanalysis.controlflow.ControlFlowGraph;
+import codeanalysis.controlflow.NaturalLoop;
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+
+import java.util.HashMap;
+import java.util.List;
+
+/*
+    Measures the shape of lowered loops: the statements the evaluator dispatches per iteration of a loop body
+    without branches, the size of the emitted class and the time the evaluator takes.
+    Not a unit test, run it with the test classpath: java codeanalysis.lowering.LoopShapeBenchmark [iterations]
+ */
+public class LoopShapeBenchmark {
+    private static final String[][] PROGRAMS = {
+            {"for loop", """
+                    function count(n: int): int {
+                        var total = 0
+                        for (var i = 0; i < n; i++)
+                            total = total + i
+                        return total
+                    }
+                    var a = count(%d)
+                    """},
+            {"while loop", """
+                    function count(n: int): int {
+                        var total = 0
+                        var i = n
+                        while (i > 0) {
+                            total = total + i
+                            i = i - 1
+                        }
+                        return total
+                    }
+                    var a = count(%d)
+                    """},
+            {"nested loops", """
+                    function count(n: int): int {
+                        var total = 0
+                        for (var i = 0; i < n / 100; i++)
+                            for (var j = 0; j < 100; j++)
+                                total = total + j
+                        return total
+                    }
+                    var a = count(%d)
+                    """}
+    };
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        for (String[] program : PROGRAMS) {
+            String text = program[1].formatted(iterations);
+            BoundProgram bound = Binder.bindProgram(null,
+                    Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null), 0);
+            int perIteration = 0;
+            for (BoundBlockStatement body : bound.getFunctionsBodies().values()) {
+                List<NaturalLoop> loops = ControlFlowGraph.create(body).getLoops();
+                // the innermost loop runs the most
+                if (!loops.isEmpty()) {
+                    for (BasicBlock block : loops.get(loops.size() - 1).getBlocks())
+                        perIteration += block.getStatements().size();
+                }
+            }
+
+            Compilation compilation = Compilation.create(SyntaxTree.parse(text));
+            int classBytes = compilation.emitClass().bytes().length;
+            for (int i = 0; i < 10; i++)
+                compilation.evaluate(new HashMap<>(), Backend.EVALUATOR);
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 10; i++) {
+                long start = System.nanoTime();
+                compilation.evaluate(new HashMap<>(), Backend.EVALUATOR);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%-14s %2d statements per iteration  %5d class bytes  %8.2f ms%n",
+                    program[0], perIteration, classBytes, best / 1e6);
+        }
+    }
+}
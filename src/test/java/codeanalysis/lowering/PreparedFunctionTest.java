@@ -0,0 +1,81 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.binding.statement.BoundStatement;
+import codeanalysis.binding.statement.declaration.BoundLabelDeclarationStatement;
+import codeanalysis.binding.statement.jumpto.BoundConditionalJumpToStatement;
+import codeanalysis.binding.statement.jumpto.BoundJumpToStatement;
+import codeanalysis.symbol.FunctionSymbol;
+import codeanalysis.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreparedFunctionTest {
+
+    @Test
+    void jumpsAreResolvedToLabelIndexes() throws Exception {
+        BoundProgram program = bind("""
+                function count(n: int): int {
+                    var total = 0
+                    for (var i = 0; i < n; i++) {
+                        if (i == 2)
+                            continue
+                        total = total + i
+                    }
+                    return total
+                }
+                """);
+        FunctionSymbol count = program.getFunctionsBodies().keySet().stream()
+                .filter(f -> f.getName().equals("count"))
+                .findFirst()
+                .orElseThrow();
+
+        PreparedFunction function = program.getPreparedFunction(count);
+        BoundStatement[] statements = function.getStatements();
+        int[] jumpTargets = function.getJumpTargets();
+        int jumps = 0;
+        for (int i = 0; i < statements.length; i++) {
+            if (statements[i] instanceof BoundJumpToStatement j) {
+                var target = (BoundLabelDeclarationStatement) statements[jumpTargets[i]];
+                assertSame(j.getLabel(), target.getLabel());
+                jumps++;
+            } else if (statements[i] instanceof BoundConditionalJumpToStatement j) {
+                var target = (BoundLabelDeclarationStatement) statements[jumpTargets[i]];
+                assertSame(j.getLabel(), target.getLabel());
+                jumps++;
+            } else {
+                assertEquals(-1, jumpTargets[i]);
+            }
+        }
+        assertTrue(jumps > 0);
+        assertEquals(3, function.getFrameSize());
+    }
+
+    @Test
+    void preparedFunctionsAreSharedWithLaterPrograms() throws Exception {
+        BoundGlobalScope firstScope = Binder.bindGlobalScope(List.of(SyntaxTree.parse("""
+                function one(): int {
+                    return 1
+                }
+                """)), null);
+        BoundProgram first = Binder.bindProgram(null, firstScope);
+        FunctionSymbol one = firstScope.getFunctions().get(0);
+        BoundGlobalScope secondScope = Binder.bindGlobalScope(List.of(SyntaxTree.parse("var a = one()")), firstScope);
+        BoundProgram second = Binder.bindProgram(first, secondScope);
+
+        assertSame(first.getPreparedFunction(one), second.getPreparedFunction(one));
+        assertSame(second.getPreparedFunction(one), second.getPreparedFunction(one));
+    }
+
+    private static BoundProgram bind(String text) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        return Binder.bindProgram(null, scope);
+    }
+}
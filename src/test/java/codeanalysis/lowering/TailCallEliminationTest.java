@@ -0,0 +1,96 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+import compilation.EvaluationResult;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TailCallEliminationTest {
+
+    @ParameterizedTest
+    @MethodSource("provideRecursions")
+    void selfTailCallsBecomeJumps(String text, int expectedEliminated, Object expectedValue) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        BoundProgram program = Binder.bindProgram(null, scope, 0);
+
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        assertEquals(expectedEliminated, program.getStatistics().get(TailCallElimination.PASS));
+        for (Backend backend : Backend.values()) {
+            EvaluationResult result = Compilation.create(SyntaxTree.parse(text)).evaluate(new HashMap<>(), backend);
+            assertEquals(expectedValue, result.result(), backend.name());
+        }
+    }
+
+    static Stream<Arguments> provideRecursions() {
+        return Stream.of(
+                // deep enough to overflow the stack of every backend if each call took a frame
+                Arguments.of("""
+                        function sum(n: int, total: int): int {
+                            if (n == 0)
+                                return total
+                            return sum(n - 1, total + n % 10)
+                        }
+                        var result = sum(200000, 0)
+                        """, 1, 900000),
+                Arguments.of("""
+                        var calls = 0
+                        function countdown(n: int) {
+                            calls = calls + 1
+                            if (n > 0)
+                                countdown(n - 1)
+                        }
+                        countdown(200000)
+                        var result = calls
+                        """, 1, 200001),
+                // the arguments see the parameters as they were when the call started
+                Arguments.of("""
+                        function gcd(a: int, b: int): int {
+                            if (b == 0)
+                                return a
+                            return gcd(b, a % b)
+                        }
+                        var result = gcd(1071, 462)
+                        """, 1, 21),
+                Arguments.of("""
+                        function fibonacci(n: int, a: int, b: int): int {
+                            if (n == 0)
+                                return a
+                            return fibonacci(n - 1, b, a + b)
+                        }
+                        var result = fibonacci(30, 0, 1)
+                        """, 1, 832040),
+                Arguments.of("""
+                        function join(n: int, text: string): string {
+                            if (n == 0)
+                                return text
+                            else if (n % 2 == 0)
+                                return join(n - 1, text + 'e')
+                            return join(n - 1, text + 'o')
+                        }
+                        var result = join(5, '')
+                        """, 2, "oeoeo"),
+                // only a call whose result is returned as it is can reuse the frame
+                Arguments.of("""
+                        function factorial(n: int): int {
+                            if (n <= 1)
+                                return 1
+                            return n * factorial(n - 1)
+                        }
+                        var result = factorial(10)
+                        """, 0, 3628800)
+        );
+    }
+}
@@ -0,0 +1,92 @@
+package codeanalysis.lowering;
+
+import codeanalysis.binding.Binder;
+import codeanalysis.binding.BoundProgram;
+import codeanalysis.binding.scopes.BoundGlobalScope;
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+import compilation.EvaluationResult;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueNumberingTest {
+
+    @ParameterizedTest
+    @MethodSource("provideRepeatedExpressions")
+    void repeatedExpressionsAreComputedOnce(String text, int expectedEliminated, Object expectedValue) throws Exception {
+        BoundGlobalScope scope = Binder.bindGlobalScope(List.of(SyntaxTree.parse(text)), null);
+        BoundProgram program = Binder.bindProgram(null, scope, 0);
+
+        assertTrue(program.getDiagnostics().getDiagnostics().isEmpty());
+        assertEquals(expectedEliminated, program.getStatistics().get(ValueNumbering.PASS), program.getStatistics().toString());
+        for (Backend backend : Backend.values()) {
+            EvaluationResult result = Compilation.create(SyntaxTree.parse(text + "var result = f(6, 7)"))
+                    .evaluate(new HashMap<>(), backend);
+            assertEquals(expectedValue, result.result(), backend.name());
+        }
+    }
+
+    static Stream<Arguments> provideRepeatedExpressions() {
+        return Stream.of(
+                Arguments.of("""
+                        function f(x: int, y: int): int {
+                            return x * y + y * x
+                        }
+                        """, 1, 84),
+                Arguments.of("""
+                        function f(x: int, y: int): string {
+                            var s = ''
+                            for (var i = 0; i < x; i++)
+                                s = s + string(i) + string(i)
+                            return s
+                        }
+                        """, 1, "001122334455"),
+                Arguments.of("""
+                        function f(x: int, y: int): int {
+                            var total = x / y
+                            if (x > y)
+                                total = total + x / y
+                            else
+                                total = total - x / y
+                            return total + (x - y) * (x - y)
+                        }
+                        """, 3, 1),
+                Arguments.of("""
+                        function f(x: int, y: int): int {
+                            var first = x * y
+                            x = x + 1
+                            var second = x * y
+                            return first + second
+                        }
+                        """, 0, 91),
+                Arguments.of("""
+                        var scale = 2
+                        function grow() {
+                            scale = scale + 1
+                        }
+                        function f(x: int, y: int): int {
+                            var first = x * scale
+                            grow()
+                            return first + x * scale
+                        }
+                        """, 0, 30),
+                Arguments.of("""
+                        function f(x: int, y: int): int {
+                            var total = 0
+                            for (var i = 0; i < x; i++)
+                                total = total + x * y
+                            return total + x * y
+                        }
+                        """, 0, 294)
+        );
+    }
+}
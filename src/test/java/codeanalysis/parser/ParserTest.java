@@ -4,6 +4,8 @@ import codeanalysis.source.SourceText;
 import codeanalysis.syntax.AssertingList;
 import codeanalysis.syntax.SyntaxFacts;
 import codeanalysis.syntax.SyntaxKind;
+import codeanalysis.syntax.SyntaxNode;
+import codeanalysis.syntax.SyntaxToken;
 import codeanalysis.syntax.SyntaxTree;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -14,6 +16,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 class ParserTest {
 
     @ParameterizedTest
@@ -288,6 +293,39 @@ class ParserTest {
         asserting.assertToken(SyntaxKind.IDENTIFIER_TOKEN, "a");
     }
 
+    @Test
+    void nodesKeepTheSpanAndLastTokenOfTheirTokens() {
+        SyntaxTree tree = SyntaxTree.parse("""
+                function f(n: int): int {
+                    var total = 0
+                    for (var i = 0; i < n; i++) {
+                        if (i % 2 == 0)
+                            total += i
+                        else
+                            total = -(total - 1)
+                    }
+                    return total
+                }
+                print(string(f(10)))
+                """);
+        checkSpans(tree.getRoot());
+    }
+
+    // the tokens under the node in order, checking each node against them on the way back up
+    private static List<SyntaxToken> checkSpans(SyntaxNode node) {
+        if (node instanceof SyntaxToken token)
+            return List.of(token);
+        List<SyntaxToken> tokens = new ArrayList<>();
+        for (SyntaxNode child : node.getChildren())
+            tokens.addAll(checkSpans(child));
+        SyntaxToken last = tokens.get(tokens.size() - 1);
+        assertEquals(tokens.get(0).getSpan().start(), node.getSpan().start(), node.getKind().toString());
+        assertEquals(last.getSpan().end(), node.getSpan().end(), node.getKind().toString());
+        assertSame(last, node.getLastToken());
+        assertSame(node.getSpan(), node.getLocation().span());
+        assertSame(node.getLocation(), node.getLocation());
+        return tokens;
+    }
 
     static Stream<Arguments> provideBinaryOperatorPairs() {
         List<SyntaxKind> bos1 = SyntaxFacts.getBinaryOperatorKinds();
@@ -0,0 +1,85 @@
+package codeanalysis.source;
+
+import java.util.Random;
+
+/*
+    Measures how fast positions are turned into lines on a generated text of a million lines,
+    for positions read in order, as the lexer and the diagnostics do, and for positions in no order.
+    Not a unit test, run it with the test classpath: java codeanalysis.source.LineMapBenchmark [lines]
+ */
+public class LineMapBenchmark {
+    private static final String[] LINES = {
+            "    var total = 0",
+            "    for (var index = 0; index < count; index++)",
+            "        total = total + index * 2",
+            "",
+            "    return total",
+    };
+
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+            builder.append(LINES[i % LINES.length]).append(i % 7 == 0 ? "\r\n" : "\n");
+        String text = builder.toString();
+
+        // positions a few characters apart, like the tokens of the text
+        int[] ordered = new int[text.length() / 4];
+        for (int i = 0; i < ordered.length; i++)
+            ordered[i] = i * 4;
+        int[] shuffled = ordered.clone();
+        Random random = new Random(24);
+        for (int i = shuffled.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+
+        long build = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            SourceText.from(text).getLineCount();
+            build = Math.min(build, System.nanoTime() - start);
+        }
+        System.out.printf("%d lines, %d positions, line starts built in %.2f ms%n", lines, ordered.length, build / 1e6);
+
+        SourceText source = SourceText.from(text);
+        report("in order", source, ordered);
+        report("no order", source, shuffled);
+        report("locations in order", source, ordered, true);
+    }
+
+    private static void report(String name, SourceText source, int[] positions) {
+        report(name, source, positions, false);
+    }
+
+    private static void report(String name, SourceText source, int[] positions, boolean locations) {
+        long best = Long.MAX_VALUE;
+        long check = 0;
+        for (int i = 0; i < 20; i++) {
+            long start = System.nanoTime();
+            check = locations ? locate(source, positions) : lookup(source, positions);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-20s %.2f ms, %.1f ns per position (%d)%n", name, best / 1e6,
+                (double) best / positions.length, check);
+    }
+
+    private static long lookup(SourceText source, int[] positions) {
+        long total = 0;
+        for (int position : positions)
+            total += source.getLineIndex(position);
+        return total;
+    }
+
+    // what the diagnostics ask of a location
+    private static long locate(SourceText source, int[] positions) {
+        long total = 0;
+        for (int position : positions) {
+            TextLocation location = new TextLocation(source, new TextSpan(position, 1));
+            total += location.startLine() + location.startChar() + location.endLine() + location.endChar();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,48 @@
+package codeanalysis.vm;
+
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Backend;
+import compilation.Compilation;
+
+import java.util.HashMap;
+
+/*
+    Compares the backends on a loop-heavy program.
+    Not a unit test, run it with the test classpath: java codeanalysis.vm.LoopBenchmark [iterations]
+ */
+public class LoopBenchmark {
+    private static final String PROGRAM = """
+            function sum(n: int): int {
+                var total = 0
+                for (var i = 0; i < n; i++) {
+                    if (i %% 3 == 0)
+                        total = total + i
+                    else
+                        total = total - 1
+                }
+                return total
+            }
+            function fib(n: int): int {
+                if (n < 2)
+                    return n
+                return fib(n - 1) + fib(n - 2)
+            }
+            var a = sum(%d) + fib(20)
+            """;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        String text = PROGRAM.formatted(iterations);
+        for (Backend backend : Backend.values()) {
+            Compilation compilation = Compilation.create(SyntaxTree.parse(text));
+            for (int i = 0; i < 5; i++)
+                compilation.evaluate(new HashMap<>(), backend);
+            long start = System.nanoTime();
+            Object result = null;
+            for (int i = 0; i < 5; i++)
+                result = compilation.evaluate(new HashMap<>(), backend).result();
+            long elapsed = (System.nanoTime() - start) / 5;
+            System.out.printf("%-16s %8.2f ms  result=%s%n", backend, elapsed / 1e6, result);
+        }
+    }
+}
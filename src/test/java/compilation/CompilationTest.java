@@ -0,0 +1,161 @@
+package compilation;
+
+import codeanalysis.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompilationTest {
+
+    @ParameterizedTest
+    @MethodSource("providePrograms")
+    void run(String text, String expectedOutput) throws Exception {
+        Compilation compilation = Compilation.create(SyntaxTree.parse(text));
+        assertEquals(expectedOutput, runCapturing(compilation));
+        // a second run loads a fresh class, so globals start over
+        assertEquals(expectedOutput, runCapturing(compilation));
+    }
+
+    @Test
+    void classNamesAreUnique() throws Exception {
+        Compilation compilation = Compilation.create(SyntaxTree.parse("var a = 1"));
+        EmitResult first = compilation.emitClass();
+        EmitResult second = compilation.emitClass();
+        assertTrue(first.diagnostics().isEmpty());
+        assertNotEquals(first.className(), second.className());
+    }
+
+    @Test
+    void runReportsDiagnostics() throws Exception {
+        Compilation compilation = Compilation.create(SyntaxTree.parse("var a: int = '1'"));
+        EmitResult result = compilation.run(new String[0]);
+        assertEquals("ERROR: Cannot convert 'string' into 'int'.", result.diagnostics().get(0).message());
+        assertEquals(null, result.bytes());
+    }
+
+    private static String runCapturing(Compilation compilation) throws Exception {
+        PrintStream out = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buffer, true));
+        try {
+            EmitResult result = compilation.run(new String[0]);
+            assertTrue(result.diagnostics().isEmpty());
+        } finally {
+            System.setOut(out);
+        }
+        return buffer.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    static Stream<Arguments> providePrograms() {
+        return Stream.of(
+                Arguments.of("print('hello')", "hello"),
+                Arguments.of("""
+                        function fib(n: int): int {
+                            if (n < 2)
+                                return n
+                            return fib(n - 1) + fib(n - 2)
+                        }
+                        printf(fib(15))
+                        """, "610\n"),
+                Arguments.of("""
+                        var counter = 0
+                        function increment() {
+                            counter = counter + 1
+                        }
+                        for (var i = 0; i < 5; i++)
+                            increment()
+                        print(counter)
+                        """, "5"),
+                Arguments.of("""
+                        var name = 'world'
+                        function greet(): string {
+                            return 'hello ' + name
+                        }
+                        printf(greet())
+                        """, "hello world\n"),
+                Arguments.of("""
+                        function touch(): boolean {
+                            printf('touched')
+                            return true
+                        }
+                        var f = false
+                        if (f && touch())
+                            print('yes')
+                        else
+                            print('no')
+                        """, "touched\nno"),
+                Arguments.of("""
+                        var s = 'ab'
+                        var n = 0
+                        for (var i = -3; i < 4; i++) {
+                            if (i >= 0 && !(s != 'a' + 'b') || i % 7 == 0)
+                                n = n + 1
+                        }
+                        print(string(n) + string(n > 3 == true) + string(s == 'b'))
+                        """, "4truefalse"),
+                Arguments.of("var s = 'x'\nprint(s" + " + '-' + s".repeat(250) + ")", "x" + "-x".repeat(250)),
+                Arguments.of("""
+                        function mix(n: int): string {
+                            var text = ''
+                            {
+                                var s = 'a' + string(n)
+                                text = text + s
+                            }
+                            {
+                                var k = n * 2
+                                while (k > 0)
+                                    k = k - 1
+                                text = text + string(k)
+                            }
+                            for (var i = 0; i < n; i++) {
+                                var even = i % 2 == 0
+                                if (even)
+                                    text = text + 'x'
+                            }
+                            return text
+                        }
+                        printf(mix(3))
+                        """, "a30xx\n"),
+                Arguments.of("""
+                        var verbose = false
+                        var level = 1
+                        function bump() {
+                            level = level + 1
+                        }
+                        function settings(n: int): string {
+                            var debug = false
+                            var steps = 0
+                            steps = steps + 1
+                            steps = steps + 1
+                            if (debug)
+                                steps = steps * 100
+                            var mode = 'fast'
+                            if (steps > 1)
+                                mode = 'safe'
+                            var total = 0
+                            for (var i = 0; i < n; i++) {
+                                if (debug)
+                                    printf('never')
+                                total = total + steps
+                            }
+                            return mode + string(total)
+                        }
+                        bump()
+                        if (level == 2)
+                            printf(settings(3))
+                        if (verbose)
+                            printf('verbose')
+                        print(level)
+                        """, "safe6\n2")
+        );
+    }
+}
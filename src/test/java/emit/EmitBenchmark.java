@@ -0,0 +1,85 @@
+package emit;
+
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Compilation;
+
+import java.lang.invoke.MethodHandle;
+
+/*
+    Times tight loops in emitted code, run in this JVM.
+    Not a unit test, run it with the test classpath: java emit.EmitBenchmark [iterations]
+ */
+public class EmitBenchmark {
+    private static final String[][] PROGRAMS = {
+            {"counting loop", """
+                    function count(n: int): int {
+                        var total = 0
+                        for (var i = 0; i < n; i++) {
+                            if (i %% 3 == 0 || i == 7)
+                                total = total + i
+                        }
+                        return total
+                    }
+                    var a = count(%d)
+                    """},
+            {"nested conditions", """
+                    function classify(n: int): int {
+                        var hits = 0
+                        var i = 0
+                        while (i < n) {
+                            if (!(i %% 2 == 0) && i != 5 && i <= n - 2)
+                                hits++
+                            i++
+                        }
+                        return hits
+                    }
+                    var a = classify(%d)
+                    """},
+            {"boolean equality", """
+                    function flips(n: int): int {
+                        var flag = false
+                        var changes = 0
+                        for (var i = 0; i < n; i++) {
+                            var even = i %% 2 == 0
+                            if (even == flag)
+                                changes++
+                            flag = !flag
+                        }
+                        return changes
+                    }
+                    var a = flips(%d)
+                    """},
+            {"report lines", """
+                    function report(n: int): int {
+                        var name = 'item'
+                        var length = 0
+                        for (var i = 0; i < n; i++) {
+                            var line = '[' + name + ' ' + string(i) + '] ok=' + string(i > 3) + ';'
+                            if (line != 'x')
+                                length = length + 1
+                        }
+                        return length
+                    }
+                    var a = report(%d)
+                    """}
+    };
+
+    public static void main(String[] args) throws Throwable {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        for (String[] program : PROGRAMS) {
+            Compilation compilation = Compilation.create(SyntaxTree.parse(program[1].formatted(iterations)));
+            MethodHandle main = ProgramLoader.loadMain(compilation.emitClass().bytes());
+            String[] mainArgs = new String[0];
+            for (int i = 0; i < 20; i++)
+                main.invokeExact(mainArgs);
+            // the best run is the least disturbed by GC and compilation threads
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < 20; i++) {
+                long start = System.nanoTime();
+                main.invokeExact(mainArgs);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%-18s %8.2f ms%n", program[0], best / 1e6);
+        }
+    }
+}
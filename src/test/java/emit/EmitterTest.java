@@ -0,0 +1,297 @@
+package emit;
+
+import codeanalysis.syntax.SyntaxTree;
+import compilation.Compilation;
+import compilation.EmitResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmitterTest {
+
+    @ParameterizedTest
+    @MethodSource("providePrograms")
+    void emittedClassPassesVerification(String text) throws Exception {
+        EmitResult result = Compilation.create(SyntaxTree.parse(text)).emitClass();
+        assertTrue(result.diagnostics().isEmpty(), result.diagnostics().toString());
+        // defining and initializing the class runs the JVM verifier over every method and its frames
+        ProgramLoader.loadMain(result.bytes());
+    }
+
+    @ParameterizedTest
+    @MethodSource("providePrograms")
+    void maxStackIsExact(String text) throws Exception {
+        byte[] bytes = Compilation.create(SyntaxTree.parse(text)).emitClass().bytes();
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        new ClassReader(bytes).accept(writer, 0);
+        assertEquals(maxStacks(writer.toByteArray()), maxStacks(bytes));
+    }
+
+    @Test
+    void concatenationIsOneInvokeDynamic() throws Exception {
+        byte[] bytes = Compilation.create(SyntaxTree.parse("""
+                function describe(name: string, count: int): string {
+                    return 'name: ' + name + ', count: ' + string(count) + string(true) + '!'
+                }
+                """)).emitClass().bytes();
+        List<String> recipes = new ArrayList<>();
+        List<String> owners = new ArrayList<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String descriptor,
+                                                boolean isInterface) {
+                        owners.add(owner);
+                    }
+
+                    @Override
+                    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap,
+                                                       Object... arguments) {
+                        recipes.add(descriptor + arguments[0]);
+                    }
+                };
+            }
+        }, 0);
+
+        assertEquals(List.of("(Ljava/lang/String;I)Ljava/lang/String;name: \u0001, count: \u0001true!"), recipes);
+        assertFalse(owners.contains("java/lang/StringBuilder"));
+    }
+
+    @Test
+    void localsArePeakLiveNotDeclarationCount() throws Exception {
+        Map<Integer, Integer> maxLocals = new HashMap<>();
+        for (int loops : new int[]{10, 500}) {
+            StringBuilder text = new StringBuilder("function work(n: int): int {\n    var total = 0\n");
+            for (int i = 0; i < loops; i++) {
+                text.append("""
+                            for (var i = 0; i < n; i++) {
+                                var square = i * i
+                                var label = string(square)
+                                if (label == '4')
+                                    total = total + square
+                            }
+                        """);
+            }
+            text.append("    return total\n}\nprintf(string(work(3)))\n");
+            EmitResult result = Compilation.create(SyntaxTree.parse(text.toString())).emitClass();
+            assertTrue(result.diagnostics().isEmpty(), result.diagnostics().toString());
+            ProgramLoader.loadMain(result.bytes());
+            maxLocals.put(loops, maxLocals(result.bytes()).get("work(I)I"));
+        }
+        // n, total, the three locals of one loop and the guard 0 < n all the loops share,
+        // however many loops declare their own
+        assertEquals(6, maxLocals.get(10));
+        assertEquals(6, maxLocals.get(500));
+    }
+
+    @Test
+    void selfTailCallsRunInConstantStack() throws Throwable {
+        EmitResult result = Compilation.create(SyntaxTree.parse("""
+                function sum(n: int, total: int): int {
+                    if (n == 0)
+                        return total
+                    return sum(n - 1, total + n)
+                }
+                printf(string(sum(1000000, 0)))
+                """)).emitClass();
+        assertTrue(result.diagnostics().isEmpty(), result.diagnostics().toString());
+        // a million frames would not fit in the default thread stack
+        ProgramLoader.loadMain(result.bytes()).invoke(new String[0]);
+    }
+
+    @Test
+    void primitiveArgumentsToAnyParametersAreBoxed() throws Throwable {
+        EmitResult result = Compilation.create(SyntaxTree.parse("""
+                function show(x: any): string {
+                    return string(x)
+                }
+                printf(show(3) + show(true) + show('s'))
+                """)).setInliningBudget(0).emitClass();
+        assertTrue(result.diagnostics().isEmpty(), result.diagnostics().toString());
+        MethodHandle main = ProgramLoader.loadMain(result.bytes());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true));
+        try {
+            main.invoke(new String[0]);
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals("3trues", output.toString().strip());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideFailingRightOperands")
+    void logicalOperandsThatMayFailAreNotSkipped(String call, Class<? extends Throwable> expected) throws Throwable {
+        EmitResult result = Compilation.create(SyntaxTree.parse("""
+                function sd(a: boolean, x: int): boolean {
+                    return a && 10 / x > 0
+                }
+                function so(a: boolean, s: string): boolean {
+                    return a || int(s) > 0
+                }
+                printf(string(%s))
+                """.formatted(call))).setInliningBudget(0).emitClass();
+        assertTrue(result.diagnostics().isEmpty(), result.diagnostics().toString());
+        MethodHandle main = ProgramLoader.loadMain(result.bytes());
+
+        // both operands are evaluated, as in the interpreters
+        assertThrows(expected, () -> main.invoke(new String[0]));
+    }
+
+    private static Map<String, Integer> maxLocals(byte[] bytes) {
+        Map<String, Integer> locals = new HashMap<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMaxs(int maxStack, int maxLocals) {
+                        locals.put(name + descriptor, maxLocals);
+                    }
+                };
+            }
+        }, 0);
+        return locals;
+    }
+
+    private static Map<String, Integer> maxStacks(byte[] bytes) {
+        Map<String, Integer> maxStacks = new HashMap<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMaxs(int maxStack, int maxLocals) {
+                        maxStacks.put(name + descriptor, maxStack);
+                    }
+                };
+            }
+        }, 0);
+        return maxStacks;
+    }
+
+    static Stream<Arguments> provideFailingRightOperands() {
+        return Stream.of(
+                Arguments.of("sd(false, 0)", ArithmeticException.class),
+                Arguments.of("so(true, 'a')", NumberFormatException.class)
+        );
+    }
+
+    static Stream<Arguments> providePrograms() {
+        return Stream.of(
+                Arguments.of("var a = 1 + 2 * 3"),
+                Arguments.of("""
+                        var total = 0
+                        for (var i = 0; i < 10; i++) {
+                            var square = i * i
+                            if (square > 20 && i != 7)
+                                total = total + square
+                            else {
+                                var half = square / 2
+                                total = total - half
+                            }
+                        }
+                        print(total)
+                        """),
+                Arguments.of("""
+                        var a = 0
+                        while (true) {
+                            a++
+                            if (a >= 7 || a == -1)
+                                break
+                        }
+                        """),
+                Arguments.of("""
+                        function fib(n: int): int {
+                            if (n < 2)
+                                return n
+                            return fib(n - 1) + fib(n - 2)
+                        }
+                        function describe(n: int, even: boolean): string {
+                            var text = string(n)
+                            if (even)
+                                text = text + ' is even'
+                            return text
+                        }
+                        printf(describe(fib(10), fib(10) % 2 == 0))
+                        """),
+                Arguments.of("""
+                        var x: any = 5
+                        var y: any = '4'
+                        var name = 'n'
+                        function show(value: any, flag: boolean) {
+                            printf(value)
+                        }
+                        show(x, !(int(x) > int(y)))
+                        var z: any = name + string(1 < 2 | false)
+                        show(z, true)
+                        """),
+                Arguments.of("""
+                        var a = random(~(1 < 2) + 5)
+                        var b = a < 3 ^ a >= 1
+                        """),
+                Arguments.of("""
+                        var counter = 0
+                        function increment(step: int): int {
+                            var i = 0
+                            while (i < step) {
+                                counter = counter + 1
+                                i++
+                            }
+                            return counter
+                        }
+                        var last = increment(3) + increment(4)
+                        """),
+                Arguments.of("""
+                        function mix(n: int): string {
+                            var text = ''
+                            {
+                                var s = 'a' + string(n)
+                                text = text + s
+                            }
+                            {
+                                var k = n * 2
+                                while (k > 0)
+                                    k = k - 1
+                                text = text + string(k)
+                            }
+                            for (var i = 0; i < n; i++) {
+                                var even = i % 2 == 0
+                                if (even)
+                                    text = text + 'x'
+                            }
+                            return text
+                        }
+                        printf(mix(3))
+                        """)
+        );
+    }
+}